@@ -16,4 +16,30 @@ public class DatabaseRecordMetadata extends BaseMetadata {
 
     String template;
 
+    /**
+     * 并行读取的主键区间数，为空或 1 时单连接顺序读取
+     */
+    Integer readParallelism;
+
+    /**
+     * 并行读取时是否按主键顺序输出，为空时视为 true
+     */
+    Boolean orderedRead;
+
+    /**
+     * 下推到源库的过滤条件，由 AND 连接的简单比较（如 status = 1 AND name LIKE 'a%'），
+     * 格式见 {@link com.zwbd.dbcrawlerv4.datasource.dialect.TableFilter}，字面量作为绑定参数执行
+     */
+    String filter;
+
+    /**
+     * 最多读取的行数，为空时不限制；续传时作用于每次读取
+     */
+    Integer limit;
+
+    /**
+     * 是否在本地生成快照，重复读取时不再访问源库，表的变更指纹变化后自动重建；为空时视为 false
+     */
+    Boolean snapshot;
+
 }
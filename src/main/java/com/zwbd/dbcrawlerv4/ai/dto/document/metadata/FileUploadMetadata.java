@@ -14,4 +14,10 @@ public class FileUploadMetadata extends BaseMetadata {
     @JsonIgnore
     private String filePath;
 
+    /**
+     * 文件内容的 SHA-256，用于复用相同内容的解析结果
+     */
+    @JsonIgnore
+    private String contentHash;
+
 }
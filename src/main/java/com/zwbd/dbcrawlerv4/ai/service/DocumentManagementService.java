@@ -18,10 +18,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * @Desc: 核心文档管理服务
@@ -37,6 +40,11 @@ public class DocumentManagementService {
 //    private final TokenTextSplitter textSplitter = new  TokenTextSplitter();
     private final TokenTextSplitter textSplitter = new  TokenTextSplitter(800, 350, 1, 10000, true);
 
+    /**
+     * 领域文档向量化时每批切分的切片数
+     */
+    private static final int INGEST_BATCH_SIZE = 500;
+
     @Autowired
     private DocumentContextService documentContextService;
 
@@ -53,20 +61,36 @@ public class DocumentManagementService {
         log.info("Initialized Service with loaders: {}", documentLoaders.keySet());
     }
 
+    /**
+     * 领域文档向量化：按顺序流式读取切片，每攒够一批切分并写入向量库，内存占用与文档大小无关。
+     * 切分器对每个 Document 独立切分，分批结果与一次性切分相同。
+     *
+     * @return 写入的向量块数
+     */
     @Transactional
-    public List<Document> ingest(DomainDocument domainDocument) {
+    public long ingest(DomainDocument domainDocument) {
         log.info("Starting ingestion domainDocument {}", domainDocument.getId());
-        List<DocumentContext> documentContent = documentContextService.getDocumentContents(domainDocument.getId());
-        List<Document> documents = documentContent.stream().map(documentContext -> {
-            return new Document(documentContext.getText(), documentContext.getMetadata());
-        }).toList();
-        log.info("ingest domainDocument {} size: {}", domainDocument.getId(), documents.size());
-//        documents.forEach(item-> System.out.println(item.getText()));
-        List<Document> chunks = textSplitter.split(documents);
-        log.info("splitting chunks size {}", chunks.size());
-//        chunks.forEach(item-> System.out.println(item.getText()));
-        documentRepository.save(chunks);
-        return chunks;
+        long documentCount = 0;
+        long chunkCount = 0;
+        try (Stream<DocumentContext> documentContent = documentContextService.streamDocumentContents(domainDocument.getId())) {
+            List<Document> batch = new ArrayList<>(INGEST_BATCH_SIZE);
+            Iterator<DocumentContext> iterator = documentContent.iterator();
+            while (iterator.hasNext()) {
+                DocumentContext documentContext = iterator.next();
+                batch.add(new Document(documentContext.getText(), documentContext.getMetadata()));
+                if (batch.size() == INGEST_BATCH_SIZE || !iterator.hasNext()) {
+                    documentCount += batch.size();
+                    List<Document> chunks = textSplitter.split(batch);
+                    if (!chunks.isEmpty()) {
+                        documentRepository.save(chunks);
+                    }
+                    chunkCount += chunks.size();
+                    batch.clear();
+                }
+            }
+        }
+        log.info("ingest domainDocument {} size: {}, splitting chunks size {}", domainDocument.getId(), documentCount, chunkCount);
+        return chunkCount;
     }
 
     /**
@@ -2,11 +2,17 @@ package com.zwbd.dbcrawlerv4.common.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @Author: wnli
@@ -24,10 +30,53 @@ public class CommonConfig {
     }
 
     @Bean
+    @Primary
     ExecutorService init(){
         return Executors.newFixedThreadPool(10);
     }
 
-    
+    /**
+     * 元数据采集的表级工作线程池，与外层采集任务所用的线程池隔离，避免相互占满导致死锁。
+     * 单个数据源的实际并发度由 {@link TimeoutConfig#getMaxConcurrentTasks()} 控制。
+     */
+    @Bean("metadataCrawlExecutor")
+    ExecutorService metadataCrawlExecutor(TimeoutConfig timeoutConfig) {
+        int threads = Math.max(timeoutConfig.getMaxConcurrentTasks() * 4, 8);
+        return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("metadata-crawl-"));
+    }
+
+    /**
+     * 按主键区间并行读表的生产者线程池。生产者在队列写满时阻塞，使用可伸缩线程池避免占用固定线程；
+     * 实际并发受单个数据源的连接池大小约束。
+     */
+    @Bean("tableReadExecutor")
+    ExecutorService tableReadExecutor() {
+        return Executors.newCachedThreadPool(new CustomizableThreadFactory("table-read-"));
+    }
+
+    /**
+     * 批量文件解析的工作线程池。线程数与排队数都有上限，排队已满时拒绝新文件（RejectedExecutionException），
+     * 避免一次上传大量文件时无限堆积。
+     */
+    @Bean("fileIngestExecutor")
+    ExecutorService fileIngestExecutor(FileIngestConfig fileIngestConfig) {
+        int threads = fileIngestConfig.getParallelism();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(fileIngestConfig.getQueueCapacity()),
+                new CustomizableThreadFactory("file-ingest-"));
+    }
+
+    /**
+     * 衍生文档后台生成的线程池，供 @Async("documentDerivationExecutor") 使用。
+     * 每个生成任务都会长时间占用一个线程执行 Python 脚本，线程数与排队数都有上限，排队已满时拒绝新的生成任务。
+     */
+    @Bean("documentDerivationExecutor")
+    ExecutorService documentDerivationExecutor(@Value("${app.derivation.parallelism:2}") int parallelism,
+                                               @Value("${app.derivation.queue-capacity:64}") int queueCapacity) {
+        return new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("document-derivation-"));
+    }
+
 
 }
@@ -0,0 +1,56 @@
+package com.zwbd.dbcrawlerv4.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Connection pool limits for registered source databases.
+ * All pools are created and tracked by a single registry, these values bound the
+ * connections each source may hold and the total across all sources.
+ *
+ * @Author: wnli
+ * @Date: 2025/10/15 15:20
+ * @Desc: Source database pool configuration
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.database.pool")
+public class DataSourcePoolConfig {
+
+    /**
+     * Maximum connections held by the pool of a single source database
+     */
+    private int maxPoolSizePerSource = 5;
+
+    /**
+     * Maximum connections across all source database pools
+     */
+    private int maxTotalConnections = 50;
+
+    /**
+     * Minimum idle connections kept by each pool
+     */
+    private int minIdle = 0;
+
+    /**
+     * Idle time in seconds after which a single connection is retired from its pool
+     */
+    private int connectionIdleTimeout = 120;
+
+    /**
+     * Idle time in minutes after which an unused pool is closed and removed from the registry
+     */
+    private int poolIdleTimeoutMinutes = 30;
+
+    /**
+     * Interval in seconds between two idle pool eviction runs
+     */
+    private int evictionIntervalSeconds = 60;
+
+    /**
+     * Whether source connections are opened read-only
+     */
+    private boolean readOnly = true;
+
+}
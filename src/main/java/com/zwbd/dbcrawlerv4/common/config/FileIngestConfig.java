@@ -0,0 +1,60 @@
+package com.zwbd.dbcrawlerv4.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Limits for bulk file ingestion.
+ * Files are parsed on a bounded worker pool; each file is isolated by a timeout and size limits
+ * so a single corrupt or oversized upload cannot stall or exhaust the whole batch.
+ *
+ * @Author: wnli
+ * @Date: 2025/12/8 10:05
+ * @Desc: Bulk file ingestion configuration
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.file.ingest")
+public class FileIngestConfig {
+
+    /**
+     * Number of files parsed at the same time
+     */
+    private int parallelism = 4;
+
+    /**
+     * Maximum files waiting for a worker; files beyond this are rejected instead of queued
+     */
+    private int queueCapacity = 256;
+
+    /**
+     * Parsing timeout in seconds for a single file, measured from the moment a worker picks it up
+     */
+    private int fileTimeoutSeconds = 300;
+
+    /**
+     * Maximum size in bytes of a single file (or extracted archive entry) accepted for parsing
+     */
+    private long maxFileBytes = 512L * 1024 * 1024;
+
+    /**
+     * Maximum number of files extracted from one ZIP archive
+     */
+    private int maxArchiveEntries = 1000;
+
+    /**
+     * Maximum total uncompressed size in bytes extracted from one ZIP archive
+     */
+    private long maxArchiveBytes = 2L * 1024 * 1024 * 1024;
+
+    /**
+     * Timeout in milliseconds for streaming the results of one batch upload.
+     * A file waits behind at most queueCapacity queued and parallelism running files, each bounded by the per-file timeout,
+     * so the stream stays open until the last file of the batch has reported its result.
+     */
+    public long getBatchResponseTimeoutMillis() {
+        long rounds = (queueCapacity + parallelism + parallelism - 1) / parallelism + 1;
+        return rounds * fileTimeoutSeconds * 1000L;
+    }
+}
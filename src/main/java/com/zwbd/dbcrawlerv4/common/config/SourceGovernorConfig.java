@@ -0,0 +1,95 @@
+package com.zwbd.dbcrawlerv4.common.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Load limits applied to every registered source database.
+ * The defaults apply to all sources, entries under {@code sources.<dataBaseId>} override them for a single source.
+ * A value of 0 disables the corresponding limit.
+ *
+ * @Author: wnli
+ * @Date: 2025/12/5 14:10
+ * @Desc: Source database load governor configuration
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.database.governor")
+public class SourceGovernorConfig {
+
+    /**
+     * Whether source connections are governed at all
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximum statements executing at the same time against one source
+     */
+    private int maxConcurrentStatements = 4;
+
+    /**
+     * Maximum rows per second streamed from one source
+     */
+    private long rowsPerSecond = 0;
+
+    /**
+     * Delay new statements while the smoothed statement latency of a source exceeds the threshold
+     */
+    private boolean latencyBackoff = false;
+
+    /**
+     * Smoothed statement latency in milliseconds above which new statements are delayed
+     */
+    private long latencyThresholdMillis = 1000;
+
+    /**
+     * Upper bound in milliseconds for the delay applied before a single statement
+     */
+    private long maxBackoffMillis = 5000;
+
+    /**
+     * Weight of the newest sample in the exponentially weighted moving average of statement latency
+     */
+    private double latencySmoothing = 0.2;
+
+    /**
+     * Per source overrides, keyed by data source id
+     */
+    private Map<Long, SourceLimits> sources = new HashMap<>();
+
+    @Data
+    public static class SourceLimits {
+
+        private Integer maxConcurrentStatements;
+
+        private Long rowsPerSecond;
+
+        private Boolean latencyBackoff;
+
+        private Long latencyThresholdMillis;
+    }
+
+    public int maxConcurrentStatements(Long dataBaseId) {
+        SourceLimits limits = sources.get(dataBaseId);
+        return limits != null && limits.getMaxConcurrentStatements() != null ? limits.getMaxConcurrentStatements() : maxConcurrentStatements;
+    }
+
+    public long rowsPerSecond(Long dataBaseId) {
+        SourceLimits limits = sources.get(dataBaseId);
+        return limits != null && limits.getRowsPerSecond() != null ? limits.getRowsPerSecond() : rowsPerSecond;
+    }
+
+    public boolean latencyBackoff(Long dataBaseId) {
+        SourceLimits limits = sources.get(dataBaseId);
+        return limits != null && limits.getLatencyBackoff() != null ? limits.getLatencyBackoff() : latencyBackoff;
+    }
+
+    public long latencyThresholdMillis(Long dataBaseId) {
+        SourceLimits limits = sources.get(dataBaseId);
+        return limits != null && limits.getLatencyThresholdMillis() != null ? limits.getLatencyThresholdMillis() : latencyThresholdMillis;
+    }
+}
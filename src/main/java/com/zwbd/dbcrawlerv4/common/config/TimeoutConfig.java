@@ -48,7 +48,8 @@ public class TimeoutConfig {
     private int taskTimeoutMinutes = 60;
 
     /**
-     * Maximum concurrent tasks for parallel processing
+     * Maximum concurrent tasks for parallel processing.
+     * Limits how many tables of one data source are crawled at the same time in parallel crawl mode.
      */
     private int maxConcurrentTasks = 5;
 
@@ -3,6 +3,7 @@ package com.zwbd.dbcrawlerv4.datasource.controller;
 import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.DatabaseRecordMetadata;
 import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.DocumentType;
 import com.zwbd.dbcrawlerv4.common.web.ApiResponse;
+import com.zwbd.dbcrawlerv4.datasource.dialect.TableFilter;
 import com.zwbd.dbcrawlerv4.datasource.dto.database.DataBaseInfoDTO;
 import com.zwbd.dbcrawlerv4.datasource.service.DataBaseInfoService;
 import com.zwbd.dbcrawlerv4.datasource.service.MetadataCollectorService;
@@ -180,7 +181,12 @@ public class DataBaseInfoController {
 
     @PostMapping("/{id}/{schema}/{table}/stream")
     @Operation(summary = "stream tables")
-    public ApiResponse<List<String>> streamTable(@PathVariable Long id, @PathVariable String schema, @PathVariable String table, @RequestBody String template) {
+    public ApiResponse<List<String>> streamTable(@PathVariable Long id, @PathVariable String schema, @PathVariable String table, @RequestBody String template,
+                                                 @Parameter(description = "并行读取的主键区间数") @RequestParam(defaultValue = "1") int readParallelism,
+                                                 @Parameter(description = "并行读取时是否按主键顺序输出") @RequestParam(defaultValue = "true") boolean orderedRead,
+                                                 @Parameter(description = "下推到源库的过滤条件，由 AND 连接的简单比较，如 status = 1 AND name LIKE 'a%'") @RequestParam(required = false) String filter,
+                                                 @Parameter(description = "最多读取的行数") @RequestParam(required = false) Integer limit,
+                                                 @Parameter(description = "是否生成本地快照，重复读取时不再访问源库") @RequestParam(defaultValue = "false") boolean snapshot) {
         DatabaseRecordMetadata metadata = new DatabaseRecordMetadata();
         metadata.setSourceId(String.valueOf(id));
         metadata.setSourceSystem("DB");
@@ -190,6 +196,15 @@ public class DataBaseInfoController {
         metadata.setSchema(schema);
         metadata.setTable(table);
         metadata.setTemplate(template);
+        metadata.setReadParallelism(readParallelism);
+        metadata.setOrderedRead(orderedRead);
+        if (filter != null && !filter.isBlank()) {
+            // 创建文档前校验过滤条件，格式不支持时直接拒绝
+            TableFilter.parse(filter);
+        }
+        metadata.setFilter(filter);
+        metadata.setLimit(limit);
+        metadata.setSnapshot(snapshot);
         domainDocumentService.initDomainDocument(metadata);
         return ApiResponse.success();
     }
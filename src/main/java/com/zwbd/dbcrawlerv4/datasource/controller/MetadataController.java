@@ -4,11 +4,16 @@ import com.zwbd.dbcrawlerv4.document.etl.loader.impl.DatabaseMetadataDocumentLoa
 import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.DatabaseRecordMetadata;
 import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.DocumentType;
 import com.zwbd.dbcrawlerv4.ai.service.DocumentManagementService;
+import com.zwbd.dbcrawlerv4.common.exception.CommonException;
 import com.zwbd.dbcrawlerv4.datasource.dto.database.DataBaseInfoDTO;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.DatabaseMetadata;
+import com.zwbd.dbcrawlerv4.datasource.entity.CrawlMode;
+import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseInfo;
+import com.zwbd.dbcrawlerv4.datasource.entity.ExecutionMode;
 import com.zwbd.dbcrawlerv4.datasource.service.DataBaseInfoService;
 import com.zwbd.dbcrawlerv4.datasource.service.DatabaseMetadataStorageService;
 import com.zwbd.dbcrawlerv4.datasource.service.MetadataCollectorService;
+import com.zwbd.dbcrawlerv4.monitor.service.TaskProgress;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -17,10 +22,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Optional;
@@ -64,9 +66,13 @@ public class MetadataController {
 
     @PostMapping("/save/{id}")
     @Operation(summary = "save database metadata", description = "check database metadata")
-    public ResponseEntity<DatabaseMetadata> save(@Parameter(description = "Database info ID") @PathVariable Long id) {
+    public ResponseEntity<DatabaseMetadata> save(@Parameter(description = "Database info ID") @PathVariable Long id,
+                                                 @Parameter(description = "只重新采集指纹发生变化的表") @RequestParam(defaultValue = "false") boolean incremental,
+                                                 @Parameter(description = "指标计算模式") @RequestParam(defaultValue = "AUTO") ExecutionMode mode) {
         Optional<DataBaseInfoDTO> dto = dataBaseInfoService.findById(id);
-        CompletableFuture<DatabaseMetadata> future = metadataCollectorService.collectMetadata(dto.get().toEntity());
+        CompletableFuture<DatabaseMetadata> future = incremental
+                ? metadataCollectorService.collectMetadataIncrementally(dto.get().toEntityWithId(), mode)
+                : metadataCollectorService.collectMetadata(dto.get().toEntityWithId(), mode);
         DatabaseMetadata databaseMetadata = null;
         try {
             databaseMetadata = future.get();
@@ -79,6 +85,22 @@ public class MetadataController {
         return ResponseEntity.ok(databaseMetadata);
     }
 
+    @PostMapping("/collect/{id}")
+    @Operation(summary = "collect database metadata in background", description = "Start a crawl and return its task id, the result is saved when it completes. Progress: /api/tasks/{taskId}/status")
+    public ResponseEntity<String> collect(@Parameter(description = "Database info ID") @PathVariable Long id,
+                                          @Parameter(description = "只重新采集指纹发生变化的表") @RequestParam(defaultValue = "false") boolean incremental,
+                                          @Parameter(description = "指标计算模式") @RequestParam(defaultValue = "AUTO") ExecutionMode mode) {
+        DataBaseInfo dataBaseInfo = dataBaseInfoService.findById(id).orElseThrow(() -> new CommonException("Database info not found: " + id)).toEntityWithId();
+        TaskProgress task = metadataCollectorService.startCollectionTask(dataBaseInfo);
+        // 保存在任务完成前执行，采集或保存失败时任务标记为失败并记录日志
+        metadataCollectorService.collectAndSave(dataBaseInfo, incremental, mode, task)
+                .exceptionally(throwable -> {
+                    log.warn("Collection task {} for database {} failed: {}", task.getTaskId(), id, throwable.getMessage());
+                    return null;
+                });
+        return ResponseEntity.ok(task.getTaskId());
+    }
+
 
     @PostMapping("/analyse/{id}")
     @Operation(summary = "analyse database metadata to RAG sys", description = "analyse database")
@@ -0,0 +1,337 @@
+package com.zwbd.dbcrawlerv4.datasource.dialect;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zwbd.dbcrawlerv4.common.config.DataSourcePoolConfig;
+import com.zwbd.dbcrawlerv4.common.config.TimeoutConfig;
+import com.zwbd.dbcrawlerv4.common.exception.CommonException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/10/15 15:32
+ * @Desc: 源数据库连接池的统一注册表。
+ * 所有访问源库的连接池都由这里创建和持有，负责：
+ * 1. 单个数据源与全局的连接数上限（超过全局上限时优先淘汰最久未使用的空闲连接池）
+ * 2. 定期关闭长时间未使用的连接池
+ * 3. 数据源配置变更时失效对应的连接池
+ * 4. 通过 Micrometer 暴露 hikaricp.* 连接池指标（active、idle、pending、acquire 等）
+ * 调用方拿到的是绑定到连接池的句柄，可能长时间持有（会话、jOOQ 上下文、并行读取）。
+ * 失效、淘汰连接池时不立即关闭，而是先移出注册表并 softEvict 空闲连接，等没有借出中的连接、也没有正在获取连接的调用时再关闭；
+ * 连接池已关闭后句柄再获取连接时改用注册表中的当前连接池，调用方不会拿到已关闭的连接池。
+ */
+@Slf4j
+@Component
+public class DataSourcePoolRegistry {
+
+    private static final String POOL_NAME_PREFIX = "source-db-";
+
+    private final Map<Long, PoolEntry> pools = new ConcurrentHashMap<>();
+
+    /**
+     * 连接池名称序号。失效后重建的连接池与等待关闭的旧连接池同时存在，
+     * 名称相同会让 hikaricp.* 指标重复注册，旧连接池关闭时还会移除新连接池的指标
+     */
+    private final AtomicLong poolSequence = new AtomicLong();
+
+    /**
+     * 已移出注册表、等待连接归还后关闭的连接池
+     */
+    private final Queue<PoolEntry> retired = new ConcurrentLinkedQueue<>();
+
+    private final DataSourcePoolConfig poolConfig;
+    private final TimeoutConfig timeoutConfig;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService evictionScheduler;
+
+    public DataSourcePoolRegistry(DataSourcePoolConfig poolConfig, TimeoutConfig timeoutConfig, ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.poolConfig = poolConfig;
+        this.timeoutConfig = timeoutConfig;
+        this.meterRegistry = meterRegistryProvider.getIfAvailable();
+        if (meterRegistry != null) {
+            Gauge.builder("source.db.pools", pools, Map::size)
+                    .description("Number of open source database pools")
+                    .register(meterRegistry);
+            Gauge.builder("source.db.pools.capacity", this, DataSourcePoolRegistry::totalCapacity)
+                    .description("Maximum connections reserved by all open source database pools, including retired pools not yet closed")
+                    .register(meterRegistry);
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("source-db-pool-evictor-");
+        threadFactory.setDaemon(true);
+        this.evictionScheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.evictionScheduler.scheduleWithFixedDelay(() -> {
+                    evictIdlePools();
+                    closeRetiredPools();
+                },
+                poolConfig.getEvictionIntervalSeconds(), poolConfig.getEvictionIntervalSeconds(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * 获取数据源对应的连接池，不存在时使用 factory 创建，并统一应用连接数上限、只读等设置。
+     *
+     * @param dataBaseId 数据源 ID
+     * @param factory    创建未启动的 HikariDataSource（只需设置驱动、URL 与账号）
+     */
+    public DataSource getOrCreate(Long dataBaseId, Supplier<HikariDataSource> factory) {
+        return new PoolHandle(dataBaseId, factory, current(dataBaseId, factory));
+    }
+
+    private PoolEntry current(Long dataBaseId, Supplier<HikariDataSource> factory) {
+        PoolEntry entry = pools.get(dataBaseId);
+        if (entry == null) {
+            entry = createPool(dataBaseId, factory);
+        }
+        entry.touch();
+        return entry;
+    }
+
+    /**
+     * 移除数据源的连接池（例如当数据库密码修改后），下次访问时按最新配置重建。
+     * 旧连接池在借出的连接全部归还后关闭。
+     */
+    public void invalidate(Long dataBaseId) {
+        PoolEntry entry = pools.remove(dataBaseId);
+        if (entry != null) {
+            log.info("Invalidate pool of data source {}", dataBaseId);
+            retire(entry);
+        }
+    }
+
+    /**
+     * 已移出注册表的连接池：关闭空闲连接，借出中的连接归还时关闭，连接池本身由 {@link #closeRetiredPools} 关闭
+     */
+    private void retire(PoolEntry entry) {
+        HikariPoolMXBean pool = entry.dataSource.getHikariPoolMXBean();
+        if (pool != null) {
+            pool.softEvictConnections();
+        }
+        retired.add(entry);
+        closeRetiredPools();
+    }
+
+    private void closeRetiredPools() {
+        retired.removeIf(entry -> {
+            if (!entry.tryClose()) {
+                return false;
+            }
+            log.info("Closed retired pool {}", entry.dataSource.getPoolName());
+            return true;
+        });
+    }
+
+    private synchronized PoolEntry createPool(Long dataBaseId, Supplier<HikariDataSource> factory) {
+        PoolEntry existing = pools.get(dataBaseId);
+        if (existing != null) {
+            return existing;
+        }
+        int poolSize = poolConfig.getMaxPoolSizePerSource();
+        reserveCapacity(poolSize);
+
+        HikariDataSource dataSource = factory.get();
+        dataSource.setPoolName(POOL_NAME_PREFIX + dataBaseId + "-" + poolSequence.incrementAndGet());
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setMinimumIdle(Math.min(poolConfig.getMinIdle(), poolSize));
+        dataSource.setIdleTimeout(TimeUnit.SECONDS.toMillis(poolConfig.getConnectionIdleTimeout()));
+        dataSource.setConnectionTimeout(TimeUnit.SECONDS.toMillis(timeoutConfig.getConnectionTimeout()));
+        dataSource.setReadOnly(poolConfig.isReadOnly());
+        if (meterRegistry != null) {
+            dataSource.setMetricRegistry(meterRegistry);
+        }
+        PoolEntry entry = new PoolEntry(dataSource);
+        pools.put(dataBaseId, entry);
+        log.info("Created pool {} (max {} connections, {} pools open)", dataSource.getPoolName(), poolSize, pools.size());
+        return entry;
+    }
+
+    /**
+     * 保证新建连接池后总连接数不超过全局上限：依次淘汰最久未使用且没有活跃连接的连接池，仍不足时拒绝创建。
+     */
+    private void reserveCapacity(int required) {
+        if (totalCapacity() + required <= poolConfig.getMaxTotalConnections()) {
+            return;
+        }
+        List<Map.Entry<Long, PoolEntry>> candidates = pools.entrySet().stream()
+                .filter(e -> e.getValue().activeConnections() == 0)
+                .sorted(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                .toList();
+        for (Map.Entry<Long, PoolEntry> candidate : candidates) {
+            if (totalCapacity() + required <= poolConfig.getMaxTotalConnections()) {
+                return;
+            }
+            log.info("Evict pool of data source {} to stay under the global connection limit", candidate.getKey());
+            invalidate(candidate.getKey());
+        }
+        // 退役时还有连接未归还的连接池，可能已在等待期间关闭
+        closeRetiredPools();
+        if (totalCapacity() + required > poolConfig.getMaxTotalConnections()) {
+            throw new CommonException("源数据库连接数已达全局上限 " + poolConfig.getMaxTotalConnections() + "，请稍后重试");
+        }
+    }
+
+    /**
+     * 已退役但尚未关闭的连接池仍持有借出的连接，关闭前照常计入容量
+     */
+    private int totalCapacity() {
+        return Stream.concat(pools.values().stream(), retired.stream())
+                .mapToInt(entry -> entry.dataSource.getMaximumPoolSize())
+                .sum();
+    }
+
+    private void evictIdlePools() {
+        long threshold = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(poolConfig.getPoolIdleTimeoutMinutes());
+        pools.forEach((dataBaseId, entry) -> {
+            if (entry.lastAccess < threshold && entry.activeConnections() == 0) {
+                log.info("Close idle pool of data source {}", dataBaseId);
+                if (pools.remove(dataBaseId, entry)) {
+                    retire(entry);
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evictionScheduler.shutdownNow();
+        pools.keySet().forEach(dataBaseId -> {
+            PoolEntry entry = pools.remove(dataBaseId);
+            if (entry != null) {
+                entry.dataSource.close();
+            }
+        });
+        retired.forEach(entry -> entry.dataSource.close());
+        retired.clear();
+    }
+
+    /**
+     * 调用方持有的数据源句柄。获取连接时登记为借用者，绑定的连接池已关闭时改用当前连接池。
+     */
+    private final class PoolHandle extends AbstractDataSource {
+
+        private final Long dataBaseId;
+        private final Supplier<HikariDataSource> factory;
+        private volatile PoolEntry entry;
+
+        private PoolHandle(Long dataBaseId, Supplier<HikariDataSource> factory, PoolEntry entry) {
+            this.dataBaseId = dataBaseId;
+            this.factory = factory;
+            this.entry = entry;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            while (true) {
+                PoolEntry target = entry;
+                if (target.borrow()) {
+                    try {
+                        target.touch();
+                        return target.dataSource.getConnection();
+                    } finally {
+                        target.release();
+                    }
+                }
+                // 绑定的连接池正在关闭或已关闭
+                entry = current(dataBaseId, factory);
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLFeatureNotSupportedException("Source database pools use the configured credentials");
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            if (iface.isInstance(entry.dataSource)) {
+                return iface.cast(entry.dataSource);
+            }
+            return super.unwrap(iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return iface.isInstance(entry.dataSource) || super.isWrapperFor(iface);
+        }
+    }
+
+    private static final class PoolEntry {
+        private final HikariDataSource dataSource;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        /**
+         * 正在获取连接的调用数；关闭时置为 CLOSED，之后不再接受借用
+         */
+        private final AtomicInteger borrowers = new AtomicInteger();
+        private static final int CLOSED = -1;
+
+        private PoolEntry(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        private void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+
+        private boolean borrow() {
+            while (true) {
+                int current = borrowers.get();
+                if (current == CLOSED) {
+                    return false;
+                }
+                if (borrowers.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+            borrowers.decrementAndGet();
+        }
+
+        /**
+         * 没有正在获取连接的调用、也没有借出中的连接时关闭连接池。
+         * 先置为 CLOSED 阻止新的借用，再检查借出中的连接，仍有连接时恢复。
+         */
+        private boolean tryClose() {
+            if (!borrowers.compareAndSet(0, CLOSED)) {
+                return false;
+            }
+            if (activeConnections() > 0) {
+                borrowers.set(0);
+                return false;
+            }
+            dataSource.close();
+            return true;
+        }
+
+        private int activeConnections() {
+            // 连接池在第一次 getConnection 时才会启动
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            return pool == null ? 0 : pool.getActiveConnections();
+        }
+    }
+}
@@ -3,15 +3,18 @@ package com.zwbd.dbcrawlerv4.datasource.dialect;
 import com.zaxxer.hikari.HikariDataSource;
 import com.zwbd.dbcrawlerv4.common.config.TimeoutConfig;
 import com.zwbd.dbcrawlerv4.common.exception.CommonException;
+import com.zwbd.dbcrawlerv4.datasource.dto.metadata.ColumnMetadata;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.ExtendedMetrics;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.SchemaMetadata;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.TableMetadata;
 import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseInfo;
 import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseType;
 import com.zwbd.dbcrawlerv4.datasource.entity.ExecutionMode;
+import com.zwbd.dbcrawlerv4.datasource.profile.TableProfiler;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.sql.DataSource;
+import java.math.BigDecimal;
 import java.sql.*;
 import java.util.*;
 import java.util.stream.Stream;
@@ -43,9 +46,10 @@ public abstract class DatabaseDialect {
 
 
     /**
-     * 根据连接创建数据源，统一实现
+     * 根据连接创建数据源，统一实现。
+     * 只设置驱动、URL 与账号，连接数上限、只读等连接池参数由 {@link DataSourcePoolRegistry} 统一设置。
      */
-    public DataSource createDataSource(DataBaseInfo dataBaseInfo) {
+    public HikariDataSource createDataSource(DataBaseInfo dataBaseInfo) {
         try {
             HikariDataSource dataSource = new HikariDataSource();
             dataSource.setDriverClassName(getDriverClassName());
@@ -76,9 +80,16 @@ public abstract class DatabaseDialect {
 
     /**
      * 获取单个表的完整Schema信息。这个方法会执行获取列信息、行数等多个相关查询，并将结果组装好。
+     * 不包含数据样本，样本由 {@link #getTableSample} 单独获取。
      */
     public abstract TableMetadata getTableDetails(Connection connection, TableMetadata tableMetadata) throws SQLException;
 
+    /**
+     * 获取单个表的数据样本（最多 SAMPLE_DATA_SIZE 行），用于文档预览与样本指标计算。
+     * 需要 getTableDetails 返回的列信息与行数来选择采样方式。
+     */
+    public abstract Optional<List<Map<String, Object>>> getTableSample(Connection connection, TableMetadata tableMetadata) throws SQLException;
+
     /**
      * 为单个表的所有相关列批量计算扩展指标。执行耗时的数据分析。
      */
@@ -88,6 +99,40 @@ public abstract class DatabaseDialect {
 
     public abstract List<TableMetadata> getTablesForSchema(Connection connection, String catalogName, String schemaName) throws SQLException;
 
+    /**
+     * 获取 schema 下每个表的变更指纹，用于增量采集。
+     * 指纹来自数据库的系统统计视图，查询代价很低；两次采集之间指纹一致即认为表结构与数据没有变化。
+     * 没有指纹的表（如视图或统计信息不可用）在增量采集中总会被重新处理。
+     * 指纹必须反映最新的写入：统计视图带缓存的数据库（如 MySQL 8 的 information_schema_stats_expiry）需在查询时绕过缓存，
+     * 否则缓存期内的变更不会触发重新采集，增量采集与表快照都会返回旧数据。
+     *
+     * @return Key = 表名, Value = 指纹字符串；默认实现不支持增量，返回空 Map
+     */
+    public Map<String, String> getTableFingerprints(Connection connection, String catalogName, String schemaName) throws SQLException {
+        return Map.of();
+    }
+
+    /**
+     * 获取单个表的变更指纹，用于读取前校验本地快照是否仍然有效。
+     * 默认实现取整个 schema 的指纹后查找，方言应覆盖为只查询这一个表。
+     *
+     * @return 表没有指纹时返回空
+     */
+    public Optional<String> getTableFingerprint(Connection connection, String catalogName, String schemaName, String tableName) throws SQLException {
+        return Optional.ofNullable(getTableFingerprints(connection, catalogName, schemaName).get(tableName));
+    }
+
+    /**
+     * 一次查询取回 schema 下所有表的列信息（列名、类型、注释、主键、可空），在内存中按表名分组。
+     * 整库采集时用它替代逐表的列查询，把每个表一次的元数据往返合并为每个 schema 一次。
+     * 结果中没有的表（或默认实现返回空 Map 时）由 getTableDetails 逐表查询。
+     *
+     * @return Key = 表名, Value = 按字段顺序排列的列信息；默认实现不支持，返回空 Map
+     */
+    public Map<String, List<ColumnMetadata>> getColumnsForSchema(Connection connection, String catalogName, String schemaName) throws SQLException {
+        return Map.of();
+    }
+
     /**
      * 【通用实现】获取数据库所有的 Schema (或 Catalog) 名称列表。
      * 用于前端下拉框选择。
@@ -179,14 +224,47 @@ public abstract class DatabaseDialect {
      * @return 包含数据的流，流关闭时会自动关闭 ResultSet 和 Statement
      */
     public Stream<Map<String, Object>> streamTableData(Connection connection, String schema, String tableName) throws SQLException {
-        String q = getIdentifierQuote();
+        return streamTableData(connection, TableScanSpec.builder().schema(schema).tableName(tableName).build());
+    }
 
-        // 构建全限定表名
-        StringBuilder sqlBuilder = new StringBuilder("SELECT * FROM ");
-        if (schema != null && !schema.isEmpty()) {
-            sqlBuilder.append(q).append(schema).append(q).append(".");
+    /**
+     * 【通用模板方法】按 {@link TableScanSpec} 流式查询表数据，可限定主键区间并按主键排序。
+     * @return 包含数据的流，流关闭时会自动关闭 ResultSet 和 Statement
+     */
+    public Stream<Map<String, Object>> streamTableData(Connection connection, TableScanSpec spec) throws SQLException {
+        // 构建查询列与全限定表名
+        StringBuilder sqlBuilder = new StringBuilder("SELECT ")
+                .append(selectList(spec))
+                .append(" FROM ")
+                .append(qualifiedTableName(spec.getSchema(), spec.getTableName()));
+
+        List<Object> params = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        if (spec.getFilter() != null && !spec.getFilter().isBlank()) {
+            // 过滤条件解析为结构化条件，字面量全部绑定为参数
+            conditions.add("(" + TableFilter.parse(spec.getFilter()).toSql(this::quoteIdentifier, params) + ")");
+        }
+        if (spec.getKeyColumn() != null) {
+            String key = quoteIdentifier(spec.getKeyColumn());
+            if (spec.getAfterKey() != null) {
+                conditions.add(key + " > ?");
+                params.add(spec.getAfterKey());
+            }
+            if (spec.getLowerBound() != null) {
+                conditions.add(key + " >= ?");
+                params.add(spec.getLowerBound());
+            }
+            if (spec.getUpperBound() != null) {
+                conditions.add(key + (spec.isUpperInclusive() ? " <= ?" : " < ?"));
+                params.add(spec.getUpperBound());
+            }
+        }
+        if (!conditions.isEmpty()) {
+            sqlBuilder.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        if (spec.getKeyColumn() != null && spec.isOrderByKey()) {
+            sqlBuilder.append(" ORDER BY ").append(quoteIdentifier(spec.getKeyColumn()));
         }
-        sqlBuilder.append(q).append(tableName).append(q);
 
         String sql = sqlBuilder.toString();
 
@@ -196,14 +274,201 @@ public abstract class DatabaseDialect {
                 ResultSet.TYPE_FORWARD_ONLY,
                 ResultSet.CONCUR_READ_ONLY
         );
+        for (int i = 0; i < params.size(); i++) {
+            bindParameter(stmt, i + 1, params.get(i));
+        }
+
+        // 行数限制交给驱动下推（各库分别转换为 LIMIT / TOP / SET ROWCOUNT）
+        if (spec.getLimit() != null && spec.getLimit() > 0) {
+            stmt.setMaxRows(spec.getLimit());
+        }
 
         // 应用特定数据库的流式设置（如 FetchSize）
         applyStreamingSettings(stmt);
 
         ResultSet rs = stmt.executeQuery();
 
-        // 转换为 Java Stream
-        return convertResultSetToStream(rs, stmt);
+        // 转换为 Java Stream，连接来自受控数据源时按行速率限流
+        return convertResultSetToStream(rs, stmt, SourceGovernor.of(connection));
+    }
+
+    /**
+     * 【通用实现】通过 JDBC 元数据查找单列整数主键，用于按主键区间切分表。
+     * 复合主键或非整数主键（包括带小数位的 DECIMAL）返回空。
+     * 区间切分与断点续读都通过本方法选取主键列，保证两者使用同一列；
+     * 各方言抽样时使用的 findNumericPrimaryKey 也接受浮点与复合主键中的数值列，不能用于这两种场景。
+     */
+    public Optional<String> findIntegerPrimaryKey(Connection connection, String schema, String tableName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String catalog = null;
+        String schemaPattern = schema;
+        // 适配 MySQL：将 schemaName 作为 catalog 参数
+        if (getDataBaseType() == DataBaseType.MYSQL) {
+            catalog = schema;
+            schemaPattern = null;
+        }
+
+        List<String> keyColumns = new ArrayList<>();
+        try (ResultSet rs = metaData.getPrimaryKeys(catalog, schemaPattern, tableName)) {
+            while (rs.next()) {
+                keyColumns.add(rs.getString("COLUMN_NAME"));
+            }
+        }
+        if (keyColumns.size() != 1) {
+            return Optional.empty();
+        }
+
+        try (ResultSet rs = metaData.getColumns(catalog, schemaPattern, tableName, keyColumns.get(0))) {
+            if (rs.next()) {
+                int type = rs.getInt("DATA_TYPE");
+                boolean integral = type == Types.BIGINT || type == Types.INTEGER
+                        || type == Types.SMALLINT || type == Types.TINYINT
+                        || ((type == Types.NUMERIC || type == Types.DECIMAL) && rs.getInt("DECIMAL_DIGITS") == 0);
+                if (integral) {
+                    return Optional.of(keyColumns.get(0));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 【通用实现】查询整数主键的取值范围。
+     *
+     * @return [MIN, MAX]，空表返回空
+     */
+    public Optional<long[]> getKeyBounds(Connection connection, String schema, String tableName, String keyColumn) throws SQLException {
+        String key = quoteIdentifier(keyColumn);
+        String sql = "SELECT MIN(" + key + "), MAX(" + key + ") FROM " + qualifiedTableName(schema, tableName);
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            if (rs.next()) {
+                long min = rs.getLong(1);
+                if (rs.wasNull()) {
+                    return Optional.empty();
+                }
+                return Optional.of(new long[]{min, rs.getLong(2)});
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 查询列列表：未指定列时为 *，指定 keyColumn 时确保主键列被读取（键集游标需要主键值）。
+     */
+    private String selectList(TableScanSpec spec) {
+        if (spec.getColumns() == null || spec.getColumns().isEmpty()) {
+            return "*";
+        }
+        List<String> columns = new ArrayList<>(spec.getColumns());
+        if (spec.getKeyColumn() != null && !columns.contains(spec.getKeyColumn())) {
+            columns.add(spec.getKeyColumn());
+        }
+        StringJoiner joiner = new StringJoiner(", ");
+        columns.forEach(column -> joiner.add(quoteIdentifier(column)));
+        return joiner.toString();
+    }
+
+    /**
+     * 拼接带引号的表名，schema 为空时依赖连接当前的默认 schema。
+     */
+    protected String qualifiedTableName(String schema, String tableName) {
+        StringBuilder builder = new StringBuilder();
+        if (schema != null && !schema.isEmpty()) {
+            builder.append(quoteIdentifier(schema)).append(".");
+        }
+        return builder.append(quoteIdentifier(tableName)).toString();
+    }
+
+    /**
+     * 为标识符加引号，标识符中的引号字符按 SQL 规则成对转义，标识符无法闭合引号后拼接其他 SQL。
+     */
+    protected String quoteIdentifier(String identifier) {
+        String q = getIdentifierQuote();
+        return q + identifier.replace(q, q + q) + q;
+    }
+
+    /**
+     * 绑定查询参数。PostgreSQL 的字符串参数按未指定类型发送，由服务端按列类型推断，
+     * 过滤条件中的 '2025-01-01' 等字面量可以与日期、数值列比较。
+     */
+    private void bindParameter(PreparedStatement stmt, int index, Object value) throws SQLException {
+        if (value instanceof String && getDataBaseType() == DataBaseType.POSTGRESQL) {
+            stmt.setObject(index, value, Types.OTHER);
+        } else {
+            stmt.setObject(index, value);
+        }
+    }
+
+    /**
+     * 【通用实现】流式画像：通过 streamTableData 单遍读取全表，在应用侧为每一列计算指标。
+     * 每列内存占用固定（见 {@link com.zwbd.dbcrawlerv4.datasource.profile.ColumnProfiler}），与行数无关。
+     * 表名不带 schema 限定，依赖连接当前的 catalog / 默认 schema，与聚合查询的处理方式一致。
+     */
+    protected Map<String, ExtendedMetrics> calculateMetricsByStreaming(Connection connection, TableMetadata tableMetadata) throws SQLException {
+        TableProfiler profiler = new TableProfiler(tableMetadata.columns());
+        try (Stream<Map<String, Object>> rows = streamTableData(connection, null, tableMetadata.tableName())) {
+            profiler.profile(rows);
+        }
+        return profiler.toMetrics(ExtendedMetrics.MetricSource.STREAM_PROFILE);
+    }
+
+    /**
+     * 【通用实现】基于已采集的样本数据在内存中计算指标，与流式画像共用 {@link TableProfiler}，
+     * 因此样本指标同样包含数值分布、中位数、等深直方图与高频值。
+     */
+    protected Map<String, ExtendedMetrics> calculateMetricsFromSample(TableMetadata tableMetadata) {
+        List<Map<String, Object>> sampleData = tableMetadata.sampleData().orElse(Collections.emptyList());
+        if (sampleData.isEmpty()) {
+            return new HashMap<>();
+        }
+        TableProfiler profiler = new TableProfiler(tableMetadata.columns());
+        sampleData.forEach(profiler::accept);
+        return profiler.toMetrics(ExtendedMetrics.MetricSource.SAMPLED);
+    }
+
+    /**
+     * 从数据库优化器维护的统计信息中读取列指标，不访问任何用户数据。
+     * 只返回有统计信息的列；CATALOG_STATS 模式不采样，没有统计的列不计算指标。
+     * 默认实现不支持，返回空 Map。
+     */
+    protected Map<String, ExtendedMetrics> calculateMetricsFromCatalogStats(Connection connection, TableMetadata tableMetadata) throws SQLException {
+        return new HashMap<>();
+    }
+
+    /**
+     * 按统计信息构造单列指标，唯一率以估算行数为分母。
+     */
+    protected ExtendedMetrics catalogStatsMetrics(long rowCount,
+                                                  Double nullRate,
+                                                  Long cardinality,
+                                                  Optional<ExtendedMetrics.NumericMetrics> numericMetrics,
+                                                  Optional<ExtendedMetrics.CategoricalMetrics> categoricalMetrics) {
+        Optional<Double> uniquenessRate = cardinality != null && rowCount > 0
+                ? Optional.of(Math.min(1.0, (double) cardinality / rowCount))
+                : Optional.empty();
+        return new ExtendedMetrics(
+                Optional.ofNullable(nullRate),
+                uniquenessRate,
+                Optional.ofNullable(cardinality),
+                numericMetrics,
+                categoricalMetrics,
+                ExtendedMetrics.MetricSource.CATALOG_STATS
+        );
+    }
+
+    /**
+     * 统计信息中的边界值以文本形式返回，数值列解析失败时视为没有该值。
+     */
+    protected static Optional<BigDecimal> parseDecimal(String value) {
+        if (value == null || value.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new BigDecimal(value.trim()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
     }
 
     /**
@@ -240,12 +505,15 @@ public abstract class DatabaseDialect {
     }
 
     /**
-     * 辅助工具：将 ResultSet 转为 Stream
+     * 辅助工具：将 ResultSet 转为 Stream，元素为 {@link Row}（只读）
+     *
+     * @param governor 源库负载调节器，为 null 时不限流
      */
-    private Stream<Map<String, Object>> convertResultSetToStream(ResultSet rs, Statement stmt) throws SQLException {
+    private Stream<Map<String, Object>> convertResultSetToStream(ResultSet rs, Statement stmt, SourceGovernor governor) throws SQLException {
+        // 列结构每个结果集只解析一次，所有行共享
+        RowSchema schema = RowSchema.of(rs.getMetaData());
         Iterator<Map<String, Object>> iterator = new Iterator<>() {
-            final ResultSetMetaData metaData = rs.getMetaData();
-            final int colCount = metaData.getColumnCount();
+            final int colCount = schema.width();
 
             // 状态标志：是否已经调用过 rs.next() 预加载了下一行
             boolean didNext = false;
@@ -277,14 +545,19 @@ public abstract class DatabaseDialect {
                 if (!hasNextRow) {
                     throw new NoSuchElementException();
                 }
+                if (governor != null) {
+                    governor.acquireRows(1);
+                }
 
                 try {
                     // 读取当前游标所在行的数据
                     // 注意：此时 rs 指针已经由 hasNext() 中的 rs.next() 移动到了正确位置
-                    Map<String, Object> row = new LinkedHashMap<>(colCount);
-                    for (int i = 1; i <= colCount; i++) {
-                        row.put(metaData.getColumnLabel(i), rs.getObject(i));
+                    // 每行只分配一个值数组，以只读 Map 视图对外提供
+                    Object[] values = new Object[colCount];
+                    for (int i = 0; i < colCount; i++) {
+                        values[i] = rs.getObject(i + 1);
                     }
+                    Row row = new Row(schema, values);
 
                     // 重置标志位，强迫下一次 hasNext() 再次调用 rs.next()
                     didNext = false;
@@ -3,15 +3,13 @@ package com.zwbd.dbcrawlerv4.datasource.dialect;
 import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseInfo;
 import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
-import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -23,14 +21,19 @@ import java.util.stream.Collectors;
 @Component
 public class DialectFactory {
 
-    // 缓存数据源：Key = 数据库ID, Value = DataSource
-    private final Map<Long, DataSource> dataSourceCache = new ConcurrentHashMap<>();
+    // 连接池注册表：Key = 数据库ID, Value = 受统一上限约束的连接池
+    private final DataSourcePoolRegistry poolRegistry;
+
+    // 负载调节器注册表：Key = 数据库ID, Value = 该数据源的并发、行速率与延迟退避限额
+    private final SourceGovernorRegistry governorRegistry;
 
     // 注册表：Key = 数据库类型, Value = 无状态的方言实现
     private final Map<DataBaseType, DatabaseDialect> dialectRegistry;
 
     @Autowired
-    public DialectFactory(List<DatabaseDialect> dialects) {
+    public DialectFactory(List<DatabaseDialect> dialects, DataSourcePoolRegistry poolRegistry, SourceGovernorRegistry governorRegistry) {
+        this.poolRegistry = poolRegistry;
+        this.governorRegistry = governorRegistry;
         dialectRegistry = dialects.stream()
                 .collect(Collectors.toMap(
                         DatabaseDialect::getDataBaseType,
@@ -55,10 +58,19 @@ public class DialectFactory {
         }
 
         // 2. 获取或创建 DataSource (线程安全)
-        DataSource dataSource = dataSourceCache.computeIfAbsent(info.getId(), k -> {
+        DataSource dataSource;
+        if (info.getId() == null) {
+            // 尚未保存的数据源（如保存前的连接测试）不进入连接池，每次使用独立的物理连接
+            DriverManagerDataSource transientDataSource = new DriverManagerDataSource(
+                    dialect.buildConnectionUrl(info), info.getUsername(), info.getPassword());
+            transientDataSource.setDriverClassName(dialect.getDriverClassName());
+            dataSource = transientDataSource;
+        } else {
             // 调用方言的方法来创建数据源配置
-            return dialect.createDataSource(info);
-        });
+            dataSource = poolRegistry.getOrCreate(info.getId(), () -> dialect.createDataSource(info));
+            // 经由会话执行的语句受该数据源的负载限额约束
+            dataSource = governorRegistry.govern(info.getId(), dataSource);
+        }
 
         // 3. 组装返回
         return new DatabaseSession(dataSource, dialect);
@@ -68,14 +80,8 @@ public class DialectFactory {
      * 手动清除缓存（例如当数据库密码修改后）
      */
     public void invalidateCache(Long dbId) {
-        DataSource ds = dataSourceCache.remove(dbId);
-        if (ds instanceof AutoCloseable) {
-            try {
-                ((AutoCloseable) ds).close();
-            } catch (Exception e) {
-                // log error
-            }
-        }
+        poolRegistry.invalidate(dbId);
+        governorRegistry.invalidate(dbId);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,317 @@
+package com.zwbd.dbcrawlerv4.datasource.dialect;
+
+import com.zwbd.dbcrawlerv4.common.exception.CommonException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/3 10:20
+ * @Desc: 按整数主键区间并行读取单表。
+ * 表按主键 [MIN, MAX] 切成多段，每段在独立连接上流式读取并写入有界队列，消费端合并成一个 Stream：
+ * 有序模式逐段消费（各段按主键排序，整体即按主键有序），无序模式按到达顺序消费。
+ * 有序模式把表切成更多、更小的区间，同一时间只读取从当前消费区间开始的 parallelism 段（有界预读），
+ * 当前区间消费完再启动下一段，预读的连接最多等待 parallelism - 1 个小区间被消费，不会长时间持有空闲游标。
+ * 没有单列整数主键或表太小时退化为单连接读取。
+ */
+@Slf4j
+public class ParallelTableReader implements AutoCloseable {
+
+    /**
+     * 每个队列最多缓存的行数，生产端写满后阻塞，保证内存占用有界
+     */
+    private static final int QUEUE_CAPACITY = 1000;
+
+    /**
+     * 有序模式下每段区间的目标主键跨度
+     */
+    private static final long ORDERED_RANGE_KEYS = 100_000;
+
+    /**
+     * 有序模式下区间数最多为 parallelism 的倍数，避免稀疏主键切出大量空区间
+     */
+    private static final int MAX_ORDERED_RANGES_PER_WORKER = 32;
+
+    /**
+     * 消费端等待队列的轮询间隔，每次超时检查生产端是否异常退出
+     */
+    private static final long POLL_MILLIS = 100;
+
+    private static final Object END = new Object();
+
+    private final DatabaseSession session;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final boolean ordered;
+
+    private final List<Future<?>> producers = new CopyOnWriteArrayList<>();
+    private final List<BlockingQueue<Object>> queues = new ArrayList<>();
+    private List<TableScanSpec> ranges = List.of();
+    private volatile boolean closed;
+
+    public ParallelTableReader(DatabaseSession session, ExecutorService executor, int parallelism, boolean ordered) {
+        this.session = session;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.ordered = ordered;
+    }
+
+    /**
+     * 规划区间并启动各段读取。
+     */
+    public DataStreamContext<Map<String, Object>> open(String schema, String tableName) {
+        return open(TableScanSpec.builder().schema(schema).tableName(tableName).build());
+    }
+
+    /**
+     * 按 spec 规划区间并启动各段读取。spec 中的 afterKey 会收窄切分范围，用于从断点继续读取；
+     * 未指定 keyColumn 时自动查找整数主键。
+     */
+    public DataStreamContext<Map<String, Object>> open(TableScanSpec spec) {
+        DatabaseDialect dialect = session.getDialect();
+        String schema = spec.getSchema();
+        String tableName = spec.getTableName();
+        Connection connection = null;
+        try {
+            connection = session.getDataSource().getConnection();
+            Optional<String> keyColumn = spec.getKeyColumn() != null
+                    ? Optional.of(spec.getKeyColumn())
+                    : dialect.findIntegerPrimaryKey(connection, schema, tableName);
+            Optional<long[]> bounds = keyColumn.isPresent()
+                    ? dialect.getKeyBounds(connection, schema, tableName, keyColumn.get())
+                    : Optional.empty();
+            // 从断点继续时只切分 (afterKey, MAX] 部分，断点之后没有数据则交给单路读取返回空结果
+            ranges = bounds
+                    .filter(b -> spec.getAfterKey() == null || spec.getAfterKey() < b[1])
+                    .map(b -> {
+                        long min = spec.getAfterKey() != null ? Math.max(b[0], spec.getAfterKey() + 1) : b[0];
+                        return splitRanges(spec, keyColumn.get(), min, b[1], rangeCount(min, b[1]), ordered);
+                    })
+                    .orElse(List.of());
+
+            if (ranges.size() < 2) {
+                // 无法切分，直接在规划用的连接上单路读取
+                log.info("Table {}.{} cannot be split by key, reading on a single connection", schema, tableName);
+                TableScanSpec singleSpec = keyColumn.isPresent() && spec.getKeyColumn() == null
+                        ? spec.toBuilder().keyColumn(keyColumn.get()).orderByKey(ordered).build()
+                        : spec;
+                Stream<Map<String, Object>> stream = dialect.streamTableData(connection, singleSpec);
+                Connection finalConnection = connection;
+                return new DataStreamContext<>(stream, () -> {
+                    stream.close();
+                    finalConnection.close();
+                });
+            }
+            connection.close();
+
+            if (ordered) {
+                // 有界预读：先启动前 parallelism 段，其余在前面的区间消费完后依次启动
+                for (int i = 0; i < Math.min(parallelism, ranges.size()); i++) {
+                    startRange(i);
+                }
+            } else {
+                BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+                queues.add(queue);
+                ranges.forEach(range -> producers.add(executor.submit(() -> produce(range, queue))));
+            }
+            log.info("Reading table {}.{} in {} key ranges on {} ({})",
+                    schema, tableName, ranges.size(), keyColumn.get(), ordered ? "ordered" : "unordered");
+
+            Stream<Map<String, Object>> stream = StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(new MergingIterator(), Spliterator.ORDERED),
+                    false);
+            return new DataStreamContext<>(stream, this);
+        } catch (SQLException e) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException ex) {
+                    log.error("Failed to close connection.", ex);
+                }
+            }
+            throw new CommonException("Failed to open parallel table reader", e);
+        }
+    }
+
+    /**
+     * 区间数：无序模式每个线程一段；有序模式按目标跨度切分，至少 parallelism 段
+     */
+    private int rangeCount(long min, long max) {
+        if (!ordered) {
+            return parallelism;
+        }
+        long span = max - min;
+        long count = span < 0 ? Long.MAX_VALUE : span / ORDERED_RANGE_KEYS + 1;
+        return (int) Math.max(parallelism, Math.min(count, (long) parallelism * MAX_ORDERED_RANGES_PER_WORKER));
+    }
+
+    /**
+     * 把 [min, max] 均分为最多 count 段，最后一段包含 max；跨度小于 count 时不切分，返回空列表。
+     */
+    static List<TableScanSpec> splitRanges(TableScanSpec spec, String keyColumn, long min, long max, int count, boolean orderByKey) {
+        long span;
+        try {
+            span = Math.subtractExact(max, min);
+        } catch (ArithmeticException e) {
+            return List.of();
+        }
+        if (count < 2 || span < count) {
+            return List.of();
+        }
+        long step = span / count + 1;
+        List<TableScanSpec> ranges = new ArrayList<>();
+        for (long lower = min; lower <= max && lower >= min; lower += step) {
+            boolean last = max - lower < step;
+            ranges.add(spec.toBuilder()
+                    .keyColumn(keyColumn)
+                    .afterKey(null)
+                    .lowerBound(lower)
+                    .upperBound(last ? max : lower + step)
+                    .upperInclusive(last)
+                    .orderByKey(orderByKey)
+                    .build());
+            if (last) {
+                break;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * 有序模式：为第 index 段区间创建队列并启动读取，只在打开时和消费线程中调用
+     */
+    private void startRange(int index) {
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        queues.add(queue);
+        TableScanSpec range = ranges.get(index);
+        producers.add(executor.submit(() -> produce(range, queue)));
+    }
+
+    /**
+     * 读取一段区间写入队列。无论正常结束还是出错（包括 Error），都会写入结束或失败标记，消费端不会无限等待。
+     */
+    private void produce(TableScanSpec range, BlockingQueue<Object> queue) {
+        Object last = END;
+        try (Connection connection = session.getDataSource().getConnection();
+             Stream<Map<String, Object>> rows = session.getDialect().streamTableData(connection, range)) {
+            Iterator<Map<String, Object>> iterator = rows.iterator();
+            while (!closed && iterator.hasNext()) {
+                if (!put(queue, iterator.next())) {
+                    return;
+                }
+            }
+        } catch (Throwable e) {
+            if (!closed) {
+                log.error("Failed to read key range [{}, {}] of {}", range.getLowerBound(), range.getUpperBound(), range.getTableName(), e);
+            }
+            last = new Failure(e);
+        }
+        put(queue, last);
+    }
+
+    /**
+     * 写入队列，消费端关闭或线程被中断时放弃写入。
+     */
+    private boolean put(BlockingQueue<Object> queue, Object item) {
+        try {
+            while (!closed) {
+                if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        producers.forEach(producer -> producer.cancel(true));
+    }
+
+    private record Failure(Throwable cause) {
+    }
+
+    /**
+     * 依次消费队列：有序模式每个队列对应一段区间，无序模式所有区间共用一个队列。
+     * 等待期间定期检查生产端，生产端没有写入结束标记就退出时（如线程池关闭时被中断）报错而不是无限等待。
+     */
+    private class MergingIterator implements Iterator<Map<String, Object>> {
+
+        private int current;
+        private int ends;
+        private Map<String, Object> next;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            while (next == null) {
+                if (ordered ? current >= ranges.size() : ends == ranges.size()) {
+                    return false;
+                }
+                BlockingQueue<Object> queue = queues.get(ordered ? current : 0);
+                Object item;
+                try {
+                    item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (item == null) {
+                        if (!producersExited()) {
+                            continue;
+                        }
+                        // 生产端已退出，取走退出前写入的数据后仍为空则说明结束标记丢失
+                        item = queue.poll();
+                        if (item == null) {
+                            throw new CommonException("Parallel table read stopped without finishing its key ranges");
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CommonException("Interrupted while reading table data", e);
+                }
+                if (item == END) {
+                    if (ordered) {
+                        current++;
+                        int following = current + parallelism - 1;
+                        if (following < ranges.size()) {
+                            startRange(following);
+                        }
+                    } else {
+                        ends++;
+                    }
+                } else if (item instanceof Failure failure) {
+                    throw new CommonException("Parallel table read failed", failure.cause());
+                } else {
+                    next = (Map<String, Object>) item;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 当前等待的生产端是否都已退出
+         */
+        private boolean producersExited() {
+            if (ordered) {
+                return producers.get(current).isDone();
+            }
+            return producers.stream().allMatch(Future::isDone);
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map<String, Object> row = next;
+            next = null;
+            return row;
+        }
+    }
+}
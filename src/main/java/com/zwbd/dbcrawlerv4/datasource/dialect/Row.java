@@ -0,0 +1,92 @@
+package com.zwbd.dbcrawlerv4.datasource.dialect;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/4 9:40
+ * @Desc: 流式读取的一行数据。
+ * 列结构由同一结果集的所有行共享，每行只持有一个值数组；对外提供只读的 Map 视图，
+ * 模版渲染、画像统计和 Python 清洗管道可以像使用普通 Map 一样按列名取值。
+ */
+public final class Row extends AbstractMap<String, Object> {
+
+    private final RowSchema schema;
+    private final Object[] values;
+
+    public Row(RowSchema schema, Object[] values) {
+        this.schema = schema;
+        this.values = values;
+    }
+
+    public RowSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * 按结果集中的列下标取值（从 0 开始），下标由 {@link RowSchema#positionOf} 得到
+     */
+    public Object getValue(int position) {
+        return values[position];
+    }
+
+    @Override
+    public Object get(Object key) {
+        int position = schema.positionOf(key);
+        return position < 0 ? null : values[position];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return schema.positionOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return schema.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return schema.size() == 0;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> action) {
+        for (int slot = 0; slot < schema.size(); slot++) {
+            action.accept(schema.nameAt(slot), values[schema.positionAt(slot)]);
+        }
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<>() {
+                    private int slot;
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < schema.size();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int current = slot++;
+                        return new SimpleImmutableEntry<>(schema.nameAt(current), values[schema.positionAt(current)]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return schema.size();
+            }
+        };
+    }
+}
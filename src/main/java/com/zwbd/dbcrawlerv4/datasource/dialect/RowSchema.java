@@ -0,0 +1,96 @@
+package com.zwbd.dbcrawlerv4.datasource.dialect;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/4 9:30
+ * @Desc: 结果集的列结构，每个查询只计算一次，由该查询的所有 {@link Row} 共享。
+ * 列名取 getColumnLabel；重名列与原先 LinkedHashMap 的行为一致：保留第一次出现的位置，取最后一列的值。
+ */
+public final class RowSchema {
+
+    /**
+     * 去重后的列名，按第一次出现的顺序
+     */
+    private final String[] names;
+
+    /**
+     * 与 names 对应的取值位置（结果集中的列下标，从 0 开始）
+     */
+    private final int[] positions;
+
+    /**
+     * 列名 -> names 下标
+     */
+    private final Map<String, Integer> lookup;
+
+    /**
+     * 结果集的原始列数，即每行值数组的长度
+     */
+    private final int width;
+
+    private RowSchema(String[] names, int[] positions, Map<String, Integer> lookup, int width) {
+        this.names = names;
+        this.positions = positions;
+        this.lookup = lookup;
+        this.width = width;
+    }
+
+    public static RowSchema of(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+        }
+        return of(labels);
+    }
+
+    public static RowSchema of(String... labels) {
+        List<String> names = new ArrayList<>(labels.length);
+        int[] positions = new int[labels.length];
+        Map<String, Integer> lookup = new HashMap<>(labels.length * 2);
+        for (int i = 0; i < labels.length; i++) {
+            Integer slot = lookup.get(labels[i]);
+            if (slot == null) {
+                slot = names.size();
+                names.add(labels[i]);
+                lookup.put(labels[i], slot);
+            }
+            positions[slot] = i;
+        }
+        return new RowSchema(names.toArray(new String[0]), Arrays.copyOf(positions, names.size()),
+                Collections.unmodifiableMap(lookup), labels.length);
+    }
+
+    /**
+     * @return 列在值数组中的位置，不存在时返回 -1
+     */
+    public int positionOf(Object name) {
+        Integer slot = lookup.get(name);
+        return slot == null ? -1 : positions[slot];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String nameAt(int slot) {
+        return names[slot];
+    }
+
+    public int positionAt(int slot) {
+        return positions[slot];
+    }
+
+    public int width() {
+        return width;
+    }
+}
@@ -0,0 +1,212 @@
+package com.zwbd.dbcrawlerv4.datasource.dialect;
+
+import com.zwbd.dbcrawlerv4.common.exception.CommonException;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/5 14:30
+ * @Desc: 单个源数据库的负载调节器，限制采集与流式读取对业务库的压力：
+ * 1. 并发语句数：同一数据源同时执行的语句不超过 maxConcurrentStatements（只在 execute 期间占用许可，结果集的后续 fetch 不占用）
+ * 2. 行速率：令牌桶限制流式读取每秒返回的行数，桶容量为一秒的配额
+ * 3. 延迟退避：按语句执行耗时的指数加权平均（EWMA）判断源库负载，超过阈值时在新语句执行前等待 (EWMA - 阈值)
+ * 通过 {@link #wrap(DataSource)} 包装连接池，经由它获取的连接与语句自动受控；
+ * 流式读取通过 {@link #of(Connection)} 取得调节器并按行申请令牌。
+ */
+@Slf4j
+public class SourceGovernor {
+
+    private final Long dataBaseId;
+    private final int maxConcurrentStatements;
+    private final Semaphore statementPermits;
+    private final long rowsPerSecond;
+    private final boolean latencyBackoff;
+    private final long latencyThresholdMillis;
+    private final long maxBackoffMillis;
+    private final double smoothing;
+
+    private final Object bucketLock = new Object();
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    private volatile double latencyEwmaMillis;
+
+    public SourceGovernor(Long dataBaseId, int maxConcurrentStatements, long rowsPerSecond,
+                          boolean latencyBackoff, long latencyThresholdMillis, long maxBackoffMillis, double smoothing) {
+        this.dataBaseId = dataBaseId;
+        this.maxConcurrentStatements = maxConcurrentStatements;
+        this.statementPermits = maxConcurrentStatements > 0 ? new Semaphore(maxConcurrentStatements, true) : null;
+        this.rowsPerSecond = rowsPerSecond;
+        this.tokens = rowsPerSecond;
+        this.latencyBackoff = latencyBackoff;
+        this.latencyThresholdMillis = latencyThresholdMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * 取得连接所属数据源的调节器，连接未经调节器包装时返回 null。
+     */
+    public static SourceGovernor of(Connection connection) throws SQLException {
+        return connection.isWrapperFor(SourceGovernor.class) ? connection.unwrap(SourceGovernor.class) : null;
+    }
+
+    public int getMaxConcurrentStatements() {
+        return maxConcurrentStatements;
+    }
+
+    public double getLatencyEwmaMillis() {
+        return latencyEwmaMillis;
+    }
+
+    public int getWaitingStatements() {
+        return statementPermits != null ? statementPermits.getQueueLength() : 0;
+    }
+
+    /**
+     * 语句执行前调用：按延迟退避等待，再获取并发许可。
+     */
+    void beforeExecute() throws SQLException {
+        long delay = backoffMillis();
+        if (delay > 0) {
+            log.debug("Source {} latency {}ms above threshold, delaying statement by {}ms", dataBaseId, Math.round(latencyEwmaMillis), delay);
+            sleep(TimeUnit.MILLISECONDS.toNanos(delay));
+        }
+        if (statementPermits != null) {
+            try {
+                statementPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a statement permit of source " + dataBaseId, e);
+            }
+        }
+    }
+
+    /**
+     * 语句执行结束后调用：释放许可并记录本次执行耗时。
+     */
+    void afterExecute(long elapsedNanos) {
+        if (statementPermits != null) {
+            statementPermits.release();
+        }
+        double millis = elapsedNanos / 1_000_000.0;
+        synchronized (this) {
+            latencyEwmaMillis = latencyEwmaMillis == 0 ? millis : smoothing * millis + (1 - smoothing) * latencyEwmaMillis;
+        }
+    }
+
+    private long backoffMillis() {
+        if (!latencyBackoff || latencyThresholdMillis <= 0) {
+            return 0;
+        }
+        double excess = latencyEwmaMillis - latencyThresholdMillis;
+        return excess > 0 ? Math.min(maxBackoffMillis, Math.round(excess)) : 0;
+    }
+
+    /**
+     * 申请读取 rows 行的令牌。令牌不足时先记账再按欠额等待，多个读取方之间按申请顺序公平分配速率。
+     */
+    public void acquireRows(int rows) {
+        if (rowsPerSecond <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (bucketLock) {
+            long now = System.nanoTime();
+            tokens = Math.min(rowsPerSecond, tokens + (now - lastRefillNanos) * rowsPerSecond / 1e9);
+            lastRefillNanos = now;
+            tokens -= rows;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens * 1e9 / rowsPerSecond);
+        }
+        if (waitNanos > 0) {
+            try {
+                sleep(waitNanos);
+            } catch (SQLException e) {
+                throw new CommonException(e.getMessage(), e);
+            }
+        }
+    }
+
+    private static void sleep(long nanos) throws SQLException {
+        long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while throttled by source governor");
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * 包装连接池：获取到的连接创建的语句在 execute 时受并发与延迟控制，连接可 unwrap 为本调节器。
+     */
+    public DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (method, result) ->
+                result instanceof Connection connection ? proxy(Connection.class, connection, this::wrapStatement) : result);
+    }
+
+    private Object wrapStatement(Method method, Object result) {
+        if (result instanceof CallableStatement statement) {
+            return proxy(CallableStatement.class, statement, null);
+        }
+        if (result instanceof PreparedStatement statement) {
+            return proxy(PreparedStatement.class, statement, null);
+        }
+        if (result instanceof Statement statement) {
+            return proxy(Statement.class, statement, null);
+        }
+        return result;
+    }
+
+    /**
+     * 动态代理：unwrap / isWrapperFor 可识别本调节器；语句的 execute* 方法计入并发与延迟；返回值交给 resultMapper 继续包装。
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, T target, ResultMapper resultMapper) {
+        boolean statement = Statement.class.isAssignableFrom(type);
+        InvocationHandler handler = (p, method, args) -> {
+            String name = method.getName();
+            if ("unwrap".equals(name) && args[0] == SourceGovernor.class) {
+                return this;
+            }
+            if ("isWrapperFor".equals(name) && args[0] == SourceGovernor.class) {
+                return true;
+            }
+            boolean execute = statement && name.startsWith("execute");
+            long start = 0;
+            if (execute) {
+                beforeExecute();
+                start = System.nanoTime();
+            }
+            try {
+                Object result = method.invoke(target, args);
+                return resultMapper != null ? resultMapper.map(method, result) : result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (execute) {
+                    afterExecute(System.nanoTime() - start);
+                }
+            }
+        };
+        return (T) Proxy.newProxyInstance(SourceGovernor.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    @FunctionalInterface
+    private interface ResultMapper {
+        Object map(Method method, Object result);
+    }
+}
@@ -0,0 +1,68 @@
+package com.zwbd.dbcrawlerv4.datasource.dialect;
+
+import com.zwbd.dbcrawlerv4.common.config.SourceGovernorConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/5 15:05
+ * @Desc: 源数据库负载调节器注册表，每个数据源一个 {@link SourceGovernor}，同一数据源的所有会话共享限额。
+ * 限额在首次访问时按 {@link SourceGovernorConfig} 确定，数据源配置变更时随连接池一起失效。
+ * 通过 Micrometer 暴露 source.db.statements.waiting 指标（等待并发许可的语句数）。
+ */
+@Slf4j
+@Component
+public class SourceGovernorRegistry {
+
+    private final Map<Long, SourceGovernor> governors = new ConcurrentHashMap<>();
+
+    private final SourceGovernorConfig config;
+    private final MeterRegistry meterRegistry;
+
+    public SourceGovernorRegistry(SourceGovernorConfig config, ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.config = config;
+        this.meterRegistry = meterRegistryProvider.getIfAvailable();
+        if (meterRegistry != null) {
+            Gauge.builder("source.db.statements.waiting", governors,
+                            map -> map.values().stream().mapToInt(SourceGovernor::getWaitingStatements).sum())
+                    .description("Statements waiting for a concurrency permit on source databases")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 用数据源的调节器包装连接池；未启用或数据源尚未保存（无 ID）时原样返回。
+     */
+    public DataSource govern(Long dataBaseId, DataSource dataSource) {
+        if (!config.isEnabled() || dataBaseId == null) {
+            return dataSource;
+        }
+        return governors.computeIfAbsent(dataBaseId, this::createGovernor).wrap(dataSource);
+    }
+
+    public void invalidate(Long dataBaseId) {
+        governors.remove(dataBaseId);
+    }
+
+    private SourceGovernor createGovernor(Long dataBaseId) {
+        SourceGovernor governor = new SourceGovernor(dataBaseId,
+                config.maxConcurrentStatements(dataBaseId),
+                config.rowsPerSecond(dataBaseId),
+                config.latencyBackoff(dataBaseId),
+                config.latencyThresholdMillis(dataBaseId),
+                config.getMaxBackoffMillis(),
+                config.getLatencySmoothing());
+        log.info("Created governor for data source {} (max {} statements, {} rows/s)", dataBaseId,
+                governor.getMaxConcurrentStatements(), config.rowsPerSecond(dataBaseId));
+        return governor;
+    }
+
+}
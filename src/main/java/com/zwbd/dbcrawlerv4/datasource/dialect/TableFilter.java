@@ -0,0 +1,282 @@
+package com.zwbd.dbcrawlerv4.datasource.dialect;
+
+import com.zwbd.dbcrawlerv4.common.exception.CommonException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/11 9:30
+ * @Desc: 下推到源库的过滤条件。
+ * 过滤条件来自文档元数据，不能原样拼进 SQL，这里把它解析为结构化的条件：
+ * 只接受由 AND 连接的「列名 运算符 字面量」，运算符支持 = != <> > >= < <= LIKE、NOT LIKE、IN (...)、NOT IN (...)、IS NULL、IS NOT NULL，
+ * 字面量为数字或单引号字符串（'' 转义单引号）。列名可以用双引号或反引号包裹。
+ * 生成 SQL 时列名按方言加引号，字面量全部作为绑定参数，过滤条件无法改变查询中主键区间、排序等其他部分。
+ */
+public final class TableFilter {
+
+    private static final Set<String> COMPARISONS = Set.of("=", "!=", "<>", ">", ">=", "<", "<=");
+
+    /**
+     * 单个条件
+     *
+     * @param operator 规范化后的运算符，如 "=", "LIKE", "NOT IN", "IS NULL"
+     * @param values   绑定参数，IS NULL / IS NOT NULL 为空
+     */
+    public record Condition(String column, String operator, List<Object> values) {
+    }
+
+    private final List<Condition> conditions;
+
+    private TableFilter(List<Condition> conditions) {
+        this.conditions = conditions;
+    }
+
+    public List<Condition> getConditions() {
+        return conditions;
+    }
+
+    /**
+     * 解析过滤条件，格式不支持时抛出 {@link CommonException}
+     */
+    public static TableFilter parse(String expression) {
+        List<Token> tokens = tokenize(expression);
+        List<Condition> conditions = new ArrayList<>();
+        Parser parser = new Parser(expression, tokens);
+        do {
+            conditions.add(parser.condition());
+        } while (parser.acceptKeyword("AND"));
+        if (!parser.atEnd()) {
+            throw parser.error("unexpected '" + parser.peek().text() + "'");
+        }
+        return new TableFilter(List.copyOf(conditions));
+    }
+
+    /**
+     * 生成 WHERE 子句中的条件（不含 WHERE），绑定参数按顺序追加到 params
+     *
+     * @param quoter 方言的标识符引号处理
+     */
+    public String toSql(UnaryOperator<String> quoter, List<Object> params) {
+        List<String> parts = new ArrayList<>(conditions.size());
+        for (Condition condition : conditions) {
+            String column = quoter.apply(condition.column());
+            switch (condition.operator()) {
+                case "IS NULL", "IS NOT NULL" -> parts.add(column + " " + condition.operator());
+                case "IN", "NOT IN" -> {
+                    parts.add(column + " " + condition.operator() + " ("
+                            + String.join(", ", Collections.nCopies(condition.values().size(), "?")) + ")");
+                    params.addAll(condition.values());
+                }
+                default -> {
+                    parts.add(column + " " + condition.operator() + " ?");
+                    params.add(condition.values().get(0));
+                }
+            }
+        }
+        return String.join(" AND ", parts);
+    }
+
+    private enum TokenType {IDENTIFIER, QUOTED_IDENTIFIER, STRING, NUMBER, SYMBOL}
+
+    private record Token(TokenType type, String text) {
+
+        boolean isKeyword(String keyword) {
+            return type == TokenType.IDENTIFIER && text.equalsIgnoreCase(keyword);
+        }
+
+        boolean isSymbol(String symbol) {
+            return type == TokenType.SYMBOL && text.equals(symbol);
+        }
+    }
+
+    private static List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        int length = expression.length();
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'' || c == '"' || c == '`') {
+                // 引号内的内容，连续两个引号表示引号本身
+                StringBuilder text = new StringBuilder();
+                int j = i + 1;
+                while (true) {
+                    if (j >= length) {
+                        throw invalid(expression, "unterminated quote at position " + i);
+                    }
+                    char d = expression.charAt(j);
+                    if (d == c) {
+                        if (j + 1 < length && expression.charAt(j + 1) == c) {
+                            text.append(c);
+                            j += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    text.append(d);
+                    j++;
+                }
+                if (c != '\'' && text.isEmpty()) {
+                    throw invalid(expression, "empty identifier at position " + i);
+                }
+                tokens.add(new Token(c == '\'' ? TokenType.STRING : TokenType.QUOTED_IDENTIFIER, text.toString()));
+                i = j + 1;
+            } else if (Character.isDigit(c) || ((c == '-' || c == '.') && i + 1 < length && Character.isDigit(expression.charAt(i + 1)))) {
+                int j = i + 1;
+                while (j < length && (Character.isDigit(expression.charAt(j)) || expression.charAt(j) == '.')) {
+                    j++;
+                }
+                tokens.add(new Token(TokenType.NUMBER, expression.substring(i, j)));
+                i = j;
+            } else if (Character.isLetter(c) || c == '_') {
+                int j = i + 1;
+                while (j < length && (Character.isLetterOrDigit(expression.charAt(j)) || expression.charAt(j) == '_')) {
+                    j++;
+                }
+                tokens.add(new Token(TokenType.IDENTIFIER, expression.substring(i, j)));
+                i = j;
+            } else if (c == '(' || c == ')' || c == ',' || c == '=') {
+                tokens.add(new Token(TokenType.SYMBOL, String.valueOf(c)));
+                i++;
+            } else if (c == '<' || c == '>' || c == '!') {
+                String symbol = i + 1 < length && (expression.charAt(i + 1) == '=' || (c == '<' && expression.charAt(i + 1) == '>'))
+                        ? expression.substring(i, i + 2)
+                        : String.valueOf(c);
+                if (!COMPARISONS.contains(symbol)) {
+                    throw invalid(expression, "unsupported operator '" + symbol + "'");
+                }
+                tokens.add(new Token(TokenType.SYMBOL, symbol));
+                i += symbol.length();
+            } else {
+                // 注释（-- /* */）、语句分隔符、运算表达式等一律不支持
+                throw invalid(expression, "unsupported character '" + c + "' at position " + i);
+            }
+        }
+        return tokens;
+    }
+
+    private static CommonException invalid(String expression, String reason) {
+        return new CommonException("Invalid filter '" + expression + "': " + reason
+                + ". Expected conditions like: status = 1 AND name LIKE 'a%' AND type IN ('x', 'y') AND deleted_at IS NULL");
+    }
+
+    private static final class Parser {
+
+        private final String expression;
+        private final List<Token> tokens;
+        private int position;
+
+        private Parser(String expression, List<Token> tokens) {
+            this.expression = expression;
+            this.tokens = tokens;
+        }
+
+        private Condition condition() {
+            Token column = next("column name");
+            if (column.type() != TokenType.IDENTIFIER && column.type() != TokenType.QUOTED_IDENTIFIER) {
+                throw error("expected column name but found '" + column.text() + "'");
+            }
+            Token operator = next("operator");
+            if (operator.type() == TokenType.SYMBOL && COMPARISONS.contains(operator.text())) {
+                String normalized = operator.text().equals("!=") ? "<>" : operator.text();
+                return new Condition(column.text(), normalized, List.of(literal()));
+            }
+            boolean not = operator.isKeyword("NOT");
+            if (not) {
+                operator = next("LIKE or IN");
+            }
+            if (operator.isKeyword("LIKE")) {
+                return new Condition(column.text(), not ? "NOT LIKE" : "LIKE", List.of(literal()));
+            }
+            if (operator.isKeyword("IN")) {
+                expectSymbol("(");
+                List<Object> values = new ArrayList<>();
+                do {
+                    values.add(literal());
+                } while (acceptSymbol(","));
+                expectSymbol(")");
+                return new Condition(column.text(), not ? "NOT IN" : "IN", List.copyOf(values));
+            }
+            if (!not && operator.isKeyword("IS")) {
+                boolean isNot = acceptKeyword("NOT");
+                if (!next("NULL").isKeyword("NULL")) {
+                    throw error("expected NULL after IS");
+                }
+                return new Condition(column.text(), isNot ? "IS NOT NULL" : "IS NULL", List.of());
+            }
+            throw error("unsupported operator '" + operator.text() + "'");
+        }
+
+        private Object literal() {
+            Token token = next("value");
+            if (token.type() == TokenType.STRING) {
+                return token.text();
+            }
+            if (token.type() == TokenType.NUMBER) {
+                try {
+                    BigDecimal number = new BigDecimal(token.text());
+                    if (number.scale() <= 0) {
+                        try {
+                            return number.longValueExact();
+                        } catch (ArithmeticException e) {
+                            return number;
+                        }
+                    }
+                    return number;
+                } catch (NumberFormatException e) {
+                    throw error("invalid number '" + token.text() + "'");
+                }
+            }
+            throw error("expected a number or quoted string but found '" + token.text() + "'");
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            if (!atEnd() && peek().isKeyword(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean acceptSymbol(String symbol) {
+            if (!atEnd() && peek().isSymbol(symbol)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expectSymbol(String symbol) {
+            if (!acceptSymbol(symbol)) {
+                throw error("expected '" + symbol + "'");
+            }
+        }
+
+        private Token next(String expected) {
+            if (atEnd()) {
+                throw error("expected " + expected.toLowerCase(Locale.ROOT) + " at end of filter");
+            }
+            return tokens.get(position++);
+        }
+
+        private Token peek() {
+            return tokens.get(position);
+        }
+
+        private boolean atEnd() {
+            return position >= tokens.size();
+        }
+
+        private CommonException error(String reason) {
+            return invalid(expression, reason);
+        }
+    }
+}
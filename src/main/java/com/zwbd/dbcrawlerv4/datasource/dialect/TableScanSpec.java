@@ -0,0 +1,69 @@
+package com.zwbd.dbcrawlerv4.datasource.dialect;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/3 10:05
+ * @Desc: 单表流式读取的范围描述。
+ * 不指定 keyColumn 时等同于 SELECT * 全表读取；指定后可按数值主键限定区间并按主键排序，
+ * 用于并行分段读取和基于键集游标（WHERE pk > ? ORDER BY pk）的断点续读。
+ * 列裁剪、过滤条件与行数限制都下推到源库执行。
+ */
+@Getter
+@Builder(toBuilder = true)
+public class TableScanSpec {
+
+    private final String schema;
+
+    private final String tableName;
+
+    /**
+     * 需要读取的列，为空时读取全部列；指定 keyColumn 时主键列总会被读取
+     */
+    private final List<String> columns;
+
+    /**
+     * 下推到源库执行的过滤条件，按 {@link TableFilter} 解析后以绑定参数执行
+     */
+    private final String filter;
+
+    /**
+     * 最多读取的行数，为 null 时不限制
+     */
+    private final Integer limit;
+
+    /**
+     * 用于区间切分和排序的数值主键列
+     */
+    private final String keyColumn;
+
+    /**
+     * 区间下界（包含），为 null 时不限制
+     */
+    private final Long lowerBound;
+
+    /**
+     * 键集游标：只读取主键大于该值的行（不包含），用于断点续读，为 null 时不限制
+     */
+    private final Long afterKey;
+
+    /**
+     * 区间上界，为 null 时不限制
+     */
+    private final Long upperBound;
+
+    /**
+     * 上界是否包含在区间内，最后一段区间需要包含 MAX(key)
+     */
+    private final boolean upperInclusive;
+
+    /**
+     * 是否按 keyColumn 排序输出
+     */
+    private final boolean orderByKey;
+
+}
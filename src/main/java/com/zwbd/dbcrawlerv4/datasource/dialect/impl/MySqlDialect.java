@@ -1,5 +1,8 @@
 package com.zwbd.dbcrawlerv4.datasource.dialect.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zwbd.dbcrawlerv4.datasource.dialect.DatabaseDialect;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.SchemaMetadata;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.ColumnMetadata;
@@ -11,10 +14,12 @@ import com.zwbd.dbcrawlerv4.datasource.entity.ExecutionMode;
 import com.zwbd.dbcrawlerv4.common.exception.CommonException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -32,6 +37,9 @@ public class MySqlDialect extends DatabaseDialect {
 
     protected String driverClassName = "com.mysql.cj.jdbc.Driver";
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Override
     public DataBaseType getDataBaseType() {
         return DataBaseType.MYSQL;
@@ -132,7 +140,24 @@ public class MySqlDialect extends DatabaseDialect {
         // 1. 获取行数 (从 information_schema 获取的是估算值，但速度快)
 //        long rowCount = getEstimatedRowCount(connection, tableInfo.getTableName());
 
-        // 2. 获取列的详细信息
+        // 2. 获取列的详细信息，整库采集时已由 getColumnsForSchema 批量取回
+        List<ColumnMetadata> columns = tableInfo.columns() != null ? tableInfo.columns() : getColumnMetadata(connection, tableInfo.tableName());
+        return new TableMetadata(
+                tableInfo.tableName(),
+                tableInfo.tableType(),
+                tableInfo.comment(),
+                tableInfo.rowCount(),
+                columns,
+                Optional.empty() // Sample is fetched separately by getTableSample
+        );
+    }
+
+    @Override
+    public Optional<List<Map<String, Object>>> getTableSample(Connection connection, TableMetadata tableInfo) throws SQLException {
+        return getUniformTableSample(connection, tableInfo, SAMPLE_DATA_SIZE);
+    }
+
+    private List<ColumnMetadata> getColumnMetadata(Connection connection, String tableName) throws SQLException {
         List<ColumnMetadata> columns = new ArrayList<>();
         String sql = "SELECT column_name, column_type, column_comment, column_key, is_nullable " +
                 "FROM information_schema.columns " +
@@ -143,30 +168,48 @@ public class MySqlDialect extends DatabaseDialect {
             // Set query timeout to prevent blocking
             ps.setQueryTimeout(timeoutConfig.getMetricsCalculationTimeout());
             ps.setString(1, connection.getCatalog());
-            ps.setString(2, tableInfo.tableName());
+            ps.setString(2, tableName);
             log.debug("getTableDetails sql : {}", sql);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                columns.add(new ColumnMetadata(
-                        rs.getString("column_name"),
-                        rs.getString("column_type"),
-                        Optional.ofNullable(rs.getString("column_comment")),
-                        "PRI".equalsIgnoreCase(rs.getString("column_key")),
-                        "YES".equalsIgnoreCase(rs.getString("is_nullable")),
-                        null// 指标此时为空，待后续计算
-                ));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(toColumnMetadata(rs));
+                }
             }
         }
-        tableInfo = tableInfo.withColumns(columns);
-        Optional<List<Map<String, Object>>> sampleData = getUniformTableSample(connection, tableInfo, SAMPLE_DATA_SIZE); // 获取1000行均匀样本
+        return columns;
+    }
 
-        return new TableMetadata(
-                tableInfo.tableName(),
-                tableInfo.tableType(),
-                tableInfo.comment(),
-                tableInfo.rowCount(),
-                columns,
-                sampleData
+    /**
+     * 一次查询取回整个库（MySQL 中 schema 即 database）所有表的列信息，按表名分组。
+     */
+    @Override
+    public Map<String, List<ColumnMetadata>> getColumnsForSchema(Connection connection, String catalogName, String schemaName) throws SQLException {
+        String sql = "SELECT table_name, column_name, column_type, column_comment, column_key, is_nullable " +
+                "FROM information_schema.columns " +
+                "WHERE table_schema = ? " +
+                "ORDER BY table_name, ordinal_position";
+
+        Map<String, List<ColumnMetadata>> columnsByTable = new LinkedHashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setQueryTimeout(timeoutConfig.getMetadataQueryTimeout());
+            ps.setString(1, schemaName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    columnsByTable.computeIfAbsent(rs.getString("table_name"), k -> new ArrayList<>()).add(toColumnMetadata(rs));
+                }
+            }
+        }
+        return columnsByTable;
+    }
+
+    private ColumnMetadata toColumnMetadata(ResultSet rs) throws SQLException {
+        return new ColumnMetadata(
+                rs.getString("column_name"),
+                rs.getString("column_type"),
+                Optional.ofNullable(rs.getString("column_comment")),
+                "PRI".equalsIgnoreCase(rs.getString("column_key")),
+                "YES".equalsIgnoreCase(rs.getString("is_nullable")),
+                null// 指标此时为空，待后续计算
         );
     }
 
@@ -295,6 +338,14 @@ public class MySqlDialect extends DatabaseDialect {
         if (tableMetadata.columns().isEmpty()) {
             return Collections.emptyMap();
         }
+        // 流式画像：在应用侧单遍计算，避免在源库执行 COUNT(DISTINCT) 聚合
+        if (mode == ExecutionMode.STREAM_PROFILE) {
+            return calculateMetricsByStreaming(connection, tableMetadata);
+        }
+        // 统计信息：只读取优化器统计，不读取用户数据，缺少统计的列没有指标
+        if (mode == ExecutionMode.CATALOG_STATS) {
+            return calculateMetricsFromCatalogStats(connection, tableMetadata);
+        }
         // 1. 决策：根据模式和行数决定是否启用采样
         boolean useSampling = false;
         if (mode == ExecutionMode.FORCE_SAMPLE) {
@@ -383,47 +434,113 @@ public class MySqlDialect extends DatabaseDialect {
 
 
     /**
-     * 全新方法：在内存中基于数据样本计算指标。
-     *
-     * @param tableMetadata 包含数据样本的元数据对象。
-     * @return 指标Map。
+     * 从 information_schema 读取优化器统计信息：
+     * 1. STATISTICS.CARDINALITY：索引首列的不同值数量估算；
+     * 2. COLUMN_STATISTICS（MySQL 8.0+，由 ANALYZE TABLE ... UPDATE HISTOGRAM 生成）：空值比例、边界值与不同值数量。
+     * MySQL 5.7 没有 COLUMN_STATISTICS，查询失败时只使用索引基数。
      */
-    private Map<String, ExtendedMetrics> calculateMetricsFromSample(TableMetadata tableMetadata) {
-        List<Map<String, Object>> sampleData = tableMetadata.sampleData().orElse(Collections.emptyList());
-        if (sampleData.isEmpty()) {
-            return Collections.emptyMap();
+    @Override
+    protected Map<String, ExtendedMetrics> calculateMetricsFromCatalogStats(Connection connection, TableMetadata tableMetadata) throws SQLException {
+        Map<String, Long> indexCardinality = new HashMap<>();
+        String indexSql = "SELECT COLUMN_NAME, MAX(CARDINALITY) AS CARDINALITY FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND SEQ_IN_INDEX = 1 AND CARDINALITY IS NOT NULL " +
+                "GROUP BY COLUMN_NAME";
+        try (PreparedStatement ps = connection.prepareStatement(indexSql)) {
+            ps.setQueryTimeout(timeoutConfig.getMetadataQueryTimeout());
+            ps.setString(1, tableMetadata.tableName());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    indexCardinality.put(rs.getString("COLUMN_NAME"), rs.getLong("CARDINALITY"));
+                }
+            }
         }
 
-        int sampleSize = sampleData.size();
-        Map<String, ExtendedMetrics> metricsMap = new HashMap<>();
+        Map<String, JsonNode> histograms = new HashMap<>();
+        String histogramSql = "SELECT COLUMN_NAME, HISTOGRAM FROM information_schema.COLUMN_STATISTICS " +
+                "WHERE SCHEMA_NAME = DATABASE() AND TABLE_NAME = ?";
+        try (PreparedStatement ps = connection.prepareStatement(histogramSql)) {
+            ps.setQueryTimeout(timeoutConfig.getMetadataQueryTimeout());
+            ps.setString(1, tableMetadata.tableName());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    try {
+                        histograms.put(rs.getString("COLUMN_NAME"), objectMapper.readTree(rs.getString("HISTOGRAM")));
+                    } catch (JsonProcessingException e) {
+                        log.warn("无法解析列 {} 的直方图: {}", rs.getString("COLUMN_NAME"), e.getMessage());
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.debug("COLUMN_STATISTICS 不可用，仅使用索引基数: {}", e.getMessage());
+        }
 
-        // 遍历每一列
+        long rowCount = tableMetadata.rowCount();
+        Map<String, ExtendedMetrics> metricsMap = new HashMap<>();
         for (ColumnMetadata column : tableMetadata.columns()) {
-            String colName = column.columnName();
-            List<Object> columnValues = sampleData.stream()
-                    .map(row -> row.get(colName))
-                    .collect(Collectors.toList());
-
-            // 计算指标...
-            long nullCount = columnValues.stream().filter(Objects::isNull).count();
-            long cardinality = columnValues.stream().filter(Objects::nonNull).distinct().count();
-            double nullRate = (double) nullCount / sampleSize;
-            double uniquenessRate = (double) cardinality / sampleSize;
-
-            // ... 可以在这里添加更多如 AVG, MIN, MAX 等的内存计算逻辑 ...
-
-            metricsMap.put(colName, new ExtendedMetrics(
-                    Optional.of(nullRate),
-                    Optional.of(uniquenessRate),
-                    Optional.of(cardinality),
-                    Optional.empty(),
-                    Optional.empty(), // 数值指标等
-                    ExtendedMetrics.MetricSource.SAMPLED // 标记来源为样本
-            ));
+            Long cardinality = indexCardinality.get(column.columnName());
+            JsonNode histogram = histograms.get(column.columnName());
+            if (cardinality == null && histogram == null) {
+                continue;
+            }
+            Double nullRate = null;
+            Optional<ExtendedMetrics.NumericMetrics> numericMetrics = Optional.empty();
+            Optional<ExtendedMetrics.CategoricalMetrics> categoricalMetrics = Optional.empty();
+            if (histogram != null) {
+                nullRate = histogram.path("null-values").asDouble();
+                JsonNode buckets = histogram.path("buckets");
+                // singleton 桶: [值, 累计频率]；equi-height 桶: [下界, 上界, 累计频率, 不同值数量]
+                boolean singleton = "singleton".equals(histogram.path("histogram-type").asText());
+                if (cardinality == null) {
+                    long distinct = 0;
+                    for (JsonNode bucket : buckets) {
+                        distinct += singleton ? 1 : bucket.path(3).asLong();
+                    }
+                    cardinality = distinct;
+                }
+                if (!buckets.isEmpty()) {
+                    if (isNumericType(column.dataType())) {
+                        JsonNode last = buckets.get(buckets.size() - 1);
+                        numericMetrics = Optional.of(new ExtendedMetrics.NumericMetrics(
+                                parseDecimal(histogramValue(buckets.get(0).path(0))),
+                                parseDecimal(histogramValue(last.path(singleton ? 0 : 1))),
+                                Optional.empty(),
+                                Optional.empty(),
+                                Optional.empty()
+                        ));
+                    } else if (singleton) {
+                        List<ExtendedMetrics.ValueFrequency> frequencies = new ArrayList<>();
+                        double previous = 0;
+                        for (JsonNode bucket : buckets) {
+                            double cumulative = bucket.path(1).asDouble();
+                            frequencies.add(new ExtendedMetrics.ValueFrequency(
+                                    histogramValue(bucket.path(0)), Math.round((cumulative - previous) * rowCount)));
+                            previous = cumulative;
+                        }
+                        frequencies.sort(Comparator.comparingLong(ExtendedMetrics.ValueFrequency::count).reversed());
+                        categoricalMetrics = Optional.of(new ExtendedMetrics.CategoricalMetrics(
+                                frequencies.subList(0, Math.min(TOP_N_CATEGORICAL, frequencies.size()))));
+                    }
+                }
+            }
+            metricsMap.put(column.columnName(), catalogStatsMetrics(rowCount, nullRate, cardinality, numericMetrics, categoricalMetrics));
         }
         return metricsMap;
     }
 
+    /**
+     * 直方图中的字符串值以 "base64:type254:..." 形式编码，需要解码后使用。
+     */
+    private static String histogramValue(JsonNode node) {
+        String value = node.asText();
+        if (value.startsWith("base64:type")) {
+            int separator = value.indexOf(':', "base64:".length());
+            if (separator > 0) {
+                return new String(Base64.getDecoder().decode(value.substring(separator + 1)), StandardCharsets.UTF_8);
+            }
+        }
+        return value;
+    }
+
     /**
      * 辅助方法：判断数据类型是否为数值型。
      * 这是一个简化的实现，可以根据需要进行扩展。
@@ -522,6 +639,71 @@ public class MySqlDialect extends DatabaseDialect {
         return tables;
     }
 
+    /**
+     * MySQL 指纹：UPDATE_TIME 反映最近一次数据变更，CREATE_TIME 在 DDL 重建表时变化，TABLE_ROWS 为估算行数。
+     * UPDATE_TIME 为空（视图、或 InnoDB 重启后尚未写入）的表不生成指纹，增量采集时会被重新处理。
+     * MySQL 8 的 INFORMATION_SCHEMA.TABLES 统计列默认缓存 information_schema_stats_expiry（86400 秒），
+     * 查询前在本会话内设为 0 直接读取存储引擎的最新值，查询后恢复默认；不支持该变量的版本（5.7、MariaDB）本身不缓存。
+     */
+    @Override
+    public Map<String, String> getTableFingerprints(Connection connection, String catalogName, String schemaName) throws SQLException {
+        return queryTableFingerprints(connection, schemaName, null);
+    }
+
+    @Override
+    public Optional<String> getTableFingerprint(Connection connection, String catalogName, String schemaName, String tableName) throws SQLException {
+        return Optional.ofNullable(queryTableFingerprints(connection, schemaName, tableName).get(tableName));
+    }
+
+    /**
+     * @param tableName 只查询该表，为 null 时查询整个 schema
+     */
+    private Map<String, String> queryTableFingerprints(Connection connection, String schemaName, String tableName) throws SQLException {
+        Map<String, String> fingerprints = new HashMap<>();
+        String sql = "SELECT TABLE_NAME, UPDATE_TIME, CREATE_TIME, TABLE_ROWS " +
+                "FROM INFORMATION_SCHEMA.TABLES " +
+                "WHERE TABLE_SCHEMA = ? " +
+                "AND TABLE_TYPE IN ('BASE TABLE', 'VIEW')" +
+                (tableName != null ? " AND TABLE_NAME = ?" : "");
+        boolean statsExpiryChanged = setStatsExpiry(connection, "0");
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setQueryTimeout(timeoutConfig.getMetadataQueryTimeout());
+            ps.setString(1, schemaName);
+            if (tableName != null) {
+                ps.setString(2, tableName);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp updateTime = rs.getTimestamp("UPDATE_TIME");
+                    if (updateTime == null) {
+                        continue;
+                    }
+                    fingerprints.put(rs.getString("TABLE_NAME"),
+                            updateTime.getTime() + "|" + rs.getTimestamp("CREATE_TIME") + "|" + rs.getLong("TABLE_ROWS"));
+                }
+            }
+        } finally {
+            if (statsExpiryChanged) {
+                // 连接会归还连接池，恢复会话默认值
+                setStatsExpiry(connection, "DEFAULT");
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * 设置会话的 information_schema_stats_expiry，变量不存在时返回 false
+     */
+    private boolean setStatsExpiry(Connection connection, String value) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET SESSION information_schema_stats_expiry = " + value);
+            return true;
+        } catch (SQLException e) {
+            log.debug("information_schema_stats_expiry not supported: {}", e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Check if the database name is a system database that should be excluded
      */
@@ -14,6 +14,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -177,7 +178,24 @@ public class PostgreSqlDialect extends DatabaseDialect {
 
     @Override
     public TableMetadata getTableDetails(Connection connection, TableMetadata tableInfo) throws SQLException {
-        // Get column details
+        // Columns may already be prefetched for the whole schema by getColumnsForSchema
+        List<ColumnMetadata> columns = tableInfo.columns() != null ? tableInfo.columns() : getColumnMetadata(connection, tableInfo.tableName());
+        return new TableMetadata(
+                tableInfo.tableName(),
+                tableInfo.tableType(),
+                tableInfo.comment(),
+                tableInfo.rowCount(),
+                columns,
+                Optional.empty() // Sample is fetched separately by getTableSample
+        );
+    }
+
+    @Override
+    public Optional<List<Map<String, Object>>> getTableSample(Connection connection, TableMetadata tableInfo) throws SQLException {
+        return getUniformTableSample(connection, tableInfo, SAMPLE_DATA_SIZE);
+    }
+
+    private List<ColumnMetadata> getColumnMetadata(Connection connection, String tableName) throws SQLException {
         List<ColumnMetadata> columns = new ArrayList<>();
         String sql = "SELECT c.column_name, c.data_type, " +
                     "COALESCE(col_description(pgc.oid, c.ordinal_position), '') as column_comment, " +
@@ -194,30 +212,62 @@ public class PostgreSqlDialect extends DatabaseDialect {
             // Set query timeout for table details query
             ps.setQueryTimeout(timeoutConfig.getMetadataQueryTimeout());
             ps.setString(1, connection.getCatalog());
-            ps.setString(2, tableInfo.tableName());
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                String columnComment = rs.getString("column_comment");
-                columns.add(new ColumnMetadata(
-                        rs.getString("column_name"),
-                        rs.getString("data_type"),
-                        Optional.ofNullable(columnComment.isEmpty() ? null : columnComment),
-                        rs.getBoolean("is_primary_key"),
-                        rs.getBoolean("is_nullable"),
-                        null // Metrics to be calculated later
-                ));
+            ps.setString(2, tableName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    columns.add(toColumnMetadata(rs));
+                }
             }
         }
-        tableInfo = tableInfo.withColumns(columns);
-        Optional<List<Map<String, Object>>> sampleData = getUniformTableSample(connection, tableInfo, SAMPLE_DATA_SIZE);
+        return columns;
+    }
 
-        return new TableMetadata(
-                tableInfo.tableName(),
-                tableInfo.tableType(),
-                tableInfo.comment(),
-                tableInfo.rowCount(),
-                columns,
-                sampleData
+    /**
+     * Fetch the columns of every table in the schema with a single query.
+     * Primary keys are resolved through table_constraints so that foreign key columns are not reported as keys,
+     * and pg_class is matched by namespace so that same-named tables in other schemas do not duplicate rows.
+     */
+    @Override
+    public Map<String, List<ColumnMetadata>> getColumnsForSchema(Connection connection, String catalogName, String schemaName) throws SQLException {
+        String sql = "SELECT c.table_name, c.column_name, c.data_type, " +
+                "COALESCE(col_description(pgc.oid, c.ordinal_position), '') as column_comment, " +
+                "CASE WHEN pk.column_name IS NOT NULL THEN true ELSE false END as is_primary_key, " +
+                "CASE WHEN c.is_nullable = 'YES' THEN true ELSE false END as is_nullable " +
+                "FROM information_schema.columns c " +
+                "LEFT JOIN pg_namespace n ON n.nspname = c.table_schema " +
+                "LEFT JOIN pg_class pgc ON pgc.relname = c.table_name AND pgc.relnamespace = n.oid " +
+                "LEFT JOIN (SELECT kcu.table_name, kcu.column_name " +
+                "           FROM information_schema.table_constraints tc " +
+                "           JOIN information_schema.key_column_usage kcu ON kcu.constraint_name = tc.constraint_name " +
+                "                AND kcu.table_schema = tc.table_schema AND kcu.table_name = tc.table_name " +
+                "           WHERE tc.constraint_type = 'PRIMARY KEY' AND tc.table_schema = ?) pk " +
+                "       ON pk.table_name = c.table_name AND pk.column_name = c.column_name " +
+                "WHERE c.table_schema = ? " +
+                "ORDER BY c.table_name, c.ordinal_position";
+
+        Map<String, List<ColumnMetadata>> columnsByTable = new LinkedHashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setQueryTimeout(timeoutConfig.getMetadataQueryTimeout());
+            ps.setString(1, schemaName);
+            ps.setString(2, schemaName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    columnsByTable.computeIfAbsent(rs.getString("table_name"), k -> new ArrayList<>()).add(toColumnMetadata(rs));
+                }
+            }
+        }
+        return columnsByTable;
+    }
+
+    private ColumnMetadata toColumnMetadata(ResultSet rs) throws SQLException {
+        String columnComment = rs.getString("column_comment");
+        return new ColumnMetadata(
+                rs.getString("column_name"),
+                rs.getString("data_type"),
+                Optional.ofNullable(columnComment == null || columnComment.isEmpty() ? null : columnComment),
+                rs.getBoolean("is_primary_key"),
+                rs.getBoolean("is_nullable"),
+                null // Metrics to be calculated later
         );
     }
 
@@ -282,6 +332,14 @@ public class PostgreSqlDialect extends DatabaseDialect {
             return Collections.emptyMap();
         }
 
+        // 流式画像：在应用侧单遍计算，避免在源库执行 COUNT(DISTINCT) 聚合
+        if (mode == ExecutionMode.STREAM_PROFILE) {
+            return calculateMetricsByStreaming(connection, tableMetadata);
+        }
+        // 统计信息：只读取优化器统计，不读取用户数据，缺少统计的列没有指标
+        if (mode == ExecutionMode.CATALOG_STATS) {
+            return calculateMetricsFromCatalogStats(connection, tableMetadata);
+        }
         // Decide whether to use sampling based on mode and row count
         boolean useSampling = false;
         if (mode == ExecutionMode.FORCE_SAMPLE) {
@@ -357,45 +415,112 @@ public class PostgreSqlDialect extends DatabaseDialect {
 
 
     /**
-     * Calculate metrics from sample data in memory.
-     * 
-     * @param tableMetadata table metadata containing sample data
-     * @return metrics map
+     * Read column statistics from pg_stats (null_frac, n_distinct, histogram bounds and most common values).
+     * A negative n_distinct is a fraction of the row count and is scaled by pg_class.reltuples.
+     * The histogram excludes the most common values, so min/max are taken over both.
+     * Tables that were never analyzed have no rows in pg_stats and yield an empty map.
      */
-    private Map<String, ExtendedMetrics> calculateMetricsFromSample(TableMetadata tableMetadata) {
-        List<Map<String, Object>> sampleData = tableMetadata.sampleData().orElse(Collections.emptyList());
-        if (sampleData.isEmpty()) {
-            return Collections.emptyMap();
-        }
-
-        int sampleSize = sampleData.size();
+    @Override
+    protected Map<String, ExtendedMetrics> calculateMetricsFromCatalogStats(Connection connection, TableMetadata tableMetadata) throws SQLException {
+        String sql = "SELECT s.attname, s.null_frac, s.n_distinct, " +
+                "s.histogram_bounds::text AS histogram_bounds, " +
+                "s.most_common_vals::text AS most_common_vals, " +
+                "s.most_common_freqs::text AS most_common_freqs, " +
+                "c.reltuples " +
+                "FROM pg_stats s " +
+                "JOIN pg_namespace n ON n.nspname = s.schemaname " +
+                "JOIN pg_class c ON c.relnamespace = n.oid AND c.relname = s.tablename " +
+                "WHERE s.tablename = ? AND s.schemaname = ANY (current_schemas(false))";
+
+        Map<String, ColumnMetadata> columns = tableMetadata.columns().stream()
+                .collect(Collectors.toMap(ColumnMetadata::columnName, c -> c, (a, b) -> a));
         Map<String, ExtendedMetrics> metricsMap = new HashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setQueryTimeout(timeoutConfig.getMetadataQueryTimeout());
+            ps.setString(1, tableMetadata.tableName());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ColumnMetadata column = columns.get(rs.getString("attname"));
+                    // Inheritance parents have one row per "inherited" flag, keep the first one
+                    if (column == null || metricsMap.containsKey(column.columnName())) {
+                        continue;
+                    }
+                    double reltuples = rs.getDouble("reltuples");
+                    long rowCount = reltuples > 0 ? (long) reltuples : tableMetadata.rowCount();
+                    double nDistinct = rs.getDouble("n_distinct");
+                    long cardinality = nDistinct >= 0 ? (long) nDistinct : Math.round(-nDistinct * rowCount);
+                    List<String> commonValues = parseArrayLiteral(rs.getString("most_common_vals"));
+                    List<String> commonFreqs = parseArrayLiteral(rs.getString("most_common_freqs"));
 
-        // Process each column
-        for (ColumnMetadata column : tableMetadata.columns()) {
-            String colName = column.columnName();
-            List<Object> columnValues = sampleData.stream()
-                    .map(row -> row.get(colName))
-                    .collect(Collectors.toList());
-
-            // Calculate metrics
-            long nullCount = columnValues.stream().filter(Objects::isNull).count();
-            long cardinality = columnValues.stream().filter(Objects::nonNull).distinct().count();
-            double nullRate = (double) nullCount / sampleSize;
-            double uniquenessRate = (double) cardinality / sampleSize;
-
-            metricsMap.put(colName, new ExtendedMetrics(
-                    Optional.of(nullRate),
-                    Optional.of(uniquenessRate),
-                    Optional.of(cardinality),
-                    Optional.empty(),
-                    Optional.empty(),
-                    ExtendedMetrics.MetricSource.SAMPLED
-            ));
+                    Optional<ExtendedMetrics.NumericMetrics> numericMetrics = Optional.empty();
+                    Optional<ExtendedMetrics.CategoricalMetrics> categoricalMetrics = Optional.empty();
+                    if (isNumericType(column.dataType())) {
+                        List<BigDecimal> bounds = new ArrayList<>();
+                        parseArrayLiteral(rs.getString("histogram_bounds")).forEach(v -> parseDecimal(v).ifPresent(bounds::add));
+                        commonValues.forEach(v -> parseDecimal(v).ifPresent(bounds::add));
+                        numericMetrics = Optional.of(new ExtendedMetrics.NumericMetrics(
+                                bounds.stream().min(BigDecimal::compareTo),
+                                bounds.stream().max(BigDecimal::compareTo),
+                                Optional.empty(),
+                                Optional.empty(),
+                                Optional.empty()
+                        ));
+                    } else if (!commonValues.isEmpty()) {
+                        // most_common_freqs is already sorted in descending order
+                        List<ExtendedMetrics.ValueFrequency> topValues = new ArrayList<>();
+                        int n = Math.min(TOP_N_CATEGORICAL, Math.min(commonValues.size(), commonFreqs.size()));
+                        for (int i = 0; i < n; i++) {
+                            long count = Math.round(Double.parseDouble(commonFreqs.get(i)) * rowCount);
+                            topValues.add(new ExtendedMetrics.ValueFrequency(commonValues.get(i), count));
+                        }
+                        categoricalMetrics = Optional.of(new ExtendedMetrics.CategoricalMetrics(topValues));
+                    }
+
+                    metricsMap.put(column.columnName(), catalogStatsMetrics(
+                            rowCount, rs.getDouble("null_frac"), cardinality, numericMetrics, categoricalMetrics));
+                }
+            }
         }
         return metricsMap;
     }
 
+    /**
+     * Parse a one-dimensional PostgreSQL array literal such as {1,2,"a b",NULL}.
+     */
+    private static List<String> parseArrayLiteral(String literal) {
+        if (literal == null || literal.length() <= 2) {
+            return List.of();
+        }
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+        boolean quoted = false;
+        int end = literal.length() - 1;
+        for (int i = 1; i < end; i++) {
+            char ch = literal.charAt(i);
+            if (inQuotes) {
+                if (ch == '\\' && i + 1 < end) {
+                    current.append(literal.charAt(++i));
+                } else if (ch == '"') {
+                    inQuotes = false;
+                } else {
+                    current.append(ch);
+                }
+            } else if (ch == '"') {
+                inQuotes = true;
+                quoted = true;
+            } else if (ch == ',') {
+                values.add(!quoted && "NULL".contentEquals(current) ? null : current.toString());
+                current.setLength(0);
+                quoted = false;
+            } else {
+                current.append(ch);
+            }
+        }
+        values.add(!quoted && "NULL".contentEquals(current) ? null : current.toString());
+        return values;
+    }
+
     /**
      * Helper method to determine if data type is numeric.
      * 
@@ -494,4 +619,45 @@ public class PostgreSqlDialect extends DatabaseDialect {
         
         return tables;
     }
-}
\ No newline at end of file
+
+    /**
+     * PostgreSQL 指纹：pg_stat_user_tables 的累计增删改计数，加上 pg_class.relnatts 以感知列的增删。
+     * 视图没有统计信息，不生成指纹。
+     */
+    @Override
+    public Map<String, String> getTableFingerprints(Connection connection, String catalogName, String schemaName) throws SQLException {
+        return queryTableFingerprints(connection, schemaName, null);
+    }
+
+    @Override
+    public Optional<String> getTableFingerprint(Connection connection, String catalogName, String schemaName, String tableName) throws SQLException {
+        return Optional.ofNullable(queryTableFingerprints(connection, schemaName, tableName).get(tableName));
+    }
+
+    /**
+     * @param tableName 只查询该表，为 null 时查询整个 schema
+     */
+    private Map<String, String> queryTableFingerprints(Connection connection, String schemaName, String tableName) throws SQLException {
+        Map<String, String> fingerprints = new HashMap<>();
+        String sql = "SELECT s.relname, s.n_tup_ins, s.n_tup_upd, s.n_tup_del, c.relnatts " +
+                "FROM pg_stat_user_tables s " +
+                "JOIN pg_class c ON c.oid = s.relid " +
+                "WHERE s.schemaname = ?" +
+                (tableName != null ? " AND s.relname = ?" : "");
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setQueryTimeout(timeoutConfig.getMetadataQueryTimeout());
+            ps.setString(1, schemaName);
+            if (tableName != null) {
+                ps.setString(2, tableName);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    fingerprints.put(rs.getString("relname"),
+                            rs.getLong("n_tup_ins") + "|" + rs.getLong("n_tup_upd") + "|"
+                                    + rs.getLong("n_tup_del") + "|" + rs.getInt("relnatts"));
+                }
+            }
+        }
+        return fingerprints;
+    }
+}
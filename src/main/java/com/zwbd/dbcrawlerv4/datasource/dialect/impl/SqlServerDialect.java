@@ -10,6 +10,8 @@ import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseInfo;
 import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseType;
 import com.zwbd.dbcrawlerv4.datasource.entity.ExecutionMode;
 import com.zwbd.dbcrawlerv4.common.exception.CommonException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -25,6 +27,8 @@ import java.util.stream.Collectors;
 @Component
 public class SqlServerDialect extends DatabaseDialect {
 
+    private static final Logger log = LoggerFactory.getLogger(SqlServerDialect.class);
+
 //    private final TimeoutConfig timeoutConfig;
 
     protected String driver = "com.microsoft.sqlserver.jdbc.SQLServerDriver";
@@ -131,32 +135,22 @@ public class SqlServerDialect extends DatabaseDialect {
     public TableMetadata getTableDetails(Connection connection, TableMetadata tableInfo) throws SQLException {
         // 1. (新) 获取行数
         long rowCount = getApproximateRowCount(connection, tableInfo.tableName());
-        // 2. (新) 获取列元数据
-        List<ColumnMetadata> columns = getColumnMetadata(connection, tableInfo.tableName());
-        // 3. (新) 创建一个包含行数和列的中间对象，用于采样
-        TableMetadata metadataWithDetails = new TableMetadata(
+        // 2. (新) 获取列元数据，整库采集时已由 getColumnsForSchema 批量取回
+        List<ColumnMetadata> columns = tableInfo.columns() != null ? tableInfo.columns() : getColumnMetadata(connection, tableInfo.tableName());
+        // 3. (新) 返回包含行数和列的对象，样本由 getTableSample 单独获取
+        return new TableMetadata(
                 tableInfo.tableName(),
                 tableInfo.tableType(),
                 tableInfo.comment(),
                 rowCount, // 使用新获取的行数
                 columns,
-                Optional.empty() // 样本稍后填充
-        );
-
-        // 4. 获取样本数据
-        Optional<List<Map<String, Object>>> sampleData = getUniformTableSample(
-                connection, metadataWithDetails, SAMPLE_DATA_SIZE
+                Optional.empty()
         );
+    }
 
-        // 5. 返回包含所有信息的最终对象
-        return new TableMetadata(
-                metadataWithDetails.tableName(),
-                metadataWithDetails.tableType(),
-                metadataWithDetails.comment(),
-                metadataWithDetails.rowCount(),
-                metadataWithDetails.columns(),
-                sampleData // 填充样本
-        );
+    @Override
+    public Optional<List<Map<String, Object>>> getTableSample(Connection connection, TableMetadata tableInfo) throws SQLException {
+        return getUniformTableSample(connection, tableInfo, SAMPLE_DATA_SIZE);
     }
 
     private List<ColumnMetadata> getColumnMetadata(Connection connection, String tableName) throws SQLException {
@@ -187,20 +181,59 @@ public class SqlServerDialect extends DatabaseDialect {
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    columns.add(new ColumnMetadata(
-                            rs.getString("COLUMN_NAME"),
-                            rs.getString("DATA_TYPE"),
-                            Optional.ofNullable(rs.getString("COLUMN_COMMENT")), // 优化：更简洁的 Optional
-                            rs.getBoolean("IS_PRIMARY_KEY"),
-                            rs.getBoolean("IS_NULLABLE"),
-                            null // Metrics to be calculated later
-                    ));
+                    columns.add(toColumnMetadata(rs));
                 }
             }
         }
         return columns;
     }
 
+    /**
+     * Fetch the columns of every table in the schema with a single query.
+     * sys.columns is matched by the schema-qualified object id so that same-named tables in other schemas do not collide.
+     */
+    @Override
+    public Map<String, List<ColumnMetadata>> getColumnsForSchema(Connection connection, String catalogName, String schemaName) throws SQLException {
+        String sql = "SELECT " +
+                "c.TABLE_NAME, " +
+                "c.COLUMN_NAME, " +
+                "c.DATA_TYPE, " +
+                "ep.value as COLUMN_COMMENT, " +
+                "CASE WHEN ic.column_id IS NOT NULL THEN 1 ELSE 0 END as IS_PRIMARY_KEY, " +
+                "CASE WHEN c.IS_NULLABLE = 'YES' THEN 1 ELSE 0 END as IS_NULLABLE " +
+                "FROM INFORMATION_SCHEMA.COLUMNS c " +
+                "LEFT JOIN sys.columns sc ON sc.object_id = OBJECT_ID(QUOTENAME(c.TABLE_SCHEMA) + '.' + QUOTENAME(c.TABLE_NAME)) AND sc.name = c.COLUMN_NAME " +
+                "LEFT JOIN sys.extended_properties ep ON ep.class = 1 AND sc.object_id = ep.major_id AND sc.column_id = ep.minor_id AND ep.name = 'MS_Description' " +
+                "LEFT JOIN sys.indexes i ON sc.object_id = i.object_id AND i.is_primary_key = 1 " +
+                "LEFT JOIN sys.index_columns ic ON i.object_id = ic.object_id AND i.index_id = ic.index_id AND sc.column_id = ic.column_id " +
+                "WHERE c.TABLE_CATALOG = ? AND c.TABLE_SCHEMA = ? " +
+                "ORDER BY c.TABLE_NAME, c.ORDINAL_POSITION";
+
+        Map<String, List<ColumnMetadata>> columnsByTable = new LinkedHashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setQueryTimeout(timeoutConfig.getMetadataQueryTimeout());
+            ps.setString(1, catalogName != null ? catalogName : connection.getCatalog());
+            ps.setString(2, schemaName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    columnsByTable.computeIfAbsent(rs.getString("TABLE_NAME"), k -> new ArrayList<>()).add(toColumnMetadata(rs));
+                }
+            }
+        }
+        return columnsByTable;
+    }
+
+    private ColumnMetadata toColumnMetadata(ResultSet rs) throws SQLException {
+        return new ColumnMetadata(
+                rs.getString("COLUMN_NAME"),
+                rs.getString("DATA_TYPE"),
+                Optional.ofNullable(rs.getString("COLUMN_COMMENT")), // 优化：更简洁的 Optional
+                rs.getBoolean("IS_PRIMARY_KEY"),
+                rs.getBoolean("IS_NULLABLE"),
+                null // Metrics to be calculated later
+        );
+    }
+
     /**
      * 快速获取一个对象（表或索引视图）的近似行数。
      * * 此方法通过查询系统分区表来实现，速度非常快。
@@ -301,6 +334,14 @@ public class SqlServerDialect extends DatabaseDialect {
         if (tableMetadata.columns().isEmpty()) {
             return Collections.emptyMap();
         }
+        // 流式画像：在应用侧单遍计算，避免在源库执行 COUNT(DISTINCT) 聚合
+        if (mode == ExecutionMode.STREAM_PROFILE) {
+            return calculateMetricsByStreaming(connection, tableMetadata);
+        }
+        // 统计信息：只读取优化器统计，不读取用户数据，缺少统计的列没有指标
+        if (mode == ExecutionMode.CATALOG_STATS) {
+            return calculateMetricsFromCatalogStats(connection, tableMetadata);
+        }
         // Decide whether to use sampling based on mode and row count
         boolean useSampling = false;
         if (mode == ExecutionMode.FORCE_SAMPLE) {
@@ -389,45 +430,105 @@ public class SqlServerDialect extends DatabaseDialect {
     }
 
     /**
-     * Calculate metrics from sample data in memory.
-     *
-     * @param tableMetadata table metadata containing sample data
-     * @return metrics map
+     * Read column statistics from the statistics histograms
+     * (sys.stats + sys.dm_db_stats_properties + sys.dm_db_stats_histogram).
+     * Only the leading column of a statistics object has a histogram; the first statistics object per column is used.
+     * The NULL step's EQ_ROWS is the null count, distinct values are DISTINCT_RANGE_ROWS plus one per non-null step.
+     * sys.dm_db_stats_histogram needs SQL Server 2016 SP1 CU2 or later, older servers yield an empty map.
      */
-    private Map<String, ExtendedMetrics> calculateMetricsFromSample(TableMetadata tableMetadata) {
-        List<Map<String, Object>> sampleData = tableMetadata.sampleData().orElse(Collections.emptyList());
-        if (sampleData.isEmpty()) {
-            return Collections.emptyMap();
+    @Override
+    protected Map<String, ExtendedMetrics> calculateMetricsFromCatalogStats(Connection connection, TableMetadata tableMetadata) throws SQLException {
+        String sql = "SELECT c.name AS column_name, st.stats_id, sp.rows, " +
+                "CAST(h.range_high_key AS NVARCHAR(4000)) AS range_high_key, h.equal_rows, h.distinct_range_rows " +
+                "FROM sys.stats st " +
+                "JOIN sys.stats_columns sc ON sc.object_id = st.object_id AND sc.stats_id = st.stats_id AND sc.stats_column_id = 1 " +
+                "JOIN sys.columns c ON c.object_id = sc.object_id AND c.column_id = sc.column_id " +
+                "CROSS APPLY sys.dm_db_stats_properties(st.object_id, st.stats_id) sp " +
+                "CROSS APPLY sys.dm_db_stats_histogram(st.object_id, st.stats_id) h " +
+                "WHERE st.object_id = OBJECT_ID(QUOTENAME(?)) " +
+                "ORDER BY c.name, st.stats_id, h.step_number";
+
+        Map<String, StatsHistogram> histograms = new HashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setQueryTimeout(timeoutConfig.getMetadataQueryTimeout());
+            ps.setString(1, tableMetadata.tableName());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int statsId = rs.getInt("stats_id");
+                    StatsHistogram histogram = histograms.computeIfAbsent(rs.getString("column_name"),
+                            k -> new StatsHistogram(statsId));
+                    if (histogram.statsId == statsId) {
+                        histogram.rows = rs.getLong("rows");
+                        histogram.addStep(rs.getString("range_high_key"), rs.getDouble("equal_rows"), rs.getDouble("distinct_range_rows"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.debug("Statistics histogram is not available for {}: {}", tableMetadata.tableName(), e.getMessage());
+            return new HashMap<>();
         }
 
-        int sampleSize = sampleData.size();
         Map<String, ExtendedMetrics> metricsMap = new HashMap<>();
-
-        // Process each column
         for (ColumnMetadata column : tableMetadata.columns()) {
-            String colName = column.columnName();
-            List<Object> columnValues = sampleData.stream()
-                    .map(row -> row.get(colName))
-                    .collect(Collectors.toList());
-
-            // Calculate metrics
-            long nullCount = columnValues.stream().filter(Objects::isNull).count();
-            long cardinality = columnValues.stream().filter(Objects::nonNull).distinct().count();
-            double nullRate = (double) nullCount / sampleSize;
-            double uniquenessRate = (double) cardinality / sampleSize;
-
-            metricsMap.put(colName, new ExtendedMetrics(
-                    Optional.of(nullRate),
-                    Optional.of(uniquenessRate),
-                    Optional.of(cardinality),
-                    Optional.empty(),
-                    Optional.empty(),
-                    ExtendedMetrics.MetricSource.SAMPLED
-            ));
+            StatsHistogram histogram = histograms.get(column.columnName());
+            if (histogram == null) {
+                continue;
+            }
+            long rowCount = histogram.rows > 0 ? histogram.rows : tableMetadata.rowCount();
+            Double nullRate = rowCount > 0 ? Math.min(1.0, histogram.nullRows / rowCount) : null;
+
+            Optional<ExtendedMetrics.NumericMetrics> numericMetrics = Optional.empty();
+            Optional<ExtendedMetrics.CategoricalMetrics> categoricalMetrics = Optional.empty();
+            if (isNumericType(column.dataType())) {
+                // Steps are ordered by RANGE_HI_KEY, the first step holds the lowest value
+                numericMetrics = Optional.of(new ExtendedMetrics.NumericMetrics(
+                        histogram.keys.isEmpty() ? Optional.empty() : parseDecimal(histogram.keys.get(0)),
+                        histogram.keys.isEmpty() ? Optional.empty() : parseDecimal(histogram.keys.get(histogram.keys.size() - 1)),
+                        Optional.empty(),
+                        Optional.empty(),
+                        Optional.empty()
+                ));
+            } else if (!histogram.keys.isEmpty()) {
+                List<ExtendedMetrics.ValueFrequency> topValues = new ArrayList<>();
+                for (int i = 0; i < histogram.keys.size(); i++) {
+                    topValues.add(new ExtendedMetrics.ValueFrequency(histogram.keys.get(i), Math.round(histogram.equalRows.get(i))));
+                }
+                topValues.sort(Comparator.comparingLong(ExtendedMetrics.ValueFrequency::count).reversed());
+                categoricalMetrics = Optional.of(new ExtendedMetrics.CategoricalMetrics(
+                        topValues.subList(0, Math.min(TOP_N_CATEGORICAL, topValues.size()))));
+            }
+            metricsMap.put(column.columnName(), catalogStatsMetrics(
+                    rowCount, nullRate, Math.round(histogram.distinct), numericMetrics, categoricalMetrics));
         }
         return metricsMap;
     }
 
+    /**
+     * Histogram steps of one statistics object, accumulated row by row.
+     */
+    private static final class StatsHistogram {
+        private final int statsId;
+        private final List<String> keys = new ArrayList<>();
+        private final List<Double> equalRows = new ArrayList<>();
+        private long rows;
+        private double nullRows;
+        private double distinct;
+
+        private StatsHistogram(int statsId) {
+            this.statsId = statsId;
+        }
+
+        private void addStep(String rangeHighKey, double equalRowCount, double distinctRangeRows) {
+            if (rangeHighKey == null) {
+                nullRows += equalRowCount;
+                return;
+            }
+            keys.add(rangeHighKey);
+            equalRows.add(equalRowCount);
+            distinct += distinctRangeRows + (equalRowCount > 0 ? 1 : 0);
+        }
+    }
+
     /**
      * Helper method to determine if data type is numeric.
      *
@@ -521,6 +622,56 @@ public class SqlServerDialect extends DatabaseDialect {
         return tables;
     }
 
+    /**
+     * SQL Server 指纹：sys.objects.modify_date 反映 DDL 变更，sys.dm_db_index_usage_stats.last_user_update
+     * 反映 INSERT / UPDATE / DELETE（行数在只有 UPDATE 或增删抵消时不变，不能作为数据变更信号）。
+     * 使用统计在实例重启后清空，因此指纹同时包含实例启动时间，重启后所有表都会重新处理一次。
+     * 读取这两个 DMV 需要 VIEW SERVER STATE 权限，缺少权限时查询失败，调用方按没有指纹处理，每次都重新读取。
+     * 视图的数据随基表变化而 modify_date 不变，因此只为用户表生成指纹。
+     */
+    @Override
+    public Map<String, String> getTableFingerprints(Connection connection, String catalogName, String schemaName) throws SQLException {
+        return queryTableFingerprints(connection, schemaName, null);
+    }
+
+    @Override
+    public Optional<String> getTableFingerprint(Connection connection, String catalogName, String schemaName, String tableName) throws SQLException {
+        return Optional.ofNullable(queryTableFingerprints(connection, schemaName, tableName).get(tableName));
+    }
+
+    /**
+     * @param tableName 只查询该表，为 null 时查询整个 schema
+     */
+    private Map<String, String> queryTableFingerprints(Connection connection, String schemaName, String tableName) throws SQLException {
+        Map<String, String> fingerprints = new HashMap<>();
+        String sql = "SELECT o.name AS TABLE_NAME, o.modify_date, " +
+                "(SELECT MAX(u.last_user_update) FROM sys.dm_db_index_usage_stats u " +
+                "WHERE u.database_id = DB_ID() AND u.object_id = o.object_id) AS LAST_USER_UPDATE, " +
+                "(SELECT sqlserver_start_time FROM sys.dm_os_sys_info) AS START_TIME " +
+                "FROM sys.objects o " +
+                "JOIN sys.schemas s ON o.schema_id = s.schema_id " +
+                "WHERE s.name = ? AND o.type = 'U' " +
+                (tableName != null ? "AND o.name = ?" : "");
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setQueryTimeout(timeoutConfig.getMetadataQueryTimeout());
+            ps.setString(1, schemaName);
+            if (tableName != null) {
+                ps.setString(2, tableName);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // 重启后尚未写入的表 last_user_update 为 NULL，由启动时间区分不同的重启周期
+                    Timestamp lastUpdate = rs.getTimestamp("LAST_USER_UPDATE");
+                    fingerprints.put(rs.getString("TABLE_NAME"),
+                            rs.getTimestamp("modify_date").getTime() + "|"
+                                    + (lastUpdate != null ? lastUpdate.getTime() : 0L) + "|"
+                                    + rs.getTimestamp("START_TIME").getTime());
+                }
+            }
+        }
+        return fingerprints;
+    }
+
     /**
      * 检查数据类型是否为不支持聚合的 LOB 类型 (image, text 等)
      */
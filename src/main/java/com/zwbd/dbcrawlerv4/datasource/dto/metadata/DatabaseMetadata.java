@@ -3,6 +3,7 @@ package com.zwbd.dbcrawlerv4.datasource.dto.metadata;
 import lombok.With;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @Author: wnli
@@ -12,5 +13,17 @@ import java.util.List;
 @With
 public record DatabaseMetadata(String databaseProductName,
                                String databaseProductVersion,
-                               List<SchemaMetadata> catalogs) {
+                               List<SchemaMetadata> catalogs,
+                               Map<String, String> tableFingerprints) {
+
+    public DatabaseMetadata(String databaseProductName, String databaseProductVersion, List<SchemaMetadata> catalogs) {
+        this(databaseProductName, databaseProductVersion, catalogs, Map.of());
+    }
+
+    /**
+     * tableFingerprints 的 Key：本次采集时各表的变更指纹，用于下一次增量采集
+     */
+    public static String fingerprintKey(String catalogName, String schemaName, String tableName) {
+        return catalogName + "." + schemaName + "." + tableName;
+    }
 }
@@ -26,7 +26,16 @@ public record ExtendedMetrics(
         /**
          * 指标基于对数据样本的分析估算得出，结果可能不精确。
          */
-        SAMPLED
+        SAMPLED,
+        /**
+         * 指标基于应用侧对全量数据的单遍流式统计，空值率与数值统计精确，基数为 HyperLogLog 近似值。
+         */
+        STREAM_PROFILE,
+        /**
+         * 指标读取自数据库优化器的统计信息（如 pg_stats、MySQL 直方图、SQL Server 统计直方图），
+         * 不访问用户数据，精度取决于统计信息的新鲜度。
+         */
+        CATALOG_STATS
     }
 
     /**
@@ -37,8 +46,28 @@ public record ExtendedMetrics(
             Optional<BigDecimal> max,
             Optional<BigDecimal> mean,
             Optional<BigDecimal> stdDev, // 标准差
-            Optional<BigDecimal> median  // 中位数
+            Optional<BigDecimal> median, // 中位数
+            Optional<List<HistogramBucket>> histogram // 等深直方图
     ) {
+
+        public NumericMetrics {
+            // 旧版本持久化的指标没有直方图字段
+            histogram = histogram != null ? histogram : Optional.empty();
+        }
+
+        public NumericMetrics(Optional<BigDecimal> min,
+                              Optional<BigDecimal> max,
+                              Optional<BigDecimal> mean,
+                              Optional<BigDecimal> stdDev,
+                              Optional<BigDecimal> median) {
+            this(min, max, mean, stdDev, median, Optional.empty());
+        }
+    }
+
+    /**
+     * 等深直方图的一个分桶：[lowerBound, upperBound] 内约有 count 个值。
+     */
+    public record HistogramBucket(BigDecimal lowerBound, BigDecimal upperBound, long count) {
     }
 
     /**
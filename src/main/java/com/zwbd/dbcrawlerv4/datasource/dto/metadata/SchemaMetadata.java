@@ -19,9 +19,17 @@ import java.util.List;
 public record SchemaMetadata(
         String schemaName,
         String remarks,
-        List<TableMetadata> tables
+        List<TableMetadata> tables,
+        String catalogName
 ) {
 
+    /**
+     * catalogName 由采集流程填充，仅用于增量采集时定位上一次的结果，方言实现无需关心
+     */
+    public SchemaMetadata(String schemaName, String remarks, List<TableMetadata> tables) {
+        this(schemaName, remarks, tables, null);
+    }
+
     /**
      * Create a CatalogMetadataDo with minimal information
      */
@@ -37,6 +37,10 @@ public record TableMetadata(
         return this.columns == columns ? this : new TableMetadata(this.tableName, this.tableType, this.comment, this.rowCount, columns, this.sampleData);
     }
 
+    public TableMetadata withSampleData(final Optional<List<Map<String, Object>>> sampleData) {
+        return this.sampleData == sampleData ? this : new TableMetadata(this.tableName, this.tableType, this.comment, this.rowCount, this.columns, sampleData);
+    }
+
     /**
      * 裁剪样例数据
      *
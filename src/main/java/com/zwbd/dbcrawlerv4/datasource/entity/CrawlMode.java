@@ -0,0 +1,23 @@
+package com.zwbd.dbcrawlerv4.datasource.entity;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/10/14 10:12
+ * @Desc: 元数据采集时表级任务的调度方式
+ */
+public enum CrawlMode {
+
+    /**
+     * 串行模式：
+     * 在同一个采集任务中逐个处理表，对源库压力最小，但耗时与表数量成正比。
+     */
+    SEQUENTIAL,
+
+    /**
+     * 并行模式：默认行为。
+     * 将每个表的 processTable 分发到采集线程池中执行，每个工作线程使用独立的连接。
+     * 同一数据源的并发度受 {@code app.database.timeout.max-concurrent-tasks} 限制，结果顺序与串行模式保持一致。
+     */
+    PARALLEL
+
+}
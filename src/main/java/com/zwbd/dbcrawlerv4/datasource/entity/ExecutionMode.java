@@ -25,6 +25,20 @@ public enum ExecutionMode {
      * 无论表有多小，都强制使用采样方式进行估算。
      * 主要用于快速预览或测试。
      */
-    FORCE_SAMPLE
+    FORCE_SAMPLE,
+
+    /**
+     * 流式画像模式：
+     * 通过 streamTableData 游标单遍读取全表，在应用侧计算空值率、近似基数（HyperLogLog）及数值统计。
+     * 源库只承担一次顺序读取，不再执行 COUNT(DISTINCT) 等重聚合，耗时与行数线性相关。
+     */
+    STREAM_PROFILE,
+
+    /**
+     * 统计信息模式：
+     * 直接读取数据库优化器已维护的列统计（空值比例、不同值数量、直方图边界等），不扫描任何用户数据，
+     * 每张表只需毫秒级的系统视图查询。该模式不采集数据样本，缺少统计信息的列没有指标。
+     */
+    CATALOG_STATS
 
 }
@@ -0,0 +1,53 @@
+package com.zwbd.dbcrawlerv4.datasource.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.util.UUID;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/10/15 9:32
+ * @Desc: 单表元数据，按 数据源 / schema / 表 分行存储，支持单表点查而无需反序列化整个数据库
+ */
+@Data
+@Entity
+@Table(name = "database_table_metadata",
+        indexes = @Index(name = "idx_table_meta_lookup", columnList = "database_info_id, schema_name, table_name"))
+public class TableMetadataEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private UUID id;
+
+    @Column(name = "database_info_id", nullable = false)
+    private String databaseInfoId;
+
+    @Column(name = "catalog_name")
+    private String catalogName;
+
+    /**
+     * 统一存储为小写，用于不区分大小写的点查；原始名称保存在 tableContent 中
+     */
+    @Column(name = "schema_name", nullable = false)
+    private String schemaName;
+
+    @Column(name = "table_name", nullable = false)
+    private String tableName;
+
+    /**
+     * 表在原始采集结果中的顺序，用于还原完整的 DatabaseMetadata
+     */
+    private int ordinal;
+
+    /**
+     * 采集时的表变更指纹，见 DatabaseMetadata#tableFingerprints
+     */
+    private String fingerprint;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "table_content", columnDefinition = "jsonb")
+    private String tableContent; // TableMetadata 的 JSON 字符串
+}
@@ -0,0 +1,173 @@
+package com.zwbd.dbcrawlerv4.datasource.profile;
+
+import com.zwbd.dbcrawlerv4.datasource.dto.metadata.ExtendedMetrics;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/10/16 10:32
+ * @Desc: 单列的单遍统计器，内存占用与行数无关：
+ * 1. 空值计数
+ * 2. HyperLogLog 近似去重计数
+ * 3. 数值列使用 Welford 算法在线计算均值与（总体）标准差，同时记录最小值与最大值
+ * 4. Space-Saving 估算高频值（Top-K），枚举类列无需在源库逐列 GROUP BY
+ * 5. 数值列通过蓄水池抽样估算中位数与等深直方图
+ * 非线程安全，每个表的每一列各持有一个实例。
+ */
+public class ColumnProfiler {
+
+    private static final int HLL_PRECISION = 14;
+    private static final int TOP_K = 10;
+    // 计数器数量取 Top-K 的数倍，降低尾部高频值被挤出的概率
+    private static final int TOP_K_CAPACITY = 64;
+    // 保底频次低于该值的候选视为偶然出现，唯一值列因此不会输出 Top-K
+    private static final long TOP_K_MIN_COUNT = 2;
+    // 过长的值（大文本）不参与高频值统计
+    private static final int TOP_K_MAX_VALUE_LENGTH = 200;
+    private static final int RESERVOIR_SIZE = 1024;
+    private static final int HISTOGRAM_BUCKETS = 10;
+
+    private final HyperLogLog distinct = new HyperLogLog(HLL_PRECISION);
+    private final SpaceSaving<Object> topValues = new SpaceSaving<>(TOP_K_CAPACITY);
+    private final ReservoirHistogram histogram = new ReservoirHistogram(RESERVOIR_SIZE);
+
+    private long totalCount;
+    private long nullCount;
+
+    // 数值统计：只要出现过非数值的非空值，就不再输出数值指标
+    private boolean numericOnly = true;
+    private long numericCount;
+    private double mean;
+    private double m2;
+    private Number min;
+    private Number max;
+    private boolean integralOnly = true;
+
+    public void accept(Object value) {
+        totalCount++;
+        if (value == null) {
+            nullCount++;
+            return;
+        }
+        distinct.add(value);
+        acceptTopValue(value);
+        if (numericOnly) {
+            if (value instanceof Number number) {
+                acceptNumber(number);
+            } else {
+                numericOnly = false;
+            }
+        }
+    }
+
+    private void acceptNumber(Number number) {
+        double x = number.doubleValue();
+        numericCount++;
+        double delta = x - mean;
+        mean += delta / numericCount;
+        m2 += delta * (x - mean);
+        if (min == null || compare(number, min) < 0) {
+            min = number;
+        }
+        if (max == null || compare(number, max) > 0) {
+            max = number;
+        }
+        if (integralOnly && !isIntegral(number) && !(number instanceof BigInteger)) {
+            integralOnly = number instanceof BigDecimal decimal && decimal.stripTrailingZeros().scale() <= 0;
+        }
+        histogram.add(x);
+    }
+
+    private void acceptTopValue(Object value) {
+        if (value instanceof byte[]) {
+            return;
+        }
+        // 按原值计数，只有进入结果的值才转换为字符串
+        if (value instanceof CharSequence text && text.length() > TOP_K_MAX_VALUE_LENGTH) {
+            return;
+        }
+        topValues.add(value);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public ExtendedMetrics toMetrics(ExtendedMetrics.MetricSource source) {
+        if (totalCount == 0) {
+            return new ExtendedMetrics(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), source);
+        }
+        // 估算值不能超过实际的非空值数量
+        long cardinality = Math.min(distinct.estimate(), totalCount - nullCount);
+        return new ExtendedMetrics(
+                Optional.of((double) nullCount / totalCount),
+                Optional.of((double) cardinality / totalCount),
+                Optional.of(cardinality),
+                toNumericMetrics(),
+                toCategoricalMetrics(),
+                source
+        );
+    }
+
+    private Optional<ExtendedMetrics.NumericMetrics> toNumericMetrics() {
+        if (!numericOnly || numericCount == 0) {
+            return Optional.empty();
+        }
+        List<ExtendedMetrics.HistogramBucket> buckets = histogram.buckets(HISTOGRAM_BUCKETS).stream()
+                .map(b -> new ExtendedMetrics.HistogramBucket(toDecimal(b.lower()), toDecimal(b.upper()), b.count()))
+                .toList();
+        return Optional.of(new ExtendedMetrics.NumericMetrics(
+                Optional.of(toBigDecimal(min)),
+                Optional.of(toBigDecimal(max)),
+                Optional.of(BigDecimal.valueOf(mean)),
+                Optional.of(BigDecimal.valueOf(Math.sqrt(m2 / numericCount))),
+                Optional.ofNullable(histogram.median()).map(BigDecimal::valueOf),
+                buckets.isEmpty() ? Optional.empty() : Optional.of(buckets)
+        ));
+    }
+
+    private Optional<ExtendedMetrics.CategoricalMetrics> toCategoricalMetrics() {
+        List<ExtendedMetrics.ValueFrequency> frequencies = topValues.top(TOP_K, TOP_K_MIN_COUNT).stream()
+                .map(c -> new ExtendedMetrics.ValueFrequency(c.getValue().toString(), c.getCount()))
+                .toList();
+        return frequencies.isEmpty() ? Optional.empty() : Optional.of(new ExtendedMetrics.CategoricalMetrics(frequencies));
+    }
+
+    /**
+     * 直方图边界来自 double 样本，整数列去掉小数部分
+     */
+    private BigDecimal toDecimal(double value) {
+        return integralOnly && Math.abs(value) < 0x1p53 ? BigDecimal.valueOf((long) value) : BigDecimal.valueOf(value);
+    }
+
+    private static int compare(Number a, Number b) {
+        if (isIntegral(a) && isIntegral(b)) {
+            return Long.compare(a.longValue(), b.longValue());
+        }
+        if (a instanceof BigDecimal x && b instanceof BigDecimal y) {
+            return x.compareTo(y);
+        }
+        return Double.compare(a.doubleValue(), b.doubleValue());
+    }
+
+    private static boolean isIntegral(Number n) {
+        return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+    }
+
+    private static BigDecimal toBigDecimal(Number n) {
+        if (n instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        if (n instanceof BigInteger integer) {
+            return new BigDecimal(integer);
+        }
+        if (isIntegral(n)) {
+            return BigDecimal.valueOf(n.longValue());
+        }
+        return BigDecimal.valueOf(n.doubleValue());
+    }
+}
@@ -0,0 +1,90 @@
+package com.zwbd.dbcrawlerv4.datasource.profile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/4 16:45
+ * @Desc: 基于蓄水池抽样的等深直方图与中位数估算。
+ * 对数值流做固定容量的均匀抽样（Algorithm R），结束时对样本排序并切成等深分桶，桶计数按总数等比放大。
+ * 总数不超过容量时结果精确。随机种子固定，同一份数据多次画像结果一致。非线程安全。
+ */
+public class ReservoirHistogram {
+
+    private static final long SEED = 0x5DEECE66DL;
+
+    private final double[] reservoir;
+    private final SplittableRandom random = new SplittableRandom(SEED);
+    private long count;
+
+    public ReservoirHistogram(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.reservoir = new double[capacity];
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        count++;
+        if (count <= reservoir.length) {
+            reservoir[(int) (count - 1)] = value;
+            return;
+        }
+        long slot = random.nextLong(count);
+        if (slot < reservoir.length) {
+            reservoir[(int) slot] = value;
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    private double[] sortedSample() {
+        double[] sample = Arrays.copyOf(reservoir, (int) Math.min(count, reservoir.length));
+        Arrays.sort(sample);
+        return sample;
+    }
+
+    public Double median() {
+        if (count == 0) {
+            return null;
+        }
+        double[] sample = sortedSample();
+        int n = sample.length;
+        return n % 2 == 1 ? sample[n / 2] : (sample[n / 2 - 1] + sample[n / 2]) / 2;
+    }
+
+    /**
+     * 切成最多 bucketCount 个等深分桶，各桶计数之和等于总数。
+     */
+    public List<Bucket> buckets(int bucketCount) {
+        List<Bucket> buckets = new ArrayList<>();
+        if (count == 0) {
+            return buckets;
+        }
+        double[] sample = sortedSample();
+        int n = sample.length;
+        int b = Math.min(bucketCount, n);
+        long assigned = 0;
+        for (int i = 0; i < b; i++) {
+            int from = (int) ((long) i * n / b);
+            int to = (int) ((long) (i + 1) * n / b) - 1;
+            long bucketTotal = i == b - 1
+                    ? count - assigned
+                    : Math.round((double) (to - from + 1) * count / n);
+            assigned += bucketTotal;
+            buckets.add(new Bucket(sample[from], sample[to], bucketTotal));
+        }
+        return buckets;
+    }
+
+    public record Bucket(double lower, double upper, long count) {
+    }
+}
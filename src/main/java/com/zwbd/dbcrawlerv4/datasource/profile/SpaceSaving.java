@@ -0,0 +1,165 @@
+package com.zwbd.dbcrawlerv4.datasource.profile;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/4 16:20
+ * @Desc: Space-Saving 高频值估算器。
+ * 最多维护 capacity 个计数器：已跟踪的值直接计数；表满时替换计数最小的值，新值继承其计数并记为误差。
+ * 任何真实频次大于 N / capacity 的值都一定在结果中，计数偏高但不超过 error。非线程安全。
+ * 计数器按计数分桶，桶按计数升序组成链表（Stream-Summary），计数加一与查找最小计数都是 O(1)。
+ * 值按 equals / hashCode 区分，调用方只需在输出结果时转换为字符串。
+ */
+public class SpaceSaving<T> {
+
+    private final int capacity;
+    private final Map<T, Counter<T>> counters;
+
+    /**
+     * 计数最小的桶，表满时从这里取出被替换的计数器
+     */
+    private Bucket<T> head;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void add(T value) {
+        Counter<T> counter = counters.get(value);
+        if (counter != null) {
+            increment(counter);
+            return;
+        }
+        if (counters.size() < capacity) {
+            counter = new Counter<>(value, 0);
+            counters.put(value, counter);
+            attach(counter, null);
+            return;
+        }
+        Bucket<T> min = head;
+        Iterator<Counter<T>> iterator = min.counters.iterator();
+        Counter<T> evicted = iterator.next();
+        iterator.remove();
+        counters.remove(evicted.value);
+        counter = new Counter<>(value, min.count);
+        counters.put(value, counter);
+        // 新值继承被替换值的计数再加一，先放入最小桶再计数
+        counter.bucket = min;
+        min.counters.add(counter);
+        increment(counter);
+    }
+
+    /**
+     * 计数加一：移到计数加一的桶，不存在时在当前桶之后新建
+     */
+    private void increment(Counter<T> counter) {
+        Bucket<T> bucket = counter.bucket;
+        bucket.counters.remove(counter);
+        attach(counter, bucket);
+        if (bucket.counters.isEmpty()) {
+            unlink(bucket);
+        }
+    }
+
+    /**
+     * 把计数器放入 after 之后计数为 after.count + 1 的桶；after 为 null 时放入计数为 1 的桶
+     */
+    private void attach(Counter<T> counter, Bucket<T> after) {
+        long count = after == null ? 1 : after.count + 1;
+        Bucket<T> next = after == null ? head : after.next;
+        Bucket<T> target;
+        if (next != null && next.count == count) {
+            target = next;
+        } else {
+            target = new Bucket<>(count);
+            target.prev = after;
+            target.next = next;
+            if (next != null) {
+                next.prev = target;
+            }
+            if (after != null) {
+                after.next = target;
+            } else {
+                head = target;
+            }
+        }
+        target.counters.add(counter);
+        counter.bucket = target;
+    }
+
+    private void unlink(Bucket<T> bucket) {
+        if (bucket.prev != null) {
+            bucket.prev.next = bucket.next;
+        } else {
+            head = bucket.next;
+        }
+        if (bucket.next != null) {
+            bucket.next.prev = bucket.prev;
+        }
+    }
+
+    /**
+     * 按估算频次降序返回前 k 个值，频次相同时按值的字符串形式排序。
+     *
+     * @param minGuaranteed 保底频次（count - error）低于该值的条目会被丢弃，用于过滤近似唯一的列
+     */
+    public List<Counter<T>> top(int k, long minGuaranteed) {
+        List<Counter<T>> result = new ArrayList<>();
+        for (Counter<T> c : counters.values()) {
+            if (c.getCount() - c.error >= minGuaranteed) {
+                result.add(c);
+            }
+        }
+        result.sort(Comparator.comparingLong((Counter<T> c) -> c.getCount()).reversed()
+                .thenComparing(c -> String.valueOf(c.value)));
+        return result.size() > k ? result.subList(0, k) : result;
+    }
+
+    private static final class Bucket<T> {
+
+        private final long count;
+        private final Set<Counter<T>> counters = new LinkedHashSet<>();
+        private Bucket<T> prev;
+        private Bucket<T> next;
+
+        private Bucket(long count) {
+            this.count = count;
+        }
+    }
+
+    public static class Counter<T> {
+
+        private final T value;
+        private final long error;
+        private Bucket<T> bucket;
+
+        private Counter(T value, long error) {
+            this.value = value;
+            this.error = error;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getCount() {
+            return bucket.count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+}
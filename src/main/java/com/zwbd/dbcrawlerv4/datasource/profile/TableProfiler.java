@@ -0,0 +1,51 @@
+package com.zwbd.dbcrawlerv4.datasource.profile;
+
+import com.zwbd.dbcrawlerv4.datasource.dto.metadata.ColumnMetadata;
+import com.zwbd.dbcrawlerv4.datasource.dto.metadata.ExtendedMetrics;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/10/16 11:02
+ * @Desc: 表级画像：对一组行数据做单遍统计，为每一列维护一个 {@link ColumnProfiler}。
+ * 行数据可以来自流式游标（全表）或内存中的样本，调用方负责关闭数据流。
+ */
+public class TableProfiler {
+
+    private final Map<String, ColumnProfiler> profilers = new LinkedHashMap<>();
+    private long rowCount;
+
+    public TableProfiler(List<ColumnMetadata> columns) {
+        for (ColumnMetadata column : columns) {
+            profilers.put(column.columnName(), new ColumnProfiler());
+        }
+    }
+
+    public void accept(Map<String, Object> row) {
+        rowCount++;
+        profilers.forEach((column, profiler) -> profiler.accept(row.get(column)));
+    }
+
+    public TableProfiler profile(Stream<Map<String, Object>> rows) {
+        rows.forEach(this::accept);
+        return this;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public Map<String, ExtendedMetrics> toMetrics(ExtendedMetrics.MetricSource source) {
+        Map<String, ExtendedMetrics> metricsMap = new HashMap<>();
+        if (rowCount == 0) {
+            return metricsMap;
+        }
+        profilers.forEach((column, profiler) -> metricsMap.put(column, profiler.toMetrics(source)));
+        return metricsMap;
+    }
+}
@@ -0,0 +1,31 @@
+package com.zwbd.dbcrawlerv4.datasource.repository;
+
+import com.zwbd.dbcrawlerv4.datasource.entity.TableMetadataEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/10/15 9:40
+ * @Desc:
+ */
+@Repository
+public interface TableMetadataRepository extends JpaRepository<TableMetadataEntity, UUID> {
+
+    List<TableMetadataEntity> findByDatabaseInfoIdOrderByOrdinalAsc(String databaseInfoId);
+
+    /**
+     * 单表点查，schemaName 与 tableName 需为小写。
+     * 不同 catalog 下可能存在同名的 schema.table（如 SQL Server），因此返回列表。
+     */
+    List<TableMetadataEntity> findByDatabaseInfoIdAndSchemaNameAndTableNameOrderByOrdinalAsc(String databaseInfoId, String schemaName, String tableName);
+
+    @Modifying
+    @Query("DELETE FROM TableMetadataEntity t WHERE t.databaseInfoId = :databaseInfoId")
+    void deleteByDatabaseInfoId(String databaseInfoId);
+}
@@ -34,6 +34,7 @@ public class DataBaseInfoService {
 
     private final DataBaseInfoRepository repository;
     private final DialectFactory dialectFactory;
+    private final TableSnapshotService tableSnapshotService;
 
     /**
      * Create a new database info record
@@ -82,6 +83,8 @@ public class DataBaseInfoService {
         existing.setExtraProperties(dto.extraProperties());
         
         DataBaseInfo saved = repository.save(existing);
+        // 连接信息可能已变更，关闭旧连接池，下次访问时按新配置重建
+        dialectFactory.invalidateCache(id);
         return DataBaseInfoDTO.fromEntity(saved);
     }
 
@@ -144,6 +147,8 @@ public class DataBaseInfoService {
             throw new CommonException("Database info not found with id: " + id);
         }
         repository.deleteById(id);
+        dialectFactory.invalidateCache(id);
+        tableSnapshotService.evictDataSource(id);
     }
 
     /**
@@ -5,6 +5,7 @@ import com.zwbd.dbcrawlerv4.datasource.dto.TableViewModel;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.SchemaMetadata;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.ColumnMetadata;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.DatabaseMetadata;
+import com.zwbd.dbcrawlerv4.datasource.dto.metadata.ExtendedMetrics;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.TableMetadata;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
@@ -17,6 +18,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.ui.freemarker.FreeMarkerTemplateUtils;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -135,11 +138,13 @@ public class DatabaseMetadataProcessor {
     private String formatCommentAndMetrics(ColumnMetadata column) {
         StringBuilder metrics = new StringBuilder();
         column.comment().ifPresent(metrics::append);
-        Optional.ofNullable(column.metrics()).ifPresent(m -> {
+        Optional.ofNullable(column.metrics()).flatMap(m -> m).ifPresent(m -> {
             String metricDetails = Stream.of(
-                            m.get().cardinality().map(v -> "基数（Cardinality）=" + v),
-                            m.get().uniquenessRate().map(v -> String.format("唯一性（Uniqueness）=%.2f%%", v * 100)),
-                            m.get().nullRate().map(v -> String.format("空值率（NullRate）=%.2f%%", v * 100))
+                            m.cardinality().map(v -> "基数（Cardinality）=" + v),
+                            m.uniquenessRate().map(v -> String.format("唯一性（Uniqueness）=%.2f%%", v * 100)),
+                            m.nullRate().map(v -> String.format("空值率（NullRate）=%.2f%%", v * 100)),
+                            m.numericMetrics().flatMap(this::formatNumericMetrics),
+                            m.categoricalMetrics().flatMap(this::formatCategoricalMetrics)
                     )
                     .flatMap(Optional::stream)
                     .collect(Collectors.joining(", "));
@@ -151,6 +156,39 @@ public class DatabaseMetadataProcessor {
         return metrics.toString();
     }
 
+    /**
+     * 数值分布：范围、中位数与等深直方图，例如 "范围（Range）=[1, 100], 中位数（Median）=42"
+     */
+    private Optional<String> formatNumericMetrics(ExtendedMetrics.NumericMetrics numeric) {
+        String details = Stream.of(
+                        numeric.min().flatMap(min -> numeric.max().map(max ->
+                                "范围（Range）=[" + min.toPlainString() + ", " + max.toPlainString() + "]")),
+                        numeric.median().map(v -> "中位数（Median）=" + formatDecimal(v)),
+                        numeric.histogram().filter(h -> !h.isEmpty()).map(h -> "分布（Histogram）=" + h.stream()
+                                .map(b -> "[" + formatDecimal(b.lowerBound()) + "~" + formatDecimal(b.upperBound()) + "]:" + b.count())
+                                .collect(Collectors.joining(" ")))
+                )
+                .flatMap(Optional::stream)
+                .collect(Collectors.joining(", "));
+        return details.isEmpty() ? Optional.empty() : Optional.of(details);
+    }
+
+    /**
+     * 高频值，例如 "高频值（TopValues）=ACTIVE(120), CLOSED(30)"
+     */
+    private Optional<String> formatCategoricalMetrics(ExtendedMetrics.CategoricalMetrics categorical) {
+        if (categorical.topNValues() == null || categorical.topNValues().isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of("高频值（TopValues）=" + categorical.topNValues().stream()
+                .map(v -> v.value() + "(" + v.count() + ")")
+                .collect(Collectors.joining(", ")));
+    }
+
+    private String formatDecimal(BigDecimal value) {
+        return value.setScale(Math.min(value.scale(), 4), RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+    }
+
     /**
      * 统一的模板处理方法
      *
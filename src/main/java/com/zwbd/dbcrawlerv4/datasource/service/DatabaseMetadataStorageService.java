@@ -2,20 +2,27 @@ package com.zwbd.dbcrawlerv4.datasource.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.DatabaseMetadata;
+import com.zwbd.dbcrawlerv4.datasource.dto.metadata.SchemaMetadata;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.TableMetadata;
 import com.zwbd.dbcrawlerv4.datasource.entity.DatabaseMetadataEntity;
+import com.zwbd.dbcrawlerv4.datasource.entity.TableMetadataEntity;
 import com.zwbd.dbcrawlerv4.datasource.repository.DatabaseMetadataRepository;
+import com.zwbd.dbcrawlerv4.datasource.repository.TableMetadataRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.Optional;
+import java.util.*;
 
 /**
  * @Author: wnli
  * @Date: 2025/9/26 14:46
- * @Desc:
+ * @Desc: 元数据按表拆分存储：DatabaseMetadataEntity 只保存数据库与 schema 层级的信息，
+ * 每个表单独一行存入 TableMetadataEntity，并在进程内缓存反序列化后的 TableMetadata。
  */
 @Service
 public class DatabaseMetadataStorageService {
@@ -23,56 +30,201 @@ public class DatabaseMetadataStorageService {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseMetadataStorageService.class);
 
     private final DatabaseMetadataRepository repository;
+    private final TableMetadataRepository tableRepository;
     private final ObjectMapper objectMapper;
 
-    public DatabaseMetadataStorageService(DatabaseMetadataRepository repository, ObjectMapper objectMapper) {
+    /**
+     * 单表元数据的 LRU 缓存，超过容量时淘汰最久未访问的条目。
+     */
+    private final Map<TableKey, TableMetadata> tableCache;
+
+    /**
+     * 缓存代数，每次淘汰时递增。查询开始后发生过淘汰的结果不写入缓存，避免把提交前读到的旧数据放回缓存。
+     */
+    private long cacheGeneration;
+
+    public DatabaseMetadataStorageService(DatabaseMetadataRepository repository,
+                                          TableMetadataRepository tableRepository,
+                                          ObjectMapper objectMapper,
+                                          @Value("${app.metadata.table-cache-size:2000}") int tableCacheSize) {
         this.repository = repository;
+        this.tableRepository = tableRepository;
         this.objectMapper = objectMapper;
+        this.tableCache = Collections.synchronizedMap(new LinkedHashMap<TableKey, TableMetadata>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TableKey, TableMetadata> eldest) {
+                return size() > tableCacheSize;
+            }
+        });
     }
 
     @Transactional
     public void save(String databaseInfoId, DatabaseMetadata metadata) {
         try {
-            String jsonContent = objectMapper.writeValueAsString(metadata);
+            // 1. 数据库层级只保留 schema 骨架，表内容拆分到单独的行中
+            List<SchemaMetadata> skeleton = metadata.catalogs().stream()
+                    .map(schema -> schema.withTables(List.of()))
+                    .toList();
+            String jsonContent = objectMapper.writeValueAsString(new DatabaseMetadata(
+                    metadata.databaseProductName(), metadata.databaseProductVersion(), skeleton, Map.of()));
             DatabaseMetadataEntity entity = repository.findByDatabaseInfoId(databaseInfoId)
                     .orElse(new DatabaseMetadataEntity());
             entity.setDatabaseInfoId(databaseInfoId);
             entity.setMetadataContent(jsonContent);
             repository.save(entity);
-            logger.info("Successfully saved DatabaseMetadata for ID: {}", databaseInfoId);
+
+            // 2. 全量替换该数据源下的表元数据
+            tableRepository.deleteByDatabaseInfoId(databaseInfoId);
+            Map<String, String> fingerprints = metadata.tableFingerprints() != null ? metadata.tableFingerprints() : Map.of();
+            List<TableMetadataEntity> tableEntities = new ArrayList<>();
+            for (SchemaMetadata schema : metadata.catalogs()) {
+                if (schema.tables() == null) {
+                    continue;
+                }
+                for (TableMetadata table : schema.tables()) {
+                    TableMetadataEntity tableEntity = new TableMetadataEntity();
+                    tableEntity.setDatabaseInfoId(databaseInfoId);
+                    tableEntity.setCatalogName(schema.catalogName());
+                    tableEntity.setSchemaName(normalize(schema.schemaName()));
+                    tableEntity.setTableName(normalize(table.tableName()));
+                    tableEntity.setOrdinal(tableEntities.size());
+                    tableEntity.setFingerprint(fingerprints.get(
+                            DatabaseMetadata.fingerprintKey(schema.catalogName(), schema.schemaName(), table.tableName())));
+                    tableEntity.setTableContent(objectMapper.writeValueAsString(table));
+                    tableEntities.add(tableEntity);
+                }
+            }
+            tableRepository.saveAll(tableEntities);
+            evictAfterCommit(databaseInfoId);
+            logger.info("Successfully saved DatabaseMetadata for ID: {}, tables: {}", databaseInfoId, tableEntities.size());
         } catch (Exception e) {
             logger.error("Failed to serialize DatabaseMetadata for ID: {}", databaseInfoId, e);
             throw new RuntimeException("Serialization failed for DatabaseMetadata", e);
         }
     }
 
+    /**
+     * 由数据库骨架与全部表行重新组装完整的 DatabaseMetadata。
+     */
     @Transactional(readOnly = true)
     public Optional<DatabaseMetadata> findById(String databaseInfoId) {
         return repository.findByDatabaseInfoId(databaseInfoId)
-                .flatMap(this::deserialize);
+                .flatMap(this::deserialize)
+                .map(skeleton -> assemble(databaseInfoId, skeleton));
     }
 
     /**
-     * 【新增】根據表名查找特定的表元數據。
-     * 該方法在內存中執行過濾。
+     * 根据表名查找特定的表元数据。
+     * 先查进程内缓存，未命中时只读取对应的一行；旧版本的记录没有表行，从 metadataContent 中查找。
      */
     @Transactional(readOnly = true)
     public Optional<TableMetadata> findTable(String databaseInfoId, String schemaName, String tableName) {
-        return findById(databaseInfoId)
-                .flatMap(dbMeta -> dbMeta.catalogs().stream()
-                        .filter(catalog -> catalog.schemaName().equalsIgnoreCase(schemaName))
-                        .flatMap(catalog -> catalog.tables().stream())
-                        .filter(table -> table.tableName().equalsIgnoreCase(tableName))
-                        .findFirst()
-                );
+        TableKey key = new TableKey(databaseInfoId, normalize(schemaName), normalize(tableName));
+        long generation;
+        synchronized (tableCache) {
+            TableMetadata cached = tableCache.get(key);
+            if (cached != null) {
+                return Optional.of(cached);
+            }
+            generation = cacheGeneration;
+        }
+        Optional<TableMetadata> table = tableRepository
+                .findByDatabaseInfoIdAndSchemaNameAndTableNameOrderByOrdinalAsc(key.databaseInfoId(), key.schemaName(), key.tableName())
+                .stream()
+                .findFirst()
+                .flatMap(this::deserialize)
+                .or(() -> findLegacyTable(key));
+        table.ifPresent(value -> {
+            synchronized (tableCache) {
+                if (cacheGeneration == generation) {
+                    tableCache.put(key, value);
+                }
+            }
+        });
+        return table;
+    }
+
+    /**
+     * 旧版本的记录把全部表内容保存在 metadataContent 中；新版本的骨架中表列表为空，不会命中。
+     */
+    private Optional<TableMetadata> findLegacyTable(TableKey key) {
+        return repository.findByDatabaseInfoId(key.databaseInfoId())
+                .flatMap(this::deserialize)
+                .flatMap(metadata -> metadata.catalogs().stream()
+                        .filter(schema -> schema.tables() != null && normalize(schema.schemaName()).equals(key.schemaName()))
+                        .flatMap(schema -> schema.tables().stream())
+                        .filter(table -> normalize(table.tableName()).equals(key.tableName()))
+                        .findFirst());
     }
 
     @Transactional
     public void deleteById(String databaseInfoId) {
         repository.deleteByDatabaseInfoId(databaseInfoId);
+        tableRepository.deleteByDatabaseInfoId(databaseInfoId);
+        evictAfterCommit(databaseInfoId);
         logger.info("Deleted DatabaseMetadata for ID: {}", databaseInfoId);
     }
 
+    private DatabaseMetadata assemble(String databaseInfoId, DatabaseMetadata skeleton) {
+        List<TableMetadataEntity> tableEntities = tableRepository.findByDatabaseInfoIdOrderByOrdinalAsc(databaseInfoId);
+        if (tableEntities.isEmpty()) {
+            // 旧版本的记录仍把全部表内容保存在 metadataContent 中，直接返回
+            return skeleton;
+        }
+        Map<String, List<TableMetadataEntity>> entitiesBySchema = new HashMap<>();
+        tableEntities.forEach(tableEntity -> entitiesBySchema
+                .computeIfAbsent(schemaKey(tableEntity.getCatalogName(), tableEntity.getSchemaName()), k -> new ArrayList<>())
+                .add(tableEntity));
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+        List<SchemaMetadata> schemas = new ArrayList<>();
+        for (SchemaMetadata schema : skeleton.catalogs()) {
+            List<TableMetadata> tables = new ArrayList<>();
+            for (TableMetadataEntity tableEntity : entitiesBySchema.getOrDefault(
+                    schemaKey(schema.catalogName(), normalize(schema.schemaName())), List.of())) {
+                deserialize(tableEntity).ifPresent(table -> {
+                    tables.add(table);
+                    if (tableEntity.getFingerprint() != null) {
+                        fingerprints.put(DatabaseMetadata.fingerprintKey(schema.catalogName(), schema.schemaName(), table.tableName()),
+                                tableEntity.getFingerprint());
+                    }
+                });
+            }
+            schemas.add(schema.withTables(tables));
+        }
+        return new DatabaseMetadata(skeleton.databaseProductName(), skeleton.databaseProductVersion(), schemas, fingerprints);
+    }
+
+    /**
+     * 事务提交后再淘汰缓存：提交前淘汰的话，并发的 findTable 可能读到旧行并放回缓存，提交后一直保留。
+     * 提交前也先淘汰一次，事务内的读取同样不会命中旧缓存；查询期间发生的淘汰由缓存代数判断。
+     */
+    private void evictAfterCommit(String databaseInfoId) {
+        evict(databaseInfoId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(databaseInfoId);
+                }
+            });
+        }
+    }
+
+    private void evict(String databaseInfoId) {
+        synchronized (tableCache) {
+            cacheGeneration++;
+            tableCache.keySet().removeIf(key -> key.databaseInfoId().equals(databaseInfoId));
+        }
+    }
+
+    private static String schemaKey(String catalogName, String schemaName) {
+        return catalogName + "." + schemaName;
+    }
+
+    private static String normalize(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
     private Optional<DatabaseMetadata> deserialize(DatabaseMetadataEntity entity) {
         try {
             return Optional.of(objectMapper.readValue(entity.getMetadataContent(), DatabaseMetadata.class));
@@ -81,4 +233,17 @@ public class DatabaseMetadataStorageService {
             return Optional.empty();
         }
     }
+
+    private Optional<TableMetadata> deserialize(TableMetadataEntity entity) {
+        try {
+            return Optional.of(objectMapper.readValue(entity.getTableContent(), TableMetadata.class));
+        } catch (Exception e) {
+            logger.error("Failed to deserialize TableMetadata {}.{} for ID: {}",
+                    entity.getSchemaName(), entity.getTableName(), entity.getDatabaseInfoId(), e);
+            return Optional.empty();
+        }
+    }
+
+    private record TableKey(String databaseInfoId, String schemaName, String tableName) {
+    }
 }
@@ -1,17 +1,15 @@
 package com.zwbd.dbcrawlerv4.datasource.service;
 
-import com.zaxxer.hikari.HikariDataSource;
+import com.zwbd.dbcrawlerv4.datasource.dialect.DialectFactory;
 import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseInfo;
 import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseType;
+import lombok.AllArgsConstructor;
 import org.jooq.DSLContext;
 import org.jooq.SQLDialect;
 import org.jooq.impl.DSL;
-import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @Author: wnli
@@ -21,11 +19,11 @@ import java.util.concurrent.ConcurrentHashMap;
  * 实现了无状态的 DSLContext 创建，屏蔽了底层 Driver 差异
  */
 @Component
+@AllArgsConstructor
 public class DynamicContextFactory {
 
-    // 简单缓存 DataSource，避免每次请求都重新建立连接池带来的开销
-    // 实际生产中建议使用 Guava Cache 或 Caffeine 设置过期时间
-    private final Map<Long, DataSource> dataSourceCache = new ConcurrentHashMap<>();
+    // 连接池统一由 DataSourcePoolRegistry 管理（只读、限流、空闲回收），与方言会话共用同一个连接池
+    private final DialectFactory dialectFactory;
 
     /**
      * 获取 JOOQ DSLContext (核心入口)
@@ -37,21 +35,7 @@ public class DynamicContextFactory {
     }
 
     private DataSource getOrCreateDataSource(DataBaseInfo dbInfo) {
-        // 使用数据库ID作为缓存Key
-        return dataSourceCache.computeIfAbsent(dbInfo.getId(), k -> {
-            HikariDataSource ds = DataSourceBuilder.create()
-                    .type(HikariDataSource.class)
-                    .url(dbInfo.getUrl())
-                    .username(dbInfo.getUsername())
-                    .password(dbInfo.getPassword())
-                    .build();
-
-            // 设置连接池参数，针对探查任务进行限流，防止拖垮业务库
-            ds.setMaximumPoolSize(5); // 限制最大连接数
-            ds.setConnectionTimeout(5000); // 快速失败
-            ds.setReadOnly(true); // 强制只读
-            return ds;
-        });
+        return dialectFactory.openSession(dbInfo).getDataSource();
     }
 
     private SQLDialect mapToJooqDialect(DataBaseType type) {
@@ -69,9 +53,6 @@ public class DynamicContextFactory {
      * 清理缓存（当数据源配置变更时调用）
      */
     public void invalidateCache(Long dbId) {
-        DataSource ds = dataSourceCache.remove(dbId);
-        if (ds instanceof HikariDataSource) {
-            ((HikariDataSource) ds).close();
-        }
+        dialectFactory.invalidateCache(dbId);
     }
 }
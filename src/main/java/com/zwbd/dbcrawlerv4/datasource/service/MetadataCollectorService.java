@@ -1,17 +1,25 @@
 package com.zwbd.dbcrawlerv4.datasource.service;
 
+import com.zwbd.dbcrawlerv4.common.config.DataSourcePoolConfig;
 import com.zwbd.dbcrawlerv4.common.config.TimeoutConfig;
 import com.zwbd.dbcrawlerv4.common.exception.CommonException;
 import com.zwbd.dbcrawlerv4.datasource.dialect.DataStreamContext;
 import com.zwbd.dbcrawlerv4.datasource.dialect.DatabaseDialect;
 import com.zwbd.dbcrawlerv4.datasource.dialect.DatabaseSession;
 import com.zwbd.dbcrawlerv4.datasource.dialect.DialectFactory;
+import com.zwbd.dbcrawlerv4.datasource.dialect.ParallelTableReader;
+import com.zwbd.dbcrawlerv4.datasource.dialect.TableScanSpec;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.*;
+import com.zwbd.dbcrawlerv4.datasource.entity.CrawlMode;
 import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseInfo;
 import com.zwbd.dbcrawlerv4.datasource.entity.ExecutionMode;
+import com.zwbd.dbcrawlerv4.monitor.service.TaskProgress;
+import com.zwbd.dbcrawlerv4.monitor.service.TaskProgressService;
+import com.zwbd.dbcrawlerv4.utils.CompiledTemplate;
 import com.zwbd.dbcrawlerv4.utils.TemplateRenderService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import javax.sql.DataSource;
@@ -19,10 +27,8 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 /**
@@ -42,6 +48,30 @@ public class MetadataCollectorService {
     private TimeoutConfig timeoutConfig;
     @Autowired
     private TemplateRenderService templateRenderService;
+    @Autowired
+    @Qualifier("metadataCrawlExecutor")
+    private ExecutorService crawlExecutor;
+    @Autowired
+    private DatabaseMetadataStorageService metadataStorageService;
+    @Autowired
+    private DataSourcePoolConfig poolConfig;
+    @Autowired
+    @Qualifier("tableReadExecutor")
+    private ExecutorService tableReadExecutor;
+    @Autowired
+    private TaskProgressService taskProgressService;
+
+    /**
+     * 单表采集的计时阶段
+     */
+    private static final String PHASE_DETAILS = "details";
+    private static final String PHASE_SAMPLING = "sampling";
+    private static final String PHASE_METRICS = "metrics";
+
+    /**
+     * 每个数据源一个信号量，限制同一数据源上同时处理的表数量（跨多个并发的采集任务共享）。
+     */
+    private final Map<Object, Semaphore> crawlPermits = new ConcurrentHashMap<>();
 
     /**
      * 异步采集指定数据源的元数据（使用默认的 AUTO 执行模式）。
@@ -53,6 +83,52 @@ public class MetadataCollectorService {
         return collectMetadata(dataBaseInfo, ExecutionMode.AUTO);
     }
 
+    /**
+     * 异步采集指定数据源的元数据（使用默认的并行采集模式）。
+     */
+    public CompletableFuture<DatabaseMetadata> collectMetadata(DataBaseInfo dataBaseInfo, ExecutionMode mode) {
+        return collectMetadata(dataBaseInfo, mode, CrawlMode.PARALLEL);
+    }
+
+    /**
+     * 增量采集：读取上一次保存的元数据，变更指纹未变化的表直接复用已保存的 {@link TableMetadata}，
+     * 只对新增或发生变化的表重新执行 getTableDetails 与指标计算。没有历史结果时等同于全量采集。
+     *
+     * @param dataBaseInfo 目标数据源，必须包含 id（历史结果按 id 存储）。
+     */
+    public CompletableFuture<DatabaseMetadata> collectMetadataIncrementally(DataBaseInfo dataBaseInfo, ExecutionMode mode) {
+        return collectMetadataIncrementally(dataBaseInfo, mode, startCollectionTask(dataBaseInfo));
+    }
+
+    /**
+     * 增量采集，进度记录到调用方创建的任务中（见 {@link #startCollectionTask}）。
+     */
+    public CompletableFuture<DatabaseMetadata> collectMetadataIncrementally(DataBaseInfo dataBaseInfo, ExecutionMode mode, TaskProgress progress) {
+        DatabaseMetadata previous = metadataStorageService.findById(String.valueOf(dataBaseInfo.getId())).orElse(null);
+        return collectMetadata(dataBaseInfo, mode, CrawlMode.PARALLEL, previous, progress, metadata -> {
+        });
+    }
+
+    /**
+     * 采集并保存元数据。保存在任务完成之前执行，保存失败时任务标记为失败。
+     *
+     * @param incremental 是否增量采集，见 {@link #collectMetadataIncrementally}
+     */
+    public CompletableFuture<DatabaseMetadata> collectAndSave(DataBaseInfo dataBaseInfo, boolean incremental, ExecutionMode mode, TaskProgress progress) {
+        String id = String.valueOf(dataBaseInfo.getId());
+        DatabaseMetadata previous = incremental ? metadataStorageService.findById(id).orElse(null) : null;
+        return collectMetadata(dataBaseInfo, mode, CrawlMode.PARALLEL, previous, progress,
+                metadata -> metadataStorageService.save(id, metadata));
+    }
+
+    /**
+     * 为一次元数据采集登记进度任务。调用方先拿到任务 ID 再发起采集，即可通过 /api/tasks 查询进度、取消或跳过慢表。
+     */
+    public TaskProgress startCollectionTask(DataBaseInfo dataBaseInfo) {
+        return taskProgressService.startTask(TaskProgressService.TYPE_DATABASE_ANALYSIS,
+                "Analyzing database: " + dataBaseInfo.getDatabaseName());
+    }
+
     public List<String> getSchemas(DataBaseInfo dbInfo) {
         DatabaseSession session = dialectFactory.openSession(dbInfo);
         return session.execute(DatabaseDialect::getSchemaNames);
@@ -69,21 +145,58 @@ public class MetadataCollectorService {
     }
 
     public DataStreamContext<String> openDataStream(DataBaseInfo dbInfo, String schema, String tableName, String template) {
-        try (DataStreamContext<Map<String, Object>> context = openDataStream(dbInfo, schema, tableName)){
-            Stream<String> stream = context.getStream().map(stringObjectMap -> templateRenderService.render(template, stringObjectMap));
-            return new DataStreamContext<>(stream, context);
-        }
+        return openDataStream(dbInfo, schema, tableName, template, 1, true);
+    }
+
+    /**
+     * 打开按模板渲染的表数据流。
+     *
+     * @param readParallelism 并行读取的区间数，大于 1 时按整数主键切分并在多个连接上同时读取，
+     *                        上限为单个数据源连接池大小减一
+     * @param orderedRead     并行读取时是否按主键顺序输出，false 时按到达顺序输出，吞吐更高
+     */
+    public DataStreamContext<String> openDataStream(DataBaseInfo dbInfo, String schema, String tableName, String template,
+                                                    int readParallelism, boolean orderedRead) {
+        TableScanSpec spec = TableScanSpec.builder().schema(schema).tableName(tableName).build();
+        return openDataStream(dbInfo, spec, template, readParallelism, orderedRead);
     }
 
-    private DataStreamContext<Map<String, Object>> openDataStream(DataBaseInfo dbInfo, String schema, String tableName) {
+    /**
+     * 打开按模板渲染的表数据流，只读取模板引用到的列，spec 中的过滤条件与行数限制下推到源库。
+     */
+    public DataStreamContext<String> openDataStream(DataBaseInfo dbInfo, TableScanSpec spec, String template,
+                                                    int readParallelism, boolean orderedRead) {
+        DataStreamContext<Map<String, Object>> context =
+                openRowStream(dbInfo, withTemplateProjection(dbInfo, spec, template), readParallelism, orderedRead);
+        // 模版只编译一次，逐行按列下标渲染
+        CompiledTemplate compiledTemplate = templateRenderService.compile(template);
+        Stream<String> stream = context.getStream().map(compiledTemplate::render);
+        return new DataStreamContext<>(stream, context);
+    }
+
+    /**
+     * 按 {@link TableScanSpec} 打开原始行数据流，可指定键集游标（afterKey）从断点继续读取。
+     * 调用方负责关闭返回的上下文以释放连接。
+     */
+    public DataStreamContext<Map<String, Object>> openRowStream(DataBaseInfo dbInfo, TableScanSpec spec,
+                                                                int readParallelism, boolean orderedRead) {
         DatabaseSession session = dialectFactory.openSession(dbInfo);
+        int parallelism = Math.min(readParallelism, poolConfig.getMaxPoolSizePerSource() - 1);
+        // 行数限制作用于单条查询，分段并行时无法保证总数，改为单路读取
+        if (spec.getLimit() != null) {
+            parallelism = 1;
+        }
+        if (parallelism > 1) {
+            return new ParallelTableReader(session, tableReadExecutor, parallelism, orderedRead).open(spec);
+        }
         Connection connection = null;
         try {
             connection = session.getDataSource().getConnection();
-            Stream<Map<String, Object>> stream = session.getDialect().streamTableData(connection, schema, tableName);
+            Stream<Map<String, Object>> stream = session.getDialect().streamTableData(connection, spec);
+            Connection finalConnection = connection;
             return new DataStreamContext<>(stream, () -> {
-//                System.out.println("Stream consumed. Closing connection.");
-//                finalConnection.close();
+                stream.close();
+                finalConnection.close();
             });
         } catch (Exception e) {
             if (connection != null) {
@@ -97,14 +210,88 @@ public class MetadataCollectorService {
         }
     }
 
-    public CompletableFuture<DatabaseMetadata> collectMetadata(DataBaseInfo dataBaseInfo, ExecutionMode mode) {
+    /**
+     * 按模板中的占位符裁剪查询列：只保留模板引用且表中真实存在的列，避免在宽表上读取用不到的 TEXT / BLOB 列。
+     * 模板没有引用任何已知列时保持 SELECT *。
+     */
+    public TableScanSpec withTemplateProjection(DataBaseInfo dbInfo, TableScanSpec spec, String template) {
+        Set<String> placeholders = templateRenderService.extractPlaceholders(template);
+        if (placeholders.isEmpty()) {
+            return spec;
+        }
+        List<String> projection = getColumns(dbInfo, spec.getSchema(), spec.getTableName()).stream()
+                .filter(placeholders::contains)
+                .toList();
+        if (projection.isEmpty()) {
+            return spec;
+        }
+        log.debug("Projecting {}.{} to columns {}", spec.getSchema(), spec.getTableName(), projection);
+        return spec.toBuilder().columns(projection).build();
+    }
+
+    /**
+     * 查找表的单列整数主键，可用于键集游标与区间切分。
+     */
+    public Optional<String> findIntegerPrimaryKey(DataBaseInfo dbInfo, String schema, String tableName) {
+        DatabaseSession session = dialectFactory.openSession(dbInfo);
+        return session.execute((dialect, connection) -> dialect.findIntegerPrimaryKey(connection, schema, tableName));
+    }
+
+    /**
+     * 查询单个表当前的变更指纹，只查询这一个表；数据库不提供指纹（视图、缺少统计信息或方言不支持）或查询失败时返回空。
+     */
+    public Optional<String> getTableFingerprint(DataBaseInfo dbInfo, String schema, String tableName) {
+        DatabaseSession session = dialectFactory.openSession(dbInfo);
+        return session.execute((dialect, connection) -> {
+            try {
+                return dialect.getTableFingerprint(connection, connection.getCatalog(), schema, tableName);
+            } catch (SQLException e) {
+                log.warn("Failed to read fingerprint of {}.{}: {}", schema, tableName, e.getMessage());
+                return Optional.empty();
+            }
+        });
+    }
+
+    /**
+     * 异步采集指定数据源的元数据。
+     *
+     * @param dataBaseInfo 目标数据源。
+     * @param mode         指标计算的执行模式。
+     * @param crawlMode    表级任务的调度方式，PARALLEL 模式下按 maxConcurrentTasks 限制单个数据源的并发度。
+     */
+    public CompletableFuture<DatabaseMetadata> collectMetadata(DataBaseInfo dataBaseInfo, ExecutionMode mode, CrawlMode crawlMode) {
+        return collectMetadata(dataBaseInfo, mode, crawlMode, startCollectionTask(dataBaseInfo));
+    }
+
+    /**
+     * 异步采集元数据，进度记录到调用方创建的任务中（见 {@link #startCollectionTask}）。
+     */
+    public CompletableFuture<DatabaseMetadata> collectMetadata(DataBaseInfo dataBaseInfo, ExecutionMode mode, CrawlMode crawlMode, TaskProgress progress) {
+        return collectMetadata(dataBaseInfo, mode, crawlMode, null, progress, metadata -> {
+        });
+    }
+
+    /**
+     * @param previous 上一次采集的结果，为 null 时执行全量采集；否则指纹一致的表直接复用其中的结果。
+     * @param progress 进度任务：每个表一个步骤，记录 details / sampling / metrics 各阶段耗时；
+     *                 任务被取消时不再开始新的表，并取消正在执行的语句
+     * @param onCollected 采集完成、任务标记为完成之前执行，抛出异常时任务失败
+     */
+    private CompletableFuture<DatabaseMetadata> collectMetadata(DataBaseInfo dataBaseInfo, ExecutionMode mode, CrawlMode crawlMode,
+                                                                DatabaseMetadata previous, TaskProgress progress,
+                                                                Consumer<DatabaseMetadata> onCollected) {
+        Map<String, String> previousFingerprints = previous != null && previous.tableFingerprints() != null
+                ? previous.tableFingerprints() : Map.of();
+        Map<String, TableMetadata> previousTables = indexTables(previous);
         CompletableFuture<DatabaseMetadata> future = CompletableFuture.supplyAsync(() -> {
 
             // 1. 获取会话 (自动处理 DataSource 和 Dialect 的匹配)
             DatabaseSession databaseSession = dialectFactory.openSession(dataBaseInfo);
 
             // 2. 在会话中执行 (自动管理 Connection 关闭，无需手动 try-catch-close)
-            return databaseSession.execute((dialect, connection) -> {
+            DatabaseMetadata collected = databaseSession.execute((dialect, sessionConnection) -> {
+                // 登记主连接上的语句，取消任务时一并中断
+                Connection connection = progress.track(sessionConnection);
                 // 获取基础信息
                 DatabaseMetaData metaData = connection.getMetaData();
                 String dbProductName = metaData.getDatabaseProductName();
@@ -114,8 +301,10 @@ public class MetadataCollectorService {
                 List<String> catalogNames = dialect.getSchemaNames(connection);
                 log.info("get catalogs: {}", catalogNames);
                 List<SchemaMetadata> processedCatalogs = new ArrayList<>(List.of());
+                Map<String, String> fingerprints = new LinkedHashMap<>();
                 // 开始遍历
                 catalogNames.forEach(catalog -> {
+                    progress.checkCancelled();
                     try {
                         //设置上下文
                         connection.setCatalog(catalog);
@@ -124,27 +313,62 @@ public class MetadataCollectorService {
                         List<SchemaMetadata> schemas = dialect.getSchemas(connection);
                         log.info("get schemas: {}", schemas);
                         schemas.forEach(schemaMetadata -> {
+                            progress.checkCancelled();
                             try {
+                                String schemaName = schemaMetadata.schemaName();
+                                progress.updateMessage("Listing tables of " + catalog + "." + schemaName);
                                 // 获取该schema下的所有表
-                                List<TableMetadata> tablesInSchema = dialect.getTablesForSchema(
-                                        connection, catalog, schemaMetadata.schemaName());
+                                List<TableMetadata> tablesInSchema = dialect.getTablesForSchema(connection, catalog, schemaName);
                                 log.info("get tables in schema: {}", tablesInSchema);
-                                // 处理每个表，获取其详细元数据和指标!!!!禁止并发执行
-                                List<TableMetadata> processedTables = tablesInSchema.stream()
-                                        .map(tableInfo -> {
-                                            try {
-                                                log.debug("handle table: {}", tableInfo.tableName());
-                                                return processTable(databaseSession.getDataSource(), dialect, catalog, tableInfo, mode);
-                                            } catch (SQLException e) {
-                                                log.error("handle table {} error", tableInfo, e);
-                                                return null;
-                                            }
-                                        })
+                                // 无论是否增量都记录指纹，供下一次增量采集使用
+                                Map<String, String> currentFingerprints = getTableFingerprints(dialect, connection, catalog, schemaName);
+                                // 指纹未变化的表直接复用上次结果，其余表重新采集
+                                Map<String, TableMetadata> reused = new HashMap<>();
+                                List<TableMetadata> tablesToCrawl = new ArrayList<>();
+                                for (TableMetadata tableInfo : tablesInSchema) {
+                                    String key = DatabaseMetadata.fingerprintKey(catalog, schemaName, tableInfo.tableName());
+                                    String fingerprint = currentFingerprints.get(tableInfo.tableName());
+                                    TableMetadata previousTable = previousTables.get(key);
+                                    if (fingerprint != null && previousTable != null && fingerprint.equals(previousFingerprints.get(key))) {
+                                        reused.put(tableInfo.tableName(), previousTable);
+                                    } else {
+                                        tablesToCrawl.add(tableInfo);
+                                    }
+                                }
+                                if (previous != null) {
+                                    log.info("schema {}.{}: {} tables unchanged, {} tables to crawl", catalog, schemaName, reused.size(), tablesToCrawl.size());
+                                }
+                                progress.addTotalSteps(tablesInSchema.size());
+                                progress.addCompletedSteps(reused.size());
+                                // 整个 schema 的列信息一次取回，避免逐表查询列元数据
+                                tablesToCrawl = prefetchColumns(dialect, connection, catalog, schemaName, tablesToCrawl);
+                                // 处理每个表，获取其详细元数据和指标。每个表使用独立连接，不与当前会话连接共享
+                                List<TableMetadata> crawledTables = crawlMode == CrawlMode.PARALLEL
+                                        ? processTablesInParallel(dataBaseInfo, databaseSession.getDataSource(), dialect, catalog, schemaName, tablesToCrawl, mode, progress)
+                                        : tablesToCrawl.stream()
+                                        .takeWhile(tableInfo -> !progress.isCancelled())
+                                        .map(tableInfo -> processTableQuietly(databaseSession.getDataSource(), dialect, catalog, schemaName, tableInfo, mode, progress))
                                         .filter(Objects::nonNull)
                                         .toList();
+                                progress.checkCancelled();
+                                Map<String, TableMetadata> crawled = new HashMap<>();
+                                crawledTables.forEach(table -> crawled.put(table.tableName(), table));
+                                // 按原始表顺序合并复用与新采集的结果，处理失败的表不记录指纹，下次会重试
+                                List<TableMetadata> processedTables = new ArrayList<>(tablesInSchema.size());
+                                for (TableMetadata tableInfo : tablesInSchema) {
+                                    TableMetadata table = reused.getOrDefault(tableInfo.tableName(), crawled.get(tableInfo.tableName()));
+                                    if (table == null) {
+                                        continue;
+                                    }
+                                    processedTables.add(table);
+                                    String fingerprint = currentFingerprints.get(tableInfo.tableName());
+                                    if (fingerprint != null) {
+                                        fingerprints.put(DatabaseMetadata.fingerprintKey(catalog, schemaName, tableInfo.tableName()), fingerprint);
+                                    }
+                                }
                                 log.info("processed tables: {}", processedTables.size());
                                 // 返回包含处理后表信息的catalog
-                                processedCatalogs.add(schemaMetadata.withTables(processedTables));
+                                processedCatalogs.add(schemaMetadata.withTables(processedTables).withCatalogName(catalog));
                             } catch (SQLException e) {
                                 throw new RuntimeException("handle schema '" + schemaMetadata.getSchemaName() + "' error ", e);
                             }
@@ -155,12 +379,24 @@ public class MetadataCollectorService {
                         throw new RuntimeException("Handle schema '" + catalog + "' error", e);
                     }
                 });
-                return new DatabaseMetadata(dbProductName, dbProductVersion, processedCatalogs);
+                return new DatabaseMetadata(dbProductName, dbProductVersion, processedCatalogs, fingerprints);
             });
+            onCollected.accept(collected);
+            return collected;
         }, executorService);
 
-        // 超时与异常处理 (保持原有逻辑)
+        // 超时与异常处理 (保持原有逻辑)，超时后取消任务以中断仍在源库执行的语句
         return future.orTimeout(timeoutConfig.getTaskTimeoutMinutes(), TimeUnit.MINUTES)
+                .whenComplete((result, throwable) -> {
+                    if (throwable == null) {
+                        progress.complete("Collected " + progress.getCompletedSteps().get() + " tables");
+                    } else if (throwable instanceof TimeoutException) {
+                        progress.cancel();
+                    } else {
+                        Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
+                        progress.fail(cause.getMessage());
+                    }
+                })
                 .exceptionally(throwable -> {
                     if (throwable instanceof TimeoutException) {
                         log.error("Metadata collection timed out for DB: {}", dataBaseInfo.getDatabaseName());
@@ -175,15 +411,160 @@ public class MetadataCollectorService {
     }
 
     /**
-     * 处理单个表的完整流程：获取详情、计算指标、然后将两者合并。
+     * 将一个 schema 下的表分发到采集线程池中并行处理。
+     * 提交前先获取数据源级的许可，保证同一数据源同时处理的表不超过 maxConcurrentTasks；
+     * 结果按原始表顺序收集，失败的表与串行模式一样被跳过。
+     */
+    private List<TableMetadata> processTablesInParallel(DataBaseInfo dataBaseInfo, DataSource dataSource, DatabaseDialect dialect,
+                                                        String catalog, String schemaName, List<TableMetadata> tables, ExecutionMode mode,
+                                                        TaskProgress progress) {
+        // 采集任务本身占用一个连接，并发度不能超过连接池剩余的连接数，否则工作线程会阻塞在获取连接上
+        int parallelism = Math.min(timeoutConfig.getMaxConcurrentTasks(), poolConfig.getMaxPoolSizePerSource() - 1);
+        Semaphore permits = crawlPermits.computeIfAbsent(permitKey(dataBaseInfo),
+                key -> new Semaphore(Math.max(1, parallelism)));
+        List<CompletableFuture<TableMetadata>> futures = new ArrayList<>(tables.size());
+        try {
+            for (TableMetadata tableInfo : tables) {
+                permits.acquire();
+                if (progress.isCancelled()) {
+                    permits.release();
+                    break;
+                }
+                try {
+                    futures.add(CompletableFuture
+                            .supplyAsync(() -> processTableQuietly(dataSource, dialect, catalog, schemaName, tableInfo, mode, progress), crawlExecutor)
+                            .whenComplete((result, error) -> permits.release()));
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new CommonException("Metadata crawl interrupted", e);
+        }
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * 批量获取 schema 下所有表的列信息并填充到待采集的表中，getTableDetails 会跳过已有列信息的表的列查询。
+     * 批量查询失败或方言不支持时原样返回，由 getTableDetails 逐表查询。
+     */
+    private List<TableMetadata> prefetchColumns(DatabaseDialect dialect, Connection connection, String catalog, String schemaName,
+                                                List<TableMetadata> tables) {
+        if (tables.isEmpty()) {
+            return tables;
+        }
+        Map<String, List<ColumnMetadata>> columnsByTable;
+        try {
+            columnsByTable = dialect.getColumnsForSchema(connection, catalog, schemaName);
+        } catch (SQLException e) {
+            log.warn("Failed to fetch columns for schema {}.{}, falling back to per-table queries: {}", catalog, schemaName, e.getMessage());
+            return tables;
+        }
+        if (columnsByTable.isEmpty()) {
+            return tables;
+        }
+        log.info("prefetched columns of {} tables in schema {}.{}", columnsByTable.size(), catalog, schemaName);
+        return tables.stream()
+                .map(table -> {
+                    List<ColumnMetadata> columns = columnsByTable.get(table.tableName());
+                    return columns != null ? table.withColumns(columns) : table;
+                })
+                .toList();
+    }
+
+    /**
+     * 指纹查询失败（如缺少系统视图权限）不影响采集，只是这些表下次无法增量复用。
+     */
+    private Map<String, String> getTableFingerprints(DatabaseDialect dialect, Connection connection, String catalog, String schemaName) {
+        try {
+            return dialect.getTableFingerprints(connection, catalog, schemaName);
+        } catch (SQLException e) {
+            log.warn("Failed to read table fingerprints for {}.{}, incremental reuse disabled: {}", catalog, schemaName, e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /**
+     * 以指纹 Key 索引上一次采集的所有表，旧版本保存的结果没有 catalogName，无法定位，返回空索引。
      */
-    private TableMetadata processTable(DataSource dataSource, DatabaseDialect dialect, String catalog, TableMetadata tableInfo, ExecutionMode mode) throws SQLException {
-        try (Connection connection = dataSource.getConnection()) {
+    private Map<String, TableMetadata> indexTables(DatabaseMetadata previous) {
+        if (previous == null || previous.catalogs() == null) {
+            return Map.of();
+        }
+        Map<String, TableMetadata> index = new HashMap<>();
+        for (SchemaMetadata schema : previous.catalogs()) {
+            if (schema.catalogName() == null || schema.tables() == null) {
+                continue;
+            }
+            schema.tables().forEach(table ->
+                    index.put(DatabaseMetadata.fingerprintKey(schema.catalogName(), schema.schemaName(), table.tableName()), table));
+        }
+        return index;
+    }
+
+    private Object permitKey(DataBaseInfo dataBaseInfo) {
+        // 未持久化的数据源（如预览请求）没有 id，退化为按连接地址区分
+        return dataBaseInfo.getId() != null ? dataBaseInfo.getId() : dataBaseInfo.getUrl();
+    }
+
+    /**
+     * 处理单个表，失败、被跳过或任务已取消时返回 null，该表不会进入结果也不会记录指纹。
+     */
+    private TableMetadata processTableQuietly(DataSource dataSource, DatabaseDialect dialect, String catalog, String schemaName,
+                                              TableMetadata tableInfo, ExecutionMode mode, TaskProgress progress) {
+        TaskProgress.Step step = progress.startStep(DatabaseMetadata.fingerprintKey(catalog, schemaName, tableInfo.tableName()));
+        if (step == null) {
+            log.info("skip table: {}", tableInfo.tableName());
+            return null;
+        }
+        try {
+            log.debug("handle table: {}", tableInfo.tableName());
+            TableMetadata table = processTable(dataSource, dialect, catalog, tableInfo, mode, step);
+            step.complete();
+            return table;
+        } catch (SQLException | RuntimeException e) {
+            // 跳过或取消会中断正在执行的语句，由此产生的异常不视为采集失败
+            if (step.isSkipRequested()) {
+                log.info("table {} skipped", tableInfo.tableName());
+                step.skip();
+                return null;
+            }
+            step.fail(e.getMessage());
+            if (progress.isCancelled()) {
+                return null;
+            }
+            if (e instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            log.error("handle table {} error", tableInfo, e);
+            return null;
+        }
+    }
+
+    /**
+     * 处理单个表的完整流程：获取详情、采样（CATALOG_STATS 模式跳过）、计算指标、然后将三者合并。各阶段耗时记录在 step 中。
+     */
+    private TableMetadata processTable(DataSource dataSource, DatabaseDialect dialect, String catalog, TableMetadata tableInfo, ExecutionMode mode,
+                                       TaskProgress.Step step) throws SQLException {
+        try (Connection connection = step.track(dataSource.getConnection())) {
             // 设置此连接的上下文
             connection.setCatalog(catalog);
-            // 步骤 a: 获取表的详情（包括Schema和数据样本）
+            // 步骤 a: 获取表的详情（列信息与行数）
+            step.phase(PHASE_DETAILS);
             TableMetadata tableDetails = dialect.getTableDetails(connection, tableInfo);
             log.info("process table: {} rowCount: {}", tableDetails.tableName(), tableDetails.rowCount());
+            // 步骤 a2: 获取数据样本；CATALOG_STATS 模式只读取优化器统计信息，不读取用户数据
+            if (mode != ExecutionMode.CATALOG_STATS) {
+                step.phase(PHASE_SAMPLING);
+                tableDetails = tableDetails.withSampleData(dialect.getTableSample(connection, tableDetails));
+            }
+            step.phase(PHASE_METRICS);
             // 步骤 b: 根据指定的模式计算扩展指标，跳过空表
             Map<String, ExtendedMetrics> metricsMap;
             if (tableDetails.rowCount() == 0 && tableDetails.sampleData().orElseGet(List::of).isEmpty()) {
@@ -1,14 +1,13 @@
 package com.zwbd.dbcrawlerv4.datasource.service;
 
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.ExtendedMetrics;
+import com.zwbd.dbcrawlerv4.datasource.profile.ColumnProfiler;
 import org.jooq.DSLContext;
 import org.jooq.Field;
 import org.jooq.Table;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
 
 /**
  * @Author: wnli
@@ -57,28 +56,14 @@ public class SampledMetricsStrategy implements MetricsStrategy {
     }
 
     private ExtendedMetrics computeInMemory(List<?> samples) {
-        long total = samples.size();
-        if (total == 0) {
+        if (samples.isEmpty()) {
             return emptyMetrics();
         }
-
-        // 计算空值
-        long nonNullCount = samples.stream().filter(Objects::nonNull).count();
-        double nullRate = (double) (total - nonNullCount) / total;
-
-        // 计算基数 (Cardinality) - 仅代表样本内的基数
-        long distinctCount = samples.stream().filter(Objects::nonNull).distinct().count();
-        double uniquenessRate = (double) distinctCount / total;
-
-        // 这里仅计算基础指标，数值分布等复杂指标可在此扩展
-        return new ExtendedMetrics(
-                Optional.of(nullRate),
-                Optional.of(uniquenessRate),
-                Optional.of(distinctCount),
-                Optional.empty(),
-                Optional.empty(),
-                ExtendedMetrics.MetricSource.SAMPLED
-        );
+        // 与流式画像共用单遍统计器：空值率、基数、数值分布、等深直方图与高频值（Top-K）
+        // 高频值在样本内统计，无需在源库对每一列执行 GROUP BY
+        ColumnProfiler profiler = new ColumnProfiler();
+        samples.forEach(profiler::accept);
+        return profiler.toMetrics(ExtendedMetrics.MetricSource.SAMPLED);
     }
 
     private ExtendedMetrics emptyMetrics() {
@@ -0,0 +1,264 @@
+package com.zwbd.dbcrawlerv4.datasource.service;
+
+import com.zwbd.dbcrawlerv4.common.exception.CommonException;
+import com.zwbd.dbcrawlerv4.datasource.dialect.DataStreamContext;
+import com.zwbd.dbcrawlerv4.datasource.dialect.TableScanSpec;
+import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseInfo;
+import com.zwbd.dbcrawlerv4.datasource.snapshot.ColumnarSnapshot;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/6 11:05
+ * @Desc: 虚拟数据库文档的本地快照缓存。
+ * 同一个读取范围（数据源、表、投影列、过滤条件、行数限制、主键排序）第一次读取时从源库完整读取一次，
+ * 写入 upload-dir/snapshots 下的 {@link ColumnarSnapshot} 文件，之后的读取直接顺序读取本地文件，不再访问源库。
+ * 快照以表的变更指纹为版本：指纹变化后自动重建并删除旧版本；表没有指纹时无法判断数据是否变化，始终读取源库。
+ * 快照文件名以数据源与表为前缀，删除文档或数据源时按前缀删除；此外按最近访问时间淘汰：
+ * 超过 app.snapshot.ttl-hours 未读取的快照被删除，总大小超过 app.snapshot.max-bytes 时从最久未读取的开始删除。
+ */
+@Slf4j
+@Service
+public class TableSnapshotService {
+
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    @Autowired
+    private MetadataCollectorService metadataCollectorService;
+
+    private final Path snapshotLocation;
+
+    /**
+     * 快照目录的总大小上限
+     */
+    @Value("${app.snapshot.max-bytes:10737418240}")
+    private long maxBytes;
+
+    /**
+     * 快照最近一次读取后保留的小时数
+     */
+    @Value("${app.snapshot.ttl-hours:168}")
+    private long ttlHours;
+
+    /**
+     * 同一读取范围的快照只由一个线程生成，其他线程等待后直接读取
+     */
+    private final Map<String, Object> materializeLocks = new ConcurrentHashMap<>();
+
+    public TableSnapshotService(@Value("${file.upload-dir}") String uploadDir) {
+        this.snapshotLocation = Paths.get(uploadDir, "snapshots").toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.snapshotLocation);
+        } catch (IOException ex) {
+            throw new RuntimeException("无法创建快照目录。", ex);
+        }
+    }
+
+    /**
+     * 按 {@link TableScanSpec} 打开行数据流，优先读取与当前表指纹一致的本地快照，不存在时先生成快照。
+     * 参数含义与 {@link MetadataCollectorService#openRowStream} 相同，并行度只影响生成快照时的源库读取。
+     */
+    public DataStreamContext<Map<String, Object>> openRowStream(DataBaseInfo dbInfo, TableScanSpec spec,
+                                                                int readParallelism, boolean orderedRead) {
+        Optional<String> fingerprint = dbInfo.getId() != null
+                ? metadataCollectorService.getTableFingerprint(dbInfo, spec.getSchema(), spec.getTableName())
+                : Optional.empty();
+        if (fingerprint.isEmpty()) {
+            log.debug("No fingerprint for {}.{}, reading from source", spec.getSchema(), spec.getTableName());
+            return metadataCollectorService.openRowStream(dbInfo, spec, readParallelism, orderedRead);
+        }
+        String scanKey = scanKey(dbInfo, spec);
+        Path snapshot = snapshotLocation.resolve(scanKey + "-" + sha256(fingerprint.get()).substring(0, 16) + SNAPSHOT_SUFFIX);
+        try {
+            return open(dbInfo, spec, readParallelism, orderedRead, scanKey, snapshot);
+        } catch (NoSuchFileException e) {
+            // 快照在检查与打开之间被淘汰，重新生成一次
+            log.debug("Snapshot {} was evicted before opening, recreating", snapshot.getFileName());
+            try {
+                return open(dbInfo, spec, readParallelism, orderedRead, scanKey, snapshot);
+            } catch (IOException ex) {
+                throw new CommonException("Failed to open snapshot " + snapshot.getFileName(), ex);
+            }
+        } catch (IOException e) {
+            throw new CommonException("Failed to open snapshot " + snapshot.getFileName(), e);
+        }
+    }
+
+    private DataStreamContext<Map<String, Object>> open(DataBaseInfo dbInfo, TableScanSpec spec, int readParallelism,
+                                                        boolean orderedRead, String scanKey, Path snapshot) throws IOException {
+        synchronized (materializeLocks.computeIfAbsent(scanKey, key -> new Object())) {
+            if (!Files.exists(snapshot)) {
+                materialize(dbInfo, spec, readParallelism, orderedRead, scanKey, snapshot);
+            }
+            // 修改时间记录最近一次读取，用于淘汰
+            Files.setLastModifiedTime(snapshot, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+        Stream<Map<String, Object>> stream = ColumnarSnapshot.read(snapshot);
+        return new DataStreamContext<>(stream, stream::close);
+    }
+
+    /**
+     * 删除数据源的全部快照，数据源删除时调用
+     */
+    public void evictDataSource(Long dataBaseInfoId) {
+        deleteMatching(dataBaseInfoId + "-*");
+    }
+
+    /**
+     * 删除某个表的全部快照，文档删除时调用。同一个表的其他文档下次读取时重新生成快照。
+     */
+    public void evictTable(Long dataBaseInfoId, String schema, String tableName) {
+        deleteMatching(tablePrefix(dataBaseInfoId, schema, tableName) + "-*");
+    }
+
+    /**
+     * 启动时清理上次运行遗留的临时文件，并按访问时间与总大小淘汰快照
+     */
+    @PostConstruct
+    public void cleanUp() {
+        deleteMatching("*" + SNAPSHOT_SUFFIX + TEMP_SUFFIX);
+        enforceLimits(null);
+    }
+
+    /**
+     * 从源库完整读取一次写入临时文件，完成后原子替换为正式快照，并删除同一读取范围的旧版本。
+     */
+    private void materialize(DataBaseInfo dbInfo, TableScanSpec spec, int readParallelism, boolean orderedRead,
+                             String scanKey, Path snapshot) {
+        Path temp = snapshotLocation.resolve(snapshot.getFileName() + TEMP_SUFFIX);
+        long start = System.currentTimeMillis();
+        try (DataStreamContext<Map<String, Object>> context =
+                     metadataCollectorService.openRowStream(dbInfo, spec, readParallelism, orderedRead)) {
+            long rows = ColumnarSnapshot.write(temp, context.getStream());
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Created snapshot of {}.{} with {} rows ({} bytes) in {}ms", spec.getSchema(), spec.getTableName(),
+                    rows, Files.size(snapshot), System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(temp);
+            throw new CommonException("Failed to create snapshot of " + spec.getSchema() + "." + spec.getTableName(), e);
+        }
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(snapshotLocation, scanKey + "-*" + SNAPSHOT_SUFFIX)) {
+            for (Path path : stale) {
+                if (!path.equals(snapshot)) {
+                    deleteQuietly(path);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to clean up stale snapshots of {}.{}: {}", spec.getSchema(), spec.getTableName(), e.getMessage());
+        }
+        enforceLimits(snapshot);
+    }
+
+    /**
+     * 删除超过保留时间未读取的快照，总大小仍超过上限时从最久未读取的开始删除
+     *
+     * @param keep 刚生成、不参与淘汰的快照，可以为 null
+     */
+    private void enforceLimits(Path keep) {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(snapshotLocation, "*" + SNAPSHOT_SUFFIX)) {
+            paths.forEach(snapshots::add);
+        } catch (IOException e) {
+            log.warn("Failed to list snapshots: {}", e.getMessage());
+            return;
+        }
+        long expiredBefore = System.currentTimeMillis() - ttlHours * 3600_000L;
+        Map<Path, Long> accessTimes = new HashMap<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        for (Path path : snapshots) {
+            try {
+                accessTimes.put(path, Files.getLastModifiedTime(path).toMillis());
+                sizes.put(path, Files.size(path));
+            } catch (IOException e) {
+                // 已被其他线程删除
+            }
+        }
+        List<Path> candidates = new ArrayList<>(accessTimes.keySet());
+        candidates.sort(Comparator.comparing(accessTimes::get));
+        long total = sizes.values().stream().mapToLong(Long::longValue).sum();
+        for (Path path : candidates) {
+            if (path.equals(keep)) {
+                continue;
+            }
+            if (accessTimes.get(path) < expiredBefore || total > maxBytes) {
+                log.info("Evicting snapshot {} ({} bytes)", path.getFileName(), sizes.get(path));
+                deleteQuietly(path);
+                total -= sizes.get(path);
+            }
+        }
+    }
+
+    private void deleteMatching(String glob) {
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(snapshotLocation, glob)) {
+            for (Path path : paths) {
+                deleteQuietly(path);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete snapshots {}: {}", glob, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取范围的标识：以数据源与表为前缀，只要影响读取结果的条件不同，就使用不同的快照
+     */
+    private static String scanKey(DataBaseInfo dbInfo, TableScanSpec spec) {
+        String scan = String.join("\u0000",
+                String.valueOf(dbInfo.getId()),
+                spec.getSchema(),
+                spec.getTableName(),
+                String.valueOf(spec.getColumns()),
+                String.valueOf(spec.getFilter()),
+                String.valueOf(spec.getLimit()),
+                String.valueOf(spec.getKeyColumn()),
+                String.valueOf(spec.isOrderByKey()));
+        return tablePrefix(dbInfo.getId(), spec.getSchema(), spec.getTableName()) + "-" + sha256(scan).substring(0, 32);
+    }
+
+    private static String tablePrefix(Long dataBaseInfoId, String schema, String tableName) {
+        return dataBaseInfoId + "-" + sha256(schema + "\u0000" + tableName).substring(0, 16);
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", path, e.getMessage());
+        }
+    }
+}
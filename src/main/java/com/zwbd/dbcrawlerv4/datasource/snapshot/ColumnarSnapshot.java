@@ -0,0 +1,260 @@
+package com.zwbd.dbcrawlerv4.datasource.snapshot;
+
+import com.zwbd.dbcrawlerv4.common.exception.CommonException;
+import com.zwbd.dbcrawlerv4.datasource.dialect.Row;
+import com.zwbd.dbcrawlerv4.datasource.dialect.RowSchema;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/6 10:20
+ * @Desc: 表数据的本地列式快照文件。
+ * 文件整体 GZIP 压缩，结构为：魔数、列名，之后是若干行块（每块最多 {@link #BLOCK_ROWS} 行，行数为 0 表示结束）。
+ * 块内按列连续存放，同一列的值相邻，压缩率明显高于按行存放。每个值带一个类型标记，
+ * 常见 JDBC 类型（整数、浮点、DECIMAL、布尔、日期时间、二进制）原样还原，其他类型按 toString 保存，模板渲染结果一致。
+ * 读取为顺序流式解压，一次只在内存中保留一个块。
+ */
+public final class ColumnarSnapshot {
+
+    private static final int MAGIC = 0x44425331; // "DBS1"
+    private static final int BLOCK_ROWS = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte FLOAT = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte DECIMAL = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte TIMESTAMP = 8;
+    private static final byte DATE = 9;
+    private static final byte TIME = 10;
+    private static final byte BYTES = 11;
+
+    private ColumnarSnapshot() {
+    }
+
+    /**
+     * 把行流完整写入快照文件，列结构取自第一行。
+     *
+     * @return 写入的行数
+     */
+    public static long write(Path file, Stream<Map<String, Object>> rows) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            Iterator<Map<String, Object>> iterator = rows.iterator();
+            if (!iterator.hasNext()) {
+                out.writeInt(0);
+                out.writeInt(0);
+                return 0;
+            }
+            Map<String, Object> first = iterator.next();
+            String[] names = first.keySet().toArray(new String[0]);
+            out.writeInt(names.length);
+            for (String name : names) {
+                writeString(out, name);
+            }
+            List<Map<String, Object>> block = new ArrayList<>(BLOCK_ROWS);
+            block.add(first);
+            long total = 0;
+            while (iterator.hasNext()) {
+                if (block.size() == BLOCK_ROWS) {
+                    total += writeBlock(out, names, block);
+                }
+                block.add(iterator.next());
+            }
+            total += writeBlock(out, names, block);
+            out.writeInt(0);
+            return total;
+        }
+    }
+
+    private static int writeBlock(DataOutputStream out, String[] names, List<Map<String, Object>> block) throws IOException {
+        int size = block.size();
+        out.writeInt(size);
+        for (String name : names) {
+            for (Map<String, Object> row : block) {
+                writeValue(out, row.get(name));
+            }
+        }
+        block.clear();
+        return size;
+    }
+
+    /**
+     * 打开快照文件的行流，元素为只读的 {@link Row}，调用方关闭流时释放文件。
+     */
+    public static Stream<Map<String, Object>> read(Path file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            String[] names = new String[in.readInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = readString(in);
+            }
+            RowSchema schema = RowSchema.of(names);
+            Iterator<Map<String, Object>> iterator = new Iterator<>() {
+                Object[][] columns = new Object[names.length][];
+                int blockSize = 0;
+                int position = 0;
+                boolean finished = names.length == 0;
+
+                @Override
+                public boolean hasNext() {
+                    if (position < blockSize) {
+                        return true;
+                    }
+                    if (finished) {
+                        return false;
+                    }
+                    try {
+                        blockSize = in.readInt();
+                        position = 0;
+                        if (blockSize == 0) {
+                            finished = true;
+                            return false;
+                        }
+                        for (int c = 0; c < names.length; c++) {
+                            Object[] values = new Object[blockSize];
+                            for (int r = 0; r < blockSize; r++) {
+                                values[r] = readValue(in);
+                            }
+                            columns[c] = values;
+                        }
+                        return true;
+                    } catch (IOException e) {
+                        throw new CommonException("Snapshot reading error: " + file, e);
+                    }
+                }
+
+                @Override
+                public Map<String, Object> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Object[] values = new Object[names.length];
+                    for (int c = 0; c < names.length; c++) {
+                        values[c] = columns[c][position];
+                    }
+                    position++;
+                    return new Row(schema, values);
+                }
+            };
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(() -> {
+                        try {
+                            in.close();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String s) {
+            out.writeByte(STRING);
+            writeString(out, s);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(INT);
+            out.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long l) {
+            out.writeByte(LONG);
+            out.writeLong(l);
+        } else if (value instanceof Float f) {
+            out.writeByte(FLOAT);
+            out.writeFloat(f);
+        } else if (value instanceof Double d) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(d);
+        } else if (value instanceof BigDecimal decimal) {
+            out.writeByte(DECIMAL);
+            writeString(out, decimal.toString());
+        } else if (value instanceof Boolean b) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(b);
+        } else if (value instanceof Timestamp timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(timestamp.getTime());
+            out.writeInt(timestamp.getNanos());
+        } else if (value instanceof java.sql.Date date) {
+            out.writeByte(DATE);
+            out.writeLong(date.getTime());
+        } else if (value instanceof Time time) {
+            out.writeByte(TIME);
+            out.writeLong(time.getTime());
+        } else if (value instanceof byte[] bytes) {
+            out.writeByte(BYTES);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else {
+            out.writeByte(STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case NULL -> null;
+            case STRING -> readString(in);
+            case INT -> in.readInt();
+            case LONG -> in.readLong();
+            case FLOAT -> in.readFloat();
+            case DOUBLE -> in.readDouble();
+            case DECIMAL -> new BigDecimal(readString(in));
+            case BOOLEAN -> in.readBoolean();
+            case TIMESTAMP -> {
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                yield timestamp;
+            }
+            case DATE -> new java.sql.Date(in.readLong());
+            case TIME -> new Time(in.readLong());
+            case BYTES -> {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                yield bytes;
+            }
+            default -> throw new IOException("Unknown value type " + type);
+        };
+    }
+
+    /**
+     * 不使用 writeUTF：其长度上限为 64KB，TEXT 列可能超过
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,6 +1,7 @@
 package com.zwbd.dbcrawlerv4.document.controller;
 
 import com.zwbd.dbcrawlerv4.common.web.ApiResponse;
+import com.zwbd.dbcrawlerv4.document.dto.DerivedDocumentDto;
 import com.zwbd.dbcrawlerv4.document.dto.GenerateScriptRequest;
 import com.zwbd.dbcrawlerv4.document.entity.BizAction;
 import com.zwbd.dbcrawlerv4.document.entity.DocumentContext;
@@ -123,12 +124,14 @@ public class DomainDocumentController {
      * 获取文档数据流
      * 使用 StreamingResponseBody 保持连接，逐行写入 JSON 数据，防止内存溢出。
      * 响应格式为 NDJSON (Newline Delimited JSON) 或 JSON Array Stream
+     * 虚拟文档在读取过程中记录断点，中断后可传 resume=true 只读取剩余部分
      */
     @GetMapping(value = "/{docId}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
-    public StreamingResponseBody getDocumentStream(@PathVariable Long docId) {
+    public StreamingResponseBody getDocumentStream(@PathVariable Long docId,
+                                                   @RequestParam(defaultValue = "false") boolean resume) {
         StreamingResponseBody stream = outputStream -> {
-            // 获取业务流 (已包含可能的 Python 清洗装饰器)
-            try (Stream<DocumentContext> docStream = domainDocumentService.getStream(docId)) {
+            // 获取业务流 (已包含可能的 Python 清洗装饰器)，resume=true 时从上次中断处继续
+            try (Stream<DocumentContext> docStream = domainDocumentService.getStream(docId, resume)) {
                 // 遍历流，逐条写入 Response
                 docStream.forEach(doc -> {
                     try {
@@ -151,15 +154,15 @@ public class DomainDocumentController {
     /**
      * 创建衍生文档
      * 用户在前端编写好 Python 脚本后，调用此接口保存/执行清洗规则。
+     * 返回衍生文档ID与后台任务ID，进度见 /api/tasks/{taskId}/status。
      */
     @PostMapping("/{parentId}/derive")
-    public ApiResponse createDerivedDocument(
+    public ApiResponse<DerivedDocumentDto> createDerivedDocument(
             @PathVariable Long parentId,
             @RequestBody String script) {
         // 调用 Service 层的核心分流方法
-        // 如果是静态文档，这里会立即执行 ETL；如果是流式文档，这里只保存 Metadata
-        domainDocumentService.createDerivedDocument(parentId, script);
-        return ApiResponse.success();
+        // 如果是静态文档，这里在后台分段执行 ETL；如果是流式文档，这里只保存 Metadata 并生成预览
+        return ApiResponse.success(domainDocumentService.createDerivedDocument(parentId, script));
     }
 
     @Autowired
@@ -0,0 +1,24 @@
+package com.zwbd.dbcrawlerv4.document.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/10 14:10
+ * @Desc: 创建衍生文档的结果
+ */
+@Data
+@AllArgsConstructor
+public class DerivedDocumentDto {
+
+    /**
+     * 衍生文档ID，后台生成过程中即可分页查询已提交的切片
+     */
+    private Long docId;
+
+    /**
+     * 后台生成任务ID，进度见 /api/tasks/{taskId}/status；流式父文档无需后台生成，为 null
+     */
+    private String taskId;
+}
@@ -38,12 +38,10 @@ public class CleaningJobRecord {
     private Long sourceSegmentId;
 
     /** 清洗后的文本结果 */
-    @Lob
     @Column(columnDefinition = "TEXT")
     private String resultContent;
 
     /** 结构化提取结果 (JSON) */
-    @Lob
     @Column(columnDefinition = "TEXT")
     private String resultMetadata;
 
@@ -52,7 +50,6 @@ public class CleaningJobRecord {
     private RecordStatus status;
 
     /** 具体的行级报错信息 */
-    @Lob
     @Column(columnDefinition = "TEXT")
     private String errorMessage;
 
@@ -10,4 +10,9 @@ public interface DocConstant {
     String META_KEY_PIPELINE = "_processing_pipeline";
     String PARENT_ID = "parent_id";
 
+    /**
+     * 切片元数据差异中，共享元数据里有而该切片没有的键
+     */
+    String META_KEY_UNSET = "_unset";
+
 }
@@ -56,6 +56,14 @@ public class DomainDocument {
     @Column(columnDefinition = "TEXT")
     private Map<String, Object> metadata = new HashMap<>();
 
+    /**
+     * 切片共享元数据：所有切片相同的元数据只保存一份，切片只保存差异，见 {@link SegmentMetadata}。
+     * 写入切片时通过 DomainDocumentRepository#updateSegmentMetadata 设置，实体更新时不覆盖
+     */
+    @Convert(converter = MapJsonConverter.class)
+    @Column(columnDefinition = "TEXT", updatable = false)
+    private Map<String, Object> segmentMetadata;
+
     @Enumerated(EnumType.STRING)
     private DomainDocumentStatus status;
 
@@ -24,7 +24,9 @@ import java.util.Map;
 @Entity
 @Table(name = "ai_domain_document_segment", indexes = {
         // 加上索引，保证查询和删除的性能
-        @Index(name = "idx_doc_id", columnList = "documentId")
+        @Index(name = "idx_doc_id", columnList = "documentId"),
+        // 按顺序流式读取时的键集分页
+        @Index(name = "idx_doc_seq", columnList = "documentId, sequence")
 })
 public class DomainDocumentSegment {
 
@@ -43,12 +45,19 @@ public class DomainDocumentSegment {
 
     // PGSQL 推荐用 jsonb，如果不想太复杂，用 TEXT 存 JSON 字符串也完全没问题
 //    @Convert(converter = MapJsonConverter.class)
+    // 只保存与文档共享元数据不同的部分，见 SegmentMetadata
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(columnDefinition = "jsonb")
     private Map<String, Object> metadata = new HashMap<>();
 
+    /**
+     * 所属文档的切片共享元数据，读取切片时设置
+     */
+    @Transient
+    private Map<String, Object> sharedMetadata;
+
     public DocumentContext toDocumentContext() {
-        return new DocumentContext(content,metadata);
+        return new DocumentContext(content, SegmentMetadata.merge(sharedMetadata, metadata));
     }
 
     @Converter
@@ -0,0 +1,136 @@
+package com.zwbd.dbcrawlerv4.document.entity;
+
+import java.util.*;
+
+import static com.zwbd.dbcrawlerv4.document.entity.DocConstant.META_KEY_UNSET;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/10 9:20
+ * @Desc: 切片元数据的拆分与合并。
+ * 同一文档的切片大多带着相同的文件级元数据（来源、文件路径、处理管道等），
+ * 这部分只在 {@link DomainDocument#getSegmentMetadata()} 中保存一份，切片只保存与之不同的键（行号、页码等）；
+ * 共享元数据中有、切片中没有的键记录在差异的 {@link DocConstant#META_KEY_UNSET} 中。
+ * 读取时用 {@link #merge} 得到合并视图：按键读取时直接查两份数据，遍历或修改时才合并成独立的 Map。
+ */
+public final class SegmentMetadata extends AbstractMap<String, Object> {
+
+    private final Map<String, Object> shared;
+    private final Map<String, Object> delta;
+    private final Collection<?> unset;
+    private Map<String, Object> merged;
+
+    private SegmentMetadata(Map<String, Object> shared, Map<String, Object> delta) {
+        this.shared = shared;
+        this.delta = delta;
+        this.unset = delta.get(META_KEY_UNSET) instanceof Collection<?> keys ? keys : List.of();
+    }
+
+    /**
+     * 一批切片元数据中取值全部相同的键，作为共享元数据
+     */
+    public static Map<String, Object> common(List<Map<String, Object>> metadataList) {
+        if (metadataList.isEmpty()) {
+            return new HashMap<>();
+        }
+        Map<String, Object> common = new HashMap<>(metadataList.get(0));
+        common.remove(META_KEY_UNSET);
+        for (int i = 1; i < metadataList.size() && !common.isEmpty(); i++) {
+            Map<String, Object> metadata = metadataList.get(i);
+            common.entrySet().removeIf(entry -> !metadata.containsKey(entry.getKey())
+                    || !Objects.equals(entry.getValue(), metadata.get(entry.getKey())));
+        }
+        return common;
+    }
+
+    /**
+     * 切片相对共享元数据的差异
+     */
+    public static Map<String, Object> delta(Map<String, Object> shared, Map<String, Object> metadata) {
+        if (metadata == null) {
+            metadata = Map.of();
+        }
+        if (shared == null || shared.isEmpty()) {
+            return metadata;
+        }
+        Map<String, Object> delta = new HashMap<>();
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            if (!shared.containsKey(entry.getKey()) || !Objects.equals(shared.get(entry.getKey()), entry.getValue())) {
+                delta.put(entry.getKey(), entry.getValue());
+            }
+        }
+        List<String> unset = new ArrayList<>();
+        for (String key : shared.keySet()) {
+            if (!metadata.containsKey(key)) {
+                unset.add(key);
+            }
+        }
+        if (!unset.isEmpty()) {
+            delta.put(META_KEY_UNSET, unset);
+        }
+        return delta;
+    }
+
+    /**
+     * 共享元数据与切片差异的合并视图；没有共享元数据（拆分之前写入的切片）时直接返回切片自身的元数据
+     */
+    public static Map<String, Object> merge(Map<String, Object> shared, Map<String, Object> delta) {
+        if (delta == null) {
+            delta = new HashMap<>();
+        }
+        if (shared == null || shared.isEmpty()) {
+            return delta;
+        }
+        return new SegmentMetadata(shared, delta);
+    }
+
+    private Map<String, Object> materialize() {
+        if (merged == null) {
+            merged = new HashMap<>(shared);
+            unset.forEach(merged::remove);
+            merged.putAll(delta);
+            merged.remove(META_KEY_UNSET);
+        }
+        return merged;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (merged != null) {
+            return merged.get(key);
+        }
+        if (META_KEY_UNSET.equals(key)) {
+            return null;
+        }
+        if (delta.containsKey(key)) {
+            return delta.get(key);
+        }
+        return unset.contains(key) ? null : shared.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (merged != null) {
+            return merged.containsKey(key);
+        }
+        if (META_KEY_UNSET.equals(key)) {
+            return false;
+        }
+        return delta.containsKey(key) || (!unset.contains(key) && shared.containsKey(key));
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return materialize().put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return materialize().remove(key);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return materialize().entrySet();
+    }
+}
@@ -0,0 +1,42 @@
+package com.zwbd.dbcrawlerv4.document.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/3 15:40
+ * @Desc:
+ * 虚拟文档流式读取的断点
+ * 记录每个 DomainDocument 最后一条已被消费行的主键，失败后可通过键集游标 (WHERE pk > ?) 只读取剩余部分
+ */
+@Entity
+@Data
+@Table(name = "ai_stream_checkpoint", indexes = {
+        @Index(name = "idx_checkpoint_doc_id", columnList = "documentId", unique = true)
+})
+public class StreamCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long documentId;
+
+    /** 键集游标使用的主键列 */
+    private String keyColumn;
+
+    /** 最后一条已被消费行的主键，为空表示尚未消费任何行 */
+    private Long lastKey;
+
+    /** 累计输出的行数（包含之前各次续传） */
+    private Long rowsEmitted = 0L;
+
+    /** 是否已读取到表尾 */
+    private boolean completed;
+
+    private LocalDateTime updatedAt;
+}
@@ -6,6 +6,7 @@ import org.springframework.ai.document.Document;
 
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * @Author: wnli
@@ -19,6 +20,25 @@ public interface DocumentLoader {
 
     List<Document> load(BaseMetadata metadata);
 
+    /**
+     * Load documents lazily, one at a time.
+     * The caller must close the returned stream to release the underlying connection or file handle.
+     * The default implementation materializes {@link #load(BaseMetadata)}; loaders that can produce documents
+     * incrementally (database tables, large text files) override it so ingestion uses constant memory.
+     */
+    default Stream<Document> stream(BaseMetadata metadata) {
+        return load(metadata).stream();
+    }
+
     Set<DocumentType> getSourceType();
 
+    /**
+     * Version of the parsing output.
+     * Parsed documents of uploaded files are cached by content hash and loader version,
+     * so an implementation must bump this whenever a change alters the text or metadata it produces.
+     */
+    default String getVersion() {
+        return "1";
+    }
+
 }
\ No newline at end of file
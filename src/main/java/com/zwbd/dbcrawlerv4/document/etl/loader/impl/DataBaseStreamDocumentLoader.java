@@ -5,6 +5,7 @@ import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.BaseMetadata;
 import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.DatabaseRecordMetadata;
 import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.DocumentType;
 import com.zwbd.dbcrawlerv4.datasource.dialect.DataStreamContext;
+import com.zwbd.dbcrawlerv4.datasource.dialect.TableScanSpec;
 import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseInfo;
 import com.zwbd.dbcrawlerv4.datasource.service.DataBaseInfoService;
 import com.zwbd.dbcrawlerv4.datasource.service.MetadataCollectorService;
@@ -12,8 +13,12 @@ import org.springframework.ai.document.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * @Author: wnli
@@ -31,15 +36,33 @@ public class DataBaseStreamDocumentLoader implements DocumentLoader {
 
     @Override
     public List<Document> load(BaseMetadata metadata) {
+        try (Stream<Document> documents = stream(metadata)) {
+            return documents.toList();
+        }
+    }
+
+    /**
+     * 逐行读取并渲染，关闭返回的 Stream 时释放源库连接
+     */
+    @Override
+    public Stream<Document> stream(BaseMetadata metadata) {
         DatabaseRecordMetadata databaseRecordMetadata = (DatabaseRecordMetadata) metadata;
         DataBaseInfo info = dataBaseInfoService.findById(Long.parseLong(databaseRecordMetadata.getSourceId())).get().toEntityWithId();
-        try (DataStreamContext<String> context =
-                     metadataCollectorService.openDataStream(
-                             info, databaseRecordMetadata.getSchema(), databaseRecordMetadata.getTable(), databaseRecordMetadata.getTemplate())
-        ) {
-//            return context.getStream().limit(10).map(doc -> new Document(doc,metadata.toMap())).toList();
-            return context.getStream().map(doc -> new Document(doc,metadata.toMap())).toList();
-        }
+        TableScanSpec spec = TableScanSpec.builder()
+                .schema(databaseRecordMetadata.getSchema())
+                .tableName(databaseRecordMetadata.getTable())
+                .filter(databaseRecordMetadata.getFilter())
+                .limit(databaseRecordMetadata.getLimit())
+                .build();
+        DataStreamContext<String> context = metadataCollectorService.openDataStream(
+                info, spec, databaseRecordMetadata.getTemplate(),
+                Optional.ofNullable(databaseRecordMetadata.getReadParallelism()).orElse(1),
+                !Boolean.FALSE.equals(databaseRecordMetadata.getOrderedRead()));
+        // 元数据只序列化一次，每行复制一份，避免文档之间共享可变 Map
+        Map<String, Object> metadataMap = metadata.toMap();
+        return context.getStream()
+                .map(doc -> new Document(doc, new HashMap<>(metadataMap)))
+                .onClose(context::close);
     }
 
     @Override
@@ -6,9 +6,13 @@ import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.DatabaseRecordMetadata;
 import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.DocumentType;
 import com.zwbd.dbcrawlerv4.datasource.dto.database.DataBaseInfoDTO;
 import com.zwbd.dbcrawlerv4.datasource.dto.metadata.DatabaseMetadata;
+import com.zwbd.dbcrawlerv4.datasource.entity.CrawlMode;
+import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseInfo;
+import com.zwbd.dbcrawlerv4.datasource.entity.ExecutionMode;
 import com.zwbd.dbcrawlerv4.datasource.service.DataBaseInfoService;
 import com.zwbd.dbcrawlerv4.datasource.service.DatabaseMetadataProcessor;
 import com.zwbd.dbcrawlerv4.datasource.service.MetadataCollectorService;
+import com.zwbd.dbcrawlerv4.monitor.service.TaskProgress;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
@@ -48,7 +52,11 @@ public class DatabaseMetadataDocumentLoader implements DocumentLoader {
         DatabaseRecordMetadata databaseRecordMetadata = (DatabaseRecordMetadata) metadata;
         long databaseID = Long.parseLong(databaseRecordMetadata.getSourceId());
         Optional<DataBaseInfoDTO> dto = dataBaseInfoService.findById(databaseID);
-        CompletableFuture<DatabaseMetadata> future = metadataCollectorService.collectMetadata(dto.get().toEntityWithId());
+        DataBaseInfo dataBaseInfo = dto.get().toEntityWithId();
+        // 先登记任务再发起采集，采集期间可通过 /api/tasks/{taskId} 查看进度、取消或跳过慢表
+        TaskProgress task = metadataCollectorService.startCollectionTask(dataBaseInfo);
+        log.info("Collecting metadata of database {} in task {}", databaseID, task.getTaskId());
+        CompletableFuture<DatabaseMetadata> future = metadataCollectorService.collectMetadata(dataBaseInfo, ExecutionMode.AUTO, CrawlMode.PARALLEL, task);
         DatabaseMetadata databaseMetadata = null;
         try {
             databaseMetadata = future.get();
@@ -6,81 +6,171 @@ import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.DocumentType;
 import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.FileUploadMetadata;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @Author: wnli
  * @Date: 2025/9/16 11:18
  * @Desc: Text document loader for plain text content
- * 
+ *
  * This loader handles plain text content provided directly in the request.
  * It's useful for ingesting text snippets, articles, or any textual content.
+ * The file is read line by line from a buffered file channel, so large logs or CSV files
+ * are ingested in constant memory. The charset is detected from the BOM, otherwise UTF-8
+ * is used when the leading bytes are valid UTF-8 and GB18030 (a superset of GBK) when they are not.
  */
 @Slf4j
 @Component
 public class TextDocumentLoader implements DocumentLoader {
 
-    @Autowired
-    private ResourceLoader resourceLoader;
-    
+    /**
+     * 字符集探测读取的文件头字节数
+     */
+    private static final int DETECT_BYTES = 64 * 1024;
+
+    private static final int READ_BUFFER_CHARS = 64 * 1024;
+
+    private static final Charset GB18030 = Charset.forName("GB18030");
+
     @Override
     public List<Document> load(BaseMetadata metadata)  {
+        try (Stream<Document> documents = stream(metadata)) {
+            return documents.toList();
+        }
+    }
+
+    /**
+     * 每个非空行生成一个 Document，行号从 1 开始。关闭返回的 Stream 时关闭文件。
+     */
+    @Override
+    public Stream<Document> stream(BaseMetadata metadata) {
         log.debug("Loading text document");
         FileUploadMetadata fileUploadMetadata = (FileUploadMetadata) metadata;
         String filePathStr = fileUploadMetadata.getFilePath();
-        String fileUri = Paths.get(filePathStr).toUri().toString();
-        Resource resource = this.resourceLoader.getResource(fileUri);
-        //文件资源的元数据
-        // 文件资源的元数据（基础元数据）
-        Map<String, Object> metadataMap = fileUploadMetadata.toMap();
-        // 最终返回的Document列表
-        List<Document> documents = new ArrayList<>();
+        Path path = Paths.get(filePathStr);
+        // 文件资源的元数据（基础元数据），所有行共享同一份
+        Map<String, Object> baseMetadata = new HashMap<>(fileUploadMetadata.toMap());
+        baseMetadata.put("filePath", filePathStr);    // 关联原始文件路径
+        baseMetadata.remove(LineMetadata.LINE_NUMBER);
+        Map<String, Object> sharedMetadata = Collections.unmodifiableMap(baseMetadata);
 
+        FileChannel channel = null;
         try {
-            // 1. 读取文件全部内容（使用默认字符集，也可改为指定编码如StandardCharsets.UTF_8）
-            String content = resource.getContentAsString(Charset.defaultCharset());
-
-            // 2. 按换行拆分（兼容Windows(\r\n)、Linux(\n)、Mac(\r)所有换行符）
-            String[] lines = content.split("\\r?\\n");
-
-            // 3. 遍历每行，生成Document（可按需过滤空行）
-            for (int lineNum = 0; lineNum < lines.length; lineNum++) {
-                String lineContent = lines[lineNum];
-                // 可选：过滤纯空白行（根据业务需求决定是否保留）
-                if (lineContent.trim().isEmpty()) {
-                    continue; // 跳过空行，注释此行则保留空行
-                }
-
-                // 4. 为每行构建独立元数据（继承基础元数据+补充行号/文件路径等）
-                Map<String, Object> lineMetadata = new HashMap<>(metadataMap);
-                lineMetadata.put("lineNumber", lineNum + 1); // 行号从1开始
-                lineMetadata.put("filePath", filePathStr);    // 关联原始文件路径
-                lineMetadata.put("totalLines", lines.length); // 总行数
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            Charset charset = detectCharset(channel);
+            log.debug("Reading {} as {}", filePathStr, charset);
+            CharsetDecoder decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            BufferedReader reader = new BufferedReader(Channels.newReader(channel, decoder, -1), READ_BUFFER_CHARS);
 
-                // 5. 创建单行Document（根据实际Document类的构造方法调整）
-                // 假设Document构造器：new Document(内容, 元数据Map)
-                Document lineDoc = new Document(lineContent, lineMetadata);
-                documents.add(lineDoc);
-            }
+            Iterator<Document> iterator = new Iterator<>() {
+                int lineNum = 0;
+                Document nextDoc;
 
-            log.debug("Split text file into {} valid lines (documents)", documents.size());
+                @Override
+                public boolean hasNext() {
+                    try {
+                        // 跳过纯空白行
+                        while (nextDoc == null) {
+                            String lineContent = reader.readLine();
+                            if (lineContent == null) {
+                                return false;
+                            }
+                            lineNum++;
+                            if (lineNum == 1 && !lineContent.isEmpty() && lineContent.charAt(0) == '\uFEFF') {
+                                lineContent = lineContent.substring(1);
+                            }
+                            if (!lineContent.isBlank()) {
+                                nextDoc = new Document(lineContent, new LineMetadata(sharedMetadata, lineNum));
+                            }
+                        }
+                        return true;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to read text document " + filePathStr, e);
+                    }
+                }
 
+                @Override
+                public Document next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Document doc = nextDoc;
+                    nextDoc = null;
+                    return doc;
+                }
+            };
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(() -> {
+                        try {
+                            reader.close();
+                        } catch (IOException e) {
+                            log.warn("Failed to close {}: {}", filePathStr, e.getMessage());
+                        }
+                    });
         } catch (IOException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    log.warn("Failed to close {}: {}", filePathStr, ex.getMessage());
+                }
+            }
             log.error("Failed to load and split text document", e);
-            // 异常时返回空列表，避免返回null导致NPE
-            return new ArrayList<>();
+            // 异常时返回空流，避免返回null导致NPE
+            return Stream.empty();
         }
+    }
 
-        // 返回拆分后的Document列表（非null）
-        return documents;
+    /**
+     * 按 BOM 或文件头内容判断字符集，读取后把通道位置重置到正文开始处（跳过 UTF-16 BOM，UTF-8 BOM 由首行处理）。
+     */
+    private static Charset detectCharset(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(DETECT_BYTES);
+        while (head.hasRemaining() && channel.read(head) > 0) {
+            // 读满探测缓冲区或到达文件末尾
+        }
+        head.flip();
+        channel.position(0);
+        int b0 = head.remaining() > 0 ? head.get(0) & 0xFF : -1;
+        int b1 = head.remaining() > 1 ? head.get(1) & 0xFF : -1;
+        if (b0 == 0xFE && b1 == 0xFF) {
+            channel.position(2);
+            return StandardCharsets.UTF_16BE;
+        }
+        if (b0 == 0xFF && b1 == 0xFE) {
+            channel.position(2);
+            return StandardCharsets.UTF_16LE;
+        }
+        return isUtf8(head, channel.size() <= DETECT_BYTES) ? StandardCharsets.UTF_8 : GB18030;
+    }
+
+    /**
+     * 严格按 UTF-8 解码文件头；探测缓冲区末尾被截断的多字节字符不算错误。
+     */
+    private static boolean isUtf8(ByteBuffer head, boolean endOfInput) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer out = CharBuffer.allocate(head.remaining());
+        CoderResult result = decoder.decode(head.duplicate(), out, endOfInput);
+        return !result.isError();
     }
 
     @Override
@@ -88,4 +178,87 @@ public class TextDocumentLoader implements DocumentLoader {
         return Set.of(DocumentType.TXT);
     }
 
-}
\ No newline at end of file
+    /**
+     * 单行的元数据视图：文件级元数据所有行共享，每行只额外保存行号，修改时才复制出独立的 Map。
+     */
+    private static final class LineMetadata extends AbstractMap<String, Object> {
+
+        private static final String LINE_NUMBER = "lineNumber";
+
+        private final Map<String, Object> shared;
+        private final int lineNumber;
+        private Map<String, Object> copy;
+
+        private LineMetadata(Map<String, Object> shared, int lineNumber) {
+            this.shared = shared;
+            this.lineNumber = lineNumber;
+        }
+
+        private Map<String, Object> materialize() {
+            if (copy == null) {
+                copy = new HashMap<>(shared);
+                copy.put(LINE_NUMBER, lineNumber);
+            }
+            return copy;
+        }
+
+        @Override
+        public Object get(Object key) {
+            if (copy != null) {
+                return copy.get(key);
+            }
+            return LINE_NUMBER.equals(key) ? (Object) lineNumber : shared.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return copy != null ? copy.containsKey(key) : LINE_NUMBER.equals(key) || shared.containsKey(key);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            return materialize().put(key, value);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            return materialize().remove(key);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            if (copy != null) {
+                return copy.entrySet();
+            }
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    Iterator<Entry<String, Object>> sharedEntries = shared.entrySet().iterator();
+                    return new Iterator<>() {
+                        boolean lineNumberReturned = false;
+
+                        @Override
+                        public boolean hasNext() {
+                            return !lineNumberReturned || sharedEntries.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!lineNumberReturned) {
+                                lineNumberReturned = true;
+                                return Map.entry(LINE_NUMBER, lineNumber);
+                            }
+                            return sharedEntries.next();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return shared.size() + 1;
+                }
+            };
+        }
+    }
+
+}
@@ -36,7 +36,8 @@ public class DatabaseMetaDataProcessor implements DocumentPostProcessor {
                     try {
                         String schemaName = item.getMetadata().get("schema_name").toString();
                         String table_name = item.getMetadata().get("table_name").toString();
-                        Optional<TableMetadata> sampleData = databaseMetadataStorageService.findTable("databaseID", schemaName, table_name);
+                        String databaseInfoId = String.valueOf(item.getMetadata().get("sourceId"));
+                        Optional<TableMetadata> sampleData = databaseMetadataStorageService.findTable(databaseInfoId, schemaName, table_name);
                         if (sampleData.isPresent()) {
                             String data = objectMapper.writeValueAsString(sampleData.get().trimSampleData(3, 64));
                             return item.mutate().text(item.getText() + data).build();
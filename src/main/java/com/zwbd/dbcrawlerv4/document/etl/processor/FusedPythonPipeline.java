@@ -0,0 +1,122 @@
+package com.zwbd.dbcrawlerv4.document.etl.processor;
+
+import com.zwbd.dbcrawlerv4.document.entity.DocumentContext;
+import lombok.extern.slf4j.Slf4j;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyExecutable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/10 16:30
+ * @Desc: 多步 Python 清洗管道的融合执行。
+ * 所有步骤的脚本编译进同一个 Python Context，每个脚本在独立的命名空间中执行，互不覆盖 process 函数与全局变量；
+ * 每行数据只进出一次 Python，在 Python 内依次经过各步骤，而不是每个步骤各建一个 Context、每步都跨越一次宿主边界。
+ * 每个步骤的返回值约定与 {@link PythonScriptProcessor} 相同：None 过滤，列表拆分，其他值保留该步骤的输入文档。
+ */
+@Slf4j
+public class FusedPythonPipeline implements DocumentProcessor, AutoCloseable {
+
+    /**
+     * 在 Python 内编译步骤脚本并组合各步骤的 process 函数
+     */
+    private static final String BOOTSTRAP = """
+            def _pipeline_compile(source):
+                scope = {'__name__': '__main__'}
+                exec(compile(source, '<pipeline>', 'exec'), scope)
+                fn = scope.get('process')
+                return fn if callable(fn) else None
+
+            def _pipeline_chain(steps, is_array):
+                steps = list(steps)
+                def run(doc):
+                    docs = [doc]
+                    for fn in steps:
+                        out = []
+                        for d in docs:
+                            r = fn(d)
+                            if r is None:
+                                continue
+                            if r is d:
+                                out.append(d)
+                            elif isinstance(r, (list, tuple)) or is_array(r):
+                                out.extend(r)
+                            else:
+                                out.append(d)
+                        docs = out
+                        if not docs:
+                            break
+                    return docs
+                return run
+            """;
+
+    private final Context context;
+    private final Value pipelineFunction;
+
+    public FusedPythonPipeline(List<String> scripts) {
+        if (scripts.isEmpty()) {
+            throw new IllegalArgumentException("Pipeline must contain at least one script.");
+        }
+        this.context = Context.newBuilder("python")
+                .allowAllAccess(false)
+                .allowIO(false)
+                .allowCreateThread(false)
+                .allowHostAccess(HostAccess.ALL)
+                .build();
+        try {
+            this.context.eval("python", BOOTSTRAP);
+            Value bindings = this.context.getBindings("python");
+            Value compile = bindings.getMember("_pipeline_compile");
+            List<Value> steps = new ArrayList<>(scripts.size());
+            for (int i = 0; i < scripts.size(); i++) {
+                Value step = compile.execute(scripts.get(i));
+                if (step.isNull() || !step.canExecute()) {
+                    throw new IllegalArgumentException("Python script of step " + (i + 1) + " must define a 'process(doc)' function.");
+                }
+                steps.add(step);
+            }
+            // Python 无法识别的列表类型（如 Java 集合）交给宿主判断
+            ProxyExecutable isArray = args -> args[0].hasArrayElements();
+            this.pipelineFunction = bindings.getMember("_pipeline_chain").execute(steps.toArray(), isArray);
+        } catch (RuntimeException e) {
+            // 构造失败时调用方拿不到实例，需要在这里释放 Context
+            this.context.close();
+            if (e instanceof PolyglotException) {
+                throw new RuntimeException("Failed to initialize Python pipeline", e);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public List<DocumentContext> process(DocumentContext document) {
+        synchronized (this) {
+            try {
+                Value result = pipelineFunction.execute(document);
+                long size = result.getArraySize();
+                if (size == 0) {
+                    return Collections.emptyList();
+                }
+                List<DocumentContext> docs = new ArrayList<>((int) size);
+                for (int i = 0; i < size; i++) {
+                    docs.add(result.getArrayElement(i).as(DocumentContext.class));
+                }
+                return docs;
+            } catch (PolyglotException e) {
+                log.error("Pipeline execution error: ", e);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.context.close();
+    }
+}
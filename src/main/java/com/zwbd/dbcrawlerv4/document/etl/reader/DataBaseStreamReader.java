@@ -2,22 +2,32 @@ package com.zwbd.dbcrawlerv4.document.etl.reader;
 
 import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.DocumentType;
 import com.zwbd.dbcrawlerv4.datasource.dialect.DataStreamContext;
+import com.zwbd.dbcrawlerv4.datasource.dialect.TableScanSpec;
 import com.zwbd.dbcrawlerv4.datasource.entity.DataBaseInfo;
 import com.zwbd.dbcrawlerv4.datasource.service.DataBaseInfoService;
 import com.zwbd.dbcrawlerv4.datasource.service.MetadataCollectorService;
+import com.zwbd.dbcrawlerv4.datasource.service.TableSnapshotService;
 import com.zwbd.dbcrawlerv4.document.entity.DocumentContext;
 import com.zwbd.dbcrawlerv4.document.entity.DomainDocument;
+import com.zwbd.dbcrawlerv4.document.entity.StreamCheckpoint;
+import com.zwbd.dbcrawlerv4.document.service.StreamCheckpointService;
+import com.zwbd.dbcrawlerv4.utils.CompiledTemplate;
+import com.zwbd.dbcrawlerv4.utils.TemplateRenderService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @Author: wnli
  * @Date: 2025/12/1 15:58
  * @Desc:
  */
+@Slf4j
 @Component
 public class DataBaseStreamReader implements DomainDocumentReader {
 
@@ -27,18 +37,147 @@ public class DataBaseStreamReader implements DomainDocumentReader {
     @Autowired
     private MetadataCollectorService metadataCollectorService;
 
+    @Autowired
+    private StreamCheckpointService checkpointService;
+
+    @Autowired
+    private TemplateRenderService templateRenderService;
+
+    @Autowired
+    private TableSnapshotService tableSnapshotService;
+
     @Override
     public Stream<DocumentContext> openContentStream(DomainDocument domainDoc) {
         DataBaseInfo info = dataBaseInfoService.findById(Long.parseLong(domainDoc.getSourceId())).get().toEntityWithId();
-        try (DataStreamContext<String> context =
-                     metadataCollectorService.openDataStream(
-                             info, domainDoc.getMetadata().get("schema").toString(),
-                             domainDoc.getMetadata().get("table").toString(),
-                             domainDoc.getMetadata().get("template").toString()
-                     );
-        ) {
-            return context.getStream().map(doc -> new DocumentContext(doc, domainDoc.getMetadata()));
+        Map<String, Object> metadata = domainDoc.getMetadata();
+        int readParallelism = metadata.get("readParallelism") instanceof Number number ? number.intValue() : 1;
+        boolean orderedRead = !Boolean.FALSE.equals(metadata.get("orderedRead"));
+        String template = metadata.get("template").toString();
+        if (isSnapshot(metadata)) {
+            DataStreamContext<Map<String, Object>> context = tableSnapshotService.openRowStream(
+                    info, metadataCollectorService.withTemplateProjection(info, scanSpec(metadata).build(), template),
+                    readParallelism, orderedRead);
+            CompiledTemplate compiledTemplate = templateRenderService.compile(template);
+            return context.getStream()
+                    .map(row -> new DocumentContext(compiledTemplate.render(row), metadata))
+                    .onClose(context::close);
         }
+        // 数据流在调用方关闭 Stream 时才释放连接
+        DataStreamContext<String> context = metadataCollectorService.openDataStream(
+                info, scanSpec(metadata).build(),
+                template,
+                readParallelism,
+                orderedRead
+        );
+        return context.getStream()
+                .map(doc -> new DocumentContext(doc, metadata))
+                .onClose(context::close);
+    }
+
+    /**
+     * 按主键键集游标读取，并把最后一条已消费行的主键记录为断点。
+     * 没有整数主键或使用无序并行读取时无法表示进度，退化为不记录断点的全量读取。
+     * 快照模式下快照按主键排序生成，续读时在本地跳过断点之前的行。
+     */
+    @Override
+    public Stream<DocumentContext> openContentStream(DomainDocument domainDoc, boolean resume) {
+        DataBaseInfo info = dataBaseInfoService.findById(Long.parseLong(domainDoc.getSourceId())).get().toEntityWithId();
+        Map<String, Object> metadata = domainDoc.getMetadata();
+        String schema = metadata.get("schema").toString();
+        String table = metadata.get("table").toString();
+        String template = metadata.get("template").toString();
+        int readParallelism = metadata.get("readParallelism") instanceof Number number ? number.intValue() : 1;
+        boolean orderedRead = !Boolean.FALSE.equals(metadata.get("orderedRead"));
+
+        Optional<String> keyColumn = orderedRead || readParallelism <= 1
+                ? metadataCollectorService.findIntegerPrimaryKey(info, schema, table)
+                : Optional.empty();
+        if (keyColumn.isEmpty()) {
+            if (resume) {
+                log.warn("Document {} cannot be resumed (no integer primary key or unordered read), reading from the beginning", domainDoc.getId());
+            }
+            return openContentStream(domainDoc);
+        }
+
+        // 主键列变化后旧断点失效，已读完的断点从头读取
+        StreamCheckpoint checkpoint = resume
+                ? checkpointService.resumable(domainDoc.getId(), keyColumn.get()).orElse(null)
+                : null;
+        boolean snapshot = isSnapshot(metadata);
+        TableScanSpec spec = scanSpec(metadata)
+                .keyColumn(keyColumn.get())
+                .afterKey(checkpoint != null && !snapshot ? checkpoint.getLastKey() : null)
+                .orderByKey(true)
+                .build();
+        if (checkpoint != null) {
+            log.info("Resuming document {} after {} = {}", domainDoc.getId(), keyColumn.get(), checkpoint.getLastKey());
+        }
+        TableScanSpec projectedSpec = metadataCollectorService.withTemplateProjection(info, spec, template);
+        DataStreamContext<Map<String, Object>> context = snapshot
+                ? tableSnapshotService.openRowStream(info, projectedSpec, readParallelism, true)
+                : metadataCollectorService.openRowStream(info, projectedSpec, readParallelism, true);
+        StreamCheckpointService.Tracker tracker = checkpointService.track(domainDoc.getId(), keyColumn.get(), checkpoint);
+        CompiledTemplate compiledTemplate = templateRenderService.compile(template);
+
+        Stream<Map<String, Object>> rowStream = context.getStream();
+        if (snapshot && checkpoint != null) {
+            long lastKey = checkpoint.getLastKey();
+            // 主键无法转换为整数的行无法判断是否已读过，跳过并记录数量
+            AtomicLong skipped = new AtomicLong();
+            rowStream = rowStream.filter(row -> {
+                Long key = StreamCheckpointService.toKey(row.get(keyColumn.get()));
+                if (key == null) {
+                    skipped.incrementAndGet();
+                    return false;
+                }
+                return key > lastKey;
+            }).onClose(() -> {
+                if (skipped.get() > 0) {
+                    log.warn("Skipped {} snapshot rows of document {} whose {} is not an integer", skipped.get(), domainDoc.getId(), keyColumn.get());
+                }
+            });
+        }
+        Iterator<Map<String, Object>> rows = rowStream.iterator();
+        Iterator<DocumentContext> documents = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = rows.hasNext();
+                if (!hasNext) {
+                    tracker.onExhausted();
+                }
+                return hasNext;
+            }
+
+            @Override
+            public DocumentContext next() {
+                Map<String, Object> row = rows.next();
+                tracker.onRow(StreamCheckpointService.toKey(row.get(keyColumn.get())));
+                return new DocumentContext(compiledTemplate.render(row), metadata);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(documents, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    tracker.close();
+                    context.close();
+                });
+    }
+
+    /**
+     * 是否通过本地快照读取，见 {@link TableSnapshotService}
+     */
+    private static boolean isSnapshot(Map<String, Object> metadata) {
+        return Boolean.TRUE.equals(metadata.get("snapshot"));
+    }
+
+    /**
+     * 由文档元数据构造基础读取范围：表名、过滤条件与行数限制。
+     */
+    private TableScanSpec.TableScanSpecBuilder scanSpec(Map<String, Object> metadata) {
+        return TableScanSpec.builder()
+                .schema(metadata.get("schema").toString())
+                .tableName(metadata.get("table").toString())
+                .filter(metadata.get("filter") != null ? metadata.get("filter").toString() : null)
+                .limit(metadata.get("limit") instanceof Number number ? number.intValue() : null);
     }
 
     @Override
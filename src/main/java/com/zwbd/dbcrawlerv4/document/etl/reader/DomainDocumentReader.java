@@ -20,6 +20,14 @@ public interface DomainDocumentReader {
      */
     Stream<DocumentContext> openContentStream(DomainDocument domainDoc);
 
+    /**
+     * 可续传的流式读取：读取过程中记录断点，resume 为 true 时从上次断点之后继续。
+     * 不支持断点的数据源忽略 resume，与 {@link #openContentStream(DomainDocument)} 相同。
+     */
+    default Stream<DocumentContext> openContentStream(DomainDocument domainDoc, boolean resume) {
+        return openContentStream(domainDoc);
+    }
+
 
     Set<DocumentType> getSourceType();
 
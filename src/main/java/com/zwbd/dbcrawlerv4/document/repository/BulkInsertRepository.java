@@ -0,0 +1,203 @@
+package com.zwbd.dbcrawlerv4.document.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zwbd.dbcrawlerv4.document.entity.CleaningJobRecord;
+import com.zwbd.dbcrawlerv4.document.entity.DomainDocumentSegment;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.postgresql.core.BaseConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/9 14:30
+ * @Desc: 切片与清洗记录的批量写入。
+ * 两张表的主键都是 IDENTITY，Hibernate 每插入一行都要立即执行一次 INSERT 取回主键，hibernate.jdbc.batch_size 对它们不生效。
+ * 这里绕过持久化上下文直接写表：PostgreSQL 使用 COPY FROM STDIN 流式写入，其他数据库退化为 JDBC 批量插入。
+ * 使用当前事务的连接，与 JPA 的写入在同一事务中提交或回滚；写入的行不会进入持久化上下文，也不会回填主键。
+ */
+@Slf4j
+@Repository
+public class BulkInsertRepository {
+
+    /**
+     * 非 PostgreSQL 数据库批量插入时每批的行数
+     */
+    private static final int BATCH_SIZE = 500;
+
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private static final String SEGMENT_COLUMNS = "ai_domain_document_segment (document_id, sequence, content, metadata)";
+
+    /**
+     * JSON 列的占位符，批量插入时按数据库替换为对应的写法
+     */
+    private static final String JSON_PLACEHOLDER = "{json}";
+
+    private static final String RECORD_COLUMNS = "cleaning_job_record (job_id, source_segment_id, result_content, result_metadata, status, error_message)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public BulkInsertRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 写入一批切片。调用方按批调用，COPY 进行期间连接不能执行其他语句，所以不直接消费加载器的流。
+     *
+     * @return 写入的行数
+     */
+    public long insertSegments(List<DomainDocumentSegment> segments) {
+        return write(SEGMENT_COLUMNS, "?, ?, ?, " + JSON_PLACEHOLDER, segments.iterator(), seg -> new Object[]{
+                seg.getDocumentId(), seg.getSequence(), seg.getContent(), toJson(seg.getMetadata())});
+    }
+
+    /**
+     * 写入一批清洗记录
+     */
+    public long insertRecords(List<CleaningJobRecord> records) {
+        return write(RECORD_COLUMNS, "?, ?, ?, ?, ?, ?", records.iterator(), record -> new Object[]{
+                record.getJobId(), record.getSourceSegmentId(), record.getResultContent(), record.getResultMetadata(),
+                record.getStatus() == null ? null : record.getStatus().name(), record.getErrorMessage()});
+    }
+
+    private <T> long write(String table, String placeholders, Iterator<T> rows, RowMapper<T> mapper) {
+        Long written = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            if (connection.isWrapperFor(BaseConnection.class)) {
+                return copy(connection.unwrap(BaseConnection.class), table, rows, mapper);
+            }
+            String values = placeholders.replace(JSON_PLACEHOLDER, jsonPlaceholder(connection.getMetaData().getDatabaseProductName()));
+            return batchInsert(table, values, rows, mapper);
+        });
+        return written == null ? 0 : written;
+    }
+
+    /**
+     * COPY 的 CSV 格式：字符串一律加引号，未加引号的空值为 NULL
+     */
+    private <T> long copy(BaseConnection connection, String table, Iterator<T> rows, RowMapper<T> mapper) throws SQLException {
+        String sql = "COPY " + table + " FROM STDIN WITH (FORMAT csv)";
+        PGCopyOutputStream out = new PGCopyOutputStream(connection, sql, COPY_BUFFER_BYTES);
+        long count = 0;
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), COPY_BUFFER_BYTES);
+            while (rows.hasNext()) {
+                Object[] values = mapper.map(rows.next());
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writeCsv(writer, values[i]);
+                }
+                writer.write('\n');
+                count++;
+            }
+            // 关闭时结束 COPY，数据库在此时校验并写入全部行
+            writer.close();
+        } catch (IOException | RuntimeException e) {
+            cancelQuietly(out);
+            if (e instanceof IOException io) {
+                throw new SQLException("COPY into " + table + " failed", io);
+            }
+            throw (RuntimeException) e;
+        }
+        log.debug("Copied {} rows into {}", count, table);
+        return count;
+    }
+
+    /**
+     * 写入一个 CSV 字段：null 不写任何内容（COPY 视为 NULL），数字原样写入，
+     * 其他值加双引号，内部的双引号写两次；换行、逗号在引号内原样保留
+     */
+    static void writeCsv(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof Number) {
+            writer.write(value.toString());
+            return;
+        }
+        String text = value.toString();
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                writer.write(text, start, i - start + 1);
+                writer.write('"');
+                start = i + 1;
+            }
+        }
+        writer.write(text, start, text.length() - start);
+        writer.write('"');
+    }
+
+    private static void cancelQuietly(PGCopyOutputStream out) {
+        try {
+            if (out.isActive()) {
+                out.cancelCopy();
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to cancel COPY: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * JSON 列绑定字符串参数时的写法：PostgreSQL 的 jsonb 列不接受 varchar 参数，需要显式转换；
+     * 其他数据库的 JSON 列（或退化为文本的列）直接接受字符串。
+     */
+    static String jsonPlaceholder(String databaseProductName) {
+        return databaseProductName != null && databaseProductName.toLowerCase(Locale.ROOT).contains("postgres")
+                ? "?::jsonb"
+                : "?";
+    }
+
+    private <T> long batchInsert(String table, String placeholders, Iterator<T> rows, RowMapper<T> mapper) {
+        String sql = "INSERT INTO " + table + " VALUES (" + placeholders + ")";
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        long count = 0;
+        while (rows.hasNext()) {
+            batch.add(mapper.map(rows.next()));
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                count += batch.size();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+            count += batch.size();
+        }
+        return count;
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata == null ? Map.of() : metadata);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Failed to serialize segment metadata", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        Object[] map(T row);
+    }
+}
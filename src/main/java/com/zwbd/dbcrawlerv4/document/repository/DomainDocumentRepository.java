@@ -6,8 +6,10 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * @Author: wnli
@@ -27,4 +29,20 @@ public interface DomainDocumentRepository extends JpaRepository<DomainDocument,
 
     // 查找特定状态的文档用于定时任务处理
     List<DomainDocument> findTop10ByStatusOrderByCreatedAtAsc(DomainDocumentStatus status);
+
+    // 切片共享元数据（JSON）。与切片表一样按文档ID直接读写，不经过实体，避免持久化上下文中的旧值覆盖
+    @Query(value = "SELECT segment_metadata FROM ai_domain_document WHERE id = :id", nativeQuery = true)
+    Optional<String> findSegmentMetadata(Long id);
+
+    // 重启后把仍处于生成中的衍生文档标记为失败。使用原生 SQL，不受业务空间限制；
+    // 衍生文档的元数据顶层带有 parent_id 键（见 DocConstant.PARENT_ID），按 JSON 键判断，值中包含该字符串的文档不受影响
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE ai_domain_document SET status = 'FAILED' " +
+            "WHERE status = 'PROCESSING' AND CAST(metadata AS jsonb) ->> 'parent_id' IS NOT NULL", nativeQuery = true)
+    int failInterruptedDerivations();
+
+    @Modifying
+    @Query(value = "UPDATE ai_domain_document SET segment_metadata = :segmentMetadata WHERE id = :id", nativeQuery = true)
+    void updateSegmentMetadata(Long id, String segmentMetadata);
 }
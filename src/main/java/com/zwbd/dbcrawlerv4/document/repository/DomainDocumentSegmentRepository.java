@@ -1,6 +1,7 @@
 package com.zwbd.dbcrawlerv4.document.repository;
 
 import com.zwbd.dbcrawlerv4.document.entity.DomainDocumentSegment;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -21,6 +22,8 @@ public interface DomainDocumentSegmentRepository extends JpaRepository<DomainDoc
     // 1. 批量查询：根据 docId 查出所有切片，并按顺序排好
     List<DomainDocumentSegment> findByDocumentIdOrderBySequenceAsc(Long documentId);
 
+    long countByDocumentId(Long documentId);
+
     // 2. 批量删除：根据 docId 删除该文档所有切片
     // 注意：加 @Modifying 和 @Transactional 才能执行 delete 语句
     @Modifying
@@ -37,4 +40,9 @@ public interface DomainDocumentSegmentRepository extends JpaRepository<DomainDoc
     Page<DomainDocumentSegment> findByDocumentIdAndSequenceGreaterThanOrderBySequenceAsc(
             Long documentId, Integer lastSequence, Pageable pageable
     );
+
+    // 键集分页：按 (documentId, sequence) 索引定位，取 sequence > X 的接下来 N 条，不做 count 查询，翻页代价与位置无关
+    List<DomainDocumentSegment> findByDocumentIdAndSequenceGreaterThanOrderBySequenceAsc(
+            Long documentId, Long lastSequence, Limit limit
+    );
 }
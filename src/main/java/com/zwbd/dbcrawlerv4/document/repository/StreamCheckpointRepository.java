@@ -0,0 +1,20 @@
+package com.zwbd.dbcrawlerv4.document.repository;
+
+import com.zwbd.dbcrawlerv4.document.entity.StreamCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/3 15:42
+ * @Desc:
+ */
+@Repository
+public interface StreamCheckpointRepository extends JpaRepository<StreamCheckpoint, Long> {
+
+    Optional<StreamCheckpoint> findByDocumentId(Long documentId);
+
+    void deleteByDocumentId(Long documentId);
+}
@@ -47,8 +47,8 @@ public class BusinessActionService {
         // 1. 校验文档是否存在
         DomainDocument doc = domainDocumentService.getDomainDocument(docId);
 
-        // 2. 校验文档状态
-        if (doc.getStatus() == DomainDocumentStatus.PROCESSING) {
+        // 2. 校验文档状态，生成失败的文档内容不完整
+        if (doc.getStatus() == DomainDocumentStatus.PROCESSING || doc.getStatus() == DomainDocumentStatus.FAILED) {
             throw new IllegalStateException("Document is not READY. Current status: " + doc.getStatus());
         }
 
@@ -18,7 +18,9 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * @Author: wnli
@@ -47,6 +49,11 @@ public class CleaningCopilotService {
     @Autowired
     private DomainDocumentRepository domainDocumentRepository;
 
+    /**
+     * 实体映射结果每批提交的条数
+     */
+    private static final int ENTITY_CHUNK_SIZE = 100;
+
     public record EntityResult(
             String entity,      // 提取出的实体名称
             String category     // 分类：小区、乡镇/街道、其他
@@ -54,42 +61,49 @@ public class CleaningCopilotService {
     }
 
     public void genEntity(Long documentId) {
-        //获取原始地址
-        ArrayList<DocumentContext> results = new ArrayList<>();
-        log.info("document id: {}", documentId);
-        List<DocumentContext> documentContents = documentContextService.getDocumentContents(documentId);
-        documentContents.stream().forEach(dc -> {
-            //搜索目标实体
-            List<Document> documents = documentManagementService.search(dc.getText(), 5, 0.4);
-            List<String> list = documents.stream().map(Document::getText).toList();
-            log.info("search entity {} ,list: {}", documents.size(), list);
-            //llm实体映射
-            String prompt = String.format("""
-                    我需要进行地址对齐。
-                    原始地址：【 %s 】
-                    标准地址库候选：
-                    %s
-
-                    要求：
-                    1. entity: 提取核心地名（去除楼栋、单元、户号等详细后缀）。
-                    2. category: 必须从以下三个类别中选择一个：["小区", "乡镇/街道", "其他"]。
-                       - "小区"：包括公寓、家园、新村、住宅区。
-                       - "乡镇/街道"：包括行政村、工业园、镇政府、街道办。
-                       - "其他"：无法归类或非地名。
-                    """, dc, list);
-            EntityResult entity = chatClient.prompt(prompt).call().entity(EntityResult.class);
-            HashMap<String, Object> map = new HashMap<>(dc.getMetadata());
-            map.put("原始地址", dc);
-            map.put("近似实体列表", list);
-            map.put("映射后实体", entity);
-            results.add(new DocumentContext(entity.entity,map));
-        });
-        log.info("gen entity result: {}", results);
         log.info("document id: {}", documentId);
         DomainDocument domainDocument = domainDocumentRepository.findById(documentId).get();
         DomainDocument clean = domainDocument.clone();
         DomainDocument save = domainDocumentRepository.save(clean);
-        documentContextService.saveDocumentContext(save.getId(),results);
+        //流式读取原始地址，映射结果按批写入：LLM 调用在事务外执行，每批在独立的事务中提交
+        long sequence = 0;
+        try (Stream<DocumentContext> documentContents = documentContextService.streamDocumentContents(documentId)) {
+            List<DocumentContext> chunk = new ArrayList<>(ENTITY_CHUNK_SIZE);
+            Iterator<DocumentContext> iterator = documentContents.iterator();
+            while (iterator.hasNext()) {
+                DocumentContext dc = iterator.next();
+                //搜索目标实体
+                List<Document> documents = documentManagementService.search(dc.getText(), 5, 0.4);
+                List<String> list = documents.stream().map(Document::getText).toList();
+                log.info("search entity {} ,list: {}", documents.size(), list);
+                //llm实体映射
+                String prompt = String.format("""
+                        我需要进行地址对齐。
+                        原始地址：【 %s 】
+                        标准地址库候选：
+                        %s
+
+                        要求：
+                        1. entity: 提取核心地名（去除楼栋、单元、户号等详细后缀）。
+                        2. category: 必须从以下三个类别中选择一个：["小区", "乡镇/街道", "其他"]。
+                           - "小区"：包括公寓、家园、新村、住宅区。
+                           - "乡镇/街道"：包括行政村、工业园、镇政府、街道办。
+                           - "其他"：无法归类或非地名。
+                        """, dc, list);
+                EntityResult entity = chatClient.prompt(prompt).call().entity(EntityResult.class);
+                HashMap<String, Object> map = new HashMap<>(dc.getMetadata());
+                map.put("原始地址", dc);
+                map.put("近似实体列表", list);
+                map.put("映射后实体", entity);
+                chunk.add(new DocumentContext(entity.entity, map));
+                if (chunk.size() == ENTITY_CHUNK_SIZE || !iterator.hasNext()) {
+                    sequence += documentContextService.saveDocumentContexts(save.getId(), sequence, chunk.stream());
+                    chunk.clear();
+                }
+            }
+            log.info("gen entity result size: {}", sequence);
+        }
+        log.info("document id: {}", documentId);
     }
 
     /**
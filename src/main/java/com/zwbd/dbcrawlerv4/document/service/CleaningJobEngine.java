@@ -19,8 +19,10 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @Author: wnli
@@ -36,7 +38,7 @@ public class CleaningJobEngine {
     @Autowired
     private CleaningJobRecordRepository recordRepo;
     @Autowired
-    private DomainDocumentSegmentRepository segmentRepo;
+    private BulkInsertRepository bulkInsertRepository;
     @Autowired
     private CleaningSessionMsgRepository msgRepo;
     @Autowired
@@ -82,13 +84,15 @@ public class CleaningJobEngine {
         job.setErrorSourceId(null);
         jobRepo.save(job);
 
-        // todo  3. 批量流式处理 (Batch Processing),应使用 StreamUtils 或 Scroll 游标避免一次性加载
-        List<DomainDocumentSegment> sourceSegments = segmentRepo.findByDocumentIdOrderBySequenceAsc(job.getSourceDocumentId());
+        // 3. 批量流式处理 (Batch Processing)，按键集分页读取源切片，避免一次性加载
         int batchSize = 1000;
         List<CleaningJobRecord> batchBuffer = new ArrayList<>();
         DomainDocumentSegment tmp = null;
-        try(PythonScriptProcessor processor = new PythonScriptProcessor(job.getScriptContent())){
-            for (DomainDocumentSegment segment : sourceSegments) {
+        try (PythonScriptProcessor processor = new PythonScriptProcessor(job.getScriptContent());
+             Stream<DomainDocumentSegment> sourceSegments = documentContextService.streamSegments(job.getSourceDocumentId())) {
+            Iterator<DomainDocumentSegment> iterator = sourceSegments.iterator();
+            while (iterator.hasNext()) {
+                DomainDocumentSegment segment = iterator.next();
                 {
                     tmp = segment;
                     // --- 执行清洗 ---
@@ -106,7 +110,7 @@ public class CleaningJobEngine {
                 }
                 // --- 批量落盘 ---
                 if (batchBuffer.size() >= batchSize) {
-                    recordRepo.saveAll(batchBuffer);
+                    bulkInsertRepository.insertRecords(batchBuffer);
                     job.setProcessedRows(job.getProcessedRows() + batchBuffer.size());
                     jobRepo.save(job); // 更新进度
                     batchBuffer.clear();
@@ -117,7 +121,7 @@ public class CleaningJobEngine {
             handleExecutionError(job, tmp, e);
             // 保存当前已缓冲的成功数据，方便用户查看报错前的数据
             if (!batchBuffer.isEmpty()) {
-                recordRepo.saveAll(batchBuffer);
+                bulkInsertRepository.insertRecords(batchBuffer);
             }
             return; // 立即终止任务
         }
@@ -125,7 +129,7 @@ public class CleaningJobEngine {
 
         // 处理剩余缓冲
         if (!batchBuffer.isEmpty()) {
-            recordRepo.saveAll(batchBuffer);
+            bulkInsertRepository.insertRecords(batchBuffer);
             job.setProcessedRows(job.getProcessedRows() + batchBuffer.size());
         }
 
@@ -0,0 +1,149 @@
+package com.zwbd.dbcrawlerv4.document.service;
+
+import com.zwbd.dbcrawlerv4.common.web.GlobalContext;
+import com.zwbd.dbcrawlerv4.document.entity.DocumentContext;
+import com.zwbd.dbcrawlerv4.document.entity.DomainDocumentStatus;
+import com.zwbd.dbcrawlerv4.document.etl.processor.PythonScriptProcessor;
+import com.zwbd.dbcrawlerv4.document.repository.DomainDocumentRepository;
+import com.zwbd.dbcrawlerv4.document.repository.DomainDocumentSegmentRepository;
+import com.zwbd.dbcrawlerv4.monitor.service.TaskProgress;
+import com.zwbd.dbcrawlerv4.monitor.service.TaskProgressService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/10 14:20
+ * @Desc: 衍生文档的后台生成：对父文档的切片执行清洗脚本并写入衍生文档。
+ * 父文档按顺序流式读取，每处理 CHUNK_SIZE 个切片提交一次结果，内存占用与文档大小无关；
+ * 已提交的切片立即可以查询，进度通过 {@link TaskProgressService} 查看，取消后不再提交新的分段。
+ * 衍生文档状态：生成中为 PROCESSING，完成为 PROCESSED，失败或取消为 FAILED（已提交的分段保留，但不完整，不能执行业务操作）。
+ * 生成进度只在内存中，应用重启时中断的生成不会继续，启动时把仍为 PROCESSING 的衍生文档标记为 FAILED。
+ */
+@Slf4j
+@Service
+public class DerivedDocumentMaterializer {
+
+    /**
+     * 每次提交处理的父文档切片数
+     */
+    private static final int CHUNK_SIZE = 1000;
+
+    @Autowired
+    private DocumentContextService documentContextService;
+
+    @Autowired
+    private DomainDocumentRepository domainDocumentRepository;
+
+    @Autowired
+    private DomainDocumentSegmentRepository domainDocumentSegmentRepository;
+
+    @Autowired
+    private TaskProgressService taskProgressService;
+
+    /**
+     * 上次运行中断的生成任务无法恢复，对应的衍生文档标记为失败
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedDerivations() {
+        try {
+            int count = domainDocumentRepository.failInterruptedDerivations();
+            if (count > 0) {
+                log.warn("Marked {} derived documents interrupted by the last shutdown as FAILED", count);
+            }
+        } catch (RuntimeException e) {
+            // 元数据不是合法 JSON 等情况不应阻止应用启动
+            log.error("Failed to mark interrupted derivations as FAILED", e);
+        }
+    }
+
+    /**
+     * 登记生成任务，调用方拿到任务 ID 后再调用 {@link #materialize}
+     */
+    public TaskProgress startTask(Long derivedId, String docName) {
+        return taskProgressService.startTask(TaskProgressService.TYPE_DOCUMENT_DERIVATION,
+                "Deriving document " + derivedId + ": " + docName);
+    }
+
+    /**
+     * 在后台生成衍生文档。衍生文档记录必须已提交，否则后台线程查不到它。
+     * 生成任务排队已满时抛出 {@link java.util.concurrent.RejectedExecutionException}，调用方应改用 {@link #reject}。
+     *
+     * @param spaceId 业务空间，后台线程中没有请求上下文，需要显式传入
+     */
+    @Async("documentDerivationExecutor")
+    public void materialize(Long parentId, Long derivedId, String pythonScript, String spaceId, TaskProgress progress) {
+        GlobalContext.set(GlobalContext.KEY_SPACE_ID, spaceId);
+        try {
+            long total = domainDocumentSegmentRepository.countByDocumentId(parentId);
+            progress.addTotalSteps((int) Math.min(total, Integer.MAX_VALUE));
+            long results = run(parentId, derivedId, pythonScript, progress);
+            updateStatus(derivedId, DomainDocumentStatus.PROCESSED);
+            progress.complete("Derived " + results + " segments from " + total + " segments");
+        } catch (Exception e) {
+            log.error("Failed to derive document {} from {}", derivedId, parentId, e);
+            updateStatus(derivedId, DomainDocumentStatus.FAILED);
+            progress.fail(e.getMessage());
+        } finally {
+            GlobalContext.clear();
+        }
+    }
+
+    /**
+     * 生成任务没有被线程池接收：衍生文档标记为失败。
+     * 在事务提交后的回调中调用，原事务已结束，需要在新事务中更新状态。
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void reject(Long derivedId, TaskProgress progress) {
+        updateStatus(derivedId, DomainDocumentStatus.FAILED);
+        progress.fail("Too many document derivations are queued, retry later");
+    }
+
+    private long run(Long parentId, Long derivedId, String pythonScript, TaskProgress progress) {
+        long sequence = 0;
+        long processed = 0;
+        try (PythonScriptProcessor processor = new PythonScriptProcessor(pythonScript);
+             Stream<DocumentContext> parentContent = documentContextService.streamDocumentContents(parentId)) {
+            List<DocumentContext> chunk = new ArrayList<>();
+            int chunkInputs = 0;
+            Iterator<DocumentContext> iterator = parentContent.iterator();
+            while (iterator.hasNext()) {
+                chunk.addAll(processor.process(iterator.next()));
+                chunkInputs++;
+                if (chunkInputs == CHUNK_SIZE || !iterator.hasNext()) {
+                    progress.checkCancelled();
+                    // 每个分段在独立的事务中提交
+                    sequence += documentContextService.saveDocumentContexts(derivedId, sequence, chunk.stream());
+                    processed += chunkInputs;
+                    progress.addCompletedSteps(chunkInputs);
+                    progress.updateMessage("Processed " + processed + " segments");
+                    chunk.clear();
+                    chunkInputs = 0;
+                }
+            }
+        }
+        return sequence;
+    }
+
+    private void updateStatus(Long docId, DomainDocumentStatus status) {
+        try {
+            domainDocumentRepository.findById(docId).ifPresent(doc -> {
+                doc.setStatus(status);
+                domainDocumentRepository.save(doc);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Failed to update status of document {} to {}: {}", docId, status, e.getMessage());
+        }
+    }
+}
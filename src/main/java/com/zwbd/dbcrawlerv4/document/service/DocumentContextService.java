@@ -1,19 +1,30 @@
 package com.zwbd.dbcrawlerv4.document.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zwbd.dbcrawlerv4.common.exception.CommonException;
 import com.zwbd.dbcrawlerv4.document.entity.DocumentContext;
 import com.zwbd.dbcrawlerv4.document.entity.DomainDocumentSegment;
+import com.zwbd.dbcrawlerv4.document.entity.SegmentMetadata;
+import com.zwbd.dbcrawlerv4.document.repository.BulkInsertRepository;
+import com.zwbd.dbcrawlerv4.document.repository.DomainDocumentRepository;
 import com.zwbd.dbcrawlerv4.document.repository.DomainDocumentSegmentRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.ai.document.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @Author: wnli
@@ -23,54 +34,213 @@ import java.util.stream.Collectors;
 @Service
 public class DocumentContextService {
 
+    /**
+     * 流式保存时每批写入的切片数
+     */
+    private static final int SAVE_BATCH_SIZE = 5000;
+
+    /**
+     * 流式读取时每页的切片数
+     */
+    private static final int STREAM_PAGE_SIZE = 1000;
+
     @Autowired
     private DomainDocumentSegmentRepository domainDocumentSegmentRepository;
 
+    @Autowired
+    private BulkInsertRepository bulkInsertRepository;
+
+    @Autowired
+    private DomainDocumentRepository domainDocumentRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     /**
      * 业务需求：保存文档切片（批量插入）
      */
     @Transactional
     public void saveDocumentContext(Long docId, List<DocumentContext> contexts) {
-        List<DomainDocumentSegment> segments = new ArrayList<>();
-        for (int i = 0; i < contexts.size(); i++) {
-            DomainDocumentSegment seg = new DomainDocumentSegment();
-            seg.setDocumentId(docId);
-            seg.setSequence((long)i); // 记录顺序
-            seg.setContent(contexts.get(i).getText());
-            seg.setMetadata(contexts.get(i).getMetadata());
-            segments.add(seg);
-        }
-        domainDocumentSegmentRepository.saveAll(segments);
+        saveDocumentContexts(docId, contexts.stream());
     }
 
     @Transactional
     public void saveDocuments(Long docId, List<Document> contexts) {
-        List<DomainDocumentSegment> segments = new ArrayList<>();
-        for (int i = 0; i < contexts.size(); i++) {
+        saveDocuments(docId, contexts.stream());
+    }
+
+    /**
+     * 流式保存文档切片：每攒够一批批量写入一次，内存占用与切片总数无关。
+     * 切片不经过持久化上下文（IDENTITY 主键下 Hibernate 无法批量插入），所有批次在同一事务中，失败时整体回滚。
+     * 第一批切片中取值全部相同的元数据作为文档的切片共享元数据只保存一份，每个切片只保存差异（见 {@link SegmentMetadata}）。
+     *
+     * @return 保存的切片数
+     */
+    @Transactional
+    public long saveDocuments(Long docId, Stream<Document> documents) {
+        return saveDocumentContexts(docId, documents.map(document -> new DocumentContext(document.getText(), document.getMetadata())));
+    }
+
+    /**
+     * 流式保存文档切片，见 {@link #saveDocuments(Long, Stream)}
+     *
+     * @return 保存的切片数
+     */
+    @Transactional
+    public long saveDocumentContexts(Long docId, Stream<DocumentContext> contexts) {
+        return saveDocumentContexts(docId, 0, contexts);
+    }
+
+    /**
+     * 追加保存文档切片，序号从 firstSequence 开始，用于分段提交的长任务
+     *
+     * @return 保存的切片数
+     */
+    @Transactional
+    public long saveDocumentContexts(Long docId, long firstSequence, Stream<DocumentContext> contexts) {
+        List<DomainDocumentSegment> batch = new ArrayList<>(SAVE_BATCH_SIZE);
+        Map<String, Object> shared = null;
+        long sequence = firstSequence;
+        Iterator<DocumentContext> iterator = contexts.iterator();
+        while (iterator.hasNext()) {
+            DocumentContext context = iterator.next();
             DomainDocumentSegment seg = new DomainDocumentSegment();
             seg.setDocumentId(docId);
-            seg.setSequence((long)i); // 记录顺序
-            seg.setContent(contexts.get(i).getText());
-            seg.setMetadata(contexts.get(i).getMetadata());
-            segments.add(seg);
+            seg.setSequence(sequence++); // 记录顺序
+            seg.setContent(context.getText());
+            seg.setMetadata(context.getMetadata());
+            batch.add(seg);
+            if (batch.size() == SAVE_BATCH_SIZE) {
+                shared = flushBatch(docId, batch, shared);
+            }
+        }
+        flushBatch(docId, batch, shared);
+        return sequence - firstSequence;
+    }
+
+    /**
+     * 写入一批切片，返回本次保存使用的共享元数据
+     */
+    private Map<String, Object> flushBatch(Long docId, List<DomainDocumentSegment> batch, Map<String, Object> shared) {
+        if (batch.isEmpty()) {
+            return shared;
+        }
+        if (shared == null) {
+            shared = getSharedMetadata(docId);
+            // 文档已有共享元数据时沿用，否则由第一批切片确定
+            if (shared.isEmpty()) {
+                shared = SegmentMetadata.common(batch.stream().map(DomainDocumentSegment::getMetadata).toList());
+                if (!shared.isEmpty()) {
+                    domainDocumentRepository.updateSegmentMetadata(docId, toJson(shared));
+                }
+            }
+        }
+        for (DomainDocumentSegment seg : batch) {
+            seg.setMetadata(SegmentMetadata.delta(shared, seg.getMetadata()));
+        }
+        bulkInsertRepository.insertSegments(batch);
+        batch.clear();
+        return shared;
+    }
+
+    /**
+     * 文档的切片共享元数据，不存在时返回空 Map
+     */
+    private Map<String, Object> getSharedMetadata(Long docId) {
+        return domainDocumentRepository.findSegmentMetadata(docId)
+                .map(json -> {
+                    try {
+                        Map<String, Object> shared = objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {
+                        });
+                        return shared == null ? Map.<String, Object>of() : Collections.unmodifiableMap(shared);
+                    } catch (JsonProcessingException e) {
+                        throw new CommonException("Corrupted segment metadata of document " + docId, e);
+                    }
+                })
+                .orElseGet(Map::of);
+    }
+
+    private String toJson(Map<String, Object> shared) {
+        try {
+            return objectMapper.writeValueAsString(shared);
+        } catch (JsonProcessingException e) {
+            throw new CommonException("Failed to serialize segment metadata", e);
         }
-        domainDocumentSegmentRepository.saveAll(segments);
     }
 
     public DomainDocumentSegment getDocSegment(Long contextId) {
         DomainDocumentSegment segment = domainDocumentSegmentRepository.findById(contextId).get();
+        segment.setSharedMetadata(getSharedMetadata(segment.getDocumentId()));
         return segment;
     }
 
+    /**
+     * 按顺序流式读取文档切片：每次按 (documentId, sequence) 键集取一页，读完一页再取下一页，
+     * 内存中最多只有一页切片。每页查询独立执行，不需要在整个读取过程中占用连接或事务；
+     * 在事务中调用时取出的切片会立即脱离持久化上下文，避免上下文随切片数增长。
+     */
+    public Stream<DomainDocumentSegment> streamSegments(Long docId) {
+        Map<String, Object> shared = getSharedMetadata(docId);
+        Iterator<DomainDocumentSegment> iterator = new Iterator<>() {
+            private List<DomainDocumentSegment> page = List.of();
+            private int index = 0;
+            private long lastSequence = -1;
+            private boolean exhausted = false;
+
+            @Override
+            public boolean hasNext() {
+                if (index < page.size()) {
+                    return true;
+                }
+                if (exhausted) {
+                    return false;
+                }
+                page = domainDocumentSegmentRepository.findByDocumentIdAndSequenceGreaterThanOrderBySequenceAsc(
+                        docId, lastSequence, Limit.of(STREAM_PAGE_SIZE));
+                for (DomainDocumentSegment segment : page) {
+                    entityManager.detach(segment);
+                    segment.setSharedMetadata(shared);
+                }
+                index = 0;
+                exhausted = page.size() < STREAM_PAGE_SIZE;
+                if (!page.isEmpty()) {
+                    lastSequence = page.get(page.size() - 1).getSequence();
+                }
+                return !page.isEmpty();
+            }
+
+            @Override
+            public DomainDocumentSegment next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(index++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * 按顺序流式读取文档内容，见 {@link #streamSegments(Long)}
+     */
+    public Stream<DocumentContext> streamDocumentContents(Long docId) {
+        return streamSegments(docId).map(DomainDocumentSegment::toDocumentContext);
+    }
+
     /**
      * 业务需求：获取文档内容（批量查询）
+     * 会把全部切片载入内存，只适合小文档；大文档使用 {@link #streamDocumentContents(Long)}
      */
     public List<DocumentContext> getDocumentContents(Long docId) {
+        Map<String, Object> shared = getSharedMetadata(docId);
         return domainDocumentSegmentRepository.findByDocumentIdOrderBySequenceAsc(docId)
                 .stream()
                 .map(seg -> {
                     // 转回业务对象
-                    return new DocumentContext(seg.getContent(), seg.getMetadata());
+                    return new DocumentContext(seg.getContent(), SegmentMetadata.merge(shared, seg.getMetadata()));
                 })
                 .collect(Collectors.toList());
     }
@@ -97,12 +267,13 @@ public class DocumentContextService {
         // 2. 调用 Repository
         Page<DomainDocumentSegment> segmentPage = domainDocumentSegmentRepository.findByDocumentIdOrderBySequenceAsc(docId, pageable);
         // 3. 转换对象 (Entity -> DTO/VO)
-        return segmentPage.map(this::convertToContext);
+        Map<String, Object> shared = getSharedMetadata(docId);
+        return segmentPage.map(seg -> convertToContext(seg, shared));
     }
 
     // 辅助转换方法
-    private DocumentContext convertToContext(DomainDocumentSegment seg) {
-        DocumentContext ctx = new DocumentContext(seg.getContent(), seg.getMetadata());
+    private DocumentContext convertToContext(DomainDocumentSegment seg, Map<String, Object> shared) {
+        DocumentContext ctx = new DocumentContext(seg.getContent(), SegmentMetadata.merge(shared, seg.getMetadata()));
         // 如果需要返回该切片在数据库里的ID（用于后续精确修改/删除），也可以在这里set进去
         // ctx.getMetadata().put("segmentId", seg.getId());
         return ctx;
@@ -1,15 +1,23 @@
 package com.zwbd.dbcrawlerv4.document.service;
 
 import com.alibaba.excel.EasyExcel;
+import com.alibaba.excel.ExcelWriter;
+import com.alibaba.excel.write.metadata.WriteSheet;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.BaseMetadata;
 import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.DocumentType;
+import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.FileUploadMetadata;
 import com.zwbd.dbcrawlerv4.ai.service.DocumentManagementService;
+import com.zwbd.dbcrawlerv4.common.web.GlobalContext;
+import com.zwbd.dbcrawlerv4.datasource.service.TableSnapshotService;
+import com.zwbd.dbcrawlerv4.document.dto.DerivedDocumentDto;
 import com.zwbd.dbcrawlerv4.document.entity.*;
 import com.zwbd.dbcrawlerv4.document.etl.loader.DocumentLoader;
+import com.zwbd.dbcrawlerv4.document.etl.processor.FusedPythonPipeline;
 import com.zwbd.dbcrawlerv4.document.etl.processor.PythonScriptProcessor;
 import com.zwbd.dbcrawlerv4.document.etl.reader.DomainDocumentReader;
 import com.zwbd.dbcrawlerv4.document.repository.DomainDocumentRepository;
+import com.zwbd.dbcrawlerv4.monitor.service.TaskProgress;
 import com.zwbd.dbcrawlerv4.utils.MapUtil;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -18,6 +26,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -27,6 +37,9 @@ import java.io.PrintWriter;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Stream;
 
 import static com.zwbd.dbcrawlerv4.common.config.CommonConfig.objectMapper;
@@ -42,6 +55,11 @@ import static com.zwbd.dbcrawlerv4.document.entity.DocConstant.PARENT_ID;
 @Service
 public class DomainDocumentService {
 
+    /**
+     * 导出时每批写入的行数
+     */
+    private static final int EXPORT_BATCH_SIZE = 1000;
+
     @Autowired
     private DomainDocumentRepository domainDocumentRepository;
 
@@ -51,6 +69,15 @@ public class DomainDocumentService {
 
     @Autowired
     private DocumentContextService documentContextService;
+
+    @Autowired
+    private ParsedDocumentCache parsedDocumentCache;
+
+    @Autowired
+    private DerivedDocumentMaterializer derivedDocumentMaterializer;
+
+    @Autowired
+    private TableSnapshotService tableSnapshotService;
 //    @Autowired
 //    private DomainDocumentSegmentRepository domainDocumentSegmentRepository;
 
@@ -84,6 +111,23 @@ public class DomainDocumentService {
      */
     @Transactional
     public DomainDocument initDomainDocument(BaseMetadata metadata) {
+        return initDomainDocument(metadata, () -> false);
+    }
+
+    /**
+     * 初始化领域文档，cancelled 在事务提交前调用一次，返回 true 时整个事务回滚并抛出 {@link CancellationException}。
+     * 用于调用方已放弃（如批量导入超时）时避免留下领域文档。
+     */
+    @Transactional
+    public DomainDocument initDomainDocument(BaseMetadata metadata, BooleanSupplier cancelled) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Document initialization cancelled before commit");
+                }
+            }
+        });
         DocumentType sourceType = metadata.getDocumentType();
         log.info("Starting ingestion for type: {}", sourceType);
 
@@ -91,10 +135,7 @@ public class DomainDocumentService {
         DocumentLoader loader = documentLoaders.get(sourceType);
         Assert.notNull(loader, "Unsupported source type: " + sourceType);
 
-        // 2. 加载文档
-        List<Document> documents = loader.load(metadata);
-
-        // 生成规范化领域文档
+        // 2. 生成规范化领域文档
         DomainDocument doc = new DomainDocument();
         doc.setSourceId(metadata.getSourceId());
         doc.setDocName(metadata.getSourceName());
@@ -107,12 +148,25 @@ public class DomainDocumentService {
         // 记录文档
         DomainDocument saved = domainDocumentRepository.save(doc);
 
-        // 记录文档内容
-        documentContextService.saveDocuments(saved.getId(), documents);
-        log.info("Initialized DomainDocument id={} for sourceId={} segment size={}", saved.getId(), metadata.getSourceId(),documents.size());
+        // 3. 流式加载并分批记录文档内容，关闭时释放加载器持有的连接或文件
+        long segmentCount;
+        try (Stream<Document> documents = openDocuments(loader, metadata)) {
+            segmentCount = documentContextService.saveDocuments(saved.getId(), documents);
+        }
+        log.info("Initialized DomainDocument id={} for sourceId={} segment size={}", saved.getId(), metadata.getSourceId(), segmentCount);
         return saved;
     }
 
+    /**
+     * 上传文件按内容哈希复用解析结果，相同内容的文件只解析一次
+     */
+    private Stream<Document> openDocuments(DocumentLoader loader, BaseMetadata metadata) {
+        if (metadata instanceof FileUploadMetadata fileMetadata && StringUtils.hasText(fileMetadata.getContentHash())) {
+            return parsedDocumentCache.stream(fileMetadata.getContentHash(), loader, fileMetadata);
+        }
+        return loader.stream(metadata);
+    }
+
     /**
      * 流式文档内容查询
      *
@@ -120,55 +174,62 @@ public class DomainDocumentService {
      * @return
      */
     public Stream<DocumentContext> getStream(Long docId) {
+        return openStream(docId, false, false);
+    }
+
+    /**
+     * 记录断点的流式文档内容查询，用于长时间的导出与入库。
+     * 虚拟文档读取过程中会持久化最后一条已消费记录的位置，resume 为 true 时从该位置之后继续，
+     * 失败的任务只需重做尾部数据。
+     *
+     * @param resume 是否从上次的断点继续
+     */
+    public Stream<DocumentContext> getStream(Long docId, boolean resume) {
+        return openStream(docId, true, resume);
+    }
+
+    private Stream<DocumentContext> openStream(Long docId, boolean checkpoint, boolean resume) {
         DomainDocument domainDocument = getDomainDocument(docId);
         if (domainDocument.getDocMode().equals(DocMode.VIRTUAL)) {
             DomainDocumentReader reader = documentReaders.get(domainDocument.getDocumentType());
-            Stream<DocumentContext> baseStream = reader.openContentStream(domainDocument);
+            Stream<DocumentContext> baseStream = checkpoint
+                    ? reader.openContentStream(domainDocument, resume)
+                    : reader.openContentStream(domainDocument);
             String pipelineJson = (String) domainDocument.getMetadata().get(META_KEY_PIPELINE);
             //数据清洗
             if (StringUtils.hasText(pipelineJson)) {
                 List<PipelineConfig> configs = parsePipelineJson(pipelineJson);
-                // 简化逻辑：直接遍历并应用，默认都是 Python 脚本
-                for (PipelineConfig config : configs) {
-                    // 实例化处理器 (注意：Stream close 时需要关闭 Context)
-                    PythonScriptProcessor processor = new PythonScriptProcessor(config.getScript());
-
-                    // 使用 flatMap 挂载
+                // 默认都是 Python 脚本：所有步骤融合到同一个 Context 中，每行只跨越一次宿主边界
+                if (!configs.isEmpty()) {
+                    // 注意：Stream close 时需要关闭 Context
+                    FusedPythonPipeline pipeline = new FusedPythonPipeline(
+                            configs.stream().map(PipelineConfig::getScript).toList());
                     baseStream = baseStream
-                            .flatMap(d -> processor.process(d).stream())
-                            .onClose(processor::close);
+                            .flatMap(d -> pipeline.process(d).stream())
+                            .onClose(pipeline::close);
                 }
             }
 
             return baseStream;
         } else {
-            return documentContextService.getDocumentContents(docId).stream();
+            return documentContextService.streamDocumentContents(docId);
         }
     }
 
     /**
      * 导出 Excel (动态表头)
+     * 读取两遍切片流：第一遍只收集列名，第二遍按批写入行，内存占用与行数无关
      */
     public void exportToExcel(Long docId, OutputStream outputStream) throws IOException {
-        List<DocumentContext> contexts = documentContextService.getDocumentContents(docId);
-
-        // 1. 数据预处理：扁平化所有 Metadata
-        List<Map<String, Object>> flatDataList = new ArrayList<>();
+        // 1. 收集所有列名
         Set<String> allKeys = new LinkedHashSet<>();
 
         // 优先固定展示的列
         allKeys.add("id");
         allKeys.add("content"); // 核心文本内容
 
-        for (DocumentContext ctx : contexts) {
-            Map<String, Object> flatMap = MapUtil.flatten(ctx.getMetadata());
-
-            // 注入核心属性
-            flatMap.put("id", ctx.getId()); // 文档片段ID
-            flatMap.put("content", ctx.getText());
-
-            flatDataList.add(flatMap);
-            allKeys.addAll(flatMap.keySet()); // 收集所有可能的列名
+        try (Stream<DocumentContext> contexts = documentContextService.streamDocumentContents(docId)) {
+            contexts.forEach(ctx -> allKeys.addAll(MapUtil.flatten(ctx.getMetadata()).keySet()));
         }
 
         // 2. 构建 EasyExcel 需要的动态表头
@@ -178,21 +239,34 @@ public class DomainDocumentService {
             heads.add(Collections.singletonList(key));
         }
 
-        // 3. 构建数据行
-        List<List<Object>> rows = new ArrayList<>();
-        for (Map<String, Object> data : flatDataList) {
-            List<Object> row = new ArrayList<>();
-            for (String key : sortedKeys) {
-                row.add(data.get(key));
+        // 3. 逐批构建数据行并直接写入传入的 outputStream
+        ExcelWriter excelWriter = EasyExcel.write(outputStream).head(heads).build();
+        WriteSheet sheet = EasyExcel.writerSheet("清洗结果").build();
+        try (Stream<DocumentContext> contexts = documentContextService.streamDocumentContents(docId)) {
+            List<List<Object>> rows = new ArrayList<>(EXPORT_BATCH_SIZE);
+            Iterator<DocumentContext> iterator = contexts.iterator();
+            while (iterator.hasNext()) {
+                DocumentContext ctx = iterator.next();
+                Map<String, Object> flatMap = MapUtil.flatten(ctx.getMetadata());
+
+                // 注入核心属性
+                flatMap.put("id", ctx.getId()); // 文档片段ID
+                flatMap.put("content", ctx.getText());
+
+                List<Object> row = new ArrayList<>(sortedKeys.size());
+                for (String key : sortedKeys) {
+                    row.add(flatMap.get(key));
+                }
+                rows.add(row);
+                if (rows.size() == EXPORT_BATCH_SIZE) {
+                    excelWriter.write(rows, sheet);
+                    rows.clear();
+                }
             }
-            rows.add(row);
+            excelWriter.write(rows, sheet);
+        } finally {
+            excelWriter.finish();
         }
-
-        // 4. 直接写入传入的 outputStream
-        EasyExcel.write(outputStream)
-                .head(heads)
-                .sheet("清洗结果")
-                .doWrite(rows);
     }
 
     /**
@@ -201,18 +275,19 @@ public class DomainDocumentService {
      * @param pkKey 在 metadata 中代表主键的 key (例如 "sourceId")
      */
     public void exportToSql(Long docId, String tableName, String pkKey, HttpServletResponse response) throws IOException {
-        List<DocumentContext> contexts = documentContextService.getDocumentContents(docId);
-
         response.setContentType("application/sql");
         response.setHeader("Content-Disposition", "attachment; filename=\"update_script_" + docId + ".sql\"");
         response.setCharacterEncoding("UTF-8");
 
-        try (PrintWriter writer = response.getWriter()) {
+        try (PrintWriter writer = response.getWriter();
+             Stream<DocumentContext> contexts = documentContextService.streamDocumentContents(docId)) {
             writer.println("-- SQL Update Script for Document: " + docId);
             writer.println("-- Target Table: " + tableName);
             writer.println("START TRANSACTION;");
 
-            for (DocumentContext ctx : contexts) {
+            Iterator<DocumentContext> iterator = contexts.iterator();
+            while (iterator.hasNext()) {
+                DocumentContext ctx = iterator.next();
                 Map<String, Object> flatMap = MapUtil.flatten(ctx.getMetadata());
 
                 // 获取主键 (从扁平化 map 中取，或者直接从 ctx.getMetadata() 取)
@@ -260,12 +335,15 @@ public class DomainDocumentService {
     /**
      * 创建衍生文档（应用清洗规则）
      *
+     * 流式父文档只清洗前 20 条用于预览；静态父文档在事务提交后转入后台分段生成，接口立即返回，
+     * 生成过程中衍生文档为 PROCESSING 状态，已提交的切片即可查询。
+     *
      * @param parentId     父文档ID
      * @param pythonScript 用户编写的 Python 清洗脚本
-     * @return 新生成的衍生文档 ID
+     * @return 新生成的衍生文档 ID 与后台任务 ID
      */
     @Transactional
-    public Long createDerivedDocument(Long parentId, String pythonScript) {
+    public DerivedDocumentDto createDerivedDocument(Long parentId, String pythonScript) {
         DomainDocument parent = domainDocumentRepository.findById(parentId)
                 .orElseThrow(() -> new RuntimeException("Parent doc not found"));
         // 1. 创建衍生文档对象
@@ -290,23 +368,40 @@ public class DomainDocumentService {
             throw new RuntimeException("Failed to serialize pipeline", e);
         }
         // 4. 保存并返回
+        if (parent.getDocMode() != DocMode.VIRTUAL) {
+            derived.setStatus(DomainDocumentStatus.PROCESSING);
+        }
         Long id = domainDocumentRepository.save(derived).getId();
+        if (parent.getDocMode() != DocMode.VIRTUAL) {
+            // 后台线程需要读到已提交的衍生文档，事务提交后再启动
+            TaskProgress progress = derivedDocumentMaterializer.startTask(id, derived.getDocName());
+            String spaceId = GlobalContext.getSpaceId();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    try {
+                        derivedDocumentMaterializer.materialize(parentId, id, pythonScript, spaceId, progress);
+                    } catch (RejectedExecutionException e) {
+                        log.warn("Derivation of document {} rejected: {}", id, e.getMessage());
+                        derivedDocumentMaterializer.reject(id, progress);
+                    }
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        progress.fail("Derived document was not created");
+                    }
+                }
+            });
+            return new DerivedDocumentDto(id, progress.getTaskId());
+        }
         //即使是流式文档，目前系统也会写入几条数据用于预览，所以继续进行清洗操作，以便预览效果
         try (PythonScriptProcessor processor = new PythonScriptProcessor(pythonScript)) {
-            List<DocumentContext> cleanedContent = new ArrayList<>();
-            List<DocumentContext> documentContent;
-            if (parent.getDocMode() == DocMode.VIRTUAL) {
-                documentContent = documentContextService.getDocumentContentPage(parentId, 0, 20).getContent();
-            } else {
-                documentContent = documentContextService.getDocumentContents(parentId);
-            }
-            for (DocumentContext document : documentContent) {
-                List<DocumentContext> results = processor.process(document);
-                cleanedContent.addAll(results);
-            }
-            documentContextService.saveDocumentContext(id, cleanedContent);
+            List<DocumentContext> documentContent = documentContextService.getDocumentContentPage(parentId, 0, 20).getContent();
+            documentContextService.saveDocumentContexts(id, documentContent.stream().flatMap(document -> processor.process(document).stream()));
         }
-        return id;
+        return new DerivedDocumentDto(id, null);
     }
 
     private List<PipelineConfig> parsePipelineJson(String pipelineJson) {
@@ -345,8 +440,8 @@ public class DomainDocumentService {
     public void triggerBusinessAction(Long docId, BizAction actionKey, Map<String, Object> params) {
         DomainDocument doc = getDomainDocument(docId);
 
-        // 1. 领域前置校验
-        if (doc.getStatus() == DomainDocumentStatus.PROCESSING) {
+        // 1. 领域前置校验，生成失败的文档只有部分切片，同样不能执行
+        if (doc.getStatus() == DomainDocumentStatus.PROCESSING || doc.getStatus() == DomainDocumentStatus.FAILED) {
             throw new IllegalStateException("文档尚未就绪，无法执行业务操作。当前状态: " + doc.getStatus());
         }
 
@@ -421,6 +516,21 @@ public class DomainDocumentService {
 
     @Transactional
     public void deleteDomainDocument(Long id) {
+        domainDocumentRepository.findById(id)
+                .filter(doc -> doc.getDocumentType() == DocumentType.DATABASE_STREAM)
+                .filter(doc -> Boolean.TRUE.equals(doc.getMetadata().get("snapshot")))
+                .ifPresent(doc -> {
+                    // 快照文件不受事务控制，提交后再删除
+                    Long dataBaseInfoId = Long.parseLong(doc.getSourceId());
+                    String schema = doc.getMetadata().get("schema").toString();
+                    String table = doc.getMetadata().get("table").toString();
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            tableSnapshotService.evictTable(dataBaseInfoId, schema, table);
+                        }
+                    });
+                });
         domainDocumentRepository.deleteById(id);
         documentContextService.deleteDocumentContext(id);
         log.info("Deleted DomainDocument id={}", id);
@@ -0,0 +1,301 @@
+package com.zwbd.dbcrawlerv4.document.service;
+
+import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.FileUploadMetadata;
+import com.zwbd.dbcrawlerv4.document.etl.loader.DocumentLoader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ClassUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.zwbd.dbcrawlerv4.common.config.CommonConfig.objectMapper;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/9 10:20
+ * @Desc: 上传文件的解析结果缓存。
+ * 以文件内容哈希与加载器版本为键，把加载器输出的 Document 写入 upload-dir/parse-cache 下的 GZIP 压缩 NDJSON 文件，
+ * 相同内容的文件再次转换为领域文档时直接读取缓存，不再解析。
+ * 缓存只保存每个 Document 相对文件级元数据（sourceId、sourceName、filePath 等）的差异，
+ * 读取时用本次上传的文件级元数据重新填充，复用的结果与重新解析一致。
+ * 加载器版本变化后旧缓存不再命中，在生成新版本时删除。
+ */
+@Slf4j
+@Service
+public class ParsedDocumentCache {
+
+    private static final String CACHE_SUFFIX = ".ndjson.gz";
+
+    private static final String FILE_PATH = "filePath";
+
+    /**
+     * 缓存文件格式版本，格式变化时旧缓存自动失效
+     */
+    private static final int FORMAT = 1;
+
+    private final Path cacheLocation;
+
+    public ParsedDocumentCache(@Value("${file.upload-dir}") String uploadDir) {
+        this.cacheLocation = Paths.get(uploadDir, "parse-cache").toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(this.cacheLocation);
+        } catch (IOException ex) {
+            throw new RuntimeException("无法创建解析缓存目录。", ex);
+        }
+    }
+
+    /**
+     * 打开文件的 Document 流：缓存命中时读取缓存，否则调用加载器解析，并在流被完整消费后写入缓存。
+     * 调用方必须关闭返回的 Stream。
+     */
+    public Stream<Document> stream(String contentHash, DocumentLoader loader, FileUploadMetadata metadata) {
+        Map<String, Object> fileValues = fileValues(metadata);
+        String loaderKey = ClassUtils.getUserClass(loader).getSimpleName();
+        Path entry = cacheLocation.resolve(contentHash + "-" + loaderKey + "-v" + loader.getVersion() + CACHE_SUFFIX);
+        if (Files.exists(entry)) {
+            try {
+                Stream<Document> cached = replay(entry, fileValues);
+                log.info("Reusing parsed documents of {} from cache", metadata.getSourceName());
+                return cached;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Discarding unreadable parse cache {}: {}", entry.getFileName(), e.getMessage());
+                deleteQuietly(entry);
+            }
+        }
+        return record(entry, contentHash + "-" + loaderKey + "-v*" + CACHE_SUFFIX, loader.stream(metadata), fileValues);
+    }
+
+    /**
+     * 删除某个内容哈希的全部缓存
+     */
+    public void evict(String contentHash) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(cacheLocation, contentHash + "-*" + CACHE_SUFFIX)) {
+            for (Path path : entries) {
+                deleteQuietly(path);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to evict parse cache of {}: {}", contentHash, e.getMessage());
+        }
+    }
+
+    /**
+     * 文件级元数据：同一文件的所有 Document 都相同、换一次上传就会变化的值
+     */
+    private static Map<String, Object> fileValues(FileUploadMetadata metadata) {
+        Map<String, Object> values = new HashMap<>(metadata.toMap());
+        values.put(FILE_PATH, metadata.getFilePath());
+        return values;
+    }
+
+    private Stream<Document> replay(Path entry, Map<String, Object> fileValues) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(entry)), StandardCharsets.UTF_8));
+        try {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IOException("Empty cache file");
+            }
+            if (objectMapper.readValue(header, CacheHeader.class).format() != FORMAT) {
+                throw new IOException("Unsupported cache format");
+            }
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+        return reader.lines()
+                .map(line -> toDocument(line, fileValues))
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        log.warn("Failed to close parse cache {}: {}", entry.getFileName(), e.getMessage());
+                    }
+                });
+    }
+
+    private static Document toDocument(String line, Map<String, Object> fileValues) {
+        try {
+            CachedDocument cached = objectMapper.readValue(line, CachedDocument.class);
+            Map<String, Object> metadata = new HashMap<>();
+            for (String key : cached.inherit()) {
+                Object value = fileValues.get(key);
+                if (value != null) {
+                    metadata.put(key, value);
+                }
+            }
+            metadata.putAll(cached.metadata());
+            return new Document(cached.text(), metadata);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted parse cache entry", e);
+        }
+    }
+
+    /**
+     * 解析结果边流出边写入临时文件；只有流被完整消费且至少有一个 Document 时才提交为正式缓存，
+     * 解析失败、中途关闭或加载器出错返回空结果时都不缓存，避免把失败结果复用给后续上传。
+     */
+    private Stream<Document> record(Path entry, String versionsGlob, Stream<Document> documents,
+                                    Map<String, Object> fileValues) {
+        Recorder recorder = new Recorder(entry, versionsGlob, fileValues);
+        Iterator<Document> source = documents.iterator();
+        Iterator<Document> tee = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = source.hasNext();
+                if (!hasNext) {
+                    recorder.commit();
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Document next() {
+                Document document = source.next();
+                recorder.write(document);
+                return document;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(tee, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        documents.close();
+                    } finally {
+                        recorder.abandon();
+                    }
+                });
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    private record CacheHeader(int format) {
+    }
+
+    /**
+     * @param inherit  取值等于文件级元数据的键，读取时使用本次上传的值
+     * @param metadata 其余的元数据（行号、页码等）
+     */
+    private record CachedDocument(String text, Map<String, Object> metadata, List<String> inherit) {
+    }
+
+    private final class Recorder {
+
+        private final Path entry;
+        private final String versionsGlob;
+        private final Map<String, Object> fileValues;
+        private Path temp;
+        private Writer writer;
+        private long count;
+        private boolean done;
+
+        private Recorder(Path entry, String versionsGlob, Map<String, Object> fileValues) {
+            this.entry = entry;
+            this.versionsGlob = versionsGlob;
+            this.fileValues = fileValues;
+            try {
+                temp = Files.createTempFile(cacheLocation, entry.getFileName().toString(), ".tmp");
+                writer = new BufferedWriter(new OutputStreamWriter(
+                        new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8));
+                writer.write(objectMapper.writeValueAsString(new CacheHeader(FORMAT)));
+                writer.write('\n');
+            } catch (IOException e) {
+                log.warn("Parse cache disabled for {}: {}", entry.getFileName(), e.getMessage());
+                abandon();
+            }
+        }
+
+        private void write(Document document) {
+            if (done) {
+                return;
+            }
+            Map<String, Object> metadata = new HashMap<>();
+            List<String> inherit = new ArrayList<>();
+            document.getMetadata().forEach((key, value) -> {
+                if (value != null && value.equals(fileValues.get(key))) {
+                    inherit.add(key);
+                } else {
+                    metadata.put(key, value);
+                }
+            });
+            try {
+                writer.write(objectMapper.writeValueAsString(new CachedDocument(document.getText(), metadata, inherit)));
+                writer.write('\n');
+                count++;
+            } catch (IOException e) {
+                log.warn("Parse cache disabled for {}: {}", entry.getFileName(), e.getMessage());
+                abandon();
+            }
+        }
+
+        private void commit() {
+            if (done) {
+                return;
+            }
+            if (count == 0) {
+                abandon();
+                return;
+            }
+            done = true;
+            try {
+                writer.close();
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                log.debug("Cached {} parsed documents as {}", count, entry.getFileName());
+            } catch (IOException e) {
+                log.warn("Failed to write parse cache {}: {}", entry.getFileName(), e.getMessage());
+                deleteQuietly(temp);
+                return;
+            }
+            // 同一内容同一加载器的旧版本缓存不会再命中
+            try (DirectoryStream<Path> versions = Files.newDirectoryStream(cacheLocation, versionsGlob)) {
+                for (Path path : versions) {
+                    if (!path.equals(entry)) {
+                        deleteQuietly(path);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Failed to clean up stale parse cache of {}: {}", entry.getFileName(), e.getMessage());
+            }
+        }
+
+        private void abandon() {
+            if (done) {
+                return;
+            }
+            done = true;
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // 临时文件随后删除
+                }
+            }
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+        }
+    }
+}
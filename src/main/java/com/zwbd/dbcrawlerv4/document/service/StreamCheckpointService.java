@@ -0,0 +1,192 @@
+package com.zwbd.dbcrawlerv4.document.service;
+
+import com.zwbd.dbcrawlerv4.document.entity.StreamCheckpoint;
+import com.zwbd.dbcrawlerv4.document.repository.StreamCheckpointRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/3 15:45
+ * @Desc:
+ * 虚拟文档流式读取的断点管理
+ * 读取过程中每输出 N 行持久化一次断点，流关闭时再写一次；续传时从最后一个断点之后继续。
+ */
+@Slf4j
+@Service
+public class StreamCheckpointService {
+
+    @Autowired
+    private StreamCheckpointRepository checkpointRepository;
+
+    /**
+     * 每输出多少行持久化一次断点
+     */
+    @Value("${app.stream.checkpoint-interval:1000}")
+    private int checkpointInterval;
+
+    public Optional<StreamCheckpoint> find(Long documentId) {
+        return checkpointRepository.findByDocumentId(documentId);
+    }
+
+    /**
+     * 可以续传的断点：读取到表尾的断点之后没有数据，续传应从头开始而不是返回空流
+     */
+    public Optional<StreamCheckpoint> resumable(Long documentId, String keyColumn) {
+        return find(documentId)
+                .filter(checkpoint -> keyColumn.equals(checkpoint.getKeyColumn()))
+                .filter(checkpoint -> {
+                    if (checkpoint.isCompleted()) {
+                        log.info("Checkpoint of document {} is completed, reading from the beginning", documentId);
+                        return false;
+                    }
+                    return true;
+                });
+    }
+
+    @Transactional
+    public void delete(Long documentId) {
+        checkpointRepository.deleteByDocumentId(documentId);
+    }
+
+    /**
+     * 开始跟踪一次读取。
+     *
+     * @param resumeFrom 续传时使用的断点，为 null 表示从头读取（覆盖旧断点）；不能是已完成的断点，见 {@link #resumable}
+     */
+    public Tracker track(Long documentId, String keyColumn, StreamCheckpoint resumeFrom) {
+        if (resumeFrom != null && resumeFrom.isCompleted()) {
+            throw new IllegalArgumentException("Checkpoint of document " + documentId + " is already completed");
+        }
+        Tracker tracker = new Tracker(documentId, keyColumn);
+        if (resumeFrom != null) {
+            tracker.committedKey = resumeFrom.getLastKey();
+            tracker.rows = resumeFrom.getRowsEmitted() != null ? resumeFrom.getRowsEmitted() : 0L;
+        }
+        tracker.flush();
+        return tracker;
+    }
+
+    /**
+     * 把行中的主键值转换为断点使用的整数键。
+     * 快照会把 BIGINT UNSIGNED 等超出 long 的类型存为字符串，这里统一按数值解析；
+     * 无法精确表示为 long 的值返回 null，调用方不能用它与断点比较。
+     */
+    public static Long toKey(Object value) {
+        try {
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return ((Number) value).longValue();
+            }
+            if (value instanceof BigInteger number) {
+                return number.longValueExact();
+            }
+            if (value instanceof BigDecimal number) {
+                return number.longValueExact();
+            }
+            if (value instanceof String text) {
+                return Long.parseLong(text.trim());
+            }
+        } catch (ArithmeticException | NumberFormatException e) {
+            return null;
+        }
+        return null;
+    }
+
+    private void save(Long documentId, String keyColumn, Long lastKey, long rows, boolean completed) {
+        StreamCheckpoint checkpoint = checkpointRepository.findByDocumentId(documentId).orElseGet(StreamCheckpoint::new);
+        checkpoint.setDocumentId(documentId);
+        checkpoint.setKeyColumn(keyColumn);
+        checkpoint.setLastKey(lastKey);
+        checkpoint.setRowsEmitted(rows);
+        checkpoint.setCompleted(completed);
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        checkpointRepository.save(checkpoint);
+    }
+
+    /**
+     * 单次读取的断点跟踪器，只在消费线程上使用。
+     * 顺序流中拉取下一行意味着上一行已经处理完，因此断点总是落在"上一行"，失败后续传不会丢行；
+     * 行数同样只统计已处理完的行，与断点主键一致。
+     */
+    public class Tracker implements AutoCloseable {
+
+        private final Long documentId;
+        private final String keyColumn;
+        private Long committedKey;
+        private Long pendingKey;
+        private boolean pending;
+        private long rows;
+        private boolean completed;
+        private boolean closed;
+
+        private Tracker(Long documentId, String keyColumn) {
+            this.documentId = documentId;
+            this.keyColumn = keyColumn;
+        }
+
+        /**
+         * 新的一行即将交给消费方。
+         */
+        public void onRow(Long key) {
+            if (pending && commitPending() % checkpointInterval == 0) {
+                flush();
+            }
+            pending = true;
+            pendingKey = key;
+        }
+
+        /**
+         * 数据已读到表尾，最后一行也视为已消费。
+         */
+        public void onExhausted() {
+            if (completed) {
+                return;
+            }
+            if (pending) {
+                commitPending();
+                pending = false;
+            }
+            completed = true;
+            flush();
+        }
+
+        /**
+         * 上一行已处理完，计入断点，返回已处理的行数
+         */
+        private long commitPending() {
+            if (pendingKey != null) {
+                committedKey = pendingKey;
+            }
+            return ++rows;
+        }
+
+        private void flush() {
+            try {
+                save(documentId, keyColumn, committedKey, rows, completed);
+            } catch (Exception e) {
+                // 断点只用于续传，写入失败不影响本次读取
+                log.warn("Failed to save stream checkpoint for document {}: {}", documentId, e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!completed) {
+                flush();
+                log.info("Stream of document {} stopped after key {} ({} rows)", documentId, committedKey, rows);
+            }
+        }
+    }
+}
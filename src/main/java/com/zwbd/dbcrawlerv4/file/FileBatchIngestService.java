@@ -0,0 +1,346 @@
+package com.zwbd.dbcrawlerv4.file;
+
+import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.DocumentType;
+import com.zwbd.dbcrawlerv4.common.config.FileIngestConfig;
+import com.zwbd.dbcrawlerv4.common.web.GlobalContext;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/8 10:40
+ * @Desc: 批量文件导入：一次上传多个文件或 ZIP 压缩包，在有界的工作线程池中并行解析为领域文档。
+ * 每个文件相互隔离：
+ * 1. 超过大小限制或类型不支持的文件在保存阶段直接跳过
+ * 2. 解析超时的文件立即报告失败并中断其工作线程（解析器不响应中断时该线程会继续占用，直到解析器返回）；
+ *    超时与提交互斥：已报告超时的文件在提交前回滚，不会留下领域文档，开始提交后不再判定超时
+ * 3. 单个文件的任何异常（包括内存不足）只影响该文件
+ * 压缩包只取条目的文件名、不使用条目路径，避免路径穿越（zip slip）；解压总量与条目数受限，避免压缩炸弹。
+ */
+@Slf4j
+@Service
+public class FileBatchIngestService {
+
+    private static final Charset GB18030 = Charset.forName("GB18030");
+
+    @Autowired
+    private KnowledgeFileService knowledgeFileService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private FileIngestConfig config;
+
+    @Autowired
+    @Qualifier("fileIngestExecutor")
+    private ExecutorService fileIngestExecutor;
+
+    private final ScheduledExecutorService watchdog;
+
+    public FileBatchIngestService() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("file-ingest-watchdog-");
+        threadFactory.setDaemon(true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * 保存上传的文件并登记，ZIP 压缩包展开为其中的文件。
+     * 需要在请求线程中调用：请求结束后上传的临时文件会被清理。
+     *
+     * @param rejected 收集无法保存或不需要处理的文件的结果
+     * @return 已保存、等待解析的文件
+     */
+    public List<KnowledgeFile> store(List<MultipartFile> files, String sourceSystem, List<FileIngestResult> rejected) {
+        List<KnowledgeFile> stored = new ArrayList<>();
+        for (MultipartFile file : files) {
+            String filename = file.getOriginalFilename();
+            if (file.isEmpty()) {
+                rejected.add(FileIngestResult.skipped(filename, "Empty file"));
+            } else if (isArchive(filename)) {
+                stored.addAll(storeArchive(file, sourceSystem, rejected));
+            } else if (!isSupported(filename)) {
+                rejected.add(FileIngestResult.skipped(filename, "Unsupported file type"));
+            } else if (file.getSize() > config.getMaxFileBytes()) {
+                rejected.add(FileIngestResult.skipped(filename, "File exceeds " + config.getMaxFileBytes() + " bytes"));
+            } else {
+                try {
+                    stored.add(knowledgeFileService.uploadFile(file, sourceSystem));
+                } catch (RuntimeException e) {
+                    log.warn("Failed to store {}: {}", filename, e.getMessage());
+                    rejected.add(FileIngestResult.failed(null, filename, 0, e.getMessage()));
+                }
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * 把压缩包落到临时文件后逐个解出条目。条目名优先按 UTF-8 解析，失败时按 GB18030（Windows 中文压缩包）解析。
+     */
+    private List<KnowledgeFile> storeArchive(MultipartFile archive, String sourceSystem, List<FileIngestResult> rejected) {
+        String archiveName = archive.getOriginalFilename();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile("upload-", ".zip");
+            archive.transferTo(temp);
+            try {
+                return extract(temp, archiveName, StandardCharsets.UTF_8, sourceSystem, rejected);
+            } catch (IllegalArgumentException e) {
+                log.debug("Archive {} has non UTF-8 entry names, retrying with GB18030", archiveName);
+                return extract(temp, archiveName, GB18030, sourceSystem, rejected);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to extract archive {}: {}", archiveName, e.getMessage());
+            rejected.add(FileIngestResult.failed(null, archiveName, 0, "Invalid archive: " + e.getMessage()));
+            return List.of();
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    log.warn("Failed to delete temporary archive {}", temp);
+                }
+            }
+        }
+    }
+
+    private List<KnowledgeFile> extract(Path zipPath, String archiveName, Charset charset, String sourceSystem,
+                                        List<FileIngestResult> rejected) throws IOException {
+        try (ZipFile zip = new ZipFile(zipPath.toFile(), charset)) {
+            // 先完整读取条目列表，条目名编码错误时在保存任何文件之前失败
+            List<? extends ZipEntry> entries = Collections.list(zip.entries());
+            List<KnowledgeFile> stored = new ArrayList<>();
+            List<FileIngestResult> skipped = new ArrayList<>();
+            int count = 0;
+            long remainingBytes = config.getMaxArchiveBytes();
+            for (ZipEntry entry : entries) {
+                String entryName = entry.getName();
+                String displayName = archiveName + "!/" + entryName;
+                String filename = baseName(entryName);
+                if (entry.isDirectory() || filename.isEmpty() || filename.startsWith(".") || entryName.startsWith("__MACOSX/")) {
+                    continue;
+                }
+                if (!isSupported(filename)) {
+                    skipped.add(FileIngestResult.skipped(displayName, "Unsupported file type"));
+                    continue;
+                }
+                if (++count > config.getMaxArchiveEntries()) {
+                    skipped.add(FileIngestResult.skipped(displayName, "Archive exceeds " + config.getMaxArchiveEntries() + " files"));
+                    continue;
+                }
+                long limit = Math.min(config.getMaxFileBytes(), remainingBytes);
+                try (InputStream in = new BoundedInputStream(zip.getInputStream(entry), limit)) {
+                    StoredFile storedFile = fileStorageService.store(filename, in);
+                    remainingBytes -= storedFile.size();
+                    stored.add(knowledgeFileService.registerFile(filename, storedFile, sourceSystem));
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Failed to extract {}: {}", displayName, e.getMessage());
+                    skipped.add(FileIngestResult.failed(null, displayName, 0, e.getMessage()));
+                }
+            }
+            rejected.addAll(skipped);
+            log.info("Extracted {} files from archive {}", stored.size(), archiveName);
+            return stored;
+        }
+    }
+
+    /**
+     * 在工作线程池中并行解析文件，立即返回。每个文件结束（成功、失败或超时）时在工作线程或超时线程中回调 listener，
+     * 全部结束后调用 onComplete。
+     *
+     * @param spaceId    业务空间，工作线程中没有请求上下文，需要显式传入
+     * @param listener   每个文件的结果只回调一次，可能在多个线程中并发调用
+     * @param onComplete 所有文件都报告结果后调用一次
+     */
+    public void ingest(List<KnowledgeFile> files, String spaceId, Consumer<FileIngestResult> listener, Runnable onComplete) {
+        if (files.isEmpty()) {
+            onComplete.run();
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(files.size());
+        Consumer<FileIngestResult> report = result -> {
+            try {
+                listener.accept(result);
+            } catch (RuntimeException e) {
+                log.warn("Failed to report ingest result of {}: {}", result.filename(), e.getMessage());
+            } finally {
+                if (remaining.decrementAndGet() == 0) {
+                    onComplete.run();
+                }
+            }
+        };
+        for (KnowledgeFile file : files) {
+            try {
+                fileIngestExecutor.execute(new IngestTask(file, spaceId, report));
+            } catch (RejectedExecutionException e) {
+                report.accept(FileIngestResult.failed(file.getId(), file.getOriginalFilename(), 0, "Ingest queue is full"));
+            }
+        }
+    }
+
+    /**
+     * 单个文件的解析任务。结果只报告一次：先结束的一方（开始提交或超时）决定结果。
+     * 超时中断在锁内进行，且开始提交或任务结束后不再中断，避免误中断提交过程或该线程接下来处理的文件。
+     */
+    private final class IngestTask implements Runnable {
+
+        private final KnowledgeFile file;
+        private final String spaceId;
+        private final Consumer<FileIngestResult> report;
+        private State state = State.RUNNING;
+
+        private IngestTask(KnowledgeFile file, String spaceId, Consumer<FileIngestResult> report) {
+            this.file = file;
+            this.spaceId = spaceId;
+            this.report = report;
+        }
+
+        @Override
+        public void run() {
+            long start = System.currentTimeMillis();
+            Thread worker = Thread.currentThread();
+            ScheduledFuture<?> timer = watchdog.schedule(() -> {
+                synchronized (this) {
+                    if (state != State.RUNNING) {
+                        return;
+                    }
+                    state = State.TIMED_OUT;
+                    worker.interrupt();
+                }
+                log.warn("Ingest of {} (ID: {}) timed out after {}s", file.getOriginalFilename(), file.getId(), config.getFileTimeoutSeconds());
+                report.accept(FileIngestResult.failed(file.getId(), file.getOriginalFilename(), System.currentTimeMillis() - start,
+                        "Timed out after " + config.getFileTimeoutSeconds() + "s"));
+            }, config.getFileTimeoutSeconds(), TimeUnit.SECONDS);
+
+            FileIngestResult result;
+            GlobalContext.set(GlobalContext.KEY_SPACE_ID, spaceId);
+            try {
+                knowledgeFileService.toDomainDocument(file.getId(), this::cancelOrCommit);
+                result = FileIngestResult.completed(file, System.currentTimeMillis() - start);
+            } catch (Exception | OutOfMemoryError | StackOverflowError e) {
+                log.warn("Ingest of {} (ID: {}) failed: {}", file.getOriginalFilename(), file.getId(), e.toString());
+                result = FileIngestResult.failed(file.getId(), file.getOriginalFilename(), System.currentTimeMillis() - start, e.toString());
+            } finally {
+                timer.cancel(false);
+                GlobalContext.clear();
+            }
+            boolean timedOut;
+            synchronized (this) {
+                timedOut = state == State.TIMED_OUT;
+                state = State.FINISHED;
+            }
+            // 清除可能来自超时的中断标记，线程随后会处理其他文件
+            Thread.interrupted();
+            if (!timedOut) {
+                report.accept(result);
+            }
+        }
+
+        /**
+         * 事务提交前调用：已超时则返回 true 使事务回滚；否则进入提交阶段，此后超时不再生效
+         */
+        private synchronized boolean cancelOrCommit() {
+            if (state == State.TIMED_OUT) {
+                return true;
+            }
+            state = State.COMMITTING;
+            return false;
+        }
+    }
+
+    private enum State {RUNNING, COMMITTING, TIMED_OUT, FINISHED}
+
+    private static boolean isArchive(String filename) {
+        return filename != null && filename.toLowerCase(Locale.ROOT).endsWith(".zip");
+    }
+
+    /**
+     * 扩展名能对应到文件类的 {@link DocumentType}
+     */
+    private static boolean isSupported(String filename) {
+        int dot = filename == null ? -1 : filename.lastIndexOf('.');
+        if (dot < 0) {
+            return false;
+        }
+        String extension = filename.substring(dot + 1).toUpperCase(Locale.ROOT);
+        return Arrays.stream(DocumentType.values())
+                .filter(type -> type != DocumentType.DATABASE && type != DocumentType.DATABASE_STREAM && type != DocumentType.UNKNOWN)
+                .anyMatch(type -> type.name().equals(extension));
+    }
+
+    /**
+     * 条目路径的最后一段，兼容 Windows 压缩包中的反斜杠分隔符
+     */
+    private static String baseName(String entryName) {
+        int slash = Math.max(entryName.lastIndexOf('/'), entryName.lastIndexOf('\\'));
+        return entryName.substring(slash + 1);
+    }
+
+    /**
+     * 读取超过 limit 字节时失败，按实际解压出的字节数限制（条目头中的大小可以伪造）
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count;
+
+        private BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(long n) throws IOException {
+            count += n;
+            if (count > limit) {
+                throw new IOException("Entry exceeds size limit of " + limit + " bytes");
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.zwbd.dbcrawlerv4.file;
+
+import com.zwbd.dbcrawlerv4.monitor.entity.TaskStatus;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/8 10:30
+ * @Desc: 批量导入中单个文件的处理结果
+ *
+ * @param fileId        文件ID，未能保存的文件为 null
+ * @param filename      原始文件名（压缩包中的文件为 "压缩包名!/条目名"）
+ * @param status        COMPLETED、FAILED，或未处理时为 SKIPPED（不支持的类型、超过大小限制）
+ * @param elapsedMillis 解析耗时
+ * @param error         失败或跳过的原因
+ */
+public record FileIngestResult(Long fileId, String filename, TaskStatus status, long elapsedMillis, String error) {
+
+    static FileIngestResult completed(KnowledgeFile file, long elapsedMillis) {
+        return new FileIngestResult(file.getId(), file.getOriginalFilename(), TaskStatus.COMPLETED, elapsedMillis, null);
+    }
+
+    static FileIngestResult failed(Long fileId, String filename, long elapsedMillis, String error) {
+        return new FileIngestResult(fileId, filename, TaskStatus.FAILED, elapsedMillis, error);
+    }
+
+    static FileIngestResult skipped(String filename, String reason) {
+        return new FileIngestResult(null, filename, TaskStatus.SKIPPED, 0, reason);
+    }
+}
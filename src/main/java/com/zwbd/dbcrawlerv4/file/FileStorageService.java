@@ -11,11 +11,18 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.UUID;
 
 /**
@@ -27,6 +34,8 @@ import java.util.UUID;
 @Service
 public class FileStorageService {
 
+    private static final String BLOB_DIR = "blobs";
+
     private final Path fileStorageLocation;
 
     /**
@@ -45,11 +54,31 @@ public class FileStorageService {
      * 存储文件到本地
      *
      * @param file 上传的文件
-     * @return 存储在磁盘上的唯一文件名 (例如 "uuid-abc.pdf")
+     * @return 存储结果，包含磁盘上的唯一文件名 (例如 "uuid-abc.pdf") 与内容哈希
      * @throws RuntimeException 如果存储失败
      */
-    public String store(MultipartFile file) {
-        String originalFileName = StringUtils.cleanPath(file.getOriginalFilename());
+    public StoredFile store(MultipartFile file) {
+        try {
+            return store(file.getOriginalFilename(), file.getInputStream());
+        } catch (IOException ex) {
+            log.error("无法存储文件 {}. 请重试!", file.getOriginalFilename(), ex);
+            throw new RuntimeException("无法存储文件 " + file.getOriginalFilename() + ". 请重试!", ex);
+        }
+    }
+
+    /**
+     * 存储输入流到本地（如压缩包中解出的文件），调用方负责关闭输入流。
+     * 写入临时文件的同时计算 SHA-256，内容按哈希只保存一份（blobs/前两位/哈希），
+     * 每次上传得到一个指向内容文件的硬链接作为唯一文件名；重复上传只新增链接，不占用新的磁盘空间。
+     * 文件系统不支持硬链接时退化为复制。
+     *
+     * @param originalFileName 原始文件名，只用于确定扩展名
+     * @return 存储结果
+     */
+    public StoredFile store(String originalFileName, InputStream inputStream) {
+        originalFileName = StringUtils.cleanPath(originalFileName);
+        Path targetLocation = null;
+        Path temp = null;
         try {
             if (originalFileName.contains("..")) {
                 throw new RuntimeException("文件名包含无效的路径序列 " + originalFileName);
@@ -62,15 +91,105 @@ public class FileStorageService {
             }
             // 使用UUID确保文件名唯一
             String newFileName = UUID.randomUUID().toString() + fileExtension;
+            targetLocation = this.fileStorageLocation.resolve(newFileName);
 
-            Path targetLocation = this.fileStorageLocation.resolve(newFileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-            log.info("存储文件 {} 为 {}", originalFileName, newFileName);
+            // 边写入边计算哈希，不额外读一遍文件
+            MessageDigest digest = newDigest();
+            temp = Files.createTempFile(this.fileStorageLocation, "upload-", ".tmp");
+            long size = Files.copy(new DigestInputStream(inputStream, digest), temp, StandardCopyOption.REPLACE_EXISTING);
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+
+            Path blob = getBlobPath(contentHash);
+            boolean deduplicated = false;
+            if (Files.exists(blob)) {
+                try {
+                    link(targetLocation, blob);
+                    deduplicated = true;
+                } catch (NoSuchFileException ex) {
+                    // 内容文件恰好被并发删除，按新内容保存
+                }
+            }
+            if (!deduplicated) {
+                // 先建立本次上传的链接再放入内容文件，保证内容文件出现时已被引用，不会被并发的删除回收
+                link(targetLocation, temp);
+                Files.createDirectories(blob.getParent());
+                Files.move(temp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            log.info("存储文件 {} 为 {} (sha256={}, 重复内容={})", originalFileName, newFileName, contentHash, deduplicated);
 
-            return newFileName; // 返回新文件名
+            return new StoredFile(newFileName, contentHash, size, deduplicated);
         } catch (IOException ex) {
+            // 不保留写了一半的文件
+            deleteQuietly(targetLocation);
             log.error("无法存储文件 {}. 请重试!", originalFileName, ex);
             throw new RuntimeException("无法存储文件 " + originalFileName + ". 请重试!", ex);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    /**
+     * 创建指向已有文件的硬链接，不支持硬链接时复制文件；已有文件不存在时抛出 NoSuchFileException
+     */
+    private void link(Path link, Path existing) throws IOException {
+        try {
+            Files.createLink(link, existing);
+        } catch (NoSuchFileException ex) {
+            throw ex;
+        } catch (UnsupportedOperationException | FileSystemException ex) {
+            log.debug("无法创建硬链接 {}，改为复制: {}", link, ex.getMessage());
+            Files.copy(existing, link);
+        }
+    }
+
+    /**
+     * 内容文件路径，按哈希前两位分目录，避免单个目录下文件过多
+     */
+    private Path getBlobPath(String contentHash) {
+        return this.fileStorageLocation.resolve(BLOB_DIR).resolve(contentHash.substring(0, 2)).resolve(contentHash);
+    }
+
+    /**
+     * 内容文件是否仍然存在
+     */
+    public boolean blobExists(String contentHash) {
+        return Files.exists(getBlobPath(contentHash));
+    }
+
+    /**
+     * 没有任何上传再链接到内容文件时删除它。只有支持硬链接计数的文件系统才会回收，其余情况保留内容文件。
+     * 与并发上传交错时最多损失一次去重，已建立的链接指向同一份数据，不受影响。
+     */
+    private void releaseBlob(String contentHash) {
+        Path blob = getBlobPath(contentHash);
+        try {
+            if (Files.getAttribute(blob, "unix:nlink") instanceof Integer links && links <= 1) {
+                Files.deleteIfExists(blob);
+                log.info("内容文件 {} 已不再被引用，已删除", contentHash);
+            }
+        } catch (UnsupportedOperationException | IllegalArgumentException | NoSuchFileException ex) {
+            // 不支持链接计数或已被删除
+        } catch (IOException ex) {
+            log.warn("无法回收内容文件 {}", contentHash, ex);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.warn("无法删除临时文件 {}", path, ex);
         }
     }
 
@@ -95,12 +214,13 @@ public class FileStorageService {
     }
 
     /**
-     * 从本地磁盘删除文件
+     * 从本地磁盘删除文件，内容文件不再被任何上传引用时一并删除
      *
      * @param storedFilename 存储在磁盘上的唯一文件名
+     * @param contentHash    文件内容哈希，早期未记录哈希的文件为 null
      * @throws RuntimeException 如果删除失败
      */
-    public void delete(String storedFilename) {
+    public void delete(String storedFilename, String contentHash) {
         try {
             Path filePath = this.fileStorageLocation.resolve(storedFilename).normalize();
             if (Files.exists(filePath)) {
@@ -109,6 +229,9 @@ public class FileStorageService {
             } else {
                 log.warn("尝试删除一个不存在的文件: {}", storedFilename);
             }
+            if (contentHash != null) {
+                releaseBlob(contentHash);
+            }
         } catch (IOException ex) {
             log.error("无法删除文件 {}.", storedFilename, ex);
             throw new RuntimeException("无法删除文件 " + storedFilename, ex);
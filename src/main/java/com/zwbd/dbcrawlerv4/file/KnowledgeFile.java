@@ -40,6 +40,9 @@ public class KnowledgeFile {
     @Column(nullable = false)
     private String filePath; // 文件在服务器上的完整路径
 
+    @Column(length = 64)
+    private String contentHash; // 文件内容的 SHA-256，相同内容的文件共用磁盘空间与解析结果
+
     @Column(nullable = true)
     private String sourceSystem; // 文档来源
 
@@ -1,6 +1,8 @@
 package com.zwbd.dbcrawlerv4.file;
 
+import com.zwbd.dbcrawlerv4.common.config.FileIngestConfig;
 import com.zwbd.dbcrawlerv4.common.web.ApiResponse;
+import com.zwbd.dbcrawlerv4.common.web.GlobalContext;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
@@ -13,13 +15,18 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import static com.zwbd.dbcrawlerv4.common.config.CommonConfig.objectMapper;
+
 /**
  * 知识库文件管理的 REST API Controller
  */
@@ -32,6 +39,8 @@ public class KnowledgeFileController {
 
     private final KnowledgeFileService knowledgeFileService;
     private final FileStorageService fileStorageService;
+    private final FileBatchIngestService fileBatchIngestService;
+    private final FileIngestConfig fileIngestConfig;
 
     /**
      * 1. 上传文件（仅保存文件和元数据）
@@ -59,6 +68,53 @@ public class KnowledgeFileController {
         }
     }
 
+    /**
+     * 批量上传并生成领域文档：接受多个文件或 ZIP 压缩包，在工作线程池中并行解析。
+     * 响应为 NDJSON，每个文件处理完成（成功、失败、超时或跳过）时立即输出一行 {@link FileIngestResult}。
+     * 响应的超时时间由 {@link FileIngestConfig#getBatchResponseTimeoutMillis()} 决定，不受默认异步请求超时（30 秒）限制。
+     *
+     * @param files        上传的文件，.zip 文件会被展开
+     * @param sourceSystem 文档来源
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "upload files and convert to docs")
+    public ResponseEntity<ResponseBodyEmitter> uploadBatch(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "sourceSystem", required = false) String sourceSystem) {
+        // 上传的临时文件在请求结束后清理，必须在返回前保存
+        List<FileIngestResult> rejected = new ArrayList<>();
+        List<KnowledgeFile> stored = fileBatchIngestService.store(files, sourceSystem, rejected);
+        String spaceId = GlobalContext.getSpaceId();
+        log.info("Batch upload: {} files stored, {} rejected", stored.size(), rejected.size());
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(fileIngestConfig.getBatchResponseTimeoutMillis());
+        for (FileIngestResult result : rejected) {
+            send(emitter, result);
+        }
+        // 结果在工作线程中推送，全部文件结束后关闭响应
+        fileBatchIngestService.ingest(stored, spaceId, result -> send(emitter, result), () -> {
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                log.debug("Batch upload response already closed: {}", e.getMessage());
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+
+    /**
+     * 输出一行结果并立即推送。客户端断开或响应超时不影响其余文件的处理
+     */
+    private void send(ResponseBodyEmitter emitter, FileIngestResult result) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(result);
+            byte[] line = Arrays.copyOf(json, json.length + 1);
+            line[json.length] = '\n';
+            emitter.send(line, MediaType.APPLICATION_NDJSON);
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Failed to write ingest result of {}: {}", result.filename(), e.getMessage());
+        }
+    }
+
     /**
      * 生成领域文档
      *
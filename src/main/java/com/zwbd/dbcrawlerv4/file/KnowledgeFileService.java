@@ -4,6 +4,7 @@ import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.DocumentType;
 import com.zwbd.dbcrawlerv4.ai.dto.document.metadata.FileUploadMetadata;
 import com.zwbd.dbcrawlerv4.ai.service.DocumentManagementService;
 import com.zwbd.dbcrawlerv4.document.service.DomainDocumentService;
+import com.zwbd.dbcrawlerv4.document.service.ParsedDocumentCache;
 import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +15,7 @@ import org.springframework.web.multipart.MultipartFile;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BooleanSupplier;
 
 /**
  * @Author: wnli
@@ -32,6 +34,8 @@ public class KnowledgeFileService {
 
     private final DomainDocumentService domainDocumentService;
 
+    private final ParsedDocumentCache parsedDocumentCache;
+
     /**
      * 1. （您的API 1）上传文件
      * 仅保存文件到磁盘，并在数据库中创建记录。
@@ -43,13 +47,25 @@ public class KnowledgeFileService {
     @Transactional
     public KnowledgeFile uploadFile(MultipartFile file, String sourceSystem) {
         // 1. 存储到本地磁盘
-        String storedFilename = fileStorageService.store(file);
+        StoredFile storedFile = fileStorageService.store(file);
+        return registerFile(file.getOriginalFilename(), storedFile, sourceSystem);
+    }
 
+    /**
+     * 为已存储到磁盘的文件创建数据库记录（批量上传与压缩包解出的文件共用）
+     *
+     * @param originalFilename 原始文件名
+     * @param storedFile       {@link FileStorageService} 返回的存储结果
+     * @param sourceSystem     文档来源
+     */
+    @Transactional
+    public KnowledgeFile registerFile(String originalFilename, StoredFile storedFile, String sourceSystem) {
         // 2. 创建数据库实体
         KnowledgeFile newFile = new KnowledgeFile();
-        newFile.setOriginalFilename(file.getOriginalFilename());
-        newFile.setStoredFilename(storedFilename);
-        newFile.setFilePath(fileStorageService.getPath(storedFilename).toString());
+        newFile.setOriginalFilename(originalFilename);
+        newFile.setStoredFilename(storedFile.storedFilename());
+        newFile.setFilePath(fileStorageService.getPath(storedFile.storedFilename()).toString());
+        newFile.setContentHash(storedFile.contentHash());
         newFile.setSourceSystem(sourceSystem);
         newFile.setCreatedAt(Instant.now());
 
@@ -58,6 +74,13 @@ public class KnowledgeFileService {
     }
 
     public void toDomainDocument(Long fileId) {
+        toDomainDocument(fileId, () -> false);
+    }
+
+    /**
+     * 生成领域文档，cancelled 在事务提交前调用一次，返回 true 时回滚，不留下领域文档
+     */
+    public void toDomainDocument(Long fileId, BooleanSupplier cancelled) {
         KnowledgeFile file = knowledgeFileRepository.findById(fileId)
                 .orElseThrow(() -> new RuntimeException("File not found with id: " + fileId));
         try {
@@ -71,8 +94,9 @@ public class KnowledgeFileService {
             metaData.setDocumentType(sourceType);
             metaData.setSourceSystem(file.getSourceSystem());
             metaData.setFilePath(file.getFilePath());
+            metaData.setContentHash(file.getContentHash());
             // 转换为领域文档
-            domainDocumentService.initDomainDocument(metaData);
+            domainDocumentService.initDomainDocument(metaData, cancelled);
         } catch (Exception e) {
             logger.error("toDomainDocument fail (ID: {})", fileId, e);
             throw new RuntimeException("toDomainDocument fail: " + e.getMessage(), e);
@@ -221,7 +245,11 @@ public class KnowledgeFileService {
 
         // 2. 从本地磁盘删除
         try {
-            fileStorageService.delete(file.getStoredFilename());
+            fileStorageService.delete(file.getStoredFilename(), file.getContentHash());
+            // 内容文件已回收时，相同内容的解析结果也不会再被复用
+            if (file.getContentHash() != null && !fileStorageService.blobExists(file.getContentHash())) {
+                parsedDocumentCache.evict(file.getContentHash());
+            }
         } catch (Exception e) {
             logger.warn("从本地删除文件 {} (ID: {}) 失败，但将继续删除数据库记录: {}",
                     file.getOriginalFilename(), fileId, e.getMessage());
@@ -0,0 +1,14 @@
+package com.zwbd.dbcrawlerv4.file;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/9 09:40
+ * @Desc: {@link FileStorageService} 保存一次上传的结果
+ *
+ * @param storedFilename 本次上传在磁盘上的唯一文件名（指向内容文件的硬链接）
+ * @param contentHash    文件内容的 SHA-256（十六进制小写）
+ * @param size           文件字节数
+ * @param deduplicated   内容与已有文件相同，未占用新的磁盘空间
+ */
+public record StoredFile(String storedFilename, String contentHash, long size, boolean deduplicated) {
+}
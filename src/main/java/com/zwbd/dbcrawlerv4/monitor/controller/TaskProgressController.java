@@ -0,0 +1,58 @@
+package com.zwbd.dbcrawlerv4.monitor.controller;
+
+import com.zwbd.dbcrawlerv4.common.web.ApiResponse;
+import com.zwbd.dbcrawlerv4.monitor.dto.TaskStatusDto;
+import com.zwbd.dbcrawlerv4.monitor.service.TaskProgressService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/5 11:20
+ * @Desc: 长任务进度查询、取消与跳过
+ */
+@RestController
+@RequestMapping("/api/tasks")
+@Tag(name = "Task progress", description = "Long running task progress APIs")
+public class TaskProgressController {
+
+    @Autowired
+    private TaskProgressService taskProgressService;
+
+    @GetMapping("/{taskId}/status")
+    @Operation(summary = "Get task status", description = "Progress, running steps and the slowest finished steps of a task")
+    public ApiResponse<TaskStatusDto> getTaskStatus(@Parameter(description = "Task ID") @PathVariable String taskId) {
+        return ApiResponse.ok(taskProgressService.getTaskStatus(taskId));
+    }
+
+    @GetMapping("/running")
+    @Operation(summary = "List running tasks")
+    public ApiResponse<List<TaskStatusDto>> getRunningTasks() {
+        return ApiResponse.ok(taskProgressService.getRunningTasks());
+    }
+
+    @GetMapping("/history")
+    @Operation(summary = "List recent tasks", description = "Most recently started tasks, including running ones")
+    public ApiResponse<List<TaskStatusDto>> getTaskHistory(@RequestParam(required = false) String taskType,
+                                                           @RequestParam(defaultValue = "20") int limit) {
+        return ApiResponse.ok(taskProgressService.getTaskHistory(taskType, limit));
+    }
+
+    @PostMapping("/{taskId}/cancel")
+    @Operation(summary = "Cancel task", description = "Stop scheduling new steps and cancel in-flight JDBC statements")
+    public ApiResponse<Boolean> cancelTask(@Parameter(description = "Task ID") @PathVariable String taskId) {
+        return ApiResponse.ok(taskProgressService.cancelTask(taskId));
+    }
+
+    @PostMapping("/{taskId}/skip")
+    @Operation(summary = "Skip step", description = "Skip a step (table name or catalog.schema.table) and cancel its in-flight statements")
+    public ApiResponse<Boolean> skipStep(@Parameter(description = "Task ID") @PathVariable String taskId,
+                                         @Parameter(description = "Step name") @RequestParam String step) {
+        return ApiResponse.ok(taskProgressService.skipStep(taskId, step));
+    }
+}
@@ -0,0 +1,27 @@
+package com.zwbd.dbcrawlerv4.monitor.dto;
+
+import com.zwbd.dbcrawlerv4.monitor.entity.TaskStatus;
+
+import java.util.Map;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/5 10:05
+ * @Desc: 任务子步骤（如元数据采集中的单个表）的耗时
+ *
+ * @param name          步骤名称，元数据采集中为 catalog.schema.table
+ * @param status        步骤状态
+ * @param currentPhase  正在执行的阶段，已结束的步骤为 null
+ * @param elapsedMillis 步骤总耗时，运行中的步骤为当前已耗时
+ * @param phaseMillis   各阶段耗时（如 details / sampling / metrics），按执行顺序排列
+ * @param error         失败原因
+ */
+public record StepTimingDto(
+        String name,
+        TaskStatus status,
+        String currentPhase,
+        long elapsedMillis,
+        Map<String, Long> phaseMillis,
+        String error
+) {
+}
@@ -0,0 +1,38 @@
+package com.zwbd.dbcrawlerv4.monitor.dto;
+
+import com.zwbd.dbcrawlerv4.monitor.entity.TaskStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/5 10:08
+ * @Desc: 任务状态快照
+ *
+ * @param currentStep    已完成（含失败、跳过）的步骤数
+ * @param totalSteps     已知的步骤总数，采集过程中随 schema 的展开而增长
+ * @param runningSteps   正在执行的步骤及其已耗时
+ * @param slowestSteps   已结束步骤中耗时最长的若干个
+ * @param failedSteps    失败的步骤数
+ * @param skippedSteps   被跳过的步骤数
+ */
+public record TaskStatusDto(
+        String taskId,
+        String taskType,
+        String taskName,
+        TaskStatus status,
+        int currentStep,
+        int totalSteps,
+        String currentMessage,
+        double progressPercentage,
+        LocalDateTime startTime,
+        LocalDateTime endTime,
+        long elapsedSeconds,
+        String error,
+        List<StepTimingDto> runningSteps,
+        List<StepTimingDto> slowestSteps,
+        int failedSteps,
+        int skippedSteps
+) {
+}
@@ -0,0 +1,33 @@
+package com.zwbd.dbcrawlerv4.monitor.entity;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/5 10:00
+ * @Desc: 长任务及其子步骤的状态
+ */
+public enum TaskStatus {
+    /**
+     * 已创建，尚未开始执行
+     */
+    PENDING,
+    /**
+     * 正在执行
+     */
+    RUNNING,
+    /**
+     * 执行成功
+     */
+    COMPLETED,
+    /**
+     * 执行失败
+     */
+    FAILED,
+    /**
+     * 被用户取消
+     */
+    CANCELLED,
+    /**
+     * 仅用于子步骤：被用户跳过（如采集时跳过的慢表）
+     */
+    SKIPPED
+}
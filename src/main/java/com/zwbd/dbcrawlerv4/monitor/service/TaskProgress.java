@@ -0,0 +1,344 @@
+package com.zwbd.dbcrawlerv4.monitor.service;
+
+import com.zwbd.dbcrawlerv4.common.exception.CommonException;
+import com.zwbd.dbcrawlerv4.monitor.dto.StepTimingDto;
+import com.zwbd.dbcrawlerv4.monitor.dto.TaskStatusDto;
+import com.zwbd.dbcrawlerv4.monitor.entity.TaskStatus;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/5 10:15
+ * @Desc: 单个长任务的运行状态，保存在内存中。
+ * 任务由若干步骤组成（元数据采集中每个表一个步骤），每个步骤按阶段计时。
+ * 通过 {@link #track(Connection)} / {@link Step#track(Connection)} 包装的连接会登记其创建的 Statement，
+ * 取消任务或跳过步骤时对这些 Statement 调用 {@link Statement#cancel()}，中断正在源库执行的查询。
+ * 执行线程与查询线程并发访问，所有状态都是线程安全的。
+ */
+@Slf4j
+@Getter
+public class TaskProgress {
+
+    private static final int SLOWEST_STEPS = 20;
+
+    private final String taskId;
+    private final String taskType;
+    private final String taskName;
+    private final LocalDateTime startTime = LocalDateTime.now();
+    private volatile LocalDateTime endTime;
+    private volatile TaskStatus status = TaskStatus.RUNNING;
+    private volatile String currentMessage;
+    private volatile String error;
+
+    private final AtomicInteger totalSteps = new AtomicInteger();
+    private final AtomicInteger completedSteps = new AtomicInteger();
+
+    private final Map<String, Step> steps = new ConcurrentHashMap<>();
+    private final Set<String> skipRequests = ConcurrentHashMap.newKeySet();
+    /**
+     * 不属于任何步骤的语句（如任务主连接上的 schema 级查询）
+     */
+    private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+
+    TaskProgress(String taskId, String taskType, String taskName) {
+        this.taskId = taskId;
+        this.taskType = taskType;
+        this.taskName = taskName;
+    }
+
+    public boolean isRunning() {
+        return status == TaskStatus.RUNNING;
+    }
+
+    public boolean isCancelled() {
+        return status == TaskStatus.CANCELLED;
+    }
+
+    /**
+     * 已取消时抛出异常，供执行线程在步骤之间检查。
+     */
+    public void checkCancelled() {
+        if (isCancelled()) {
+            throw new CommonException("Task " + taskId + " was cancelled");
+        }
+    }
+
+    public void addTotalSteps(int count) {
+        totalSteps.addAndGet(count);
+    }
+
+    /**
+     * 无需执行即完成的步骤（如增量采集中复用的表）
+     */
+    public void addCompletedSteps(int count) {
+        completedSteps.addAndGet(count);
+    }
+
+    public void updateMessage(String message) {
+        this.currentMessage = message;
+    }
+
+    /**
+     * 开始一个步骤。任务已取消或该步骤已被要求跳过时返回 null，调用方不应再执行它。
+     */
+    public Step startStep(String name) {
+        if (!isRunning()) {
+            return null;
+        }
+        Step step = new Step(name);
+        steps.put(name, step);
+        if (isSkipRequested(name)) {
+            step.finish(TaskStatus.SKIPPED, null);
+            return null;
+        }
+        currentMessage = "Processing " + name;
+        return step;
+    }
+
+    public void complete(String message) {
+        if (finish(TaskStatus.COMPLETED)) {
+            currentMessage = message;
+            log.info("Task {} [{}] completed in {}s", taskId, taskName, elapsedSeconds());
+        }
+    }
+
+    public void fail(String error) {
+        if (finish(TaskStatus.FAILED)) {
+            this.error = error;
+            log.error("Task {} [{}] failed: {}", taskId, taskName, error);
+        }
+    }
+
+    /**
+     * 取消任务：后续步骤不再开始，正在执行的语句被取消。
+     */
+    public boolean cancel() {
+        if (!finish(TaskStatus.CANCELLED)) {
+            return false;
+        }
+        currentMessage = "Cancelled";
+        log.info("Task {} [{}] cancelled", taskId, taskName);
+        cancelStatements(statements);
+        steps.values().forEach(step -> cancelStatements(step.statements));
+        return true;
+    }
+
+    /**
+     * 跳过步骤：尚未开始的步骤到达时直接跳过，正在执行的步骤取消其语句。
+     * name 可以是完整的步骤名，也可以是其最后一段（如表名）。
+     */
+    public boolean skip(String name) {
+        if (!isRunning()) {
+            return false;
+        }
+        skipRequests.add(name);
+        steps.values().stream()
+                .filter(step -> step.status == TaskStatus.RUNNING && matches(step.name, name))
+                .forEach(step -> {
+                    log.info("Task {}: skipping {}", taskId, step.name);
+                    cancelStatements(step.statements);
+                });
+        return true;
+    }
+
+    boolean isSkipRequested(String stepName) {
+        return skipRequests.stream().anyMatch(request -> matches(stepName, request));
+    }
+
+    private static boolean matches(String stepName, String request) {
+        return stepName.equals(request) || stepName.endsWith("." + request);
+    }
+
+    private synchronized boolean finish(TaskStatus finalStatus) {
+        if (status != TaskStatus.RUNNING) {
+            return false;
+        }
+        // 先写结束时间：其他线程看到非 RUNNING 状态时结束时间一定已经存在
+        endTime = LocalDateTime.now();
+        status = finalStatus;
+        return true;
+    }
+
+    public long elapsedSeconds() {
+        return Duration.between(startTime, endTime != null ? endTime : LocalDateTime.now()).getSeconds();
+    }
+
+    /**
+     * 包装任务级连接，登记其创建的语句以便取消。
+     */
+    public Connection track(Connection connection) {
+        return trackStatements(connection, statements);
+    }
+
+    public TaskStatusDto toStatusDto() {
+        int total = totalSteps.get();
+        int done = completedSteps.get();
+        List<StepTimingDto> running = new ArrayList<>();
+        List<Step> finished = new ArrayList<>();
+        int failed = 0;
+        int skipped = 0;
+        for (Step step : steps.values()) {
+            switch (step.status) {
+                case RUNNING -> running.add(step.toDto());
+                case FAILED -> failed++;
+                case SKIPPED -> skipped++;
+                default -> {
+                }
+            }
+            if (step.status != TaskStatus.RUNNING) {
+                finished.add(step);
+            }
+        }
+        running.sort(Comparator.comparingLong(StepTimingDto::elapsedMillis).reversed());
+        List<StepTimingDto> slowest = finished.stream()
+                .sorted(Comparator.comparingLong(Step::elapsedMillis).reversed())
+                .limit(SLOWEST_STEPS)
+                .map(Step::toDto)
+                .toList();
+        double percentage = total > 0 ? Math.min(100.0, done * 100.0 / total) : (status == TaskStatus.COMPLETED ? 100.0 : 0.0);
+        return new TaskStatusDto(taskId, taskType, taskName, status, done, total, currentMessage, percentage,
+                startTime, endTime, elapsedSeconds(), error, running, slowest, failed, skipped);
+    }
+
+    private static void cancelStatements(Set<Statement> statements) {
+        for (Statement statement : statements) {
+            try {
+                statement.cancel();
+            } catch (SQLException | RuntimeException e) {
+                // 语句可能已执行完或已关闭
+                log.debug("Failed to cancel statement: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 用动态代理包装连接：创建的 Statement 登记到 statements，连接关闭时移除。
+     */
+    private static Connection trackStatements(Connection connection, Set<Statement> statements) {
+        List<Statement> created = new ArrayList<>();
+        InvocationHandler handler = (proxy, method, args) -> {
+            Object result;
+            try {
+                result = method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement statement) {
+                synchronized (created) {
+                    created.add(statement);
+                }
+                statements.add(statement);
+            } else if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                synchronized (created) {
+                    created.forEach(statements::remove);
+                    created.clear();
+                }
+            }
+            return result;
+        };
+        return (Connection) Proxy.newProxyInstance(TaskProgress.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    /**
+     * 单个步骤的计时器，只由执行该步骤的线程调用 phase / complete / fail。
+     */
+    public class Step {
+
+        private final String name;
+        private final long startNanos = System.nanoTime();
+        private final Map<String, Long> phaseMillis = Collections.synchronizedMap(new LinkedHashMap<>());
+        private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+        private volatile TaskStatus status = TaskStatus.RUNNING;
+        private volatile String currentPhase;
+        private volatile long phaseStartNanos;
+        private volatile long endNanos;
+        private volatile String error;
+
+        private Step(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 结束当前阶段并开始新的阶段。
+         */
+        public void phase(String phase) {
+            closePhase();
+            currentPhase = phase;
+            phaseStartNanos = System.nanoTime();
+        }
+
+        private void closePhase() {
+            if (currentPhase != null) {
+                phaseMillis.merge(currentPhase, (System.nanoTime() - phaseStartNanos) / 1_000_000, Long::sum);
+                currentPhase = null;
+            }
+        }
+
+        public boolean isSkipRequested() {
+            return TaskProgress.this.isSkipRequested(name);
+        }
+
+        public void complete() {
+            finish(TaskStatus.COMPLETED, null);
+        }
+
+        public void fail(String error) {
+            finish(TaskStatus.FAILED, error);
+        }
+
+        public void skip() {
+            finish(TaskStatus.SKIPPED, null);
+        }
+
+        private void finish(TaskStatus finalStatus, String error) {
+            if (status != TaskStatus.RUNNING) {
+                return;
+            }
+            closePhase();
+            this.error = error;
+            endNanos = System.nanoTime();
+            status = finalStatus;
+            completedSteps.incrementAndGet();
+        }
+
+        /**
+         * 包装该步骤使用的连接，跳过步骤或取消任务时可以中断其语句。
+         */
+        public Connection track(Connection connection) {
+            return trackStatements(connection, statements);
+        }
+
+        private long elapsedMillis() {
+            return ((endNanos != 0 ? endNanos : System.nanoTime()) - startNanos) / 1_000_000;
+        }
+
+        private StepTimingDto toDto() {
+            Map<String, Long> phases;
+            synchronized (phaseMillis) {
+                phases = new LinkedHashMap<>(phaseMillis);
+            }
+            String phase = currentPhase;
+            if (phase != null) {
+                phases.merge(phase, (System.nanoTime() - phaseStartNanos) / 1_000_000, Long::sum);
+            }
+            return new StepTimingDto(name, status, phase, elapsedMillis(), phases, error);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.zwbd.dbcrawlerv4.monitor.service;
+
+import com.zwbd.dbcrawlerv4.common.exception.CommonException;
+import com.zwbd.dbcrawlerv4.monitor.dto.TaskStatusDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/5 11:00
+ * @Desc: 长任务进度监控（见 docs/ProgressMonitorModule-Design.md）。
+ * 任务状态只保存在内存中：取消与跳过依赖运行中的连接和语句，无法跨进程恢复；
+ * 已结束的任务按结束时间保留最近 history-size 个，供事后查看各步骤耗时。
+ */
+@Slf4j
+@Service
+public class TaskProgressService {
+
+    public static final String TYPE_DATABASE_ANALYSIS = "database_analysis";
+
+    public static final String TYPE_DOCUMENT_DERIVATION = "document_derivation";
+
+    /**
+     * 保留的已结束任务数量
+     */
+    @Value("${app.task.history-size:100}")
+    private int historySize;
+
+    private final Map<String, TaskProgress> tasks = new ConcurrentHashMap<>();
+
+    public TaskProgress startTask(String taskType, String taskName) {
+        evictFinished();
+        TaskProgress task = new TaskProgress(UUID.randomUUID().toString(), taskType, taskName);
+        tasks.put(task.getTaskId(), task);
+        log.info("Starting task: {} [{}] with ID: {}", taskName, taskType, task.getTaskId());
+        return task;
+    }
+
+    public Optional<TaskProgress> find(String taskId) {
+        return Optional.ofNullable(tasks.get(taskId));
+    }
+
+    public TaskStatusDto getTaskStatus(String taskId) {
+        return get(taskId).toStatusDto();
+    }
+
+    public List<TaskStatusDto> getRunningTasks() {
+        return tasks.values().stream()
+                .filter(TaskProgress::isRunning)
+                .sorted(Comparator.comparing(TaskProgress::getStartTime))
+                .map(TaskProgress::toStatusDto)
+                .toList();
+    }
+
+    /**
+     * 按开始时间倒序返回任务（含运行中的任务）
+     *
+     * @param taskType 任务类型，为 null 时不过滤
+     */
+    public List<TaskStatusDto> getTaskHistory(String taskType, int limit) {
+        return tasks.values().stream()
+                .filter(task -> taskType == null || taskType.equals(task.getTaskType()))
+                .sorted(Comparator.comparing(TaskProgress::getStartTime).reversed())
+                .limit(limit)
+                .map(TaskProgress::toStatusDto)
+                .toList();
+    }
+
+    public boolean cancelTask(String taskId) {
+        return get(taskId).cancel();
+    }
+
+    /**
+     * 跳过任务中的一个步骤（元数据采集中为表名或 catalog.schema.table）
+     */
+    public boolean skipStep(String taskId, String stepName) {
+        return get(taskId).skip(stepName);
+    }
+
+    private TaskProgress get(String taskId) {
+        return find(taskId).orElseThrow(() -> new CommonException("Task not found: " + taskId));
+    }
+
+    private void evictFinished() {
+        List<TaskProgress> finished = tasks.values().stream()
+                .filter(task -> !task.isRunning())
+                .sorted(Comparator.comparing(TaskProgress::getEndTime, Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+        for (int i = 0; i < finished.size() - historySize; i++) {
+            tasks.remove(finished.get(i).getTaskId());
+        }
+    }
+}
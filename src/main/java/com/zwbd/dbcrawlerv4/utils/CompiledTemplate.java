@@ -0,0 +1,124 @@
+package com.zwbd.dbcrawlerv4.utils;
+
+import com.zwbd.dbcrawlerv4.datasource.dialect.Row;
+import com.zwbd.dbcrawlerv4.datasource.dialect.RowSchema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @Author: wnli
+ * @Date: 2025/12/4 14:10
+ * @Desc:
+ * 预编译模版
+ * 模版只解析一次，拆成 "文本片段 + 占位符" 交替的段；渲染 {@link Row} 时按行结构把占位符绑定到列下标，
+ * 直接按下标取值写入复用的 StringBuilder，不再为每行复制 Properties 或重新解析模版。
+ * 与 {@link TemplateRenderService#render} 一致：找不到或值为 null 的占位符原样保留。
+ * 实例持有可复用的缓冲区，不是线程安全的，每个数据流单独编译一份。
+ */
+public final class CompiledTemplate {
+
+    static final String PREFIX = "${";
+    static final String SUFFIX = "}";
+
+    /**
+     * literals[i] 后面紧跟 names[i]，最后一个文本片段是 literals[names.length]
+     */
+    private final String[] literals;
+    private final String[] names;
+    private final String[] rawPlaceholders;
+    private final Set<String> placeholders;
+
+    private final StringBuilder buffer = new StringBuilder(256);
+
+    /**
+     * 最近一次绑定的行结构及对应的列下标，同一结果集的行共享同一个 RowSchema
+     */
+    private RowSchema boundSchema;
+    private int[] boundPositions;
+
+    private CompiledTemplate(String[] literals, String[] names, String[] rawPlaceholders) {
+        this.literals = literals;
+        this.names = names;
+        this.rawPlaceholders = rawPlaceholders;
+        Set<String> distinct = new LinkedHashSet<>();
+        Collections.addAll(distinct, names);
+        this.placeholders = Collections.unmodifiableSet(distinct);
+    }
+
+    public static CompiledTemplate compile(String template) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> raw = new ArrayList<>();
+        int position = 0;
+        int start = template.indexOf(PREFIX);
+        while (start >= 0) {
+            int end = template.indexOf(SUFFIX, start + PREFIX.length());
+            if (end < 0) {
+                break;
+            }
+            String name = template.substring(start + PREFIX.length(), end).trim();
+            if (!name.isEmpty()) {
+                literals.add(template.substring(position, start));
+                names.add(name);
+                raw.add(template.substring(start, end + SUFFIX.length()));
+                position = end + SUFFIX.length();
+            }
+            start = template.indexOf(PREFIX, end + SUFFIX.length());
+        }
+        literals.add(template.substring(position));
+        return new CompiledTemplate(literals.toArray(new String[0]), names.toArray(new String[0]), raw.toArray(new String[0]));
+    }
+
+    /**
+     * 模版引用的占位符名称，按出现顺序去重
+     */
+    public Set<String> getPlaceholders() {
+        return placeholders;
+    }
+
+    public String render(Map<String, Object> variables) {
+        if (names.length == 0) {
+            return literals[0];
+        }
+        buffer.setLength(0);
+        if (variables instanceof Row row) {
+            int[] positions = bind(row.getSchema());
+            for (int i = 0; i < names.length; i++) {
+                buffer.append(literals[i]);
+                append(i, positions[i] < 0 ? null : row.getValue(positions[i]));
+            }
+        } else {
+            for (int i = 0; i < names.length; i++) {
+                buffer.append(literals[i]);
+                append(i, variables != null ? variables.get(names[i]) : null);
+            }
+        }
+        buffer.append(literals[names.length]);
+        return buffer.toString();
+    }
+
+    private void append(int index, Object value) {
+        if (value != null) {
+            buffer.append(value);
+        } else {
+            buffer.append(rawPlaceholders[index]);
+        }
+    }
+
+    private int[] bind(RowSchema schema) {
+        if (schema != boundSchema) {
+            int[] positions = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                positions[i] = schema.positionOf(names[i]);
+            }
+            boundPositions = positions;
+            boundSchema = schema;
+        }
+        return boundPositions;
+    }
+}
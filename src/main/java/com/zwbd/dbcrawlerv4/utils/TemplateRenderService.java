@@ -5,7 +5,7 @@ import org.springframework.util.Assert;
 import org.springframework.util.PropertyPlaceholderHelper;
 
 import java.util.Map;
-import java.util.Properties;
+import java.util.Set;
 
 /**
  * @Author: wnli
@@ -19,7 +19,7 @@ import java.util.Properties;
 public class TemplateRenderService {
 
     // 定义占位符的前缀和后缀，例如 ${name}
-    private final PropertyPlaceholderHelper helper = new PropertyPlaceholderHelper("${", "}");
+    private final PropertyPlaceholderHelper helper = new PropertyPlaceholderHelper(CompiledTemplate.PREFIX, CompiledTemplate.SUFFIX);
 
     /**
      * 渲染文本
@@ -33,16 +33,29 @@ public class TemplateRenderService {
             return template;
         }
 
-        // PropertyPlaceholderHelper 需要 Properties 或者 PlaceholderResolver
-        // 这里使用简单的 Properties 适配，或者自定义 Resolver 以获得更高性能
-        Properties props = new Properties();
-        variables.forEach((k, v) -> {
-            if (v != null) {
-                props.put(k, v.toString());
-            }
+        // 直接按占位符从 Map 取值，避免每行复制一份 Properties；值为 null 的占位符保留原样
+        return helper.replacePlaceholders(template, name -> {
+            Object value = variables.get(name);
+            return value != null ? value.toString() : null;
         });
+    }
 
-        // 执行替换
-        return helper.replacePlaceholders(template, props);
+    /**
+     * 提取模版中引用的占位符名称（按出现顺序去重），例如 "${name} 的年龄是 ${age}" 返回 [name, age]。
+     * 用于在查询前裁剪需要读取的列。
+     */
+    public Set<String> extractPlaceholders(String template) {
+        if (template == null) {
+            return Set.of();
+        }
+        return CompiledTemplate.compile(template).getPlaceholders();
+    }
+
+    /**
+     * 预编译模版，用于逐行渲染的数据流。返回的实例不是线程安全的，每个数据流单独编译。
+     */
+    public CompiledTemplate compile(String template) {
+        Assert.hasText(template, "Template content must not be empty");
+        return CompiledTemplate.compile(template);
     }
 }
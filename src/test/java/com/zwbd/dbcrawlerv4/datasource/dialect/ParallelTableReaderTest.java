@@ -0,0 +1,76 @@
+package com.zwbd.dbcrawlerv4.datasource.dialect;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelTableReaderTest {
+
+    private final TableScanSpec spec = TableScanSpec.builder()
+            .schema("public")
+            .tableName("orders")
+            .filter("status = 1")
+            .afterKey(42L)
+            .build();
+
+    @Test
+    void rangesAreContiguousAndCoverEveryKeyOnce() {
+        List<TableScanSpec> ranges = ParallelTableReader.splitRanges(spec, "id", 1, 1000, 7, true);
+
+        assertThat(ranges).hasSizeBetween(2, 7);
+        assertThat(ranges.get(0).getLowerBound()).isEqualTo(1L);
+        TableScanSpec last = ranges.get(ranges.size() - 1);
+        assertThat(last.getUpperBound()).isEqualTo(1000L);
+        assertThat(last.isUpperInclusive()).isTrue();
+        for (int i = 1; i < ranges.size(); i++) {
+            assertThat(ranges.get(i).getLowerBound()).isEqualTo(ranges.get(i - 1).getUpperBound());
+            assertThat(ranges.get(i - 1).isUpperInclusive()).isFalse();
+        }
+        for (long key = 0; key <= 1001; key++) {
+            long covering = countCovering(ranges, key);
+            assertThat(covering).as("ranges covering key %d", key).isEqualTo(key >= 1 && key <= 1000 ? 1 : 0);
+        }
+    }
+
+    @Test
+    void rangesKeepScanSettingsAndDropResumeKey() {
+        List<TableScanSpec> ranges = ParallelTableReader.splitRanges(spec, "id", 0, 99, 4, false);
+
+        assertThat(ranges).hasSize(4);
+        assertThat(ranges).allSatisfy(range -> {
+            assertThat(range.getTableName()).isEqualTo("orders");
+            assertThat(range.getFilter()).isEqualTo("status = 1");
+            assertThat(range.getKeyColumn()).isEqualTo("id");
+            assertThat(range.getAfterKey()).isNull();
+            assertThat(range.isOrderByKey()).isFalse();
+        });
+    }
+
+    @Test
+    void doesNotSplitSmallSpansOrSingleRange() {
+        assertThat(ParallelTableReader.splitRanges(spec, "id", 10, 12, 4, true)).isEmpty();
+        assertThat(ParallelTableReader.splitRanges(spec, "id", 5, 5, 2, true)).isEmpty();
+        assertThat(ParallelTableReader.splitRanges(spec, "id", 0, 1000, 1, true)).isEmpty();
+    }
+
+    @Test
+    void handlesExtremeKeysWithoutOverflow() {
+        assertThat(ParallelTableReader.splitRanges(spec, "id", Long.MIN_VALUE, Long.MAX_VALUE, 4, true)).isEmpty();
+
+        long min = Long.MAX_VALUE - 1000;
+        List<TableScanSpec> ranges = ParallelTableReader.splitRanges(spec, "id", min, Long.MAX_VALUE, 3, true);
+        assertThat(ranges).isNotEmpty();
+        assertThat(ranges.get(ranges.size() - 1).getUpperBound()).isEqualTo(Long.MAX_VALUE);
+        assertThat(countCovering(ranges, Long.MAX_VALUE)).isEqualTo(1);
+        assertThat(countCovering(ranges, min)).isEqualTo(1);
+    }
+
+    private static long countCovering(List<TableScanSpec> ranges, long key) {
+        return ranges.stream()
+                .filter(range -> key >= range.getLowerBound()
+                        && (key < range.getUpperBound() || (range.isUpperInclusive() && key == range.getUpperBound())))
+                .count();
+    }
+}
@@ -0,0 +1,162 @@
+package com.zwbd.dbcrawlerv4.datasource.dialect;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SourceGovernorTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static SourceGovernor governor(int maxConcurrentStatements) {
+        return new SourceGovernor(1L, maxConcurrentStatements, 0, false, 0, 0, 0.2);
+    }
+
+    private static DataSource dataSource(PreparedStatement statement) throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+
+    @Test
+    void statementsBeyondTheLimitWaitForAPermit() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch finish = new CountDownLatch(1);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            started.countDown();
+            finish.await();
+            running.decrementAndGet();
+            return mock(ResultSet.class);
+        });
+        SourceGovernor governor = governor(2);
+        DataSource dataSource = governor.wrap(dataSource(statement));
+
+        List<Future<?>> queries = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            queries.add(executor.submit(() -> dataSource.getConnection().prepareStatement("SELECT 1").executeQuery()));
+        }
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        queries.add(executor.submit(() -> dataSource.getConnection().prepareStatement("SELECT 1").executeQuery()));
+        awaitWaiting(governor, 1);
+        assertThat(running.get()).isEqualTo(2);
+
+        finish.countDown();
+        for (Future<?> query : queries) {
+            query.get(5, TimeUnit.SECONDS);
+        }
+        assertThat(maxRunning.get()).isEqualTo(2);
+        assertThat(governor.getWaitingStatements()).isZero();
+    }
+
+    @Test
+    void failedStatementsReleaseTheirPermit() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenThrow(new SQLException("syntax error"));
+        when(statement.executeUpdate()).thenThrow(new IllegalStateException("driver bug"));
+        when(statement.execute()).thenReturn(true);
+        SourceGovernor governor = governor(1);
+        Connection connection = governor.wrap(dataSource(statement)).getConnection();
+        PreparedStatement wrapped = connection.prepareStatement("SELECT 1");
+
+        // 原始异常原样抛出，许可在 finally 中归还
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(wrapped::executeQuery).isInstanceOf(SQLException.class).hasMessage("syntax error");
+            assertThatThrownBy(wrapped::executeUpdate).isInstanceOf(IllegalStateException.class).hasMessage("driver bug");
+        }
+
+        // 只有一个许可，之前任何一次未归还都会让这里永远阻塞
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertThat(wrapped.execute()).isTrue();
+        });
+        assertThat(governor.getWaitingStatements()).isZero();
+    }
+
+    @Test
+    void nonExecuteCallsDoNotTakeAPermit() throws Exception {
+        CountDownLatch finish = new CountDownLatch(1);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenAnswer(invocation -> {
+            finish.await();
+            return mock(ResultSet.class);
+        });
+        SourceGovernor governor = governor(1);
+        Connection connection = governor.wrap(dataSource(statement)).getConnection();
+        PreparedStatement wrapped = connection.prepareStatement("SELECT 1");
+
+        Future<?> running = executor.submit(() -> wrapped.executeQuery());
+        // 唯一的许可被占用时，设置参数与关闭语句不受影响
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            wrapped.setFetchSize(100);
+            wrapped.setLong(1, 42L);
+            connection.prepareStatement("SELECT 2").close();
+        });
+
+        finish.countDown();
+        running.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void wrappedConnectionsExposeTheGovernor() throws Exception {
+        SourceGovernor governor = governor(1);
+        DataSource raw = dataSource(mock(PreparedStatement.class));
+
+        assertThat(SourceGovernor.of(governor.wrap(raw).getConnection())).isSameAs(governor);
+        assertThat(SourceGovernor.of(raw.getConnection())).isNull();
+    }
+
+    @Test
+    void unlimitedGovernorNeverBlocks() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.execute()).thenReturn(false);
+        SourceGovernor governor = governor(0);
+        PreparedStatement wrapped = governor.wrap(dataSource(statement)).getConnection().prepareStatement("SELECT 1");
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 100; i++) {
+                wrapped.execute();
+            }
+            governor.acquireRows(1_000_000);
+        });
+        assertThat(governor.getWaitingStatements()).isZero();
+    }
+
+    private static void awaitWaiting(SourceGovernor governor, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (governor.getWaitingStatements() < expected) {
+            assertThat(System.nanoTime()).as("statements waiting for a permit").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.zwbd.dbcrawlerv4.datasource.dialect;
+
+import com.zwbd.dbcrawlerv4.common.exception.CommonException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TableFilterTest {
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    @Test
+    void literalsBecomeBindParameters() {
+        List<Object> params = new ArrayList<>();
+        String sql = TableFilter.parse("status = 1 AND name LIKE 'a%' AND type NOT IN ('x', 'y') AND score >= -2.5 AND deleted_at IS NULL")
+                .toSql(TableFilterTest::quote, params);
+
+        assertThat(sql).isEqualTo("\"status\" = ? AND \"name\" LIKE ? AND \"type\" NOT IN (?, ?) AND \"score\" >= ? AND \"deleted_at\" IS NULL");
+        assertThat(params).containsExactly(1L, "a%", "x", "y", new BigDecimal("-2.5"));
+    }
+
+    @Test
+    void quotedStringsAreNeverInlined() {
+        List<Object> params = new ArrayList<>();
+        String sql = TableFilter.parse("name = 'x'' OR ''1''=''1' AND note = '-- ; /* */'")
+                .toSql(TableFilterTest::quote, params);
+
+        assertThat(sql).isEqualTo("\"name\" = ? AND \"note\" = ?");
+        assertThat(params).containsExactly("x' OR '1'='1", "-- ; /* */");
+    }
+
+    @Test
+    void quotedColumnNamesAreRequotedByTheDialect() {
+        List<Object> params = new ArrayList<>();
+        String sql = TableFilter.parse("`order id` != 3 AND \"a\"\"b\" IS NOT NULL").toSql(TableFilterTest::quote, params);
+
+        assertThat(sql).isEqualTo("\"order id\" <> ? AND \"a\"\"b\" IS NOT NULL");
+        assertThat(params).containsExactly(3L);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "status = 1 OR 1 = 1",
+            "status = 1 -- comment",
+            "status = 1 /* comment */",
+            "status = 1; DROP TABLE users",
+            "name = 'unterminated",
+            "\"name = 'x'",
+            "status BETWEEN 1 AND 2",
+            "status ~ 1",
+            "status !< 1",
+            "status = other_column",
+            "status = (SELECT 1)",
+            "status = 1 AND",
+            "status",
+            "IS NULL",
+            "status IS NOT 1"
+    })
+    void unsupportedSyntaxIsRejected(String filter) {
+        assertThatThrownBy(() -> TableFilter.parse(filter))
+                .isInstanceOf(CommonException.class)
+                .hasMessageContaining("Invalid filter");
+    }
+}
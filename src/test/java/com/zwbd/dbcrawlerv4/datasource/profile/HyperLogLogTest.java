@@ -0,0 +1,54 @@
+package com.zwbd.dbcrawlerv4.datasource.profile;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HyperLogLogTest {
+
+    @Test
+    void smallCardinalityIsNearlyExact() {
+        HyperLogLog hll = new HyperLogLog(14);
+        for (int i = 0; i < 1000; i++) {
+            hll.add("value-" + i);
+            hll.add("value-" + i);
+        }
+        assertThat(hll.estimate()).isBetween(990L, 1010L);
+    }
+
+    @Test
+    void largeCardinalityStaysWithinErrorBound() {
+        int precision = 14;
+        HyperLogLog hll = new HyperLogLog(precision);
+        long n = 1_000_000;
+        for (long i = 0; i < n; i++) {
+            hll.add(i);
+        }
+        // 标准误差约 1.04 / sqrt(2^14) ≈ 0.8%，允许 4 倍标准误差
+        double standardError = 1.04 / Math.sqrt(1 << precision);
+        assertThat(Math.abs(hll.estimate() - n) / (double) n).isLessThan(4 * standardError);
+    }
+
+    @Test
+    void numericValuesAreComparedByValue() {
+        HyperLogLog hll = new HyperLogLog(10);
+        hll.add(1);
+        hll.add(1L);
+        hll.add((short) 1);
+        hll.add(1.0d);
+        hll.add(new BigDecimal("1.00"));
+        assertThat(hll.estimate()).isEqualTo(1L);
+    }
+
+    @Test
+    void clearResetsEstimate() {
+        HyperLogLog hll = new HyperLogLog(10);
+        for (int i = 0; i < 100; i++) {
+            hll.add(i);
+        }
+        hll.clear();
+        assertThat(hll.estimate()).isZero();
+    }
+}
@@ -0,0 +1,50 @@
+package com.zwbd.dbcrawlerv4.datasource.profile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ReservoirHistogramTest {
+
+    @Test
+    void exactBelowCapacity() {
+        ReservoirHistogram histogram = new ReservoirHistogram(100);
+        for (int i = 1; i <= 10; i++) {
+            histogram.add(i);
+        }
+        assertThat(histogram.median()).isEqualTo(5.5);
+        List<ReservoirHistogram.Bucket> buckets = histogram.buckets(5);
+        assertThat(buckets).hasSize(5);
+        assertThat(buckets.get(0)).isEqualTo(new ReservoirHistogram.Bucket(1, 2, 2));
+        assertThat(buckets.get(4)).isEqualTo(new ReservoirHistogram.Bucket(9, 10, 2));
+    }
+
+    @Test
+    void bucketCountsSumToTotalWhenSampling() {
+        ReservoirHistogram histogram = new ReservoirHistogram(1024);
+        int n = 100_000;
+        for (int i = 0; i < n; i++) {
+            histogram.add(i);
+        }
+        assertThat(histogram.getCount()).isEqualTo(n);
+        assertThat(histogram.median()).isCloseTo(n / 2.0, within(n * 0.05));
+        List<ReservoirHistogram.Bucket> buckets = histogram.buckets(10);
+        assertThat(buckets).hasSize(10);
+        assertThat(buckets.stream().mapToLong(ReservoirHistogram.Bucket::count).sum()).isEqualTo(n);
+        for (int i = 1; i < buckets.size(); i++) {
+            assertThat(buckets.get(i).lower()).isGreaterThanOrEqualTo(buckets.get(i - 1).upper());
+        }
+    }
+
+    @Test
+    void ignoresNaNAndHandlesEmpty() {
+        ReservoirHistogram histogram = new ReservoirHistogram(8);
+        histogram.add(Double.NaN);
+        assertThat(histogram.getCount()).isZero();
+        assertThat(histogram.median()).isNull();
+        assertThat(histogram.buckets(4)).isEmpty();
+    }
+}
@@ -0,0 +1,69 @@
+package com.zwbd.dbcrawlerv4.datasource.profile;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpaceSavingTest {
+
+    @Test
+    void countsExactlyWhileBelowCapacity() {
+        SpaceSaving<String> summary = new SpaceSaving<>(8);
+        for (String value : List.of("a", "b", "a", "c", "a", "b")) {
+            summary.add(value);
+        }
+        List<SpaceSaving.Counter<String>> top = summary.top(3, 0);
+        assertThat(top).extracting(SpaceSaving.Counter::getValue).containsExactly("a", "b", "c");
+        assertThat(top).extracting(SpaceSaving.Counter::getCount).containsExactly(3L, 2L, 1L);
+        assertThat(top).extracting(SpaceSaving.Counter::getError).containsOnly(0L);
+    }
+
+    @Test
+    void replacesMinimumCounterWhenFull() {
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.add("a");
+        summary.add("a");
+        summary.add("b");
+        summary.add("c");
+        List<SpaceSaving.Counter<String>> top = summary.top(2, 0);
+        // c 替换了计数最小的 b，继承其计数 1 并记为误差
+        assertThat(top).extracting(SpaceSaving.Counter::getValue).containsExactly("a", "c");
+        assertThat(top.get(1).getCount()).isEqualTo(2L);
+        assertThat(top.get(1).getError()).isEqualTo(1L);
+    }
+
+    @Test
+    void heavyHittersAreAlwaysReportedWithBoundedError() {
+        SpaceSaving<Integer> summary = new SpaceSaving<>(16);
+        Map<Integer, Long> exact = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(42);
+        int n = 100_000;
+        for (int i = 0; i < n; i++) {
+            int value = random.nextDouble() < 0.6 ? random.nextInt(4) : 4 + random.nextInt(50_000);
+            summary.add(value);
+            exact.merge(value, 1L, Long::sum);
+        }
+        List<SpaceSaving.Counter<Integer>> top = summary.top(4, 0);
+        assertThat(top).extracting(SpaceSaving.Counter::getValue).containsExactlyInAnyOrder(0, 1, 2, 3);
+        for (SpaceSaving.Counter<Integer> counter : top) {
+            long trueCount = exact.get(counter.getValue());
+            assertThat(counter.getCount()).isGreaterThanOrEqualTo(trueCount);
+            assertThat(counter.getCount() - counter.getError()).isLessThanOrEqualTo(trueCount);
+            assertThat(counter.getError()).isLessThanOrEqualTo(n / 16);
+        }
+    }
+
+    @Test
+    void dropsCandidatesBelowGuaranteedCount() {
+        SpaceSaving<String> summary = new SpaceSaving<>(4);
+        summary.add("x");
+        summary.add("y");
+        summary.add("y");
+        assertThat(summary.top(10, 2)).extracting(SpaceSaving.Counter::getValue).containsExactly("y");
+    }
+}
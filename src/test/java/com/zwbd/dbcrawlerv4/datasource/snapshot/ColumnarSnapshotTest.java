@@ -0,0 +1,114 @@
+package com.zwbd.dbcrawlerv4.datasource.snapshot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ColumnarSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsAllValueTypesAcrossBlocks() throws IOException {
+        List<Map<String, Object>> rows = IntStream.range(0, 2500).mapToObj(ColumnarSnapshotTest::row).toList();
+        Path file = dir.resolve("rows.snap");
+
+        assertThat(ColumnarSnapshot.write(file, rows.stream())).isEqualTo(2500);
+
+        List<Map<String, Object>> read = readAll(file);
+        assertThat(read).hasSize(2500);
+        for (int i = 0; i < rows.size(); i++) {
+            Map<String, Object> expected = rows.get(i);
+            Map<String, Object> actual = read.get(i);
+            assertThat(actual.keySet()).containsExactlyElementsOf(expected.keySet());
+            for (Map.Entry<String, Object> entry : expected.entrySet()) {
+                Object value = actual.get(entry.getKey());
+                if (entry.getValue() instanceof byte[] bytes) {
+                    assertThat((byte[]) value).isEqualTo(bytes);
+                } else {
+                    assertThat(value).as("row %d column %s", i, entry.getKey()).isEqualTo(entry.getValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    void storesOtherTypesAsStringsAndWidensSmallIntegers() throws IOException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("unsigned", new BigInteger("18446744073709551615"));
+        row.put("small", (short) 7);
+        row.put("tiny", (byte) -1);
+        Path file = dir.resolve("other.snap");
+        ColumnarSnapshot.write(file, Stream.of(row));
+
+        Map<String, Object> read = readAll(file).get(0);
+        assertThat(read.get("unsigned")).isEqualTo("18446744073709551615");
+        assertThat(read.get("small")).isEqualTo(7);
+        assertThat(read.get("tiny")).isEqualTo(-1);
+    }
+
+    @Test
+    void handlesEmptyStreamAndLongText() throws IOException {
+        Path empty = dir.resolve("empty.snap");
+        assertThat(ColumnarSnapshot.write(empty, Stream.empty())).isZero();
+        assertThat(readAll(empty)).isEmpty();
+
+        // 超过 writeUTF 的 64KB 上限
+        String text = "长文本".repeat(30_000);
+        Path large = dir.resolve("large.snap");
+        ColumnarSnapshot.write(large, Stream.of(Map.of("content", text)));
+        assertThat(readAll(large)).singleElement().satisfies(row -> assertThat(row.get("content")).isEqualTo(text));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotSnapshots() throws IOException {
+        Path file = dir.resolve("other.gz");
+        try (GZIPOutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write("not a snapshot".getBytes(StandardCharsets.UTF_8));
+        }
+        assertThatThrownBy(() -> ColumnarSnapshot.read(file)).isInstanceOf(IOException.class);
+    }
+
+    private static Map<String, Object> row(int i) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", (long) i);
+        row.put("code", i % 7 == 0 ? null : "code-" + i);
+        row.put("qty", i);
+        row.put("ratio", i / 3.0f);
+        row.put("score", i * 1.5d);
+        row.put("amount", new BigDecimal(i + ".50"));
+        row.put("active", i % 2 == 0);
+        Timestamp timestamp = new Timestamp(1_700_000_000_000L + i * 1000L);
+        timestamp.setNanos(123_456_789);
+        row.put("created_at", timestamp);
+        row.put("day", new java.sql.Date(1_700_000_000_000L));
+        row.put("clock", new Time(3_600_000L));
+        row.put("payload", new byte[]{(byte) i, 0, (byte) 0xff});
+        return row;
+    }
+
+    private static List<Map<String, Object>> readAll(Path file) throws IOException {
+        try (Stream<Map<String, Object>> stream = ColumnarSnapshot.read(file)) {
+            return new ArrayList<>(stream.toList());
+        }
+    }
+}
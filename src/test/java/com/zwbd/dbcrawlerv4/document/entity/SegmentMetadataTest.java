@@ -0,0 +1,96 @@
+package com.zwbd.dbcrawlerv4.document.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.zwbd.dbcrawlerv4.document.entity.DocConstant.META_KEY_UNSET;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SegmentMetadataTest {
+
+    @Test
+    void commonKeepsOnlyKeysWithEqualValuesInEverySegment() {
+        List<Map<String, Object>> metadataList = List.of(
+                map("source", "a.pdf", "page", 1, "lang", "zh"),
+                map("source", "a.pdf", "page", 2, "lang", "zh"),
+                map("source", "a.pdf", "page", 3));
+
+        assertThat(SegmentMetadata.common(metadataList)).containsExactly(Map.entry("source", "a.pdf"));
+        assertThat(SegmentMetadata.common(List.of())).isEmpty();
+    }
+
+    @Test
+    void commonTreatsNullValuesAsValues() {
+        Map<String, Object> first = map("source", "a.pdf");
+        first.put("title", null);
+        Map<String, Object> second = map("source", "a.pdf");
+
+        assertThat(SegmentMetadata.common(List.of(first, second))).containsOnlyKeys("source");
+        assertThat(SegmentMetadata.common(List.of(first, new HashMap<>(first)))).containsOnlyKeys("source", "title");
+    }
+
+    @Test
+    void deltaAndMergeRoundTrip() {
+        List<Map<String, Object>> metadataList = List.of(
+                map("source", "a.pdf", "page", 1, "lang", "zh"),
+                map("source", "a.pdf", "page", 2, "lang", "en"),
+                map("source", "a.pdf", "page", 3));
+        Map<String, Object> shared = map("source", "a.pdf", "lang", "zh");
+
+        for (Map<String, Object> metadata : metadataList) {
+            Map<String, Object> delta = SegmentMetadata.delta(shared, metadata);
+            assertThat(delta).doesNotContainKey("source");
+            assertThat(SegmentMetadata.merge(shared, delta)).isEqualTo(metadata);
+        }
+    }
+
+    @Test
+    void missingSharedKeysAreRecordedAsUnset() {
+        Map<String, Object> shared = map("source", "a.pdf", "lang", "zh");
+        Map<String, Object> delta = SegmentMetadata.delta(shared, map("source", "a.pdf", "page", 3));
+
+        assertThat(delta).containsEntry("page", 3);
+        assertThat(delta.get(META_KEY_UNSET)).isEqualTo(List.of("lang"));
+
+        Map<String, Object> merged = SegmentMetadata.merge(shared, delta);
+        assertThat(merged.get("lang")).isNull();
+        assertThat(merged.containsKey("lang")).isFalse();
+        assertThat(merged.containsKey(META_KEY_UNSET)).isFalse();
+        assertThat(merged.get(META_KEY_UNSET)).isNull();
+        assertThat(merged).containsOnlyKeys("source", "page");
+    }
+
+    @Test
+    void legacySegmentsWithoutSharedMetadataAreReturnedAsIs() {
+        Map<String, Object> metadata = map("source", "a.pdf", "page", 1);
+
+        assertThat(SegmentMetadata.merge(null, metadata)).isSameAs(metadata);
+        assertThat(SegmentMetadata.merge(Map.of(), metadata)).isSameAs(metadata);
+        assertThat(SegmentMetadata.merge(null, null)).isEmpty();
+        assertThat(SegmentMetadata.delta(null, metadata)).isSameAs(metadata);
+        assertThat(SegmentMetadata.delta(Map.of(), null)).isEmpty();
+    }
+
+    @Test
+    void writesToMergedViewDoNotAffectSharedMetadata() {
+        Map<String, Object> shared = map("source", "a.pdf", "lang", "zh");
+        Map<String, Object> merged = SegmentMetadata.merge(shared, map("page", 1));
+
+        merged.put("lang", "en");
+        merged.remove("source");
+
+        assertThat(merged).containsOnly(Map.entry("lang", "en"), Map.entry("page", 1));
+        assertThat(shared).containsOnly(Map.entry("source", "a.pdf"), Map.entry("lang", "zh"));
+    }
+
+    private static Map<String, Object> map(Object... keyValues) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return map;
+    }
+}
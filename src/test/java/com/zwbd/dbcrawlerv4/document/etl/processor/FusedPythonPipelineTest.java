@@ -0,0 +1,122 @@
+package com.zwbd.dbcrawlerv4.document.etl.processor;
+
+import com.zwbd.dbcrawlerv4.document.entity.DocumentContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 融合执行的结果必须与逐步串联 {@link PythonScriptProcessor} 一致
+ */
+class FusedPythonPipelineTest {
+
+    private static final String FILTER = """
+            def process(doc):
+                if 'drop' in doc.getText():
+                    return None
+                return doc
+            """;
+
+    private static final String UPPER = """
+            def process(doc):
+                doc.setText(doc.getText().upper())
+                doc.getMetadata().put('upper', True)
+                return doc
+            """;
+
+    private static final String SPLIT = """
+            def process(doc):
+                if 'SPLIT' in doc.getText():
+                    return [doc, doc]
+                if 'EMPTY' in doc.getText():
+                    return []
+                return doc
+            """;
+
+    private static final String PASS_THROUGH = """
+            count = 0
+
+            def process(doc):
+                global count
+                count += 1
+                doc.getMetadata().put('seen', count)
+                return True
+            """;
+
+    private static final List<String> TEXTS = List.of("keep me", "drop me", "split me", "empty me", "last");
+
+    @Test
+    void matchesChainedProcessors() {
+        List<String> scripts = List.of(FILTER, UPPER, SPLIT, PASS_THROUGH);
+
+        List<DocumentContext> fused = new ArrayList<>();
+        try (FusedPythonPipeline pipeline = new FusedPythonPipeline(scripts)) {
+            for (String text : TEXTS) {
+                fused.addAll(pipeline.process(new DocumentContext(null, text)));
+            }
+        }
+        List<DocumentContext> chained = chain(scripts);
+
+        assertThat(fused).extracting(DocumentContext::getText)
+                .containsExactly("KEEP ME", "SPLIT ME", "SPLIT ME", "LAST")
+                .containsExactlyElementsOf(chained.stream().map(DocumentContext::getText).toList());
+        assertThat(fused).extracting(DocumentContext::getMetadata)
+                .containsExactlyElementsOf(chained.stream().map(DocumentContext::getMetadata).toList());
+    }
+
+    @Test
+    void scriptsDoNotShareGlobals() {
+        String first = """
+                value = 'first'
+
+                def process(doc):
+                    doc.getMetadata().put('first', value)
+                    return doc
+                """;
+        String second = """
+                value = 'second'
+
+                def process(doc):
+                    doc.getMetadata().put('second', value)
+                    return doc
+                """;
+        try (FusedPythonPipeline pipeline = new FusedPythonPipeline(List.of(first, second))) {
+            DocumentContext result = pipeline.process(new DocumentContext(null, "text")).get(0);
+            assertThat(result.getMetadata()).containsEntry("first", "first").containsEntry("second", "second");
+        }
+    }
+
+    @Test
+    void rejectsStepWithoutProcessFunction() {
+        assertThatThrownBy(() -> new FusedPythonPipeline(List.of(FILTER, "x = 1")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("step 2");
+        assertThatThrownBy(() -> new FusedPythonPipeline(List.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<DocumentContext> chain(List<String> scripts) {
+        List<PythonScriptProcessor> processors = scripts.stream().map(PythonScriptProcessor::new).toList();
+        try {
+            List<DocumentContext> results = new ArrayList<>();
+            for (String text : TEXTS) {
+                List<DocumentContext> docs = List.of(new DocumentContext(null, text));
+                for (PythonScriptProcessor processor : processors) {
+                    List<DocumentContext> next = new ArrayList<>();
+                    for (DocumentContext doc : docs) {
+                        next.addAll(processor.process(doc));
+                    }
+                    docs = next;
+                }
+                results.addAll(docs);
+            }
+            return results;
+        } finally {
+            processors.forEach(PythonScriptProcessor::close);
+        }
+    }
+}
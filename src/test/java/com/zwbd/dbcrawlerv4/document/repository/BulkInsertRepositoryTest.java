@@ -0,0 +1,53 @@
+package com.zwbd.dbcrawlerv4.document.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkInsertRepositoryTest {
+
+    @Test
+    void nullIsWrittenAsUnquotedEmptyField() throws IOException {
+        assertThat(csv(null)).isEmpty();
+        // 空字符串必须加引号，否则 COPY 会把它当作 NULL
+        assertThat(csv("")).isEqualTo("\"\"");
+    }
+
+    @Test
+    void quotesAreDoubledInsideQuotedField() throws IOException {
+        assertThat(csv("say \"hi\"")).isEqualTo("\"say \"\"hi\"\"\"");
+        assertThat(csv("\"")).isEqualTo("\"\"\"\"");
+        assertThat(csv("{\"key\":\"value\"}")).isEqualTo("\"{\"\"key\"\":\"\"value\"\"}\"");
+    }
+
+    @Test
+    void newlinesCommasAndBackslashesStayInsideQuotes() throws IOException {
+        assertThat(csv("line1\nline2\r\nline3")).isEqualTo("\"line1\nline2\r\nline3\"");
+        assertThat(csv("a,b")).isEqualTo("\"a,b\"");
+        assertThat(csv("C:\\path\\N")).isEqualTo("\"C:\\path\\N\"");
+    }
+
+    @Test
+    void numbersAreWrittenUnquoted() throws IOException {
+        assertThat(csv(42L)).isEqualTo("42");
+        assertThat(csv(new BigDecimal("-1.50"))).isEqualTo("-1.50");
+    }
+
+    @Test
+    void jsonPlaceholderCastsOnlyOnPostgreSql() {
+        assertThat(BulkInsertRepository.jsonPlaceholder("PostgreSQL")).isEqualTo("?::jsonb");
+        assertThat(BulkInsertRepository.jsonPlaceholder("MySQL")).isEqualTo("?");
+        assertThat(BulkInsertRepository.jsonPlaceholder("H2")).isEqualTo("?");
+        assertThat(BulkInsertRepository.jsonPlaceholder(null)).isEqualTo("?");
+    }
+
+    private static String csv(Object value) throws IOException {
+        StringWriter writer = new StringWriter();
+        BulkInsertRepository.writeCsv(writer, value);
+        return writer.toString();
+    }
+}
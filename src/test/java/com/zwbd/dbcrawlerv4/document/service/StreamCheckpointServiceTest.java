@@ -0,0 +1,170 @@
+package com.zwbd.dbcrawlerv4.document.service;
+
+import com.zwbd.dbcrawlerv4.document.entity.StreamCheckpoint;
+import com.zwbd.dbcrawlerv4.document.repository.StreamCheckpointRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StreamCheckpointServiceTest {
+
+    private static final Long DOCUMENT_ID = 7L;
+
+    private final StreamCheckpointRepository repository = mock(StreamCheckpointRepository.class);
+    private final StreamCheckpointService service = new StreamCheckpointService();
+
+    /**
+     * 仓库中保存的断点，模拟按 documentId 唯一的一行
+     */
+    private StreamCheckpoint stored;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "checkpointRepository", repository);
+        ReflectionTestUtils.setField(service, "checkpointInterval", 2);
+        when(repository.findByDocumentId(DOCUMENT_ID)).thenAnswer(invocation -> Optional.ofNullable(stored));
+        when(repository.save(any(StreamCheckpoint.class))).thenAnswer(invocation -> {
+            StreamCheckpoint source = invocation.getArgument(0);
+            // 保存副本，之后对同一对象的修改不会影响已保存的状态
+            StreamCheckpoint copy = new StreamCheckpoint();
+            copy.setDocumentId(source.getDocumentId());
+            copy.setKeyColumn(source.getKeyColumn());
+            copy.setLastKey(source.getLastKey());
+            copy.setRowsEmitted(source.getRowsEmitted());
+            copy.setCompleted(source.isCompleted());
+            stored = copy;
+            return copy;
+        });
+    }
+
+    @Test
+    void checkpointOnlyCoversRowsBeforeTheOneHandedOut() {
+        StreamCheckpointService.Tracker tracker = service.track(DOCUMENT_ID, "id", null);
+        assertThat(stored.getLastKey()).isNull();
+        assertThat(stored.getRowsEmitted()).isZero();
+
+        tracker.onRow(10L);
+        tracker.onRow(20L);
+        // 交出第三行时前两行已处理完，达到间隔后写入断点
+        tracker.onRow(30L);
+        assertThat(stored.getLastKey()).isEqualTo(20L);
+        assertThat(stored.getRowsEmitted()).isEqualTo(2L);
+
+        // 第三行交出后消费方失败：断点仍停在第二行，续传会重新读取第三行
+        tracker.close();
+        assertThat(stored.getLastKey()).isEqualTo(20L);
+        assertThat(stored.getRowsEmitted()).isEqualTo(2L);
+        assertThat(stored.isCompleted()).isFalse();
+        assertThat(service.resumable(DOCUMENT_ID, "id")).isPresent();
+    }
+
+    @Test
+    void exhaustionCommitsTheLastRowAndCompletes() {
+        try (StreamCheckpointService.Tracker tracker = service.track(DOCUMENT_ID, "id", null)) {
+            tracker.onRow(1L);
+            tracker.onRow(2L);
+            tracker.onRow(3L);
+            tracker.onExhausted();
+        }
+
+        assertThat(stored.getLastKey()).isEqualTo(3L);
+        assertThat(stored.getRowsEmitted()).isEqualTo(3L);
+        assertThat(stored.isCompleted()).isTrue();
+    }
+
+    @Test
+    void resumeContinuesKeyAndRowCount() {
+        try (StreamCheckpointService.Tracker tracker = service.track(DOCUMENT_ID, "id", null)) {
+            tracker.onRow(1L);
+            tracker.onRow(2L);
+            tracker.onRow(3L);
+        }
+        StreamCheckpoint checkpoint = service.resumable(DOCUMENT_ID, "id").orElseThrow();
+        assertThat(checkpoint.getLastKey()).isEqualTo(2L);
+
+        try (StreamCheckpointService.Tracker tracker = service.track(DOCUMENT_ID, "id", checkpoint)) {
+            tracker.onRow(3L);
+            tracker.onRow(4L);
+            tracker.onExhausted();
+        }
+
+        assertThat(stored.getLastKey()).isEqualTo(4L);
+        assertThat(stored.getRowsEmitted()).isEqualTo(4L);
+        assertThat(stored.isCompleted()).isTrue();
+    }
+
+    @Test
+    void completedCheckpointRestartsFromTheBeginning() {
+        try (StreamCheckpointService.Tracker tracker = service.track(DOCUMENT_ID, "id", null)) {
+            tracker.onRow(1L);
+            tracker.onExhausted();
+        }
+        StreamCheckpoint completed = stored;
+
+        assertThat(service.resumable(DOCUMENT_ID, "id")).isEmpty();
+        assertThatThrownBy(() -> service.track(DOCUMENT_ID, "id", completed))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        // 从头读取会覆盖已完成的断点
+        try (StreamCheckpointService.Tracker tracker = service.track(DOCUMENT_ID, "id", null)) {
+            tracker.onRow(1L);
+        }
+        assertThat(stored.isCompleted()).isFalse();
+        assertThat(stored.getLastKey()).isNull();
+        assertThat(stored.getRowsEmitted()).isZero();
+    }
+
+    @Test
+    void checkpointForAnotherKeyColumnIsNotResumable() {
+        try (StreamCheckpointService.Tracker tracker = service.track(DOCUMENT_ID, "id", null)) {
+            tracker.onRow(1L);
+            tracker.onRow(2L);
+        }
+
+        assertThat(service.resumable(DOCUMENT_ID, "id")).isPresent();
+        assertThat(service.resumable(DOCUMENT_ID, "order_id")).isEmpty();
+    }
+
+    @Test
+    void saveFailureDoesNotBreakTheStream() {
+        doThrow(new IllegalStateException("database down")).when(repository).save(any(StreamCheckpoint.class));
+
+        try (StreamCheckpointService.Tracker tracker = service.track(DOCUMENT_ID, "id", null)) {
+            tracker.onRow(1L);
+            tracker.onRow(2L);
+            tracker.onRow(3L);
+            tracker.onExhausted();
+        }
+    }
+
+    @Test
+    void toKeyAcceptsOnlyExactIntegers() {
+        assertThat(StreamCheckpointService.toKey(42)).isEqualTo(42L);
+        assertThat(StreamCheckpointService.toKey((short) 3)).isEqualTo(3L);
+        assertThat(StreamCheckpointService.toKey(Long.MAX_VALUE)).isEqualTo(Long.MAX_VALUE);
+        assertThat(StreamCheckpointService.toKey("42")).isEqualTo(42L);
+        assertThat(StreamCheckpointService.toKey(" -7 ")).isEqualTo(-7L);
+        assertThat(StreamCheckpointService.toKey(new BigDecimal("5"))).isEqualTo(5L);
+        assertThat(StreamCheckpointService.toKey(new BigDecimal("5.00"))).isEqualTo(5L);
+        assertThat(StreamCheckpointService.toKey(BigInteger.valueOf(9))).isEqualTo(9L);
+
+        // BIGINT UNSIGNED 超出 long 的值在快照中存为字符串
+        assertThat(StreamCheckpointService.toKey("18446744073709551615")).isNull();
+        assertThat(StreamCheckpointService.toKey(new BigInteger("18446744073709551615"))).isNull();
+        assertThat(StreamCheckpointService.toKey(new BigDecimal("5.5"))).isNull();
+        assertThat(StreamCheckpointService.toKey("abc")).isNull();
+        assertThat(StreamCheckpointService.toKey(5.0d)).isNull();
+        assertThat(StreamCheckpointService.toKey(null)).isNull();
+    }
+}
@@ -0,0 +1,80 @@
+package com.zwbd.dbcrawlerv4.utils;
+
+import com.zwbd.dbcrawlerv4.datasource.dialect.Row;
+import com.zwbd.dbcrawlerv4.datasource.dialect.RowSchema;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 预编译模版的渲染结果必须与 {@link TemplateRenderService#render} 一致
+ */
+class CompiledTemplateTest {
+
+    private final TemplateRenderService templateRenderService = new TemplateRenderService();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "用户 ${name} 的年龄是 ${age}",
+            "${name}",
+            "${name}${age}",
+            "前缀 ${name} 中间 ${name} 后缀",
+            "缺失 ${missing} 与空值 ${nothing}",
+            "没有占位符",
+            "未闭合 ${name",
+            "金额 ${amount}，日期 ${day}，",
+    })
+    void rendersLikeTemplateRenderService(String template) {
+        Map<String, Object> variables = new LinkedHashMap<>();
+        variables.put("name", "张三");
+        variables.put("age", 30);
+        variables.put("nothing", null);
+        variables.put("amount", new BigDecimal("12.50"));
+        variables.put("day", LocalDate.of(2025, 12, 4));
+
+        String expected = templateRenderService.render(template, variables);
+        CompiledTemplate compiled = templateRenderService.compile(template);
+        assertThat(compiled.render(variables)).isEqualTo(expected);
+
+        // 同样的数据以 Row 形式按列下标渲染
+        RowSchema schema = RowSchema.of("name", "age", "nothing", "amount", "day");
+        Row row = new Row(schema, new Object[]{"张三", 30, null, new BigDecimal("12.50"), LocalDate.of(2025, 12, 4)});
+        assertThat(compiled.render(row)).isEqualTo(expected);
+    }
+
+    @Test
+    void rebindsWhenRowSchemaChanges() {
+        CompiledTemplate compiled = CompiledTemplate.compile("${a}-${b}");
+        Row first = new Row(RowSchema.of("a", "b"), new Object[]{1, 2});
+        Row reordered = new Row(RowSchema.of("b", "a"), new Object[]{3, 4});
+        Row partial = new Row(RowSchema.of("a"), new Object[]{5});
+
+        assertThat(compiled.render(first)).isEqualTo("1-2");
+        assertThat(compiled.render(reordered)).isEqualTo("4-3");
+        assertThat(compiled.render(partial)).isEqualTo("5-${b}");
+    }
+
+    @Test
+    void duplicateColumnsUseLastValue() {
+        CompiledTemplate compiled = CompiledTemplate.compile("${id}");
+        Row row = new Row(RowSchema.of("id", "id"), new Object[]{1, 2});
+        Map<String, Object> map = new HashMap<>(row);
+
+        assertThat(compiled.render(row)).isEqualTo("2");
+        assertThat(compiled.render(row)).isEqualTo(templateRenderService.render("${id}", map));
+    }
+
+    @Test
+    void extractsPlaceholdersInOrderWithoutDuplicates() {
+        assertThat(templateRenderService.extractPlaceholders("${b} ${a} ${b} ${c"))
+                .containsExactly("b", "a");
+    }
+}